@@ -0,0 +1,120 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Mesh.VertexDataType;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
+import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
+import com.badlogic.gdx.physics.bullet.Bullet;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import engine.physics.BulletWorld;
+import engine.physics.EntityBlueprint;
+
+/**
+ * Shared setup for the benchmarks. Nothing in here needs a GL context, so the
+ * benchmarks run in a plain JVM without a window. <b>You can not instantiate
+ * this class.</b>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public final class BenchmarkFixtures {
+
+    private static boolean initialized = false;
+
+    /**
+     * You can not instantiate this class.
+     */
+    @Deprecated
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Loads the gdx and bullet natives, safe to call more than once.
+     */
+    public static synchronized void init() {
+        if (!initialized) {
+            GdxNativesLoader.load();
+            Bullet.init();
+            initialized = true;
+        }
+    }
+
+    /**
+     * Creates a box model like the one TestGame uses. The mesh is kept in a
+     * client side vertex array rather than a vertex buffer object, so it can
+     * be created without a GL context. Dispose the model when done.
+     */
+    public static Model createBox(final float width, final float height, final float depth) {
+        final VertexAttributes attributes = MeshBuilder.createAttributes(Usage.Position | Usage.Normal);
+        final MeshBuilder meshBuilder = new MeshBuilder();
+        meshBuilder.begin(attributes, GL20.GL_TRIANGLES);
+        meshBuilder.box(width, height, depth);
+        final VertexAttribute[] array = new VertexAttribute[attributes.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = attributes.get(i);
+        }
+        final Mesh mesh = meshBuilder.end(new Mesh(VertexDataType.VertexArray, true,
+                meshBuilder.getNumVertices(), meshBuilder.getNumIndices(), array));
+
+        final ModelBuilder modelBuilder = new ModelBuilder();
+        modelBuilder.begin();
+        modelBuilder.manage(mesh);
+        modelBuilder.part("box", mesh, GL20.GL_TRIANGLES, new Material(
+                ColorAttribute.createDiffuse(Color.WHITE), ColorAttribute.createSpecular(Color.WHITE)));
+        return modelBuilder.end();
+    }
+
+    /**
+     * Creates a world with the same blueprints as TestGame: a 20x1x20 static
+     * ground and 1x1x1 dynamic boxes.
+     *
+     * @param models true to give the blueprints a model, false for physics
+     * only
+     */
+    public static BulletWorld createWorld(final boolean models) {
+        final BulletWorld world = new BulletWorld();
+        world.addConstructor("ground", new EntityBlueprint(models ? createBox(20f, 1f, 20f) : null,
+                0f, 20f, 1f, 20f));
+        world.addConstructor("box", new EntityBlueprint(models ? createBox(1f, 1f, 1f) : null,
+                1f, 1f, 1f, 1f));
+        return world;
+    }
+
+    /**
+     * Fills the world with square piles of boxes on top of ground tiles, the
+     * way TestGame stacks its boxes but scaled up.
+     *
+     * @param world the world to fill
+     * @param count the number of boxes
+     * @param height the number of boxes on top of each other in a pile, higher
+     * piles mean more contacts per body and harder work for the solver
+     */
+    public static void stack(final BulletWorld world, final int count, final int height) {
+        final int piles = (count + height - 1) / height;
+        final int side = (int) Math.ceil(Math.sqrt(piles));
+        final int tiles = (int) Math.ceil(side / 20f);
+
+        for (int x = 0; x < tiles; x++) {
+            for (int z = 0; z < tiles; z++) {
+                world.add("ground", x * 20f, 0f, z * 20f);
+            }
+        }
+
+        // Spaced apart a little so neighbouring piles don't touch
+        int added = 0;
+        for (int i = 0; i < piles && added < count; i++) {
+            final float x = (i % side) * 1.1f - 9.5f;
+            final float z = (i / side) * 1.1f - 9.5f;
+            for (int y = 0; y < height && added < count; y++, added++) {
+                world.add("box", x, 1f + y * 1.01f, z);
+            }
+        }
+    }
+}
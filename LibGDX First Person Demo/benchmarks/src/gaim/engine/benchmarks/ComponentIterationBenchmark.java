@@ -0,0 +1,115 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import engine.physics.BulletWorld;
+import engine.physics.ComponentStore;
+import engine.physics.Entity;
+import engine.physics.EntityBlueprint;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A sweep over every entity of a world, like an AI or audio system looking
+ * for what is near the player, once through the entities and their matrices
+ * and once through the flat arrays of the {@link ComponentStore}. The
+ * velocity variants read the body through JNI against the velocity kept in
+ * the store.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ComponentIterationBenchmark {
+
+    @Param({"10000", "100000"})
+    public int entities;
+
+    private static final float RANGE = 20f;
+
+    private BulletWorld world;
+    private final Vector3 tmp = new Vector3();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkFixtures.init();
+        this.world = new BulletWorld();
+        this.world.addConstructor("box", new EntityBlueprint(null, 0f, 1f, 1f, 1f));
+        final int side = (int) Math.ceil(Math.sqrt(entities));
+        for (int i = 0; i < entities; i++) {
+            this.world.add("box", (i % side) * 2f - side, 0f, (i / side) * 2f - side);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.world.dispose();
+    }
+
+    @Benchmark
+    public int objects() {
+        int near = 0;
+        for (int i = 0, n = world.getEntityCount(); i < n; i++) {
+            final Entity e = world.getEntityAt(i);
+            final float[] m = e.motionState.current.val;
+            final float r = RANGE + e.getBoundingBoxRadius();
+            final float x = m[Matrix4.M03], y = m[Matrix4.M13], z = m[Matrix4.M23];
+            if (x * x + y * y + z * z <= r * r) {
+                near++;
+            }
+        }
+        return near;
+    }
+
+    @Benchmark
+    public int components() {
+        final ComponentStore c = world.getComponents();
+        final float[] position = c.position, radius = c.radius;
+        int near = 0;
+        for (int i = 0, n = c.size(); i < n; i++) {
+            final float r = RANGE + radius[i];
+            final float x = position[i * 3], y = position[i * 3 + 1], z = position[i * 3 + 2];
+            if (x * x + y * y + z * z <= r * r) {
+                near++;
+            }
+        }
+        return near;
+    }
+
+    @Benchmark
+    public float objectsVelocity() {
+        float speed = 0f;
+        for (int i = 0, n = world.getEntityCount(); i < n; i++) {
+            speed += world.getEntityAt(i).body.getLinearVelocity().len2();
+        }
+        return speed;
+    }
+
+    @Benchmark
+    public float componentsVelocity() {
+        final ComponentStore c = world.getComponents();
+        final float[] velocity = c.velocity;
+        float speed = 0f;
+        for (int i = 0, n = c.size() * 3; i < n; i += 3) {
+            speed += velocity[i] * velocity[i] + velocity[i + 1] * velocity[i + 1]
+                    + velocity[i + 2] * velocity[i + 2];
+        }
+        return speed;
+    }
+}
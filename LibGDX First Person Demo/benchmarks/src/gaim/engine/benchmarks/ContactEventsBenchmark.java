@@ -0,0 +1,90 @@
+package gaim.engine.benchmarks;
+
+import engine.physics.BulletWorld;
+import engine.physics.ContactEvents;
+import engine.physics.Entity;
+import engine.physics.EntityBlueprint;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A tick of a pile of boxes with the collision events off, on with no body
+ * opted in, on with a handful of bodies opted in, and on with every body
+ * opted in. The difference to <code>off</code> is what the events cost;
+ * with few bodies opted in it should stay close to nothing however big the
+ * pile is.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ContactEventsBenchmark {
+
+    @Param({"500", "2000"})
+    public int boxes;
+
+    @Param({"off", "none", "some", "all"})
+    public String events;
+
+    private BulletWorld world;
+    private final int[] counts = new int[3];
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BenchmarkFixtures.init();
+        this.world = new BulletWorld();
+        this.world.addConstructor("ground", new EntityBlueprint(null, 0f, 200f, 1f, 200f));
+        this.world.addConstructor("box", new EntityBlueprint(null, 1f, 1f, 1f, 1f));
+        this.world.add("ground", 0f, -0.5f, 0f);
+        if (!"off".equals(events)) {
+            this.world.enableContactEvents().addListener(new ContactEvents.Listener() {
+
+                @Override
+                public void contacts(final ContactEvents events) {
+                    for (int i = 0; i < events.size(); i++) {
+                        counts[events.getType(i)]++;
+                    }
+                }
+            });
+        }
+
+        // columns of ten, touching their neighbours
+        final int columns = Math.max(1, boxes / 10);
+        final int side = (int) Math.ceil(Math.sqrt(columns));
+        for (int i = 0; i < boxes; i++) {
+            final int column = i / 10;
+            final Entity e = world.add("box", (column % side) * 1.01f, 0.5f + (i % 10) * 1.01f,
+                    (column / side) * 1.01f);
+            if ("all".equals(events) || ("some".equals(events) && i % 100 == 0)) {
+                e.setContactFlags(1, 1);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        this.world.dispose();
+    }
+
+    @Benchmark
+    public int tick() {
+        this.world.update(world.getTickStep());
+        return counts[ContactEvents.PERSIST];
+    }
+}
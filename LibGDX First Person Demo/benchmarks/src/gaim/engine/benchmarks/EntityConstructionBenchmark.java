@@ -0,0 +1,84 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.graphics.g3d.Model;
+import engine.physics.Entity;
+import engine.physics.EntityBlueprint;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link EntityBlueprint#construct(float, float, float)} and
+ * of {@link EntityBlueprint#obtain(float, float, float)}. Every entity is
+ * disposed or freed again straight away, otherwise the native side would run
+ * out of memory long before the benchmark ends, so the score includes the
+ * cost of getting rid of one.
+ * <p>
+ * Run with <code>-PjmhArgs="EntityConstruction -prof gc"</code> to see the
+ * allocation rate and the bytes allocated per entity.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EntityConstructionBenchmark {
+
+    /**
+     * Whether the blueprint has a model, entities with a model also create a
+     * <code>ModelInstance</code> and calculate their bounds from it.
+     */
+    @Param({"true", "false"})
+    public boolean model;
+
+    private Model box;
+    private EntityBlueprint blueprint;
+    private float x;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkFixtures.init();
+        this.box = model ? BenchmarkFixtures.createBox(1f, 1f, 1f) : null;
+        this.blueprint = new EntityBlueprint(box, 1f, 1f, 1f, 1f);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.blueprint.dispose();
+    }
+
+    @Benchmark
+    public int construct() {
+        final Entity e = blueprint.construct(x++, 0f, 0f);
+        final int hash = e.getModelInstance() != null ? e.getModelInstance().hashCode() : e.hashCode();
+        e.dispose();
+        return hash;
+    }
+
+    /**
+     * The same through the pool of the blueprint, after the first call every
+     * entity is recycled.
+     */
+    @Benchmark
+    public int obtain() {
+        final Entity e = blueprint.obtain(x++, 0f, 0f);
+        final int hash = e.hashCode();
+        this.blueprint.free(e);
+        return hash;
+    }
+}
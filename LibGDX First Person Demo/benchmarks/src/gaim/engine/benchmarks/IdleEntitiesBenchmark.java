@@ -0,0 +1,93 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.physics.bullet.collision.Collision;
+import engine.physics.BulletWorld;
+import engine.physics.Entity;
+import engine.physics.EntityBlueprint;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a frame with a fixed number of moving bodies against a growing
+ * number of static or sleeping ones. Only the moving bodies are synced and
+ * interpolated, so the score should stay about the same as <code>idle</code>
+ * grows. What growth is left comes from bullet itself, which still walks its
+ * sleeping bodies every tick.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IdleEntitiesBenchmark {
+
+    /**
+     * The number of bodies that never move.
+     */
+    @Param({"0", "1000", "10000", "50000"})
+    public int idle;
+
+    /**
+     * Whether the idle bodies are static or dynamic bodies that are asleep.
+     */
+    @Param({"static", "sleeping"})
+    public String kind;
+
+    /**
+     * The number of bodies in free fall, they move on every tick.
+     */
+    @Param({"100"})
+    public int moving;
+
+    private BulletWorld world;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BenchmarkFixtures.init();
+        this.world = new BulletWorld();
+        this.world.addConstructor("static", new EntityBlueprint(null, 0f, 1f, 1f, 1f));
+        this.world.addConstructor("dynamic", new EntityBlueprint(null, 1f, 1f, 1f, 1f));
+
+        // Spaced apart so nothing touches
+        final int side = (int) Math.ceil(Math.sqrt(Math.max(idle, moving)));
+        for (int i = 0; i < idle; i++) {
+            final Entity e = world.add("static".equals(kind) ? "static" : "dynamic",
+                    (i % side) * 2f, 0f, (i / side) * 2f);
+            if (!"static".equals(kind)) {
+                e.body.setActivationState(Collision.ISLAND_SLEEPING);
+            }
+        }
+        for (int i = 0; i < moving; i++) {
+            world.add("dynamic", (i % side) * 2f, 100f, (i / side) * 2f);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        this.world.dispose();
+    }
+
+    /**
+     * One frame with one tick.
+     */
+    @Benchmark
+    public int frame() {
+        this.world.update(world.getTickStep());
+        return world.getMovingCount();
+    }
+}
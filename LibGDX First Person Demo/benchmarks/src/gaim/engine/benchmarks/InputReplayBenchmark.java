@@ -0,0 +1,73 @@
+package gaim.engine.benchmarks;
+
+import engine.core.InputBuffer;
+import engine.core.InputState;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays a synthetic stream of input through an {@link InputBuffer} and the
+ * {@link InputState} of the ticks: a gaming mouse reporting at 1000Hz, so
+ * about 17 moves per tick at 60 ticks per second, and a key going down or up
+ * every few ticks.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InputReplayBenchmark {
+
+    private static final long TICK = 1000000000L / 60L;
+
+    /**
+     * Mouse reports per second.
+     */
+    @Param({"125", "1000", "8000"})
+    public int rate;
+
+    private InputBuffer buffer;
+    private InputState input;
+    private long time;
+    private int ticks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        this.buffer = new InputBuffer(1024);
+        this.input = new InputState(buffer);
+        this.time = 0L;
+        this.ticks = 0;
+    }
+
+    /**
+     * Queues the events of one tick and takes them out again.
+     */
+    @Benchmark
+    public float tick() {
+        final long interval = 1000000000L / rate;
+        final long end = time + TICK;
+        for (long t = time; t < end; t += interval) {
+            this.buffer.offer(InputBuffer.MOUSE_MOVED, 0, (t & 7) - 3, (t & 3) - 1, t);
+        }
+        if (ticks++ % 4 == 0) {
+            this.buffer.offer((ticks & 4) == 0 ? InputBuffer.KEY_DOWN : InputBuffer.KEY_UP, 51, 0f, 0f, end - 1);
+        }
+        this.time = end;
+        this.input.drain(end);
+        return input.getMouseX() + input.getMouseY() + (input.isKeyDown(51) ? 1f : 0f);
+    }
+}
@@ -0,0 +1,80 @@
+package gaim.engine.benchmarks;
+
+import engine.physics.BulletWorld;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of simulating one second of the world against the number of dynamic
+ * bodies and how densely they are stacked. The world is rebuilt before every
+ * invocation, so each one measures the same boxes falling onto the ground
+ * and settling rather than a world that has gone to sleep.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PhysicsStepBenchmark {
+
+    /**
+     * The number of dynamic boxes.
+     */
+    @Param({"250", "1000", "4000"})
+    public int bodies;
+
+    /**
+     * The number of boxes per pile, 1 means no stacking at all.
+     */
+    @Param({"1", "5", "20"})
+    public int height;
+
+    /**
+     * The number of ticks simulated per invocation.
+     */
+    @Param({"60"})
+    public int ticks;
+
+    private BulletWorld world;
+
+    @Setup(Level.Trial)
+    public void init() {
+        BenchmarkFixtures.init();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        this.world = BenchmarkFixtures.createWorld(false);
+        BenchmarkFixtures.stack(world, bodies, height);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        this.world.dispose();
+        this.world = null;
+    }
+
+    @Benchmark
+    public int step() {
+        final float step = world.getTickStep();
+        for (int i = 0; i < ticks; i++) {
+            this.world.update(step);
+        }
+        return world.getTick();
+    }
+}
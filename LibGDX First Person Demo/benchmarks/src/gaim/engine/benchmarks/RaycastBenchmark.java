@@ -0,0 +1,118 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.collision.ClosestRayResultCallback;
+import engine.physics.BulletWorld;
+import engine.physics.EntityBlueprint;
+import engine.physics.RayBatch;
+import engine.physics.RayHit;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A frame's worth of rays, 10k by default, cast into a field of boxes: as a
+ * {@link RayBatch}, one at a time through the reused callback of the world,
+ * and with a new callback per ray the way the game used to have to. Rays per
+ * second is <code>rays / score</code>.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RaycastBenchmark {
+
+    @Param({"10000"})
+    public int rays;
+
+    @Param({"1000", "10000"})
+    public int boxes;
+
+    private BulletWorld world;
+    private RayBatch batch;
+    private final RayHit hit = new RayHit();
+    private final Vector3 from = new Vector3(), to = new Vector3();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkFixtures.init();
+        this.world = new BulletWorld();
+        this.world.addConstructor("ground", new EntityBlueprint(null, 0f, 200f, 1f, 200f));
+        this.world.addConstructor("box", new EntityBlueprint(null, 0f, 1f, 1f, 1f));
+        this.world.add("ground", 0f, -0.5f, 0f);
+        final RandomXS128 random = new RandomXS128(42L);
+        for (int i = 0; i < boxes; i++) {
+            this.world.add("box", random.nextFloat() * 180f - 90f, 0.5f + random.nextInt(3),
+                    random.nextFloat() * 180f - 90f);
+        }
+
+        // from head height in every direction, some reach the ground
+        this.batch = new RayBatch(rays);
+        for (int i = 0; i < rays; i++) {
+            final float angle = random.nextFloat() * MathUtils.PI2;
+            final float x = random.nextFloat() * 160f - 80f, z = random.nextFloat() * 160f - 80f;
+            this.batch.add(x, 1.7f, z, x + MathUtils.cos(angle) * 50f, 1.7f - random.nextFloat() * 5f,
+                    z + MathUtils.sin(angle) * 50f);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.world.dispose();
+    }
+
+    @Benchmark
+    public int batch() {
+        return this.world.rayTest(batch);
+    }
+
+    @Benchmark
+    public int single() {
+        final float[] r = batch.rays;
+        int hits = 0;
+        for (int i = 0; i < rays; i++) {
+            this.from.set(r[i * 6], r[i * 6 + 1], r[i * 6 + 2]);
+            this.to.set(r[i * 6 + 3], r[i * 6 + 4], r[i * 6 + 5]);
+            if (world.rayTest(from, to, BulletWorld.GROUP_ALL, hit)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int allocating() {
+        final float[] r = batch.rays;
+        int hits = 0;
+        for (int i = 0; i < rays; i++) {
+            this.from.set(r[i * 6], r[i * 6 + 1], r[i * 6 + 2]);
+            this.to.set(r[i * 6 + 3], r[i * 6 + 4], r[i * 6 + 5]);
+            final ClosestRayResultCallback callback = new ClosestRayResultCallback(from, to);
+            this.world.dynamicsWorld.rayTest(from, to, callback);
+            if (callback.hasHit()) {
+                callback.getHitPointWorld(hit.point);
+                callback.getHitNormalWorld(hit.normal);
+                hits++;
+            }
+            callback.dispose();
+        }
+        return hits;
+    }
+}
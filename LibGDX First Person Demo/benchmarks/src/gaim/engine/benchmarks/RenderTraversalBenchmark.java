@@ -0,0 +1,194 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.GLTexture;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.g3d.Environment;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.utils.DefaultRenderableSorter;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
+import com.badlogic.gdx.graphics.g3d.utils.ShaderProvider;
+import com.badlogic.gdx.graphics.g3d.utils.TextureBinder;
+import com.badlogic.gdx.graphics.g3d.utils.TextureDescriptor;
+import engine.graphics.FrustumCuller;
+import engine.graphics.RenderQueue;
+import engine.physics.BulletWorld;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CPU side cost of rendering the world: culling, collecting the renderables
+ * of every visible instance, picking a shader for each and sorting them. The
+ * batch uses a shader that draws nothing, so no GL context is needed and the
+ * GPU doesn't take part.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RenderTraversalBenchmark {
+
+    /**
+     * The number of boxes in the world.
+     */
+    @Param({"1000", "10000"})
+    public int entities;
+
+    /**
+     * Whether the entities are culled against the frustum of the camera.
+     */
+    @Param({"true", "false"})
+    public boolean culling;
+
+    /**
+     * The sorter of the batch, libGDX's comparison sort or the radix sorted
+     * {@link RenderQueue}.
+     */
+    @Param({"default", "radix"})
+    public String sorter;
+
+    private BulletWorld world;
+    private ModelBatch batch;
+    private Environment environment;
+    private Camera camera;
+    private FrustumCuller culler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkFixtures.init();
+        this.world = BenchmarkFixtures.createWorld(true);
+        BenchmarkFixtures.stack(world, entities, 5);
+
+        this.batch = new ModelBatch(new RenderContext(new NoopTextureBinder()), new NoopShaderProvider(),
+                "radix".equals(sorter) ? new RenderQueue() : new DefaultRenderableSorter());
+        this.environment = new Environment();
+        this.culler = new FrustumCuller();
+        this.culler.enabled = culling;
+
+        // The same view as the player has when the game starts
+        this.camera = new PerspectiveCamera(67f, 1280f, 720f);
+        this.camera.position.set(-10f, 5f, -10f);
+        this.camera.lookAt(0f, 2f, 0f);
+        this.camera.near = 1f;
+        this.camera.far = 300f;
+        this.camera.update();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.world.dispose();
+        this.batch.dispose();
+    }
+
+    @Benchmark
+    public int render() {
+        this.culler.reset();
+        this.batch.begin(camera);
+        this.world.render(batch, environment, culler);
+        this.batch.end();
+        return culler.visible;
+    }
+
+    /**
+     * Accepts everything and draws nothing.
+     */
+    private static final class NoopShader implements Shader {
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public int compareTo(final Shader other) {
+            return 0;
+        }
+
+        @Override
+        public boolean canRender(final Renderable instance) {
+            return true;
+        }
+
+        @Override
+        public void begin(final Camera camera, final RenderContext context) {
+        }
+
+        @Override
+        public void render(final Renderable renderable) {
+        }
+
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+
+    private static final class NoopShaderProvider implements ShaderProvider {
+
+        private final Shader shader = new NoopShader();
+
+        @Override
+        public Shader getShader(final Renderable renderable) {
+            return shader;
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+
+    private static final class NoopTextureBinder implements TextureBinder {
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public int bind(final TextureDescriptor textureDescriptor) {
+            return 0;
+        }
+
+        @Override
+        public int bind(final GLTexture texture) {
+            return 0;
+        }
+
+        @Override
+        public int getBindCount() {
+            return 0;
+        }
+
+        @Override
+        public int getReuseCount() {
+            return 0;
+        }
+
+        @Override
+        public void resetCounts() {
+        }
+    }
+}
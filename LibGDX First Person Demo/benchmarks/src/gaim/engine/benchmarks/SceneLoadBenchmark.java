@@ -0,0 +1,125 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Matrix4;
+import com.google.gson.Gson;
+import engine.physics.SceneConverter;
+import engine.physics.SceneFile;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Opening a level and reading the transform and colour of every entity, from
+ * the JSON it is authored in and from the converted {@link SceneFile}. The
+ * entities aren't added to a world, that costs the same for both and would
+ * hide the difference.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SceneLoadBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int entities;
+
+    private File json, binary;
+    private final Matrix4 transform = new Matrix4();
+    private final Color colour = new Color();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final SceneConverter.Scene scene = new SceneConverter.Scene();
+        scene.blueprints = new ArrayList<SceneConverter.Blueprint>();
+        final SceneConverter.Blueprint box = new SceneConverter.Blueprint();
+        box.name = "box";
+        box.mass = 1f;
+        box.size = new float[]{1f, 1f, 1f};
+        scene.blueprints.add(box);
+
+        final Random random = new Random(1L);
+        scene.entities = new ArrayList<SceneConverter.Placement>(entities);
+        for (int i = 0; i < entities; i++) {
+            final SceneConverter.Placement entity = new SceneConverter.Placement();
+            entity.type = "box";
+            entity.position = new float[]{random.nextFloat() * 500f, random.nextFloat() * 10f, random.nextFloat() * 500f};
+            entity.rotation = new float[]{0f, 0.38268343f, 0f, 0.9238795f};
+            entity.colour = String.format("%08x", random.nextInt() | 0xFF);
+            scene.entities.add(entity);
+        }
+
+        this.json = File.createTempFile("scene", ".json");
+        this.binary = File.createTempFile("scene", ".scene");
+        final FileHandle jsonFile = new FileHandle(json);
+        jsonFile.writeString(new Gson().toJson(scene), false, "UTF-8");
+        final FileOutputStream out = new FileOutputStream(binary);
+        try {
+            SceneConverter.convert(scene, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.json.delete();
+        this.binary.delete();
+    }
+
+    @Benchmark
+    public float json() throws IOException {
+        final Reader in = new InputStreamReader(new FileInputStream(json), "UTF-8");
+        final SceneConverter.Scene scene;
+        try {
+            scene = SceneConverter.parse(in);
+        } finally {
+            in.close();
+        }
+        float sum = 0f;
+        for (int i = 0; i < scene.entities.size(); i++) {
+            final SceneConverter.Placement entity = scene.entities.get(i);
+            final float[] p = entity.position, r = entity.rotation;
+            this.transform.set(p[0], p[1], p[2], r[0], r[1], r[2], r[3]);
+            this.colour.set(Color.valueOf(entity.colour));
+            sum += transform.val[Matrix4.M03] + colour.r;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float binary() {
+        final SceneFile scene = SceneFile.open(new FileHandle(binary));
+        float sum = 0f;
+        for (int i = 0, n = scene.getEntityCount(); i < n; i++) {
+            scene.getTransform(i, transform);
+            scene.getColour(i, colour);
+            sum += transform.val[Matrix4.M03] + colour.r;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,112 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import engine.physics.BulletWorld;
+import engine.physics.SceneConverter;
+import engine.physics.SceneFile;
+import engine.physics.SceneSpawner;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The frame a loaded level is added to the world in: the whole level at once,
+ * as the demo used to, against a {@link SceneSpawner} budget. The score is the
+ * hitch the first frame takes, the rest of the level follows in frames that
+ * cost about the same.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SceneSpawnBenchmark {
+
+    @Param({"10000", "50000"})
+    public int entities;
+
+    /**
+     * Entities added per frame, 0 for all at once.
+     */
+    @Param({"0", "256"})
+    public int spawnBudget;
+
+    private File binary;
+    private SceneFile scene;
+    private BulletWorld world;
+    private SceneSpawner spawner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkFixtures.init();
+        final SceneConverter.Scene level = new SceneConverter.Scene();
+        level.blueprints = new ArrayList<SceneConverter.Blueprint>();
+        final SceneConverter.Blueprint box = new SceneConverter.Blueprint();
+        box.name = "box";
+        box.mass = 0f;
+        box.size = new float[]{1f, 1f, 1f};
+        level.blueprints.add(box);
+
+        final Random random = new Random(1L);
+        level.entities = new ArrayList<SceneConverter.Placement>(entities);
+        for (int i = 0; i < entities; i++) {
+            final SceneConverter.Placement entity = new SceneConverter.Placement();
+            entity.type = "box";
+            entity.position = new float[]{random.nextFloat() * 500f, random.nextFloat() * 10f, random.nextFloat() * 500f};
+            level.entities.add(entity);
+        }
+
+        this.binary = File.createTempFile("scene", ".scene");
+        final FileOutputStream out = new FileOutputStream(binary);
+        try {
+            SceneConverter.convert(level, out);
+        } finally {
+            out.close();
+        }
+        this.scene = SceneFile.open(new FileHandle(binary));
+    }
+
+    @Setup(Level.Invocation)
+    public void createWorld() {
+        this.world = new BulletWorld();
+        this.spawner = new SceneSpawner(world, scene);
+        this.spawner.spawnBudget = spawnBudget > 0 ? spawnBudget : Integer.MAX_VALUE;
+        // nothing to bake without models
+        this.spawner.bake = false;
+    }
+
+    @TearDown(Level.Invocation)
+    public void disposeWorld() {
+        this.world.dispose();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.binary.delete();
+    }
+
+    @Benchmark
+    public int firstFrame() {
+        this.spawner.update(0f);
+        return spawner.getSpawnedCount();
+    }
+}
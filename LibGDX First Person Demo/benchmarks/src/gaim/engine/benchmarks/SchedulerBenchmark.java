@@ -0,0 +1,98 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.ai.msg.MessageDispatcher;
+import com.badlogic.gdx.ai.msg.Telegram;
+import com.badlogic.gdx.ai.msg.Telegraph;
+import engine.core.GameSystem;
+import engine.core.Scheduler;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Running a phase of small systems, like hundreds of bots and props, through
+ * the {@link Scheduler} with and without timing, against broadcasting a
+ * message to as many listeners through a gdx-ai message dispatcher as the
+ * engine used to.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SchedulerBenchmark {
+
+    private static final int MESSAGE = 0;
+
+    @Param({"10", "100", "500"})
+    public int systems;
+
+    private final Scheduler scheduler = new Scheduler();
+    private final MessageDispatcher dispatcher = new MessageDispatcher();
+    private final float[] state = new float[1];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < systems; i++) {
+            final Prop prop = new Prop(state);
+            this.scheduler.add(Scheduler.PRE_PHYSICS, i % 4, prop);
+            this.dispatcher.addListener(prop, MESSAGE);
+        }
+    }
+
+    @Benchmark
+    public float scheduler() {
+        this.scheduler.timing = false;
+        this.scheduler.update(Scheduler.PRE_PHYSICS, 1f / 60f);
+        return state[0];
+    }
+
+    @Benchmark
+    public float schedulerTimed() {
+        this.scheduler.timing = true;
+        this.scheduler.update(Scheduler.PRE_PHYSICS, 1f / 60f);
+        return state[0];
+    }
+
+    @Benchmark
+    public float messages() {
+        this.dispatcher.dispatchMessage(MESSAGE);
+        return state[0];
+    }
+
+    /**
+     * A system with next to no work, so the dispatch is what is measured.
+     */
+    private static final class Prop implements GameSystem, Telegraph {
+
+        private final float[] state;
+
+        Prop(final float[] state) {
+            this.state = state;
+        }
+
+        @Override
+        public void update(final float dt) {
+            this.state[0] += dt;
+        }
+
+        @Override
+        public boolean handleMessage(final Telegram msg) {
+            this.state[0] += 1f / 60f;
+            return true;
+        }
+    }
+}
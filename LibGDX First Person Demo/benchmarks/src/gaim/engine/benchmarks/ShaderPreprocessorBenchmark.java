@@ -0,0 +1,72 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.utils.ObjectMap;
+import engine.graphics.ShaderPreprocessor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The GL-free part of the shader cache: preprocessing a program with
+ * includes and defines from memory, and hashing the result into the key the
+ * program is cached under.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ShaderPreprocessorBenchmark {
+
+    private static final String[] DEFINES = {"SHADOWS", "CASCADES=3", "LOD=2", "FOG"};
+
+    private ShaderPreprocessor preprocessor;
+    private String vertex, fragment;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final ObjectMap<String, String> files = new ObjectMap<String, String>();
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            body.append("    value += texture2D(u_texture, v_uv * ").append(i).append(".0).r;\n");
+        }
+        files.put("shaders/lit.vert", "#version 120\n#include \"common.glsl\"\n#include \"lib/skin.glsl\"\n"
+                + "void main() {\n    gl_Position = u_projTrans * a_position;\n}\n");
+        files.put("shaders/lit.frag", "#version 120\n#include \"common.glsl\"\n#include \"lib/light.glsl\"\n"
+                + "void main() {\n    float value = 0.0;\n" + body + "    gl_FragColor = vec4(value);\n}\n");
+        files.put("shaders/common.glsl", "uniform mat4 u_projTrans;\nattribute vec4 a_position;\n");
+        files.put("shaders/lib/skin.glsl", "#include \"../common.glsl\"\nuniform mat4 u_bones[32];\n");
+        files.put("shaders/lib/light.glsl", "#include \"../common.glsl\"\nuniform vec3 u_light;\n");
+        this.preprocessor = new ShaderPreprocessor(new ShaderPreprocessor.Source() {
+
+            @Override
+            public String read(final String path) {
+                return files.get(path);
+            }
+        });
+        this.vertex = preprocessor.process("shaders/lit.vert", DEFINES);
+        this.fragment = preprocessor.process("shaders/lit.frag", DEFINES);
+    }
+
+    @Benchmark
+    public int process() {
+        return this.preprocessor.process("shaders/lit.frag", DEFINES).length();
+    }
+
+    @Benchmark
+    public long key() {
+        return ShaderPreprocessor.key(vertex, fragment);
+    }
+}
@@ -0,0 +1,91 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.math.Vector3;
+import engine.graphics.CascadedShadowLight;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The GL-free part of {@link CascadedShadowLight}: fitting the cascades to a
+ * camera walking through the world and picking the cascade of every receiver.
+ * No shadow map is ever rendered, a cascade is marked valid again as soon as
+ * it is invalidated, so <code>fit</code> returns how many cascades would be
+ * rendered for that frame.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ShadowCascadeBenchmark {
+
+    @Param({"1", "3", "4"})
+    public int cascades;
+
+    /**
+     * Distance the camera walks every frame.
+     */
+    @Param({"0.05"})
+    public float speed;
+
+    private CascadedShadowLight light;
+    private final Vector3 position = new Vector3();
+    private final Vector3 direction = new Vector3();
+    private Vector3[] receivers;
+    private float angle;
+    private int receiver;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.light = new CascadedShadowLight(cascades, 1024);
+        this.light.set(0.8f, 0.8f, 0.8f, -0.5f, -1f, 0.7f);
+        this.position.set(0f, 1.8f, 0f);
+        this.direction.set(1f, 0f, 0f);
+
+        final Random random = new Random(1L);
+        this.receivers = new Vector3[1024];
+        for (int i = 0; i < receivers.length; i++) {
+            this.receivers[i] = new Vector3(random.nextFloat() * 120f - 60f, random.nextFloat() * 4f,
+                    random.nextFloat() * 120f - 60f);
+        }
+    }
+
+    @Benchmark
+    public int fit() {
+        // walk in a wide circle while looking around
+        this.angle += 0.01f;
+        this.direction.set((float) Math.cos(angle), -0.1f, (float) Math.sin(angle)).nor();
+        this.position.mulAdd(direction, speed);
+        this.light.update(position, direction, 0.1f, 300f, 67f, 16f / 9f);
+
+        int invalid = 0;
+        for (CascadedShadowLight.Cascade cascade : light.cascades) {
+            if (!cascade.valid) {
+                cascade.valid = true;
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    @Benchmark
+    public int select() {
+        this.receiver = (receiver + 1) & (receivers.length - 1);
+        return this.light.select(receivers[receiver], 0.87f);
+    }
+}
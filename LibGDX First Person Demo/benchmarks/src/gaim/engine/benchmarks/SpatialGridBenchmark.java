@@ -0,0 +1,147 @@
+package gaim.engine.benchmarks;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.utils.Array;
+import engine.physics.SpatialGrid;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queries against the {@link SpatialGrid} the world indexes its entities
+ * with, compared to testing every item. Items are spread evenly over a square
+ * world, with a few large ones that end up in the oversize cell.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SpatialGridBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int items;
+
+    /**
+     * Radius of the sphere queries.
+     */
+    @Param({"10"})
+    public float radius;
+
+    private SpatialGrid<Item> grid;
+    private Item[] all;
+    private Frustum frustum;
+    private final Array<Item> out = new Array<Item>(false, 1024);
+    private float size;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(1L);
+        // keep the density the same, about one item per 16 square units
+        this.size = (float) Math.sqrt(items * 16f);
+        this.grid = new SpatialGrid<Item>(4f);
+        this.all = new Item[items];
+        for (int i = 0; i < items; i++) {
+            final Item item = new Item(random.nextFloat() * size, random.nextFloat() * 10f,
+                    random.nextFloat() * size, i % 100 == 0 ? 8f : 0.87f);
+            item.proxy = grid.add(item, item.x, item.y, item.z, item.radius);
+            this.all[i] = item;
+        }
+
+        final PerspectiveCamera camera = new PerspectiveCamera(67f, 1280f, 720f);
+        camera.position.set(size * 0.5f, 5f, size * 0.5f);
+        camera.lookAt(size, 2f, size);
+        camera.near = 1f;
+        camera.far = 300f;
+        camera.update();
+        this.frustum = camera.frustum;
+    }
+
+    @Benchmark
+    public int sphereGrid() {
+        this.out.clear();
+        final float x = nextX(), z = nextZ();
+        return grid.query(x, 5f, z, radius, out);
+    }
+
+    @Benchmark
+    public int sphereLinear() {
+        this.out.clear();
+        final float x = nextX(), z = nextZ();
+        for (Item item : all) {
+            final float dx = item.x - x, dy = item.y - 5f, dz = item.z - z, r = item.radius + radius;
+            if (dx * dx + dy * dy + dz * dz <= r * r) {
+                this.out.add(item);
+            }
+        }
+        return out.size;
+    }
+
+    @Benchmark
+    public int frustumGrid() {
+        this.out.clear();
+        return grid.query(frustum, out);
+    }
+
+    @Benchmark
+    public int frustumLinear() {
+        this.out.clear();
+        for (Item item : all) {
+            if (frustum.sphereInFrustum(item.x, item.y, item.z, item.radius)) {
+                this.out.add(item);
+            }
+        }
+        return out.size;
+    }
+
+    /**
+     * Moves every item a little, as the world does for each active body.
+     */
+    @Benchmark
+    public int update() {
+        final float d = (query++ & 1) == 0 ? 0.5f : -0.5f;
+        for (Item item : all) {
+            item.x += d;
+            this.grid.update(item.proxy, item.x, item.y, item.z);
+        }
+        return grid.getCellCount();
+    }
+
+    private float nextX() {
+        return (query++ * 7919 % 1000) / 1000f * size;
+    }
+
+    private float nextZ() {
+        return (query * 104729 % 1000) / 1000f * size;
+    }
+
+    private static final class Item {
+
+        float x, y, z;
+        final float radius;
+        int proxy;
+
+        Item(final float x, final float y, final float z, final float radius) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.radius = radius;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * JMH benchmarks for the Engine. Run them with <code>gradlew
+ * benchmarks:jmh</code>, the results are written as JSON to
+ * <code>benchmarks/build/reports/jmh/results.json</code>.
+ */
+package gaim.engine.benchmarks;
@@ -42,6 +42,9 @@ public class InputAdapter implements InputProcessor {
             case Keys.F2:
                 Game.stepDebugMode();
                 break;
+            case Keys.F3:
+                Game.toggleProfiler();
+                break;
         }
         return true;
     }
@@ -1,115 +1,147 @@
 package engine;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input.Keys;
-import com.badlogic.gdx.InputAdapter;
-import com.badlogic.gdx.ai.msg.MessageManager;
-import com.badlogic.gdx.ai.msg.Telegram;
-import com.badlogic.gdx.ai.msg.Telegraph;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.dynamics.btRigidBody;
 import com.badlogic.gdx.utils.Disposable;
-import com.badlogic.gdx.utils.IntIntMap;
-import static engine.Globals.TMP_VEC;
-import static engine.Globals.TMP_VEC_B;
+import engine.core.GameSystem;
+import engine.core.InputState;
+import engine.core.Scheduler;
+import engine.physics.BulletWorld;
 import engine.physics.Entity;
-import static engine.Globals.Dispatcher.UPDATE;
+import engine.physics.RayHit;
+import engine.utils.Scratch;
 
 /**
  * @author root
  */
-public class CharacterController extends Entity implements Disposable, Telegraph {
+public class CharacterController extends Entity implements Disposable {
 
     private float degreesPerPixel = 0.5f;
-    private final IntIntMap keys = new IntIntMap();
 
     private Camera camera;
+    private final Scheduler scheduler;
+    private final InputState input;
+
+    /**
+     * The direction the player looks in, turned by the ticks and copied to
+     * the camera once they are done.
+     */
+    private final Vector3 look = new Vector3();
+    private final Vector3 force = new Vector3();
+    private final Vector3 jump = new Vector3();
+    /**
+     * Distance from the center of the body to its feet.
+     */
+    private final float halfHeight;
+    private final RayHit ground = new RayHit();
+
+    /**
+     * Applies the input taken by the tick. The ticks may run on the physics
+     * worker, which must not touch the camera.
+     */
+    private final GameSystem physics = new GameSystem() {
+
+        @Override
+        public void update(float step) {
+            applyInput();
+        }
+    };
+    private final GameSystem follow = new GameSystem() {
+
+        @Override
+        public void update(float dt) {
+            // follow the interpolated transform, not the last tick
+            transform.getTranslation(camera.position);
+            camera.direction.set(look);
+        }
+    };
 
-    @SuppressWarnings("LeakingThisInConstructor")
-    public CharacterController(final Camera camera_, Model model, btRigidBody body,
-            float xPos, float yPos, float zPos) {
+    public CharacterController(final Scheduler scheduler, final InputState input, final Camera camera_, Model model,
+            btRigidBody body, float xPos, float yPos, float zPos) {
         super(model, body, xPos, yPos, zPos);
         this.camera = camera_;
+        this.scheduler = scheduler;
+        this.input = input;
+        this.look.set(camera.direction);
 
-        Gdx.input.setInputProcessor(new InputAdapter() {
-
-            @Override
-            public boolean keyDown(int keycode) {
-                keys.put(keycode, keycode);
-                return super.keyDown(keycode);
-            }
+        final Vector3 min = new Vector3(), max = new Vector3();
+        body.getCollisionShape().getAabb(new Matrix4(), min, max);
+        this.halfHeight = max.y;
 
-            @Override
-            public boolean keyUp(int keycode) {
-                keys.remove(keycode, 0);
-                return super.keyUp(keycode);
-            }
-
-            @Override
-            public boolean mouseMoved(int screenX, int screenY) {
-                final float deltaX = -Gdx.input.getDeltaX() * degreesPerPixel;
-                final float deltaY = -Gdx.input.getDeltaY() * degreesPerPixel;
-                camera.direction.rotate(camera.up, deltaX);
-                TMP_VEC.set(camera.direction).crs(camera.up).nor();
-                camera.direction.rotate(TMP_VEC, deltaY);
-                TMP_VEC.setZero();
-                return super.mouseMoved(screenX, screenY);
-            }
-        });
-
-        MessageManager.getInstance().addListener(this, UPDATE); // LeakingThisInConstructor
+        scheduler.add(Scheduler.PHYSICS, physics);
+        scheduler.add(Scheduler.POST_PHYSICS, follow);
     }
 
     @Override
     public void dispose() {
-        MessageManager.getInstance().removeListener(this, UPDATE);
+        this.scheduler.remove(physics);
+        this.scheduler.remove(follow);
         super.dispose();
     }
 
-    @Override
-    public boolean handleMessage(Telegram tlgrm) {
-        switch (tlgrm.message) {
-            case UPDATE: {
-                return update();
-            }
-        }
-        return false;
-    }
-
-    private boolean update() {
+    private void applyInput() {
         int speed = 20 * 2;
 
-        float tmpY = camera.direction.y;
-        camera.direction.y = 0;
+        final Scratch scratch = Scratch.push();
+        try {
+            // all the mouse movement since the last tick at once
+            final Vector3 up = camera.up;
+            this.look.rotate(up, -input.getMouseX() * degreesPerPixel);
+            this.look.rotate(scratch.vec3().set(look).crs(up).nor(), -input.getMouseY() * degreesPerPixel);
 
-        if (Gdx.input.isKeyPressed(Keys.W)) {
-            TMP_VEC.add(TMP_VEC_B.set(camera.direction).nor().scl(speed));
-        }
-        if (Gdx.input.isKeyPressed(Keys.S)) {
-            TMP_VEC.add(TMP_VEC_B.set(camera.direction).nor().scl(-speed));
-        }
-        if (Gdx.input.isKeyPressed(Keys.A)) {
-            TMP_VEC.add(TMP_VEC_B.set(camera.direction).crs(camera.up).nor().scl(-speed));
-        }
-        if (Gdx.input.isKeyPressed(Keys.D)) {
-            TMP_VEC.add(TMP_VEC_B.set(camera.direction).crs(camera.up).nor().scl(speed));
-        }
-        if (Gdx.input.isKeyJustPressed(Keys.SPACE)) {
-            if (body.getLinearVelocity().y < 1
-                    && body.getLinearVelocity().y > 0) {
-                body.applyCentralImpulse(TMP_VEC.set(0, 12.5f, tmpY));
+            final Vector3 direction = scratch.vec3().set(look);
+            direction.y = 0;
+            final Vector3 tmp = scratch.vec3();
+
+            this.force.setZero();
+            if (input.isKeyDown(Keys.W)) {
+                this.force.add(tmp.set(direction).nor().scl(speed));
+            }
+            if (input.isKeyDown(Keys.S)) {
+                this.force.add(tmp.set(direction).nor().scl(-speed));
+            }
+            if (input.isKeyDown(Keys.A)) {
+                this.force.add(tmp.set(direction).crs(up).nor().scl(-speed));
             }
+            if (input.isKeyDown(Keys.D)) {
+                this.force.add(tmp.set(direction).crs(up).nor().scl(speed));
+            }
+        } finally {
+            scratch.pop();
         }
 
-        body.applyCentralForce(TMP_VEC);
-
-        body.getWorldTransform(transform);
-        camera.position.set(transform.getTranslation(TMP_VEC_B));
+        Vector3 applied = force;
+        if (input.isKeyPressed(Keys.SPACE) && isOnGround()) {
+            this.jump.set(0, 12.5f, look.y);
+            body.applyCentralImpulse(jump);
+            applied = jump;
+        }
 
-        camera.direction.y = tmpY;
-        TMP_VEC.setZero();
+        body.applyCentralForce(applied);
+    }
 
-        return true;
+    /**
+     * Casts a ray from the center of the body to just below its feet. The
+     * body has to be in <code>GROUP_CHARACTER</code>, which the ray skips.
+     *
+     * @return true if the player stands on something
+     */
+    private boolean isOnGround() {
+        final BulletWorld world = getWorld();
+        if (world == null) {
+            return false;
+        }
+        final Scratch scratch = Scratch.push();
+        try {
+            final Vector3 from = getPosition(scratch.vec3());
+            final Vector3 to = scratch.vec3().set(from).sub(0f, halfHeight + 0.1f, 0f);
+            return world.rayTest(from, to, BulletWorld.GROUP_ALL & ~BulletWorld.GROUP_CHARACTER, ground);
+        } finally {
+            scratch.pop();
+        }
     }
 }
@@ -1,10 +1,7 @@
 package engine;
 
-import com.badlogic.gdx.math.Matrix4;
 import java.security.SecureRandom;
-import java.security.NoSuchAlgorithmException;
 
-import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.math.RandomXS128;
 
 
@@ -27,48 +24,13 @@ public final class Globals implements Core {
 
     //<editor-fold defaultstate="uncollapsed" desc="Constants">
     /**
-     *
+     * Seeded with the seed of the session when the engine is created, see
+     * {@link engine.core.BaseEngine#seed}, so a replayed session gets the same
+     * numbers.
      */
     public static final RandomXS128 RAND = new RandomXS128(new SecureRandom().nextLong());
 
-    static {
-        new Thread(new Runnable() {
-
-            @Override
-            public void run() {
-                try {
-                    final SecureRandom secureRandom = SecureRandom.getInstanceStrong();
-
-                    final long seed0 = secureRandom.nextLong();
-                    final long seed1 = secureRandom.nextLong();
-
-                    RAND.setState(seed0, seed1);
-                } catch (NoSuchAlgorithmException ignore) {
-                    // nsae.printStackTrace(System.err);
-                }
-            }
-        }).start();
-    }
-
-    /**
-     * Temporary vectors to be used by the engine. Pass them around like bong
-     * (HIMYM).
-     */
-    public static final Vector3 TMP_VEC = new Vector3(0, 0, 0),
-            TMP_VEC_B = new Vector3(0, 0, 0),
-            TMP_VEC_C = new Vector3(0, 0, 0);
-
-    /**
-     *
-     */
-    public final static Matrix4 TMP_M = new Matrix4();
+    // Temporary math objects are taken from engine.utils.Scratch, which is
+    // safe to use from any thread.
     //</editor-fold>
-
-    /**
-     * Message dispatcher stuff.
-     */
-    public interface Dispatcher {
-
-        public static final int UPDATE = 0x0;
-    }
 }
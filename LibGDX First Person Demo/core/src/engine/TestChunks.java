@@ -0,0 +1,69 @@
+package engine;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.RandomXS128;
+import engine.physics.ChunkData;
+import engine.physics.ChunkSource;
+
+/**
+ * An endless level for the demo: a ground slab in every chunk, the wall of
+ * boxes in the first one and a few loose boxes and pillars in the others.
+ * Every chunk is generated from a seed based on its index, so it looks the
+ * same every time it loads.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class TestChunks implements ChunkSource {
+
+    private final long seed;
+
+    public TestChunks(final long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void load(final int x, final int z, final float size, final ChunkData out) {
+        final RandomXS128 random = new RandomXS128(seed ^ (x * 73856093L) ^ (z * 19349663L));
+        final Color colour = new Color();
+        final float cx = x * size, cz = z * size;
+
+        out.add("ground", cx, 0f, cz, colour.set(
+                0.25f + 0.5f * random.nextFloat(),
+                0.25f + 0.5f * random.nextFloat(),
+                0.25f + 0.5f * random.nextFloat(),
+                1f));
+
+        if (x == 0 && z == 0) {
+            // Create some boxes to play with
+            for (int bx = 0; bx < 5; bx++) {
+                for (int by = 0; by < 5; by++) {
+                    out.add("box", -2.5f + bx, 0.5f + by, 0f, randomColour(random, colour));
+                }
+            }
+        } else {
+            for (int i = random.nextInt(4); i > 0; i--) {
+                out.add("box",
+                        cx + (random.nextFloat() - 0.5f) * (size - 2f),
+                        1f,
+                        cz + (random.nextFloat() - 0.5f) * (size - 2f),
+                        randomColour(random, colour));
+            }
+            // pillars have levels of detail, most of them are far away
+            for (int i = 1 + random.nextInt(2); i > 0; i--) {
+                out.add("pillar",
+                        cx + (random.nextFloat() - 0.5f) * (size - 2f),
+                        2.5f,
+                        cz + (random.nextFloat() - 0.5f) * (size - 2f),
+                        randomColour(random, colour));
+            }
+        }
+    }
+
+    private static Color randomColour(final RandomXS128 random, final Color out) {
+        return out.set(
+                0.5f + 0.5f * random.nextFloat(),
+                0.5f + 0.5f * random.nextFloat(),
+                0.5f + 0.5f * random.nextFloat(),
+                1f);
+    }
+}
@@ -1,18 +1,26 @@
 package engine;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.collision.btBoxShape;
 import com.badlogic.gdx.physics.bullet.collision.btCollisionShape;
 import com.badlogic.gdx.physics.bullet.dynamics.btRigidBody;
 import com.badlogic.gdx.physics.bullet.linearmath.btDefaultMotionState;
 import engine.core.BaseEngine;
+import engine.core.Scheduler;
+import engine.physics.BulletWorld;
+import engine.physics.ChunkStreamer;
 import engine.physics.Entity;
+import engine.physics.SceneFile;
+import engine.physics.SceneSpawner;
+import engine.utils.Assets;
 import java.util.List;
 
 public class TestGame extends BaseEngine {
 
     Entity ground;
     CharacterController player;
+    ChunkStreamer chunks;
 
     @Override
     public void create() {
@@ -28,22 +36,56 @@ public class TestGame extends BaseEngine {
         body.setDamping(0.8f, 0.8f);
         body.setAngularFactor(new Vector3(0, 0, 0)); // prevent the player from falling over
 
-        getWorld().add(player = new CharacterController(camera, getWorld().getConstructor("box").model, body, 5, 5, 5));
+        player = new CharacterController(scheduler, input, camera, getWorld().getConstructor("box").model, body, 5, 5, 5);
+        // the ground check of the player skips its own group
+        getWorld().add(player, BulletWorld.GROUP_CHARACTER, BulletWorld.GROUP_ALL);
+
+        if (streamRadius > 0) {
+            // Load the chunks around the player as it moves
+            this.chunks = new ChunkStreamer(getWorld(), new TestChunks(getSeed()), 20f, streamRadius);
+            this.chunks.focus = player;
+            this.chunks.synchronous = isDeterministic();
+            this.chunks.settle();
+            scheduler.add(Scheduler.POST_PHYSICS, chunks);
+        } else if (Gdx.files.internal("data/level.scene").exists()) {
+            // A level converted with SceneConverter, added over a few frames
+            // once it is loaded
+            assets.load("data/level.scene", SceneFile.class, new Assets.Callback() {
+
+                @Override
+                public void loaded(String path, Object asset) {
+                    final SceneSpawner spawner = new SceneSpawner(getWorld(), (SceneFile) asset);
+                    if (isDeterministic()) {
+                        // added before the first tick, not whenever it is loaded
+                        spawner.finish();
+                    } else {
+                        scheduler.add(Scheduler.POST_PHYSICS, spawner);
+                    }
+                }
+            });
+            if (isDeterministic()) {
+                assets.finishLoading();
+            }
+        } else {
+            this.buildLevel();
+        }
+    }
 
+    private void buildLevel() {
         // Add the ground
         (ground = getWorld().add("ground", 0f, 0f, 0f))
                 .setColour(
-                        0.25f + 0.5f * (float) Math.random(),
-                        0.25f + 0.5f * (float) Math.random(),
-                        0.25f + 0.5f * (float) Math.random(),
+                        0.25f + 0.5f * random.nextFloat(),
+                        0.25f + 0.5f * random.nextFloat(),
+                        0.25f + 0.5f * random.nextFloat(),
                         1f
                 );
 
         (ground = getWorld().add("ground", 25f, 0f, 0f))
                 .setColour(
-                        0.25f + 0.5f * (float) Math.random(),
-                        0.25f + 0.5f * (float) Math.random(),
-                        0.25f + 0.5f * (float) Math.random(),
+                        0.25f + 0.5f * random.nextFloat(),
+                        0.25f + 0.5f * random.nextFloat(),
+                        0.25f + 0.5f * random.nextFloat(),
                         1f
                 );
 
@@ -60,23 +102,36 @@ public class TestGame extends BaseEngine {
             for (int y = 0; y < BOXCOUNT_Y; y++) {
                 for (int z = 0; z < BOXCOUNT_Z; z++) {
                     getWorld().add("box", BOXOFFSET_X + x, BOXOFFSET_Y + y, BOXOFFSET_Z + z).setColour(
-                            0.5f + 0.5f * (float) Math.random(),
-                            0.5f + 0.5f * (float) Math.random(),
-                            0.5f + 0.5f * (float) Math.random(),
+                            0.5f + 0.5f * random.nextFloat(),
+                            0.5f + 0.5f * random.nextFloat(),
+                            0.5f + 0.5f * random.nextFloat(),
                             1f
                     );
                 }
             }
         }
 
-//        String data = readFileAsString("data/newfile.json");
-//
-//        Wrapper obj = new Gson().fromJson(data, Wrapper.class);
-//        System.out.println(obj.getLessons());
+        // A row of pillars, drawn at a lower level of detail further away
+        for (int z = -6; z <= 6; z += 6) {
+            getWorld().add("pillar", 25f, 2.5f, z).setColour(
+                    0.5f + 0.5f * random.nextFloat(),
+                    0.5f + 0.5f * random.nextFloat(),
+                    0.5f + 0.5f * random.nextFloat(),
+                    1f
+            );
+        }
+
+        // Merge the ground into as few draw calls and proxies as possible
+        getWorld().bakeStatic();
     }
 
     @Override
     public void dispose() {
+        if (chunks != null) {
+            scheduler.remove(Scheduler.POST_PHYSICS, chunks);
+            this.chunks.dispose();
+            this.chunks = null;
+        }
         super.dispose();
         this.ground = null;
     }
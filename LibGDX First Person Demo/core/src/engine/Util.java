@@ -1,13 +1,11 @@
 package engine;
 
-import java.io.FileNotFoundException;
-import java.util.Scanner;
-
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 
+import engine.graphics.ShaderManager;
 import engine.utils.ResourceException;
-import engine.utils.ShaderException;
 
 /**
  * Utilities to support the Engine. So basically anything that didn't fit
@@ -30,31 +28,42 @@ public final class Util {
      * @throws ResourceException if the file is not found
      */
     public static String readFileAsString(String path) throws ResourceException {
-        try {
-            final Scanner sc = new Scanner(Gdx.files.internal(path).file());
-            final StringBuilder shader = new StringBuilder();
-
-            while (sc.hasNextLine()) {
-                shader.append(sc.nextLine()).append("\n");
-            }
-            sc.close();
-            return shader.toString();
-        } catch (FileNotFoundException fnfe) {
-            throw new ResourceException(fnfe);
+        final FileHandle file = Gdx.files.internal(path);
+        if (!file.exists()) {
+            throw new ResourceException("file not found: " + path);
         }
+        return file.readString("UTF-8");
     }
 
     /**
-     * Compiles and links shader.
+     * Compiles and links shader, through the shader manager of the game.
      *
      * @param vertexShader path to vertex shader
      * @param fragmentShader path to fragment shader
      * @param classpath true if shader in classpath false if shader in assets
      * folder
      *
-     * @return compiled shader program
+     * @return compiled shader program, owned by the manager
+     * @see engine.graphics.ShaderLoader to compile without blocking on the
+     * file reads
      */
     public static ShaderProgram compile(String vertexShader, String fragmentShader, boolean classpath) {
+        return compile(Core.Game.shaders, vertexShader, fragmentShader, classpath);
+    }
+
+    /**
+     * Compiles and links shader, every program is compiled once.
+     *
+     * @param shaders the manager that compiles and owns the program
+     * @param vertexShader path to vertex shader
+     * @param fragmentShader path to fragment shader
+     * @param classpath true if shader in classpath false if shader in assets
+     * folder
+     *
+     * @return compiled shader program, owned by the manager
+     */
+    public static ShaderProgram compile(ShaderManager shaders, String vertexShader, String fragmentShader,
+            boolean classpath) {
         String vert;
         String frag;
         if (classpath) {
@@ -65,12 +74,7 @@ public final class Util {
             frag = Gdx.files.internal(fragmentShader).readString();
         }
 
-        ShaderProgram program = new ShaderProgram(vert, frag);
-        if (!program.isCompiled()) {
-            throw new ShaderException(program.getLog());
-        }
-
-        return program;
+        return shaders.compile(vertexShader, vert, frag);
     }
 
 }
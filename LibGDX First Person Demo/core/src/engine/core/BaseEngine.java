@@ -20,6 +20,9 @@ package engine.core;
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.ai.msg.MessageManager;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.controllers.Controllers;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
@@ -36,23 +39,102 @@ import com.badlogic.gdx.graphics.g3d.environment.DirectionalShadowLight;
 import com.badlogic.gdx.graphics.g3d.loader.ObjLoader;
 import com.badlogic.gdx.graphics.g3d.utils.DepthShaderProvider;
 import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
-import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.RandomXS128;
 import com.badlogic.gdx.physics.bullet.Bullet;
 import com.badlogic.gdx.physics.bullet.linearmath.LinearMath;
 import com.badlogic.gdx.physics.bullet.linearmath.btIDebugDraw.DebugDrawModes;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.TimeUtils;
+import engine.Globals;
+import engine.graphics.CascadedShadowLight;
+import engine.graphics.FrustumCuller;
+import engine.graphics.LodChain;
+import engine.graphics.ProfilerOverlay;
+import engine.graphics.RenderQueue;
+import engine.graphics.ShaderManager;
 import engine.physics.BulletWorld;
+import engine.physics.Entity;
 import engine.physics.EntityBlueprint;
-import static engine.Globals.Dispatcher.UPDATE;
+import engine.utils.Assets;
+import engine.utils.Profiler;
 import java.util.HashSet;
 
 /**
  * @author xoppa
  */
-public abstract class BaseEngine extends ApplicationAdapter implements Disposable {
+public abstract class BaseEngine extends ApplicationAdapter implements Disposable, BulletWorld.TickListener {
 
     public static boolean shadows = true;
 
+    /**
+     * Number of shadow cascades, see {@link CascadedShadowLight}. Zero for a
+     * single shadow map around the camera.
+     */
+    public static int shadowCascades = 3;
+
+    /**
+     * True to run without a window or GL context, only the world and the game
+     * logic are updated. Must be set before the application is created.
+     */
+    public static boolean headless = false;
+
+    /**
+     * If greater than zero every frame advances the game by this many seconds
+     * instead of the wall clock time, to run faster than real time.
+     */
+    public static float fixedFrameDelta = 0f;
+
+    /**
+     * Number of physics ticks per second, zero to step once per frame.
+     */
+    public static float tickRate = 60f;
+    /**
+     * Maximum number of physics ticks simulated in a single frame.
+     */
+    public static int maxTicksPerFrame = 5;
+
+    /**
+     * True to simulate the physics ticks of a frame on a worker thread while
+     * the frame is drawn, see {@link BulletWorld#startTicks()}.
+     */
+    public static boolean pipelined = false;
+
+    /**
+     * Number of chunks around the player that are kept loaded, see
+     * {@link engine.physics.ChunkStreamer}. Zero to build the whole level up
+     * front.
+     */
+    public static int streamRadius = 2;
+
+    /**
+     * True to write the frames measured by the profiler to
+     * <code>profile.csv</code> and <code>profile.json</code> (a Chrome trace)
+     * on exit.
+     */
+    public static boolean dumpProfile = true;
+
+    /**
+     * The seed of the random numbers of the session, zero for a random one.
+     */
+    public static long seed = 0L;
+
+    /**
+     * If set the session is recorded to this file, see {@link Recorder}.
+     */
+    public static FileHandle recordFile = null;
+    /**
+     * If set the session recorded in this file is replayed instead of taking
+     * input, see {@link Replay}. Overrides the seed, the tick rate, the
+     * maximum number of ticks per frame, the stream radius and pipelining.
+     */
+    public static FileHandle replayFile = null;
+    /**
+     * Number of ticks between two checksums of the world in a recording.
+     */
+    public static int checksumInterval = 60;
+
     /**
      * True if Bullet it is initialized.
      */
@@ -76,13 +158,75 @@ public abstract class BaseEngine extends ApplicationAdapter implements Disposabl
     public ModelBatch shadowBatch;
 
     private BulletWorld world;
+    /**
+     * Runs the systems of the game every frame and tick.
+     */
+    public final Scheduler scheduler = new Scheduler();
+    /**
+     * The input events wait here for the next tick, see {@link InputState}.
+     */
+    public final InputBuffer inputBuffer = new InputBuffer(1024);
+    /**
+     * The input as seen by the ticks, runs first in the <code>PHYSICS</code>
+     * phase.
+     */
+    public final InputState input = new InputState(inputBuffer);
+    private final InputCollector inputCollector = new InputCollector(inputBuffer);
+    /**
+     * The random numbers of the game, seeded with the seed of the session so
+     * a replay gets the same ones.
+     */
+    public final RandomXS128 random = new RandomXS128();
+    private long sessionSeed;
+    private Recorder recorder;
+    private Replay replay;
+    /**
+     * Loads the assets in the background, the GL work is done between the
+     * world update and the <code>POST_PHYSICS</code> phase.
+     */
+    public Assets assets;
     public ObjLoader objLoader;
     public ModelBuilder modelBuilder;
     public ModelBatch modelBatch;
+    /**
+     * Compiles and caches the shader programs. The permutations registered
+     * during <code>create()</code> are compiled before the first frame.
+     */
+    public ShaderManager shaders;
+
+    /**
+     * Cull the entities against the camera and the shadow light separately.
+     */
+    public final FrustumCuller mainCuller = new FrustumCuller();
+    public final FrustumCuller shadowCuller = new FrustumCuller();
+
+    /**
+     * Sort the renderables of the batches on packed keys.
+     */
+    public final RenderQueue mainQueue = new RenderQueue();
+    public final RenderQueue shadowQueue = new RenderQueue();
+
+    /**
+     * Measures the phases of every frame while enabled.
+     */
+    public final Profiler profiler = new Profiler();
+    private ProfilerOverlay profilerOverlay;
 
     private final HashSet<Disposable> disposables;
 
+    private final Array<Entity> moved = new Array<Entity>();
+    private final FloatArray changes = new FloatArray();
+    private final Array<Entity> lodChanged = new Array<Entity>();
+    private int shadowTick, frameTick;
+
     private int debugMode = DebugDrawModes.DBG_NoDebug;
+    private int manifolds, contacts;
+    /**
+     * The time of the oldest input event the ticks shown this frame took, -1
+     * if none.
+     */
+    private long inputTime = -1L;
+    private float inputLatency;
 
     public BaseEngine() {
         this.modelBuilder = new ModelBuilder();
@@ -94,27 +238,109 @@ public abstract class BaseEngine extends ApplicationAdapter implements Disposabl
     public void create() {
         BaseEngine.initBullet();
 
+        // compiles every shader program, the ones of the assets as well
+        shaders = new ShaderManager();
+        assets = new Assets(new InternalFileHandleResolver(), shaders);
+
+        Gdx.input.setCursorCatched(!headless);
+        Gdx.input.setInputProcessor(inputCollector);
+        if (!headless) {
+            Controllers.addListener(inputCollector.controllers);
+        }
+        this.scheduler.add(Scheduler.PHYSICS, Integer.MIN_VALUE, input);
+        if (!headless) {
+            this.createGraphics();
+        }
+
+        if (replayFile != null) {
+            this.replay = new Replay(replayFile);
+            BaseEngine.seed = replay.seed;
+            BaseEngine.tickRate = replay.tickRate;
+            BaseEngine.maxTicksPerFrame = replay.maxTicksPerFrame;
+            BaseEngine.streamRadius = replay.streamRadius;
+            BaseEngine.pipelined = replay.pipelined;
+        }
+        this.sessionSeed = seed != 0L ? seed : new RandomXS128().nextLong();
+        this.random.setSeed(sessionSeed);
+        Globals.RAND.setSeed(sessionSeed);
+
+        world = new BulletWorld();
+        world.setTickRate(tickRate);
+        world.setMaxTicksPerFrame(maxTicksPerFrame);
+        world.setPipelined(pipelined);
+        world.addTickListener(this);
+        world.profiler = profiler;
+        // the worker runs the PHYSICS phase while it simulates
+        scheduler.guard = new Scheduler.Guard() {
+
+            @Override
+            public boolean isBusy(final int phase) {
+                return phase == Scheduler.PHYSICS && world != null && world.isSimulating();
+            }
+        };
+
+        // the replayed input or the recorder come right after the input state
+        if (replay != null) {
+            this.replay.start(world, input);
+            this.scheduler.add(Scheduler.PHYSICS, Integer.MIN_VALUE + 1, replay);
+            Gdx.app.log("Replay", "Replaying " + replay.getFrameCount() + " frames from " + replayFile.path());
+        } else if (recordFile != null) {
+            this.recorder = new Recorder(recordFile, world, sessionSeed, checksumInterval);
+            this.input.listener = recorder;
+            this.scheduler.add(Scheduler.PHYSICS, Integer.MIN_VALUE + 1, recorder);
+        }
+
+        // The camera is needed by the game logic even when nothing is drawn
+        camera = new PerspectiveCamera(67, Math.max(1, Gdx.graphics.getWidth()), Math.max(1, Gdx.graphics.getHeight()));
+
+        camera.position.set(0, 10f, 0);
+        camera.update();
+
+        this.createBlueprints();
+    }
+
+    /**
+     * Sets up everything that needs a GL context.
+     */
+    protected void createGraphics() {
         Gdx.gl.glClearColor(0, 0, 0, 0);
-        Gdx.input.setCursorCatched(true);
 
         environment = new Environment();
         environment.set(new ColorAttribute(ColorAttribute.AmbientLight, 0.3f, 0.3f, 0.3f, 1.f));
-        light = shadows ? new DirectionalShadowLight(1024, 1024, 20f, 20f, 1f, 300f) : new DirectionalLight();
+        if (!shadows) {
+            light = new DirectionalLight();
+        } else if (shadowCascades > 0) {
+            light = new CascadedShadowLight(shadowCascades, 1024);
+        } else {
+            light = new DirectionalShadowLight(1024, 1024, 20f, 20f, 1f, 300f);
+        }
         light.set(0.8f, 0.8f, 0.8f, -0.5f, -1f, 0.7f);
         environment.add(light);
-        if (shadows) {
+        if (light instanceof CascadedShadowLight) {
+            ((CascadedShadowLight) light).setEnvironment(environment);
+        } else if (shadows) {
             environment.shadowMap = (DirectionalShadowLight) light;
         }
-        shadowBatch = new ModelBatch(new DepthShaderProvider());
-
-        modelBatch = new ModelBatch();
+        shadowBatch = new ModelBatch(new DepthShaderProvider(), shadowQueue);
+        shadowQueue.profiler = profiler;
 
-        world = new BulletWorld();
-
-        camera = new PerspectiveCamera(67, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        modelBatch = new ModelBatch(mainQueue);
+        mainQueue.profiler = profiler;
+        profilerOverlay = new ProfilerOverlay(profiler);
+    }
 
-        camera.position.set(0, 10f, 0);
-        camera.update();
+    /**
+     * Adds the constructors to the world. When running headless the
+     * blueprints have no model, only the collision shape.
+     */
+    protected void createBlueprints() {
+        if (headless) {
+            world.addConstructor("ground", new EntityBlueprint(null, 0f, 20f, 1f, 20f)); // mass = 0: static body
+            world.addConstructor("box", new EntityBlueprint(null, 1f, 1f, 1f, 1f)); // mass = 1kg: dynamic body
+            world.addConstructor("staticbox", new EntityBlueprint(null, 0f, 1f, 1f, 1f)); // mass = 0: static body
+            world.addConstructor("pillar", new EntityBlueprint(null, 0f, 1f, 4f, 1f)); // mass = 0: static body
+            return;
+        }
 
         // Create some simple models
         final Model boxModel = modelBuilder.createBox(1f, 1f, 1f, new Material(ColorAttribute.createDiffuse(Color.WHITE),
@@ -127,6 +353,19 @@ public abstract class BaseEngine extends ApplicationAdapter implements Disposabl
         world.addConstructor("ground", new EntityBlueprint(ground, 0f)); // mass = 0: static body
         world.addConstructor("box", new EntityBlueprint(boxModel, 1f)); // mass = 1kg: dynamic body
         world.addConstructor("staticbox", new EntityBlueprint((Model) boxModel, 0f)); // mass = 0: static body
+
+        // A pillar with levels of detail, a box in the distance and for the shadows
+        final Model pillar = modelBuilder.createCylinder(1f, 4f, 1f, 32, new Material(ColorAttribute.createDiffuse(Color.WHITE),
+                ColorAttribute.createSpecular(Color.WHITE), FloatAttribute.createShininess(16f)), Usage.Position | Usage.Normal);
+        final Model pillarReduced = modelBuilder.createCylinder(1f, 4f, 1f, 8, new Material(ColorAttribute.createDiffuse(Color.WHITE),
+                ColorAttribute.createSpecular(Color.WHITE), FloatAttribute.createShininess(16f)), Usage.Position | Usage.Normal);
+        final Model pillarBox = modelBuilder.createBox(1f, 4f, 1f, new Material(ColorAttribute.createDiffuse(Color.WHITE),
+                ColorAttribute.createSpecular(Color.WHITE), FloatAttribute.createShininess(16f)), Usage.Position | Usage.Normal);
+        world.addConstructor("pillar", new EntityBlueprint(new LodChain(pillar)
+                .add(pillarReduced, 0.2f) // below 20% of the screen height
+                .add(pillarBox, 0.05f)
+                .skip(0.01f)
+                .shadow(pillarBox), 0f)); // mass = 0: static body
     }
 
     public BaseEngine addDisposable(Disposable disposable) {
@@ -136,32 +375,70 @@ public abstract class BaseEngine extends ApplicationAdapter implements Disposabl
 
     @Override
     public void dispose() {
+        this.world.finishTicks();
+        if (recorder != null) {
+            this.recorder.dispose();
+            Gdx.app.log("Recorder", "Recorded " + recorder.getFrameCount() + " frames to " + recordFile.path());
+            this.input.listener = null;
+            this.recorder = null;
+        }
+        if (replay != null) {
+            this.replay.finish();
+        }
+
         for (Disposable disposable : disposables) {
             disposable.dispose();
         }
         this.disposables.clear();
 
-        modelBatch.dispose();
-        modelBatch = null;
+        if (dumpProfile && profiler.getFrameCount() > 0) {
+            this.profiler.writeCsv(Gdx.files.local("profile.csv"));
+            this.profiler.writeTrace(Gdx.files.local("profile.json"));
+            Gdx.app.log("Profiler", "Wrote " + profiler.getFrameCount() + " frames to profile.csv and profile.json");
+        }
+
+        if (!headless) {
+            Controllers.removeListener(inputCollector.controllers);
+
+            profilerOverlay.dispose();
+            profilerOverlay = null;
+
+            modelBatch.dispose();
+            modelBatch = null;
 
-        shadowBatch.dispose();
-        shadowBatch = null;
+            shadowBatch.dispose();
+            shadowBatch = null;
 
-        if (shadows) {
-            ((DirectionalShadowLight) light).dispose();
+            if (light instanceof Disposable) {
+                ((Disposable) light).dispose();
+            }
+            light = null;
         }
-        light = null;
+
+        scheduler.clear();
 
         world.dispose();
         world = null;
 
+        assets.dispose();
+        assets = null;
+
+        // after the assets, some of the programs are theirs
+        shaders.dispose();
+        shaders = null;
+
         MessageManager.getInstance().clear();
 
         super.dispose();
     }
 
     /**
-     * Callback function used to update the state of the game every frame.
+     * Callback function used to update the state of the game every frame, see
+     * {@link Scheduler} for the order the phases run in. The systems of the
+     * <code>INPUT</code>, <code>PRE_PHYSICS</code> and
+     * <code>POST_PHYSICS</code> phases can safely change the world, add or
+     * remove entities: the physics worker is idle. The input of the game is
+     * read by the ticks, see {@link InputState}.
      *
      * @param dt Delta Time is the time it takes for the computer to go through
      * all the processing/rendering for a single frame. It is dynamically
@@ -169,8 +446,59 @@ public abstract class BaseEngine extends ApplicationAdapter implements Disposabl
      * last frame required.
      */
     public void update(float dt) {
-        MessageManager.getInstance().dispatchMessage(UPDATE);
+        // wait for the ticks started last frame
+        this.world.finishTicks();
+        if (recorder != null) {
+            this.recorder.frame(dt);
+        }
+        if (world.getDebugMode() != debugMode) {
+            this.world.setDebugMode(debugMode);
+        }
+
+        this.scheduler.timing = profiler.isActive();
+        this.profiler.begin(Profiler.DISPATCH);
+        this.scheduler.update(Scheduler.INPUT, dt);
+        this.scheduler.update(Scheduler.PRE_PHYSICS, dt);
+        this.profiler.end(Profiler.DISPATCH);
+
+        // every tick of the frame takes the input up to its own time
+        this.input.setClock(TimeUtils.nanoTime() - (long) (world.getTimeToSimulate(dt) * 1e9));
+        this.profiler.begin(Profiler.WORLD);
         this.world.update(dt);
+        this.profiler.end(Profiler.WORLD);
+        // the tick the render transforms are at, the worker moves on
+        this.frameTick = world.getTick();
+        this.inputTime = input.takeOldestEvent();
+
+        if (profiler.isActive()) {
+            // the contacts belong to the worker once the ticks are started
+            this.manifolds = world.getManifoldCount();
+            this.contacts = world.getContactCount();
+        }
+
+        // loaded callbacks may change the world too
+        this.profiler.begin(Profiler.ASSETS);
+        this.assets.update();
+        this.profiler.end(Profiler.ASSETS);
+
+        this.profiler.begin(Profiler.DISPATCH);
+        this.scheduler.update(Scheduler.POST_PHYSICS, dt);
+        this.profiler.end(Profiler.DISPATCH);
+
+        this.world.startTicks();
+    }
+
+    /**
+     * Called by the world before every physics tick, on the physics worker
+     * when pipelined.
+     *
+     * @param step length of the tick in seconds
+     */
+    @Override
+    public void tick(float step) {
+        this.profiler.begin(Profiler.DISPATCH);
+        this.scheduler.update(Scheduler.PHYSICS, step);
+        this.profiler.end(Profiler.DISPATCH);
     }
 
     /**
@@ -178,12 +506,38 @@ public abstract class BaseEngine extends ApplicationAdapter implements Disposabl
      */
     @Override
     public void render() {
+        if (!headless && !shaders.isWarmedUp()) {
+            // after the subclasses registered their permutations
+            this.shaders.warmUp();
+        }
+        final float dt;
+        if (replay != null) {
+            dt = replay.nextFrame();
+            if (dt < 0f) {
+                // every recorded frame was replayed
+                Gdx.app.exit();
+                return;
+            }
+        } else {
+            dt = fixedFrameDelta > 0f ? fixedFrameDelta : Gdx.graphics.getDeltaTime();
+        }
+        this.profiler.beginFrame();
+
         //<editor-fold defaultstate="uncollapsed" desc="update">
         {
-            this.update(Gdx.graphics.getDeltaTime());
+            this.update(dt);
+
+            this.profiler.begin(Profiler.DISPATCH);
+            this.scheduler.update(Scheduler.PRE_RENDER, dt);
+            this.profiler.end(Profiler.DISPATCH);
         }
         //</editor-fold>
 
+        if (headless) {
+            this.endFrame();
+            return;
+        }
+
         //<editor-fold defaultstate="uncollapsed" desc="render">
         {
             Gdx.gl.glEnable(GL20.GL_DEPTH_TEST);
@@ -191,33 +545,125 @@ public abstract class BaseEngine extends ApplicationAdapter implements Disposabl
             Gdx.gl.glViewport(0, 0, Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight());
             Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT | GL20.GL_DEPTH_BUFFER_BIT);
             this.camera.update(true);
+            // the levels of detail of the frame, the shadows use them too
+            this.world.selectLod(camera, mainCuller, lodChanged);
 
             if (shadows) {
-                ((DirectionalShadowLight) light).begin(Vector3.Zero, camera.direction);
-                this.shadowBatch.begin(((DirectionalShadowLight) light).getCamera());
-                this.world.render(shadowBatch, null);
-                this.shadowBatch.end();
-                ((DirectionalShadowLight) light).end();
+                this.profiler.begin(Profiler.SHADOW_PASS);
+                this.renderShadows();
+                this.profiler.end(Profiler.SHADOW_PASS);
             }
 
+            this.profiler.begin(Profiler.MAIN_PASS);
             this.modelBatch.begin(camera);
-            this.world.render(modelBatch, environment);
+            if (light instanceof CascadedShadowLight) {
+                this.world.render(modelBatch, mainCuller, (CascadedShadowLight) light);
+            } else {
+                this.world.render(modelBatch, environment, mainCuller);
+            }
             this.modelBatch.end();
+            this.profiler.end(Profiler.MAIN_PASS);
 
             Gdx.gl.glDisable(GL20.GL_DEPTH_TEST);
-            if (debugMode != DebugDrawModes.DBG_NoDebug) {
-                this.world.setDebugMode(debugMode);
-            }
+            this.lodChanged.clear();
         }
         //</editor-fold>
+
+        this.endFrame();
+        if (profiler.enabled) {
+            this.profilerOverlay.render();
+        }
+    }
+
+    /**
+     * Renders the shadow maps. The cascades are only rendered again when they
+     * shifted or when an entity in them moved since they were last rendered.
+     */
+    private void renderShadows() {
+        if (light instanceof CascadedShadowLight) {
+            final CascadedShadowLight cascades = (CascadedShadowLight) light;
+            cascades.update((PerspectiveCamera) camera);
+            // entities that moved on the last tick seen are still being
+            // interpolated, or got their final transform this frame
+            this.moved.clear();
+            if (world.movedSince(shadowTick - 1, moved)) {
+                for (int i = 0; i < moved.size; i++) {
+                    cascades.invalidate(moved.get(i));
+                }
+            } else {
+                cascades.invalidateAll();
+            }
+            this.moved.clear();
+            // entities drawn at another level of detail
+            for (int i = 0; i < lodChanged.size; i++) {
+                cascades.invalidate(lodChanged.get(i));
+            }
+            // entities that appeared or disappeared, like streamed chunks
+            final FloatArray changes = this.changes;
+            if (world.takeChanges(changes)) {
+                for (int i = 0; i < changes.size; i += 4) {
+                    cascades.invalidate(changes.get(i), changes.get(i + 1), changes.get(i + 2), changes.get(i + 3));
+                }
+            } else {
+                cascades.invalidateAll();
+            }
+            this.changes.clear();
+            this.shadowTick = frameTick;
+            cascades.render(shadowBatch, world, shadowCuller);
+        } else {
+            final DirectionalShadowLight shadowLight = (DirectionalShadowLight) light;
+            shadowLight.begin(camera.position, camera.direction);
+            this.shadowBatch.begin(shadowLight.getCamera());
+            this.world.render(shadowBatch, null, shadowCuller);
+            this.shadowBatch.end();
+            shadowLight.end();
+        }
+    }
+
+    private void endFrame() {
+        if (inputTime >= 0L) {
+            // as close to the swap as the engine gets
+            this.inputLatency = (TimeUtils.nanoTime() - inputTime) / 1e6f;
+            this.profiler.count(Profiler.INPUT_LATENCY, inputLatency * 1e3f);
+            this.inputTime = -1L;
+        }
+        if (profiler.isActive()) {
+            this.profiler.count(Profiler.STATE_SWITCHES, mainQueue.getSwitches() + shadowQueue.getSwitches());
+            this.profiler.count(Profiler.SORT_COLLISIONS, mainQueue.collisions + shadowQueue.collisions);
+            this.profiler.count(Profiler.TRIANGLES, world.lod.triangles);
+            this.profiler.count(Profiler.TRIANGLES_SAVED, world.lod.getSavedTriangles());
+            this.profiler.endFrame(manifolds, contacts);
+        }
+        this.mainQueue.resetStats();
+        this.shadowQueue.resetStats();
+    }
+
+    /**
+     * @return the time from the oldest input event of the last frame that
+     * showed any to the end of that frame, in milliseconds
+     */
+    public float getInputLatency() {
+        return this.inputLatency;
+    }
+
+    /**
+     * Shows or hides the profiler overlay, the profiler only measures while
+     * it is shown.
+     */
+    public void toggleProfiler() {
+        this.profiler.enabled = !profiler.enabled;
     }
 
+    /**
+     * Takes effect at the start of the next frame, when the world isn't being
+     * simulated.
+     */
     public void setDebugMode(final int mode) {
-        this.world.setDebugMode(debugMode = mode);
+        this.debugMode = mode;
     }
 
     public void stepDebugMode() {
-        if (world.getDebugMode() == DebugDrawModes.DBG_NoDebug) {
+        if (debugMode == DebugDrawModes.DBG_NoDebug) {
             this.setDebugMode(DebugDrawModes.DBG_DrawWireframe
                     | DebugDrawModes.DBG_DrawFeaturesText
                     | DebugDrawModes.DBG_DrawText
@@ -234,4 +680,27 @@ public abstract class BaseEngine extends ApplicationAdapter implements Disposabl
     public BulletWorld getWorld() {
         return this.world;
     }
+
+    /**
+     * @return the seed of the session
+     */
+    public long getSeed() {
+        return this.sessionSeed;
+    }
+
+    /**
+     * @return true if the session is recorded or replayed, everything that
+     * changes the world then has to happen at the same frame or tick every
+     * time, not when a loader thread gets to it
+     */
+    public boolean isDeterministic() {
+        return this.recorder != null || this.replay != null;
+    }
+
+    /**
+     * @return the replay, or null if the session isn't replayed
+     */
+    public Replay getReplay() {
+        return this.replay;
+    }
 }
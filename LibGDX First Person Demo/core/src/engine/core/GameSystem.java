@@ -0,0 +1,15 @@
+package engine.core;
+
+/**
+ * Game logic that is run by the {@link Scheduler} in one of its phases.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public interface GameSystem {
+
+    /**
+     * @param dt the length of the frame in seconds, or of the tick for the
+     * <code>PHYSICS</code> phase
+     */
+    public void update(float dt);
+}
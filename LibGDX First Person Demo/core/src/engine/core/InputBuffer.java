@@ -0,0 +1,170 @@
+package engine.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free ring of timestamped input events between one thread that
+ * writes, the input thread, and one thread that reads, the one the physics
+ * ticks run on. Events are stored in parallel primitive arrays, so neither
+ * side allocates.
+ * <p>
+ * When the ring is full new events are dropped and counted, the ticks are
+ * meant to drain it long before that happens.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class InputBuffer {
+
+    /**
+     * A key went down, <code>code</code> is the key code.
+     */
+    public static final int KEY_DOWN = 0;
+    public static final int KEY_UP = 1;
+    /**
+     * The mouse moved, <code>x</code> and <code>y</code> are the distance in
+     * pixels.
+     */
+    public static final int MOUSE_MOVED = 2;
+    /**
+     * A mouse button went down, <code>code</code> is the button.
+     */
+    public static final int BUTTON_DOWN = 3;
+    public static final int BUTTON_UP = 4;
+    /**
+     * The wheel turned, <code>x</code> is the amount.
+     */
+    public static final int SCROLLED = 5;
+    /**
+     * An axis of a controller moved, <code>code</code> is the axis and
+     * <code>x</code> the new value.
+     */
+    public static final int AXIS_MOVED = 6;
+    /**
+     * A button of a controller went down, <code>code</code> is the button.
+     */
+    public static final int PAD_DOWN = 7;
+    public static final int PAD_UP = 8;
+
+    private final int mask;
+    private final long[] times;
+    private final int[] types, codes;
+    private final float[] xs, ys;
+
+    // the head is only written by the writer, the tail only by the reader
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * The tail as last seen by the writer, so it only reads the shared one
+     * when the ring looks full.
+     */
+    private long cachedTail;
+    private volatile long dropped;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public InputBuffer(final int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.times = new long[size];
+        this.types = new int[size];
+        this.codes = new int[size];
+        this.xs = new float[size];
+        this.ys = new float[size];
+    }
+
+    /**
+     * Adds an event, only ever called from the writing thread.
+     *
+     * @param type one of the type constants
+     * @param code the key, button or axis
+     * @param x the first value of the event
+     * @param y the second value of the event
+     * @param time the time of the event in nanoseconds, from
+     * <code>TimeUtils.nanoTime()</code>
+     * @return false if the ring was full and the event was dropped
+     */
+    public boolean offer(final int type, final int code, final float x, final float y, final long time) {
+        final long h = head.get();
+        if (h - cachedTail > mask) {
+            this.cachedTail = tail.get();
+            if (h - cachedTail > mask) {
+                this.dropped++;
+                return false;
+            }
+        }
+        final int i = (int) h & mask;
+        this.times[i] = time;
+        this.types[i] = type;
+        this.codes[i] = code;
+        this.xs[i] = x;
+        this.ys[i] = y;
+        // publishes the slot to the reader
+        this.head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * Takes the oldest event, only ever called from the reading thread.
+     *
+     * @param out the event to store it in
+     * @return false if there was none
+     */
+    public boolean poll(final Event out) {
+        final long t = tail.get();
+        if (t == head.get()) {
+            return false;
+        }
+        final int i = (int) t & mask;
+        out.time = times[i];
+        out.type = types[i];
+        out.code = codes[i];
+        out.x = xs[i];
+        out.y = ys[i];
+        // hands the slot back to the writer
+        this.tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * @return the time of the oldest event, or -1 if there is none; only
+     * ever called from the reading thread
+     */
+    public long peekTime() {
+        final long t = tail.get();
+        return t == head.get() ? -1L : times[(int) t & mask];
+    }
+
+    /**
+     * @return the number of events waiting, may be out of date by the time
+     * it returns
+     */
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+    public int capacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * @return the number of events dropped because the ring was full
+     */
+    public long getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * A single event, reused by the reader.
+     */
+    public static class Event {
+
+        public long time;
+        public int type, code;
+        public float x, y;
+    }
+}
@@ -0,0 +1,125 @@
+package engine.core;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.controllers.ControllerAdapter;
+import com.badlogic.gdx.controllers.ControllerListener;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Puts the input events in an {@link InputBuffer} as they arrive, stamped
+ * with <code>TimeUtils.nanoTime()</code> when they are handled, instead of
+ * acting on them. The ticks take them out through an {@link InputState}.
+ * <p>
+ * The events of controllers come in through {@link #controllers}, which has
+ * to be added with <code>Controllers.addListener</code>. The backends
+ * deliver them on the same thread as the other input, so the buffer still
+ * has a single writer.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class InputCollector extends InputAdapter {
+
+    private final InputBuffer buffer;
+
+    /**
+     * Passes the buttons and axes of every controller on to the buffer.
+     */
+    public final ControllerListener controllers = new ControllerAdapter() {
+
+        @Override
+        public boolean buttonDown(final Controller controller, final int buttonIndex) {
+            padDown(buttonIndex);
+            return false;
+        }
+
+        @Override
+        public boolean buttonUp(final Controller controller, final int buttonIndex) {
+            padUp(buttonIndex);
+            return false;
+        }
+
+        @Override
+        public boolean axisMoved(final Controller controller, final int axisIndex, final float value) {
+            InputCollector.this.axisMoved(axisIndex, value);
+            return false;
+        }
+    };
+
+    public InputCollector(final InputBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public boolean keyDown(int keycode) {
+        this.buffer.offer(InputBuffer.KEY_DOWN, keycode, 0f, 0f, time());
+        return super.keyDown(keycode);
+    }
+
+    @Override
+    public boolean keyUp(int keycode) {
+        this.buffer.offer(InputBuffer.KEY_UP, keycode, 0f, 0f, time());
+        return super.keyUp(keycode);
+    }
+
+    @Override
+    public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+        this.buffer.offer(InputBuffer.BUTTON_DOWN, button, screenX, screenY, time());
+        return super.touchDown(screenX, screenY, pointer, button);
+    }
+
+    @Override
+    public boolean touchUp(int screenX, int screenY, int pointer, int button) {
+        this.buffer.offer(InputBuffer.BUTTON_UP, button, screenX, screenY, time());
+        return super.touchUp(screenX, screenY, pointer, button);
+    }
+
+    @Override
+    public boolean touchDragged(int screenX, int screenY, int pointer) {
+        this.moved();
+        return super.touchDragged(screenX, screenY, pointer);
+    }
+
+    @Override
+    public boolean mouseMoved(int screenX, int screenY) {
+        this.moved();
+        return super.mouseMoved(screenX, screenY);
+    }
+
+    @Override
+    public boolean scrolled(int amount) {
+        this.buffer.offer(InputBuffer.SCROLLED, 0, amount, 0f, time());
+        return super.scrolled(amount);
+    }
+
+    public void axisMoved(final int axis, final float value) {
+        this.buffer.offer(InputBuffer.AXIS_MOVED, axis, value, 0f, time());
+    }
+
+    public void padDown(final int button) {
+        this.buffer.offer(InputBuffer.PAD_DOWN, button, 0f, 0f, time());
+    }
+
+    public void padUp(final int button) {
+        this.buffer.offer(InputBuffer.PAD_UP, button, 0f, 0f, time());
+    }
+
+    private void moved() {
+        // the distance is relative, so it still works with the cursor caught
+        final int dx = Gdx.input.getDeltaX(), dy = Gdx.input.getDeltaY();
+        if (dx != 0 || dy != 0) {
+            this.buffer.offer(InputBuffer.MOUSE_MOVED, 0, dx, dy, time());
+        }
+    }
+
+    /**
+     * @return the time the event is handled, on the same clock as the ticks
+     * and the latency measurement: the event time of the backend may come
+     * from another clock
+     */
+    private static long time() {
+        return TimeUtils.nanoTime();
+    }
+}
@@ -0,0 +1,269 @@
+package engine.core;
+
+import java.util.Arrays;
+
+/**
+ * The input as seen by the physics ticks. Runs first in the
+ * <code>PHYSICS</code> phase and takes the events that arrived since the last
+ * tick out of an {@link InputBuffer}, so the game logic of every tick sees
+ * the same input no matter how fast the frames are drawn or when the events
+ * came in.
+ * <p>
+ * A key pressed and released between two ticks still counts as pressed on
+ * the next one, and the mouse movement of every event up to the tick is added
+ * up. The state may only be read by the systems of the <code>PHYSICS</code>
+ * phase, or while the world isn't being simulated.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class InputState implements GameSystem {
+
+    public static final int KEYS = 256;
+    public static final int BUTTONS = 16;
+    public static final int AXES = 16;
+
+    private final InputBuffer buffer;
+    private final InputBuffer.Event event = new InputBuffer.Event();
+
+    private final boolean[] keys = new boolean[KEYS];
+    private final boolean[] keysPressed = new boolean[KEYS];
+    private final boolean[] keysReleased = new boolean[KEYS];
+    private final boolean[] buttons = new boolean[BUTTONS];
+    private final boolean[] buttonsPressed = new boolean[BUTTONS];
+    private final boolean[] pads = new boolean[BUTTONS];
+    private final boolean[] padsPressed = new boolean[BUTTONS];
+    private final float[] axes = new float[AXES];
+    private float mouseX, mouseY, scroll;
+    private int events;
+    /**
+     * The time of the oldest event taken since the last
+     * {@link #takeOldestEvent()}, -1 if none.
+     */
+    private long oldest = -1L;
+    /**
+     * The time of the last tick in nanoseconds, -1 to take every event.
+     */
+    private long clock = -1L;
+
+    /**
+     * Told about every event applied, see {@link Recorder}.
+     */
+    public Listener listener;
+
+    public InputState(final InputBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Moves the clock on by a tick and takes the events up to the new time,
+     * or every event that has arrived if the clock isn't set.
+     *
+     * @param step the length of the tick
+     */
+    @Override
+    public void update(final float step) {
+        if (clock < 0L) {
+            this.drain(Long.MAX_VALUE);
+        } else {
+            this.clock += (long) (step * 1e9);
+            this.drain(clock);
+        }
+    }
+
+    /**
+     * Sets the time the ticks of the coming frame count from, so each of
+     * them takes the events up to its own time and the rest wait for the
+     * next one. Must be called while the world isn't being simulated.
+     *
+     * @param time the time of the last tick in nanoseconds, on the clock of
+     * the events; -1 to take every event on every tick
+     */
+    public void setClock(final long time) {
+        this.clock = time;
+    }
+
+    /**
+     * Starts a tick and takes the events up to a time, the rest wait for the
+     * next tick.
+     *
+     * @param until the time of the tick in nanoseconds
+     */
+    public void drain(final long until) {
+        Arrays.fill(keysPressed, false);
+        Arrays.fill(keysReleased, false);
+        Arrays.fill(buttonsPressed, false);
+        Arrays.fill(padsPressed, false);
+        this.mouseX = 0f;
+        this.mouseY = 0f;
+        this.scroll = 0f;
+        this.events = 0;
+
+        final InputBuffer.Event e = event;
+        while (true) {
+            final long time = buffer.peekTime();
+            if (time < 0L || time > until || !buffer.poll(e)) {
+                break;
+            }
+            this.apply(e);
+        }
+    }
+
+    /**
+     * Applies a single event, replayed input can be fed in here directly.
+     */
+    public void apply(final InputBuffer.Event e) {
+        final int code = e.code;
+        switch (e.type) {
+            case InputBuffer.KEY_DOWN:
+                if (code >= 0 && code < KEYS) {
+                    this.keys[code] = true;
+                    this.keysPressed[code] = true;
+                }
+                break;
+            case InputBuffer.KEY_UP:
+                if (code >= 0 && code < KEYS) {
+                    this.keys[code] = false;
+                    this.keysReleased[code] = true;
+                }
+                break;
+            case InputBuffer.MOUSE_MOVED:
+                this.mouseX += e.x;
+                this.mouseY += e.y;
+                break;
+            case InputBuffer.BUTTON_DOWN:
+                if (code >= 0 && code < BUTTONS) {
+                    this.buttons[code] = true;
+                    this.buttonsPressed[code] = true;
+                }
+                break;
+            case InputBuffer.BUTTON_UP:
+                if (code >= 0 && code < BUTTONS) {
+                    this.buttons[code] = false;
+                }
+                break;
+            case InputBuffer.SCROLLED:
+                this.scroll += e.x;
+                break;
+            case InputBuffer.AXIS_MOVED:
+                if (code >= 0 && code < AXES) {
+                    this.axes[code] = e.x;
+                }
+                break;
+            case InputBuffer.PAD_DOWN:
+                if (code >= 0 && code < BUTTONS) {
+                    this.pads[code] = true;
+                    this.padsPressed[code] = true;
+                }
+                break;
+            case InputBuffer.PAD_UP:
+                if (code >= 0 && code < BUTTONS) {
+                    this.pads[code] = false;
+                }
+                break;
+            default:
+                return;
+        }
+        if (oldest < 0L || e.time < oldest) {
+            this.oldest = e.time;
+        }
+        this.events++;
+        if (listener != null) {
+            this.listener.applied(e);
+        }
+    }
+
+    /**
+     * @return true while the key is held down
+     */
+    public boolean isKeyDown(final int key) {
+        return key >= 0 && key < KEYS && keys[key];
+    }
+
+    /**
+     * @return true if the key went down since the last tick
+     */
+    public boolean isKeyPressed(final int key) {
+        return key >= 0 && key < KEYS && keysPressed[key];
+    }
+
+    /**
+     * @return true if the key went up since the last tick
+     */
+    public boolean isKeyReleased(final int key) {
+        return key >= 0 && key < KEYS && keysReleased[key];
+    }
+
+    public boolean isButtonDown(final int button) {
+        return button >= 0 && button < BUTTONS && buttons[button];
+    }
+
+    public boolean isButtonPressed(final int button) {
+        return button >= 0 && button < BUTTONS && buttonsPressed[button];
+    }
+
+    public boolean isPadDown(final int button) {
+        return button >= 0 && button < BUTTONS && pads[button];
+    }
+
+    public boolean isPadPressed(final int button) {
+        return button >= 0 && button < BUTTONS && padsPressed[button];
+    }
+
+    /**
+     * @return the last value of a controller axis
+     */
+    public float getAxis(final int axis) {
+        return axis >= 0 && axis < AXES ? axes[axis] : 0f;
+    }
+
+    /**
+     * @return the distance the mouse moved since the last tick, in pixels
+     */
+    public float getMouseX() {
+        return this.mouseX;
+    }
+
+    public float getMouseY() {
+        return this.mouseY;
+    }
+
+    public float getScroll() {
+        return this.scroll;
+    }
+
+    /**
+     * @return the number of events taken by the last tick
+     */
+    public int getEventCount() {
+        return this.events;
+    }
+
+    /**
+     * @return the time of the oldest event taken since the last call, -1 if
+     * none; only called while the world isn't being simulated
+     */
+    public long takeOldestEvent() {
+        final long time = oldest;
+        this.oldest = -1L;
+        return time;
+    }
+
+    /**
+     * Releases every key and button, like after the window lost focus.
+     */
+    public void reset() {
+        Arrays.fill(keys, false);
+        Arrays.fill(buttons, false);
+        Arrays.fill(pads, false);
+        Arrays.fill(axes, 0f);
+    }
+
+    /**
+     * Called on the thread the ticks run on.
+     */
+    public interface Listener {
+
+        public void applied(InputBuffer.Event e);
+    }
+}
@@ -0,0 +1,193 @@
+package engine.core;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.StreamUtils;
+import engine.physics.BulletWorld;
+import engine.utils.ResourceException;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records a session so it can be simulated again by a {@link Replay}: the
+ * seed and the settings the world was created with, the length of every
+ * frame, the input events every physics tick applied and a checksum of the
+ * world every <code>checksumInterval</code> ticks.
+ * <p>
+ * Runs in the <code>PHYSICS</code> phase right after the {@link InputState},
+ * as its listener. The recording is a gzipped stream of records written as
+ * the session goes, a minute of play takes a few kilobytes.
+ * </p>
+ *
+ * <pre>
+ * header:   magic, version, seed, tick rate, max ticks per frame,
+ *           stream radius, pipelined, checksum interval
+ * FRAME:    the delta time of a frame
+ * TICK:     tick, number of events, then type, code, x and y per event
+ * CHECKSUM: tick, {@link engine.physics.ComponentStore#checksum()} before it
+ * END:      number of frames, number of ticks
+ * </pre>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class Recorder implements GameSystem, InputState.Listener, Disposable {
+
+    static final int MAGIC = 0x47524543; // GREC
+    static final int VERSION = 1;
+
+    static final int FRAME = 0;
+    static final int TICK = 1;
+    static final int CHECKSUM = 2;
+    static final int END = 3;
+
+    /**
+     * Number of ticks between two checksums.
+     */
+    public final int checksumInterval;
+
+    private final BulletWorld world;
+    private final FileHandle file;
+    private DataOutputStream out;
+    private int frames;
+
+    // the events applied by the current tick
+    private final IntArray types = new IntArray(), codes = new IntArray();
+    private final FloatArray xs = new FloatArray(), ys = new FloatArray();
+
+    /**
+     * Starts the recording. Called once the world is created, before anything
+     * is added to it.
+     *
+     * @param file the file to write to
+     * @param world the world of the session
+     * @param seed the seed of the session
+     * @param checksumInterval number of ticks between two checksums
+     * @throws ResourceException if the file can't be written
+     */
+    public Recorder(final FileHandle file, final BulletWorld world, final long seed, final int checksumInterval) {
+        this.file = file;
+        this.world = world;
+        this.checksumInterval = Math.max(1, checksumInterval);
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(file.write(false)), 1 << 14));
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+            this.out.writeLong(seed);
+            this.out.writeFloat(world.getTickRate());
+            this.out.writeInt(world.getMaxTicksPerFrame());
+            this.out.writeInt(BaseEngine.streamRadius);
+            this.out.writeBoolean(world.isPipelined());
+            this.out.writeInt(this.checksumInterval);
+        } catch (IOException ex) {
+            this.close();
+            throw new ResourceException(ex);
+        }
+    }
+
+    /**
+     * Records the length of a frame, called at its start while the world
+     * isn't being simulated.
+     */
+    public void frame(final float dt) {
+        if (out == null) {
+            return;
+        }
+        try {
+            this.out.writeByte(FRAME);
+            this.out.writeFloat(dt);
+            this.frames++;
+        } catch (IOException ex) {
+            this.failed(ex);
+        }
+    }
+
+    @Override
+    public void applied(final InputBuffer.Event e) {
+        this.types.add(e.type);
+        this.codes.add(e.code);
+        this.xs.add(e.x);
+        this.ys.add(e.y);
+    }
+
+    /**
+     * Writes the events of the tick about to be simulated, and the checksum
+     * of the world when it is due.
+     */
+    @Override
+    public void update(final float step) {
+        if (out == null) {
+            return;
+        }
+        final int tick = world.getTick();
+        try {
+            if (types.size > 0) {
+                this.out.writeByte(TICK);
+                this.out.writeInt(tick);
+                this.out.writeShort(types.size);
+                for (int i = 0; i < types.size; i++) {
+                    this.out.writeByte(types.get(i));
+                    this.out.writeInt(codes.get(i));
+                    this.out.writeFloat(xs.get(i));
+                    this.out.writeFloat(ys.get(i));
+                }
+            }
+            if (tick % checksumInterval == 0) {
+                this.writeChecksum(tick);
+            }
+        } catch (IOException ex) {
+            this.failed(ex);
+        }
+        this.types.clear();
+        this.codes.clear();
+        this.xs.clear();
+        this.ys.clear();
+    }
+
+    private void writeChecksum(final int tick) throws IOException {
+        this.out.writeByte(CHECKSUM);
+        this.out.writeInt(tick);
+        this.out.writeLong(world.getComponents().checksum());
+    }
+
+    /**
+     * @return the number of frames recorded
+     */
+    public int getFrameCount() {
+        return this.frames;
+    }
+
+    /**
+     * Writes the checksum of the final state and closes the file. Must be
+     * called while the world isn't being simulated.
+     */
+    @Override
+    public void dispose() {
+        if (out == null) {
+            return;
+        }
+        try {
+            this.writeChecksum(world.getTick());
+            this.out.writeByte(END);
+            this.out.writeInt(frames);
+            this.out.writeInt(world.getTick());
+            this.out.flush();
+        } catch (IOException ex) {
+            this.failed(ex);
+        }
+        this.close();
+    }
+
+    private void failed(final IOException ex) {
+        this.close();
+        throw new ResourceException("Error writing " + file.path(), ex);
+    }
+
+    private void close() {
+        StreamUtils.closeQuietly(out);
+        this.out = null;
+    }
+}
@@ -0,0 +1,222 @@
+package engine.core;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongArray;
+import com.badlogic.gdx.utils.StreamUtils;
+import com.badlogic.gdx.utils.TimeUtils;
+import engine.physics.BulletWorld;
+import engine.utils.ResourceException;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Simulates a session written by a {@link Recorder} again. The engine takes
+ * the seed and the settings of the world from the recording, every frame gets
+ * the length of the recorded one and every tick the events the recorded tick
+ * applied, so the same ticks see the same input no matter how fast the
+ * replay runs. With the frames measured by the profiler a recording of a bad
+ * session becomes a performance test that can be run again and again.
+ * <p>
+ * Runs in the <code>PHYSICS</code> phase right after the {@link InputState}.
+ * At every recorded checksum the state of the world is compared, the first
+ * tick that doesn't match is reported: from there on the replay doesn't
+ * simulate what was recorded anymore. The simulation is only the same on the
+ * same build of Bullet, with the same blueprints and game logic.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class Replay implements GameSystem {
+
+    public final long seed;
+    public final float tickRate;
+    public final int maxTicksPerFrame;
+    public final int streamRadius;
+    public final boolean pipelined;
+    public final int checksumInterval;
+
+    private final FileHandle file;
+    private final FloatArray frames = new FloatArray();
+    private final IntArray eventTicks = new IntArray(), types = new IntArray(), codes = new IntArray();
+    private final FloatArray xs = new FloatArray(), ys = new FloatArray();
+    private final IntArray checkTicks = new IntArray();
+    private final LongArray checksums = new LongArray();
+    private int recordedFrames = -1, recordedTicks = -1;
+
+    private BulletWorld world;
+    private InputState input;
+    private final InputBuffer.Event event = new InputBuffer.Event();
+    private int frame, next, check;
+    private int matched, diverged = -1;
+
+    /**
+     * Reads a whole recording into memory.
+     *
+     * @throws ResourceException if the file can't be read or isn't a
+     * recording
+     */
+    public Replay(final FileHandle file) throws ResourceException {
+        this.file = file;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(file.read()), 1 << 14));
+            if (in.readInt() != Recorder.MAGIC) {
+                throw new ResourceException("Not a recording: " + file.path());
+            }
+            final int version = in.readInt();
+            if (version != Recorder.VERSION) {
+                throw new ResourceException("Unsupported recording version " + version + ": " + file.path());
+            }
+            this.seed = in.readLong();
+            this.tickRate = in.readFloat();
+            this.maxTicksPerFrame = in.readInt();
+            this.streamRadius = in.readInt();
+            this.pipelined = in.readBoolean();
+            this.checksumInterval = in.readInt();
+            this.readRecords(in);
+        } catch (IOException ex) {
+            throw new ResourceException("Error reading " + file.path(), ex);
+        } finally {
+            StreamUtils.closeQuietly(in);
+        }
+    }
+
+    private void readRecords(final DataInputStream in) throws IOException {
+        try {
+            while (recordedFrames < 0) {
+                this.readRecord(in);
+            }
+        } catch (EOFException ex) {
+            // cut short, the session didn't exit cleanly
+            Gdx.app.error("Replay", file.path() + " ends after " + frames.size + " frames");
+        }
+    }
+
+    private void readRecord(final DataInputStream in) throws IOException {
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+            case Recorder.FRAME:
+                this.frames.add(in.readFloat());
+                break;
+            case Recorder.TICK:
+                final int tick = in.readInt();
+                for (int i = in.readUnsignedShort(); i > 0; i--) {
+                    this.eventTicks.add(tick);
+                    this.types.add(in.readUnsignedByte());
+                    this.codes.add(in.readInt());
+                    this.xs.add(in.readFloat());
+                    this.ys.add(in.readFloat());
+                }
+                break;
+            case Recorder.CHECKSUM:
+                this.checkTicks.add(in.readInt());
+                this.checksums.add(in.readLong());
+                break;
+            case Recorder.END:
+                this.recordedFrames = in.readInt();
+                this.recordedTicks = in.readInt();
+                break;
+            default:
+                throw new ResourceException("Corrupt recording: " + file.path());
+        }
+    }
+
+    /**
+     * Starts the replay. Called once the world is created, before anything is
+     * added to it.
+     */
+    public void start(final BulletWorld world, final InputState input) {
+        this.world = world;
+        this.input = input;
+    }
+
+    /**
+     * @return the length of the next frame, or -1 once every recorded frame
+     * was replayed
+     */
+    public float nextFrame() {
+        return frame < frames.size ? frames.get(frame++) : -1f;
+    }
+
+    /**
+     * Applies the recorded events of the tick about to be simulated, and
+     * compares the state of the world when a checksum was recorded.
+     */
+    @Override
+    public void update(final float step) {
+        final int tick = world.getTick();
+        final InputBuffer.Event e = event;
+        // replayed events are as old as the tick, the latency measured is the
+        // time the engine takes
+        e.time = TimeUtils.nanoTime();
+        while (next < eventTicks.size && eventTicks.get(next) <= tick) {
+            if (eventTicks.get(next) == tick) {
+                e.type = types.get(next);
+                e.code = codes.get(next);
+                e.x = xs.get(next);
+                e.y = ys.get(next);
+                this.input.apply(e);
+            }
+            this.next++;
+        }
+        this.verify(tick);
+    }
+
+    private void verify(final int tick) {
+        while (check < checkTicks.size && checkTicks.get(check) <= tick) {
+            if (checkTicks.get(check) == tick) {
+                if (world.getComponents().checksum() == checksums.get(check)) {
+                    this.matched++;
+                } else if (diverged < 0) {
+                    this.diverged = tick;
+                    Gdx.app.error("Replay", "Diverged from " + file.path() + " at tick " + tick);
+                }
+            }
+            this.check++;
+        }
+    }
+
+    /**
+     * Compares the final state and reports the result. Must be called while
+     * the world isn't being simulated.
+     */
+    public void finish() {
+        final int tick = world.getTick();
+        this.verify(tick);
+        if (recordedTicks >= 0 && frame == frames.size && tick != recordedTicks && diverged < 0) {
+            this.diverged = tick;
+            Gdx.app.error("Replay", "Simulated " + tick + " ticks, " + recordedTicks + " were recorded");
+        }
+        Gdx.app.log("Replay", String.format("%d of %d frames, %d ticks, %d of %d checksums matched%s",
+                frame, frames.size, tick, matched, checkTicks.size,
+                diverged < 0 ? "" : ", diverged at tick " + diverged));
+    }
+
+    /**
+     * @return the number of frames in the recording
+     */
+    public int getFrameCount() {
+        return this.frames.size;
+    }
+
+    /**
+     * @return true if the state of the world didn't match the recording
+     */
+    public boolean hasDiverged() {
+        return this.diverged >= 0;
+    }
+
+    /**
+     * @return the first tick the state of the world didn't match the
+     * recording, -1 if none
+     */
+    public int getDivergedTick() {
+        return this.diverged;
+    }
+}
@@ -0,0 +1,349 @@
+package engine.core;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Runs the systems of the game in a fixed order. Every frame goes through the
+ * phases in this order:
+ *
+ * <ol>
+ * <li><code>INPUT</code>: input that doesn't go through the ticks, like
+ * menus, the world isn't being simulated yet;</li>
+ * <li><code>PRE_PHYSICS</code>: game logic that changes the world before it
+ * is stepped;</li>
+ * <li><code>PHYSICS</code>: once before every physics tick, on the physics
+ * worker when the world is pipelined, so only the bodies and the
+ * {@link InputState} may be touched;</li>
+ * <li><code>POST_PHYSICS</code>: after the ticks, the render transforms are
+ * up to date and the world may be changed;</li>
+ * <li><code>PRE_RENDER</code>: right before drawing, the next ticks may
+ * already be simulated so the world may only be read.</li>
+ * </ol>
+ *
+ * Within a phase the systems run by their order, lowest first, and systems
+ * with the same order in the order they were added. Systems added or removed
+ * while their phase runs are added or removed once it is done. The systems of
+ * a phase that runs on another thread, see {@link #guard}, can't be changed
+ * while it may be running.
+ * <p>
+ * Dispatching doesn't allocate. The time every system took is measured
+ * while <code>timing</code> is set.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class Scheduler {
+
+    public static final int INPUT = 0;
+    public static final int PRE_PHYSICS = 1;
+    public static final int PHYSICS = 2;
+    public static final int POST_PHYSICS = 3;
+    public static final int PRE_RENDER = 4;
+
+    /**
+     * Number of phases.
+     */
+    public static final int PHASES = 5;
+
+    public static final String[] NAMES = {
+        "input", "pre-physics", "physics", "post-physics", "pre-render"
+    };
+
+    /**
+     * Tells if a phase may be run on another thread right now.
+     */
+    public interface Guard {
+
+        public boolean isBusy(int phase);
+    }
+
+    /**
+     * Measure the time of every system, which costs two clock reads per
+     * system.
+     */
+    public boolean timing = false;
+
+    /**
+     * Checked before the systems of a phase are changed, null to not check.
+     * The engine guards the <code>PHYSICS</code> phase, which the physics
+     * worker runs when the world is pipelined.
+     */
+    public Guard guard;
+
+    private final Phase[] phases = new Phase[PHASES];
+
+    public Scheduler() {
+        for (int i = 0; i < PHASES; i++) {
+            this.phases[i] = new Phase();
+        }
+    }
+
+    /**
+     * Adds a system with order zero.
+     *
+     * @return the system
+     */
+    public <T extends GameSystem> T add(final int phase, final T system) {
+        return this.add(phase, 0, system);
+    }
+
+    /**
+     * Adds a system.
+     *
+     * @param phase the phase to run the system in
+     * @param order the systems of a phase run from the lowest order to the
+     * highest
+     * @param system the system
+     * @return the system
+     * @throws IllegalArgumentException if the system is already in the phase
+     * @throws IllegalStateException if the phase is being run on another
+     * thread
+     */
+    public <T extends GameSystem> T add(final int phase, final int order, final T system) {
+        this.checkIdle(phase);
+        final Phase p = phases[phase];
+        if (p.indexOf(system) >= 0 || p.pendingAdd.contains(system, true)) {
+            throw new IllegalArgumentException("the system is already in the " + NAMES[phase] + " phase");
+        }
+        if (p.dispatching) {
+            p.pendingAdd.add(system);
+            p.pendingOrders.add(order);
+        } else {
+            p.insert(system, order);
+        }
+        return system;
+    }
+
+    /**
+     * Removes a system from a phase.
+     *
+     * @return true if the system was in the phase
+     * @throws IllegalStateException if the phase is being run on another
+     * thread
+     */
+    public boolean remove(final int phase, final GameSystem system) {
+        this.checkIdle(phase);
+        final Phase p = phases[phase];
+        final int pending = p.pendingAdd.indexOf(system, true);
+        if (pending >= 0) {
+            p.pendingAdd.removeIndex(pending);
+            p.pendingOrders.removeIndex(pending);
+            return true;
+        }
+        final int index = p.indexOf(system);
+        if (index < 0) {
+            return false;
+        }
+        if (p.dispatching) {
+            p.pendingRemove.add(system);
+        } else {
+            p.removeIndex(index);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a system from every phase.
+     *
+     * @throws IllegalStateException if a phase is being run on another
+     * thread
+     */
+    public void remove(final GameSystem system) {
+        for (int i = 0; i < PHASES; i++) {
+            this.remove(i, system);
+        }
+    }
+
+    /**
+     * Runs the systems of a phase.
+     *
+     * @param phase the phase
+     * @param dt the length of the frame or tick in seconds
+     */
+    public void update(final int phase, final float dt) {
+        final Phase p = phases[phase];
+        final long start = TimeUtils.nanoTime();
+        p.dispatching = true;
+        try {
+            final GameSystem[] systems = p.systems;
+            if (timing) {
+                final long[] times = p.times, totals = p.totals;
+                long before = start;
+                for (int i = 0, n = p.size; i < n; i++) {
+                    systems[i].update(dt);
+                    final long after = TimeUtils.nanoTime();
+                    times[i] = after - before;
+                    totals[i] += after - before;
+                    before = after;
+                }
+            } else {
+                for (int i = 0, n = p.size; i < n; i++) {
+                    systems[i].update(dt);
+                }
+            }
+        } finally {
+            p.dispatching = false;
+            p.applyPending();
+        }
+        p.time = TimeUtils.nanoTime() - start;
+    }
+
+    /**
+     * @return the number of systems in a phase
+     */
+    public int size(final int phase) {
+        return this.phases[phase].size;
+    }
+
+    /**
+     * @return a system of a phase, in the order they are run
+     */
+    public GameSystem get(final int phase, final int index) {
+        return this.phases[phase].systems[index];
+    }
+
+    /**
+     * @return the time a system took the last time its phase ran, in
+     * nanoseconds
+     */
+    public long getTime(final int phase, final int index) {
+        return this.phases[phase].times[index];
+    }
+
+    /**
+     * @return the time a system took since it was added or since
+     * {@link #resetTimes()}, in nanoseconds
+     */
+    public long getTotalTime(final int phase, final int index) {
+        return this.phases[phase].totals[index];
+    }
+
+    /**
+     * @return the time the last run of a phase took, in nanoseconds
+     */
+    public long getTime(final int phase) {
+        return this.phases[phase].time;
+    }
+
+    public void resetTimes() {
+        for (Phase p : phases) {
+            for (int i = 0; i < p.size; i++) {
+                p.times[i] = 0L;
+                p.totals[i] = 0L;
+            }
+            p.time = 0L;
+        }
+    }
+
+    /**
+     * Removes every system.
+     */
+    public void clear() {
+        for (int i = 0; i < PHASES; i++) {
+            this.checkIdle(i);
+        }
+        for (Phase p : phases) {
+            while (p.size > 0) {
+                p.removeIndex(p.size - 1);
+            }
+            p.pendingAdd.clear();
+            p.pendingOrders.clear();
+            p.pendingRemove.clear();
+        }
+    }
+
+    private void checkIdle(final int phase) {
+        if (guard != null && guard.isBusy(phase)) {
+            throw new IllegalStateException("the " + NAMES[phase] + " phase is being run on another thread");
+        }
+    }
+
+    /**
+     * The systems of a phase, sorted by order, in parallel arrays.
+     */
+    private static final class Phase {
+
+        GameSystem[] systems = new GameSystem[16];
+        int[] orders = new int[16];
+        long[] times = new long[16], totals = new long[16];
+        int size;
+        long time;
+        boolean dispatching;
+
+        final Array<GameSystem> pendingAdd = new Array<GameSystem>(false, 8);
+        final IntArray pendingOrders = new IntArray(false, 8);
+        final Array<GameSystem> pendingRemove = new Array<GameSystem>(false, 8);
+
+        int indexOf(final GameSystem system) {
+            for (int i = 0; i < size; i++) {
+                if (systems[i] == system) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void insert(final GameSystem system, final int order) {
+            if (size == systems.length) {
+                this.grow();
+            }
+            // after every system with the same or a lower order
+            int index = size;
+            while (index > 0 && orders[index - 1] > order) {
+                index--;
+            }
+            final int moved = size - index;
+            System.arraycopy(systems, index, systems, index + 1, moved);
+            System.arraycopy(orders, index, orders, index + 1, moved);
+            System.arraycopy(times, index, times, index + 1, moved);
+            System.arraycopy(totals, index, totals, index + 1, moved);
+            this.systems[index] = system;
+            this.orders[index] = order;
+            this.times[index] = 0L;
+            this.totals[index] = 0L;
+            this.size++;
+        }
+
+        void removeIndex(final int index) {
+            final int moved = size - index - 1;
+            System.arraycopy(systems, index + 1, systems, index, moved);
+            System.arraycopy(orders, index + 1, orders, index, moved);
+            System.arraycopy(times, index + 1, times, index, moved);
+            System.arraycopy(totals, index + 1, totals, index, moved);
+            this.size--;
+            this.systems[size] = null;
+        }
+
+        void applyPending() {
+            for (int i = 0; i < pendingRemove.size; i++) {
+                final int index = indexOf(pendingRemove.get(i));
+                if (index >= 0) {
+                    this.removeIndex(index);
+                }
+            }
+            this.pendingRemove.clear();
+            for (int i = 0; i < pendingAdd.size; i++) {
+                this.insert(pendingAdd.get(i), pendingOrders.get(i));
+            }
+            this.pendingAdd.clear();
+            this.pendingOrders.clear();
+        }
+
+        private void grow() {
+            final int capacity = systems.length << 1;
+            final GameSystem[] systems = new GameSystem[capacity];
+            final int[] orders = new int[capacity];
+            final long[] times = new long[capacity], totals = new long[capacity];
+            System.arraycopy(this.systems, 0, systems, 0, size);
+            System.arraycopy(this.orders, 0, orders, 0, size);
+            System.arraycopy(this.times, 0, times, 0, size);
+            System.arraycopy(this.totals, 0, totals, 0, size);
+            this.systems = systems;
+            this.orders = orders;
+            this.times = times;
+            this.totals = totals;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package engine.graphics;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g3d.Environment;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.environment.DirectionalLight;
+import com.badlogic.gdx.graphics.g3d.environment.ShadowMap;
+import com.badlogic.gdx.graphics.g3d.utils.TextureDescriptor;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectSet;
+import engine.Renderable;
+import engine.physics.BulletWorld;
+import engine.physics.Entity;
+
+/**
+ * A directional light with cascaded shadow maps. The view range of the camera
+ * up to <code>shadowDistance</code> is split in slices, every slice gets its
+ * own shadow map covering a sphere around it, so nearby shadows get most of
+ * the resolution and shadows still show up far away.
+ * <p>
+ * The cascades are stable: the radius of a sphere doesn't change when the
+ * camera turns and its center is snapped to a grid of whole texels in light
+ * space, so shadow edges don't shimmer. Because the center only moves in
+ * steps a shadow map stays valid while the camera moves inside a step, it is
+ * only rendered again when the cascade shifts or when a caster in it moved.
+ * </p>
+ * <p>
+ * Every renderable is drawn with the environment of the smallest cascade that
+ * contains all of it, see {@link #select(Vector3, float)}. A receiver larger
+ * than all cascades uses the last one.
+ * </p>
+ * <p>
+ * Only the framebuffers need a GL context, the splits, the fitting, the
+ * invalidation and the selection are plain math.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class CascadedShadowLight extends DirectionalLight implements Disposable {
+
+    /**
+     * The distance from the camera up to which shadows are drawn.
+     */
+    public float shadowDistance = 60f;
+    /**
+     * Blend between uniform (0) and logarithmic (1) split distances.
+     */
+    public float splitLambda = 0.75f;
+    /**
+     * How far the camera may move before a cascade shifts, as a fraction of
+     * its radius. The cascades are made larger by the same fraction, so
+     * higher values mean fewer re-renders and blurrier shadows.
+     */
+    public float slack = 0.1f;
+    /**
+     * How far towards the light casters outside of a cascade are still drawn
+     * into it.
+     */
+    public float casterDistance = 50f;
+
+    /**
+     * Number of cascades rendered during the last frame.
+     */
+    public int rendered;
+
+    public final Cascade[] cascades;
+    public final int resolution;
+
+    private final float[] splits;
+    private final Vector3 right = new Vector3();
+    private final Vector3 up = new Vector3();
+    private final Vector3 lightDirection = new Vector3();
+    private final Vector3 center = new Vector3();
+    private final Vector3 halfExtents = new Vector3();
+    private final Array<Renderable> visible = new Array<Renderable>();
+
+    /**
+     * @param count the number of cascades
+     * @param resolution the width and height of every shadow map
+     */
+    public CascadedShadowLight(final int count, final int resolution) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1");
+        }
+        this.resolution = resolution;
+        this.splits = new float[count + 1];
+        this.cascades = new Cascade[count];
+        for (int i = 0; i < count; i++) {
+            this.cascades[i] = new Cascade();
+        }
+    }
+
+    /**
+     * Copies the attributes of an environment into the environment of every
+     * cascade. Must be called again when the environment changes.
+     *
+     * @param base the environment the light was added to
+     */
+    public void setEnvironment(final Environment base) {
+        for (Cascade cascade : cascades) {
+            cascade.environment.clear();
+            cascade.environment.set(base);
+            cascade.environment.shadowMap = cascade;
+        }
+    }
+
+    /**
+     * Fits the cascades to the camera, cascades that shift are invalidated.
+     */
+    public void update(final PerspectiveCamera camera) {
+        this.update(camera.position, camera.direction, camera.near, camera.far,
+                camera.fieldOfView, camera.viewportWidth / camera.viewportHeight);
+    }
+
+    /**
+     * Fits the cascades to a perspective view, cascades that shift are
+     * invalidated.
+     *
+     * @param position the position of the camera
+     * @param direction the unit length view direction
+     * @param near the near plane distance
+     * @param far the far plane distance
+     * @param fieldOfView the vertical field of view in degrees
+     * @param aspect the width of the viewport divided by its height
+     */
+    public void update(final Vector3 position, final Vector3 direction, final float near,
+            final float far, final float fieldOfView, final float aspect) {
+        this.center.set(this.direction).nor();
+        if (!lightDirection.epsilonEquals(center, MathUtils.FLOAT_ROUNDING_ERROR)) {
+            this.lightDirection.set(center);
+            lightBasis(lightDirection, right, up);
+            this.invalidateAll();
+        }
+
+        computeSplits(near, Math.max(near, Math.min(far, shadowDistance)), splitLambda, splits);
+        final float tan = (float) Math.tan(Math.toRadians(fieldOfView * 0.5f));
+        final float k2 = tan * tan * (1f + aspect * aspect);
+
+        for (int i = 0; i < cascades.length; i++) {
+            final Cascade cascade = cascades[i];
+            final float n = splits[i], f = splits[i + 1];
+
+            // the smallest sphere through the corners of the slice, its
+            // radius only depends on the split distances and the lens
+            final float depth = Math.min(f, (n + f) * 0.5f * (1f + k2));
+            final float r = (float) Math.sqrt((f - depth) * (f - depth) + k2 * f * f);
+            final float radius = r * (1f + slack);
+            final float texel = 2f * radius / resolution;
+            final float step = Math.max(1f, MathUtils.floor(slack * r / texel)) * texel;
+
+            this.center.set(direction).scl(depth).add(position);
+            snap(center, lightDirection, right, up, step);
+
+            cascade.near = n;
+            cascade.far = f;
+            if (!center.equals(cascade.center) || radius != cascade.radius) {
+                cascade.center.set(center);
+                cascade.radius = radius;
+                cascade.valid = false;
+            }
+        }
+    }
+
+    /**
+     * Invalidates the cascades an entity casts into or cast into when they
+     * were rendered.
+     */
+    public void invalidate(final Entity e) {
+        if (e.getModelInstance() == null) {
+            return;
+        }
+        FrustumCuller.transformBounds(e.getBoundingBox(), e.transform, center, halfExtents);
+        for (Cascade cascade : cascades) {
+            if (cascade.valid && (cascade.casters.contains(e)
+                    || cascade.castsInto(center, e.getWorldRadius(), lightDirection, right, up, casterDistance))) {
+                cascade.valid = false;
+            }
+        }
+    }
+
+    /**
+     * Invalidates the cascades a sphere casts into, for an entity that was
+     * added or removed.
+     */
+    public void invalidate(final float x, final float y, final float z, final float radius) {
+        this.center.set(x, y, z);
+        for (Cascade cascade : cascades) {
+            if (cascade.valid && cascade.castsInto(center, radius, lightDirection, right, up, casterDistance)) {
+                cascade.valid = false;
+            }
+        }
+    }
+
+    /**
+     * Makes every cascade render again.
+     */
+    public void invalidateAll() {
+        for (Cascade cascade : cascades) {
+            cascade.valid = false;
+        }
+    }
+
+    /**
+     * @param center the world-space center of a receiver
+     * @param radius the radius of a sphere around the receiver
+     * @return the index of the smallest cascade that covers the whole
+     * receiver, the last cascade if none does
+     */
+    public int select(final Vector3 center, final float radius) {
+        for (int i = 0; i < cascades.length - 1; i++) {
+            if (cascades[i].covers(center, radius, lightDirection, right, up)) {
+                return i;
+            }
+        }
+        return cascades.length - 1;
+    }
+
+    /**
+     * @return the environment to render a renderable with, the one of the
+     * cascade selected for its bounds
+     */
+    public Environment getEnvironment(final Renderable obj) {
+        if (obj instanceof Entity && ((Entity) obj).getModelInstance() != null) {
+            final Entity e = (Entity) obj;
+            FrustumCuller.transformBounds(e.getBoundingBox(), e.transform, center, halfExtents);
+            return this.cascades[select(center, e.getWorldRadius())].environment;
+        }
+        return this.cascades[cascades.length - 1].environment;
+    }
+
+    /**
+     * Renders the cascades that aren't valid.
+     *
+     * @param batch a batch with a depth shader
+     * @param world the world with the casters
+     * @param culler the culler to test the casters with
+     * @return the number of cascades rendered
+     */
+    public int render(final ModelBatch batch, final BulletWorld world, final FrustumCuller culler) {
+        this.rendered = 0;
+        for (Cascade cascade : cascades) {
+            if (!cascade.valid) {
+                cascade.render(batch, world, culler, this);
+                this.rendered++;
+            }
+        }
+        return this.rendered;
+    }
+
+    /**
+     * @return the view distance where the cascade starts, the last element
+     * is where the last cascade ends
+     */
+    public float getSplit(final int i) {
+        return this.splits[i];
+    }
+
+    @Override
+    public void dispose() {
+        for (Cascade cascade : cascades) {
+            cascade.dispose();
+        }
+    }
+
+    /**
+     * Computes the split distances of the practical split scheme, a blend of
+     * logarithmic splits, which match the perspective, and uniform splits,
+     * which keep the far cascades from getting too large.
+     *
+     * @param near the start of the first cascade
+     * @param far the end of the last cascade
+     * @param lambda the blend, 0 for uniform and 1 for logarithmic
+     * @param out one element more than there are cascades, receives the
+     * distances where the cascades start and the end of the last one
+     */
+    public static void computeSplits(final float near, final float far, final float lambda,
+            final float[] out) {
+        final int count = out.length - 1;
+        for (int i = 0; i <= count; i++) {
+            final float t = (float) i / count;
+            final float log = near * (float) Math.pow(far / near, t);
+            final float uniform = near + (far - near) * t;
+            out[i] = lambda * log + (1f - lambda) * uniform;
+        }
+        out[count] = far;
+    }
+
+    /**
+     * Computes two axes perpendicular to the light direction, fixed for a
+     * given direction so the texel grid doesn't rotate.
+     */
+    public static void lightBasis(final Vector3 direction, final Vector3 right, final Vector3 up) {
+        final Vector3 axis = Math.abs(direction.y) < 0.99f ? Vector3.Y : Vector3.X;
+        right.set(axis).crs(direction).nor();
+        up.set(direction).crs(right).nor();
+    }
+
+    /**
+     * Snaps a point to a grid aligned with the light.
+     *
+     * @param point the point to snap, it is changed in place
+     * @param step the size of a grid cell
+     */
+    public static void snap(final Vector3 point, final Vector3 direction, final Vector3 right,
+            final Vector3 up, final float step) {
+        final float x = round(point.dot(right), step);
+        final float y = round(point.dot(up), step);
+        final float z = round(point.dot(direction), step);
+        point.set(right.x * x + up.x * y + direction.x * z,
+                right.y * x + up.y * y + direction.y * z,
+                right.z * x + up.z * y + direction.z * z);
+    }
+
+    private static float round(final float value, final float step) {
+        return (float) Math.floor(value / step + 0.5f) * step;
+    }
+
+    /**
+     * One slice of the view with its own shadow map.
+     */
+    public static class Cascade implements ShadowMap, Disposable {
+
+        /**
+         * The light camera the shadow map was last rendered with.
+         */
+        public final OrthographicCamera camera = new OrthographicCamera();
+        /**
+         * The environment of the light, with this cascade as shadow map.
+         */
+        public final Environment environment = new Environment();
+        /**
+         * The snapped center and the radius of the area covered.
+         */
+        public final Vector3 center = new Vector3();
+        public float radius;
+        /**
+         * The view distances the cascade was fitted to.
+         */
+        public float near, far;
+        /**
+         * False if the shadow map has to be rendered again.
+         */
+        public boolean valid;
+
+        /**
+         * The renderables drawn into the shadow map the last time.
+         */
+        final ObjectSet<Renderable> casters = new ObjectSet<Renderable>();
+        private final TextureDescriptor<Texture> depthMap = new TextureDescriptor<Texture>();
+        private FrameBuffer fbo;
+
+        /**
+         * @return true if a sphere lies within the area covered, seen from
+         * the light
+         */
+        boolean covers(final Vector3 point, final float r, final Vector3 direction,
+                final Vector3 right, final Vector3 up) {
+            final float dx = point.x - center.x, dy = point.y - center.y, dz = point.z - center.z;
+            final float extent = radius - r;
+            return Math.abs(dx * right.x + dy * right.y + dz * right.z) <= extent
+                    && Math.abs(dx * up.x + dy * up.y + dz * up.z) <= extent
+                    && Math.abs(dx * direction.x + dy * direction.y + dz * direction.z) <= extent;
+        }
+
+        /**
+         * @return true if a sphere can cast a shadow into the area covered
+         */
+        boolean castsInto(final Vector3 point, final float r, final Vector3 direction,
+                final Vector3 right, final Vector3 up, final float casterDistance) {
+            final float dx = point.x - center.x, dy = point.y - center.y, dz = point.z - center.z;
+            final float extent = radius + r;
+            final float along = dx * direction.x + dy * direction.y + dz * direction.z;
+            return Math.abs(dx * right.x + dy * right.y + dz * right.z) <= extent
+                    && Math.abs(dx * up.x + dy * up.y + dz * up.z) <= extent
+                    && along <= extent && along >= -extent - casterDistance;
+        }
+
+        void render(final ModelBatch batch, final BulletWorld world, final FrustumCuller culler,
+                final CascadedShadowLight light) {
+            if (fbo == null) {
+                this.fbo = new FrameBuffer(Pixmap.Format.RGBA8888, light.resolution, light.resolution, true);
+                this.depthMap.minFilter = depthMap.magFilter = Texture.TextureFilter.Nearest;
+                this.depthMap.uWrap = depthMap.vWrap = Texture.TextureWrap.ClampToEdge;
+                this.depthMap.texture = fbo.getColorBufferTexture();
+            }
+
+            final float back = radius + light.casterDistance;
+            this.camera.position.set(light.lightDirection).scl(-back).add(center);
+            this.camera.direction.set(light.lightDirection);
+            this.camera.up.set(light.up);
+            this.camera.viewportWidth = camera.viewportHeight = radius * 2f;
+            this.camera.near = 0f;
+            this.camera.far = back + radius;
+            this.camera.update();
+
+            world.cull(camera.frustum, culler, light.visible);
+            this.casters.clear();
+            for (int i = 0; i < light.visible.size; i++) {
+                this.casters.add(light.visible.get(i));
+            }
+
+            final int size = light.resolution;
+            this.fbo.begin();
+            Gdx.gl.glViewport(0, 0, size, size);
+            Gdx.gl.glClearColor(1, 1, 1, 1);
+            Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT | GL20.GL_DEPTH_BUFFER_BIT);
+            Gdx.gl.glEnable(GL20.GL_SCISSOR_TEST);
+            Gdx.gl.glScissor(1, 1, size - 2, size - 2);
+
+            batch.begin(camera);
+            world.render(batch, null, light.visible);
+            batch.end();
+
+            Gdx.gl.glDisable(GL20.GL_SCISSOR_TEST);
+            this.fbo.end();
+            light.visible.clear();
+            this.valid = true;
+        }
+
+        @Override
+        public Matrix4 getProjViewTrans() {
+            return this.camera.combined;
+        }
+
+        @Override
+        public TextureDescriptor<Texture> getDepthMap() {
+            return this.depthMap;
+        }
+
+        @Override
+        public void dispose() {
+            if (fbo != null) {
+                this.fbo.dispose();
+                this.fbo = null;
+            }
+            this.casters.clear();
+        }
+    }
+}
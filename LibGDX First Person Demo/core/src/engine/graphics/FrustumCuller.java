@@ -0,0 +1,173 @@
+package engine.graphics;
+
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import engine.Renderable;
+import engine.physics.Entity;
+import engine.physics.SpatialGrid;
+import java.util.Collection;
+
+/**
+ * Tests the world-space bounds of entities against a camera frustum so only
+ * the ones that can end up on screen (or in the shadow map) are submitted to
+ * the batch. Renderables without bounds are always considered visible. Only
+ * frustum and matrix math is used, so no GL context is needed.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class FrustumCuller {
+
+    /**
+     * False to submit everything, the counters are still updated.
+     */
+    public boolean enabled = true;
+
+    /**
+     * Number of renderables tested during the last pass.
+     */
+    public int submitted;
+    /**
+     * Number of renderables that passed the test during the last pass.
+     */
+    public int visible;
+
+    private final Vector3 center = new Vector3();
+    private final Vector3 halfExtents = new Vector3();
+    private final Array<Entity> candidates = new Array<Entity>();
+
+    /**
+     * Culls a collection of renderables.
+     *
+     * @param frustum the frustum to test against
+     * @param in the renderables to test
+     * @param out the array to store the visible renderables in, it is cleared
+     * first
+     * @return <code>out</code>
+     */
+    public Array<Renderable> cull(final Frustum frustum, final Collection<Renderable> in,
+            final Array<Renderable> out) {
+        out.clear();
+        for (Renderable obj : in) {
+            if (isVisible(frustum, obj)) {
+                out.add(obj);
+            }
+        }
+        this.submitted = in.size();
+        this.visible = out.size;
+        return out;
+    }
+
+    /**
+     * Culls the entities in a spatial index, only the entities in cells that
+     * intersect the frustum are tested individually.
+     *
+     * @param frustum the frustum to test against
+     * @param index the index holding the entities
+     * @param unbounded renderables that aren't in the index, always visible
+     * @param out the array to store the visible renderables in, it is cleared
+     * first
+     * @return <code>out</code>
+     */
+    public Array<Renderable> cull(final Frustum frustum, final SpatialGrid<Entity> index,
+            final Array<Renderable> unbounded, final Array<Renderable> out) {
+        out.clear();
+        out.addAll(unbounded);
+
+        this.candidates.clear();
+        if (enabled) {
+            index.query(frustum, candidates);
+        } else {
+            index.getAll(candidates);
+        }
+        for (int i = 0; i < candidates.size; i++) {
+            final Entity e = candidates.get(i);
+            if (isVisible(frustum, e)) {
+                out.add(e);
+            }
+        }
+        this.candidates.clear();
+
+        this.submitted = index.size() + unbounded.size;
+        this.visible = out.size;
+        return out;
+    }
+
+    /**
+     * @param frustum the frustum to test against
+     * @param obj the renderable to test
+     * @return false if the renderable is entirely outside of the frustum
+     */
+    public boolean isVisible(final Frustum frustum, final Renderable obj) {
+        if (!enabled || !(obj instanceof Entity)) {
+            return true;
+        }
+        final Entity e = (Entity) obj;
+        if (e.getModelInstance() == null) {
+            return true;
+        }
+        return isVisible(frustum, e.getBoundingBox(), e.getWorldRadius(), e.transform);
+    }
+
+    /**
+     * @param frustum the frustum to test against
+     * @param bounds the bounds in local space
+     * @param radius the radius of a sphere around the bounds in world space,
+     * see {@link Entity#getWorldRadius()}
+     * @param transform the local to world transform
+     * @return false if the bounds are entirely outside of the frustum
+     */
+    public boolean isVisible(final Frustum frustum, final BoundingBox bounds,
+            final float radius, final Matrix4 transform) {
+        transformBounds(bounds, transform, center, halfExtents);
+
+        // The sphere test is cheaper and rejects most of what isn't visible
+        if (!frustum.sphereInFrustum(center, radius)) {
+            return false;
+        }
+        // the Vector3 overload takes the full dimensions, these are halves
+        return frustum.boundsInFrustum(center.x, center.y, center.z, halfExtents.x, halfExtents.y, halfExtents.z);
+    }
+
+    /**
+     * Calculates the world-space axis aligned box that encloses a transformed
+     * local-space box.
+     *
+     * @param bounds the bounds in local space
+     * @param transform the local to world transform, assumed to be affine
+     * @param center the vector to store the world-space center in
+     * @param halfExtents the vector to store the world-space half extents in
+     */
+    public static void transformBounds(final BoundingBox bounds, final Matrix4 transform,
+            final Vector3 center, final Vector3 halfExtents) {
+        final float[] m = transform.val;
+
+        final float cx = (bounds.min.x + bounds.max.x) * 0.5f;
+        final float cy = (bounds.min.y + bounds.max.y) * 0.5f;
+        final float cz = (bounds.min.z + bounds.max.z) * 0.5f;
+        final float hx = (bounds.max.x - bounds.min.x) * 0.5f;
+        final float hy = (bounds.max.y - bounds.min.y) * 0.5f;
+        final float hz = (bounds.max.z - bounds.min.z) * 0.5f;
+
+        center.set(
+                m[Matrix4.M00] * cx + m[Matrix4.M01] * cy + m[Matrix4.M02] * cz + m[Matrix4.M03],
+                m[Matrix4.M10] * cx + m[Matrix4.M11] * cy + m[Matrix4.M12] * cz + m[Matrix4.M13],
+                m[Matrix4.M20] * cx + m[Matrix4.M21] * cy + m[Matrix4.M22] * cz + m[Matrix4.M23]
+        );
+        halfExtents.set(
+                Math.abs(m[Matrix4.M00]) * hx + Math.abs(m[Matrix4.M01]) * hy + Math.abs(m[Matrix4.M02]) * hz,
+                Math.abs(m[Matrix4.M10]) * hx + Math.abs(m[Matrix4.M11]) * hy + Math.abs(m[Matrix4.M12]) * hz,
+                Math.abs(m[Matrix4.M20]) * hx + Math.abs(m[Matrix4.M21]) * hy + Math.abs(m[Matrix4.M22]) * hz
+        );
+    }
+
+    /**
+     * Clears the counters.
+     */
+    public void reset() {
+        this.submitted = 0;
+        this.visible = 0;
+    }
+}
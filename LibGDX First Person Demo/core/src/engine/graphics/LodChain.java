@@ -0,0 +1,240 @@
+package engine.graphics;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
+import com.badlogic.gdx.graphics.g3d.model.Node;
+import com.badlogic.gdx.graphics.g3d.model.NodePart;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * The levels of detail of a blueprint, from the full model to coarser ones.
+ * Each level after the first starts at a threshold: a distance from the
+ * camera, or the fraction of the screen height the bounds of the entity
+ * cover. A level without a model isn't drawn at all.
+ * <p>
+ * To keep entities at the edge of a threshold from switching back and forth
+ * every frame, an entity only switches to a coarser level once it is
+ * <code>hysteresis</code> past the threshold and only switches back once it
+ * is that far on the other side.
+ * </p>
+ * <p>
+ * Optionally a separate model can be used for the depth pass, it is used at
+ * every level, also when the entity itself isn't drawn.
+ * </p>
+ *
+ * <pre>
+ * new LodChain(full)
+ *         .add(reduced, 0.1f) // below 10% of the screen height
+ *         .skip(0.005f)       // below half a percent
+ *         .shadow(reduced);
+ * </pre>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ * @see LodSelector
+ */
+public class LodChain implements Disposable {
+
+    /**
+     * The thresholds are distances in world units.
+     */
+    public static final int DISTANCE = 0;
+    /**
+     * The thresholds are fractions of the screen height.
+     */
+    public static final int SCREEN_SIZE = 1;
+
+    /**
+     * How the thresholds are measured, <code>DISTANCE</code> or
+     * <code>SCREEN_SIZE</code>.
+     */
+    public final int metric;
+    /**
+     * How far past a threshold an entity has to be before it switches, as a
+     * fraction of the threshold.
+     */
+    public float hysteresis = 0.1f;
+
+    private final Array<Model> models = new Array<Model>();
+    private final IntArray triangles = new IntArray();
+    // the farness at which the next level takes over, see farness()
+    private final FloatArray limits = new FloatArray();
+    private Model shadowModel;
+    private int shadowTriangles;
+
+    /**
+     * Creates a chain with screen size thresholds.
+     *
+     * @param model the full detail model, the model of the blueprint
+     */
+    public LodChain(final Model model) {
+        this(model, SCREEN_SIZE);
+    }
+
+    /**
+     * @param model the full detail model, the model of the blueprint
+     * @param metric <code>DISTANCE</code> or <code>SCREEN_SIZE</code>
+     */
+    public LodChain(final Model model, final int metric) {
+        if (model == null) {
+            throw new IllegalArgumentException("the first level needs a model");
+        }
+        this.metric = metric;
+        this.models.add(model);
+        this.triangles.add(countTriangles(model));
+    }
+
+    /**
+     * Adds a coarser level.
+     *
+     * @param model the model of the level, null to draw nothing
+     * @param threshold the distance beyond which or the screen size below
+     * which the level is used
+     * @return this chain
+     */
+    public LodChain add(final Model model, final float threshold) {
+        final float limit = metric == DISTANCE ? threshold : 1f / threshold;
+        if (limits.size > 0 && limit <= limits.peek()) {
+            throw new IllegalArgumentException("the levels must be ordered from fine to coarse");
+        }
+        this.models.add(model);
+        this.triangles.add(model == null ? 0 : countTriangles(model));
+        this.limits.add(limit);
+        return this;
+    }
+
+    /**
+     * Adds a last level at which the entity isn't drawn.
+     *
+     * @param threshold the distance beyond which or the screen size below
+     * which the entity is skipped
+     * @return this chain
+     */
+    public LodChain skip(final float threshold) {
+        return this.add(null, threshold);
+    }
+
+    /**
+     * Sets the model used for the depth pass.
+     *
+     * @param model the model, null to use the level that is drawn
+     * @return this chain
+     */
+    public LodChain shadow(final Model model) {
+        this.shadowModel = model;
+        this.shadowTriangles = model == null ? 0 : countTriangles(model);
+        return this;
+    }
+
+    /**
+     * @return the number of levels
+     */
+    public int size() {
+        return this.models.size;
+    }
+
+    /**
+     * @return the model of a level, null if the level isn't drawn
+     */
+    public Model getModel(final int level) {
+        return this.models.get(level);
+    }
+
+    /**
+     * @return the number of triangles of a level
+     */
+    public int getTriangles(final int level) {
+        return this.triangles.get(level);
+    }
+
+    /**
+     * @return the model for the depth pass, null if there is none
+     */
+    public Model getShadowModel() {
+        return this.shadowModel;
+    }
+
+    public int getShadowTriangles() {
+        return this.shadowTriangles;
+    }
+
+    /**
+     * Converts a distance to the measure the levels are selected on, which
+     * grows with the distance for both metrics.
+     *
+     * @param distance the distance from the camera to the entity
+     * @param radius the radius of the bounds of the entity
+     * @param tanHalfFov the tangent of half the vertical field of view
+     * @return the distance, or one over the fraction of the screen height
+     * covered
+     */
+    public float farness(final float distance, final float radius, final float tanHalfFov) {
+        return metric == DISTANCE ? distance : distance * tanHalfFov / radius;
+    }
+
+    /**
+     * Picks the level for an entity.
+     *
+     * @param current the level the entity is at now
+     * @param farness see {@link #farness(float, float, float)}
+     * @return the level to use
+     */
+    public int select(final int current, final float farness) {
+        int level = Math.min(current, limits.size);
+        while (level < limits.size && farness > limits.get(level) * (1f + hysteresis)) {
+            level++;
+        }
+        while (level > 0 && farness < limits.get(level - 1) * (1f - hysteresis)) {
+            level--;
+        }
+        return level;
+    }
+
+    /**
+     * Disposes the models of the coarser levels and the depth pass, the
+     * first level is the model of the blueprint and is disposed with it.
+     */
+    @Override
+    public void dispose() {
+        for (int i = 1; i < models.size; i++) {
+            final Model model = models.get(i);
+            if (model != null && model != models.first()) {
+                model.dispose();
+            }
+        }
+        if (shadowModel != null && !models.contains(shadowModel, true)) {
+            this.shadowModel.dispose();
+        }
+        this.shadowModel = null;
+    }
+
+    /**
+     * @return the number of triangles in a model
+     */
+    public static int countTriangles(final Model model) {
+        int count = 0;
+        for (Node node : model.nodes) {
+            count += countTriangles(node);
+        }
+        return count;
+    }
+
+    private static int countTriangles(final Node node) {
+        int count = 0;
+        for (NodePart part : node.parts) {
+            final MeshPart mesh = part.meshPart;
+            if (mesh.primitiveType == GL20.GL_TRIANGLES) {
+                count += mesh.size / 3;
+            } else if (mesh.primitiveType == GL20.GL_TRIANGLE_STRIP || mesh.primitiveType == GL20.GL_TRIANGLE_FAN) {
+                count += Math.max(0, mesh.size - 2);
+            }
+        }
+        for (Node child : node.getChildren()) {
+            count += countTriangles(child);
+        }
+        return count;
+    }
+}
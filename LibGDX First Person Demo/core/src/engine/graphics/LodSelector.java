@@ -0,0 +1,121 @@
+package engine.graphics;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import engine.Renderable;
+import engine.physics.Entity;
+
+/**
+ * Picks the level of detail of the entities from their distance to the main
+ * camera, see {@link LodChain}. The levels are picked once per frame before
+ * any pass is drawn, so the shadow passes draw the same levels as the main
+ * pass. Also counts the triangles the visible entities are drawn with and the
+ * triangles they would have at full detail.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class LodSelector {
+
+    /**
+     * False to draw every entity at full detail.
+     */
+    public boolean enabled = true;
+    /**
+     * Multiplies the distances, higher values switch to coarser levels
+     * sooner.
+     */
+    public float bias = 1f;
+
+    /**
+     * Number of triangles the visible entities are drawn with during the last
+     * pass, and the number they would have been drawn with at full detail.
+     */
+    public int triangles, fullTriangles;
+    /**
+     * Number of visible entities that weren't drawn during the last pass
+     * because of their level.
+     */
+    public int skipped;
+
+    private float tanHalfFov = 1f;
+    private float cx, cy, cz;
+
+    /**
+     * Starts selecting the levels for a frame.
+     *
+     * @param camera the main camera, every pass of the frame uses the levels
+     * picked for it
+     */
+    public void begin(final Camera camera) {
+        this.tanHalfFov = camera instanceof PerspectiveCamera
+                ? (float) Math.tan(Math.toRadians(((PerspectiveCamera) camera).fieldOfView * 0.5f)) : 1f;
+        this.cx = camera.position.x;
+        this.cy = camera.position.y;
+        this.cz = camera.position.z;
+    }
+
+    /**
+     * Selects the level of an entity with a chain from its distance to the
+     * camera.
+     *
+     * @return true if the level changed
+     */
+    public boolean select(final Entity e) {
+        final LodChain chain = e.getLodChain();
+        if (chain == null) {
+            return false;
+        }
+        int level = 0;
+        if (enabled) {
+            final float[] m = e.transform.val;
+            final float dx = m[Matrix4.M03] - cx, dy = m[Matrix4.M13] - cy, dz = m[Matrix4.M23] - cz;
+            final float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            level = chain.select(e.getLod(), chain.farness(distance, e.getWorldRadius(), tanHalfFov) * bias);
+        }
+        if (level == e.getLod()) {
+            return false;
+        }
+        e.setLod(level);
+        return true;
+    }
+
+    /**
+     * Counts the triangles of the entities drawn by the main pass.
+     *
+     * @param visible the entities that passed culling
+     */
+    public void count(final Array<Renderable> visible) {
+        this.triangles = 0;
+        this.fullTriangles = 0;
+        this.skipped = 0;
+        for (int i = 0; i < visible.size; i++) {
+            final Renderable obj = visible.get(i);
+            if (!(obj instanceof Entity)) {
+                continue;
+            }
+            final Entity e = (Entity) obj;
+            final LodChain chain = e.getLodChain();
+            if (chain == null) {
+                final int count = e.getTriangles();
+                this.triangles += count;
+                this.fullTriangles += count;
+                continue;
+            }
+            final int level = e.getLod();
+            this.triangles += chain.getTriangles(level);
+            this.fullTriangles += chain.getTriangles(0);
+            if (chain.getModel(level) == null) {
+                this.skipped++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of triangles saved during the last pass
+     */
+    public int getSavedTriangles() {
+        return this.fullTriangles - triangles;
+    }
+}
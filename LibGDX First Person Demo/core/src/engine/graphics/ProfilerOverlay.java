@@ -0,0 +1,74 @@
+package engine.graphics;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.Disposable;
+import engine.utils.Profiler;
+import java.util.Locale;
+
+/**
+ * Draws the statistics of a {@link Profiler} in the top left corner of the
+ * screen. The text is only rebuilt every few frames, so the overlay itself
+ * hardly shows up in the numbers.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ProfilerOverlay implements Disposable {
+
+    /**
+     * Number of frames between updates of the text.
+     */
+    public int refreshInterval = 15;
+
+    private final Profiler profiler;
+    private final SpriteBatch batch;
+    private final BitmapFont font;
+    private final Profiler.Stats stats;
+    private final StringBuilder text;
+    private int frames;
+
+    public ProfilerOverlay(final Profiler profiler) {
+        this.profiler = profiler;
+        this.batch = new SpriteBatch();
+        this.font = new BitmapFont();
+        this.font.setColor(Color.WHITE);
+        this.stats = new Profiler.Stats();
+        this.text = new StringBuilder();
+    }
+
+    /**
+     * Renders the overlay, should be called after the frame has been drawn.
+     */
+    public void render() {
+        if (frames++ % refreshInterval == 0) {
+            this.update();
+        }
+        this.batch.getProjectionMatrix().setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        this.batch.begin();
+        this.font.draw(batch, text, 8f, Gdx.graphics.getHeight() - 8f);
+        this.batch.end();
+    }
+
+    private void update() {
+        this.text.setLength(0);
+        this.text.append(String.format(Locale.ROOT, "%-12s %8s %8s %8s %8s%n", "", "p50", "p95", "p99", "max"));
+        for (int i = 0; i < Profiler.SERIES; i++) {
+            this.profiler.getStats(i, stats);
+            if (i < Profiler.PHASES) {
+                this.text.append(String.format(Locale.ROOT, "%-12s %6.2fms %6.2fms %6.2fms %6.2fms%n",
+                        Profiler.NAMES[i], stats.p50, stats.p95, stats.p99, stats.max));
+            } else {
+                this.text.append(String.format(Locale.ROOT, "%-12s %8.0f %8.0f %8.0f %8.0f%n",
+                        Profiler.NAMES[i], stats.p50, stats.p95, stats.p99, stats.max));
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        this.batch.dispose();
+        this.font.dispose();
+    }
+}
@@ -0,0 +1,321 @@
+package engine.graphics;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.RenderableSorter;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import engine.utils.Profiler;
+import java.util.Arrays;
+
+/**
+ * Sorts the renderables of a {@link com.badlogic.gdx.graphics.g3d.ModelBatch}
+ * on a packed 64-bit key instead of comparing them pairwise. The key holds,
+ * from the most to the least significant bits:
+ *
+ * <pre>
+ * opaque:      0 | shader (8) | material (16) | mesh (16) | depth (23)
+ * transparent: 1 | inverted depth (23) | shader (8) | material (16) | mesh (16)
+ * </pre>
+ *
+ * So the opaque renderables come first, grouped by shader, material and mesh
+ * to keep the number of GL state changes down and front to back within a
+ * group, and the transparent renderables come after them back to front. The
+ * shaders, materials and meshes are numbered in the order they are first
+ * seen, by identity, starting at one.
+ * <p>
+ * The numbers of the ones that weren't drawn in the last sort are forgotten
+ * once they outnumber the ones that were, so disposed materials and meshes,
+ * of the chunks that streamed out for example, aren't kept alive.
+ * </p>
+ * <p>
+ * The keys are sorted with a radix sort, eight bits at a time, skipping the
+ * bytes that are the same for every key. All arrays are kept between frames.
+ * </p>
+ * <p>
+ * The statistics add up over every sort until {@link #resetStats()}.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class RenderQueue implements RenderableSorter {
+
+    private static final int SHADER_BITS = 8, MATERIAL_BITS = 16, MESH_BITS = 16, DEPTH_BITS = 23;
+    private static final long TRANSPARENT = 1L << 63;
+
+    /**
+     * Measures the sorts as the <code>SORT</code> phase if set.
+     */
+    public Profiler profiler = null;
+
+    /**
+     * Number of sorts and renderables sorted.
+     */
+    public int sorts, sorted;
+    /**
+     * Time spent sorting, in nanoseconds.
+     */
+    public long sortTime;
+    /**
+     * Number of renderables with the same key as the one before them, their
+     * order isn't defined by the key.
+     */
+    public int collisions;
+    /**
+     * Number of times the shader, material or mesh changes from one
+     * renderable to the next, after sorting.
+     */
+    public int shaderSwitches, materialSwitches, meshSwitches;
+
+    private final Ids<Shader> shaders = new Ids<Shader>(SHADER_BITS);
+    private final Ids<Material> materials = new Ids<Material>(MATERIAL_BITS);
+    private final Ids<Mesh> meshes = new Ids<Mesh>(MESH_BITS);
+
+    private long[] keys = new long[0], keysTemp = new long[0];
+    private int[] order = new int[0], orderTemp = new int[0];
+    private Object[] items = new Object[0];
+    private final int[][] counts = new int[8][256];
+    private final Vector3 position = new Vector3();
+
+    @Override
+    public void sort(final Camera camera, final Array<Renderable> renderables) {
+        if (profiler != null) {
+            this.profiler.begin(Profiler.SORT);
+        }
+        final long start = TimeUtils.nanoTime();
+        final int n = renderables.size;
+        this.ensureCapacity(n);
+        this.shaders.begin();
+        this.materials.begin();
+        this.meshes.begin();
+
+        for (int i = 0; i < n; i++) {
+            this.keys[i] = key(camera, renderables.get(i));
+            this.order[i] = i;
+        }
+        this.radixSort(n);
+
+        // the items of a batch array are typed Object[]
+        final Object[] source = renderables.items;
+        System.arraycopy(source, 0, items, 0, n);
+        for (int i = 0; i < n; i++) {
+            source[i] = items[order[i]];
+            this.items[order[i]] = null;
+        }
+
+        this.sortTime += TimeUtils.nanoTime() - start;
+        this.sorts++;
+        this.sorted += n;
+        this.count(renderables);
+        if (profiler != null) {
+            this.profiler.end(Profiler.SORT);
+        }
+    }
+
+    /**
+     * Builds the key of a renderable.
+     *
+     * @param camera the camera the depth is measured from
+     * @param renderable a renderable with its shader set
+     * @return the key, sorting on it as an unsigned number gives the draw
+     * order
+     */
+    public long key(final Camera camera, final Renderable renderable) {
+        final long shader = shaders.id(renderable.shader);
+        final long material = materials.id(renderable.material);
+        final long mesh = meshes.id(renderable.meshPart.mesh);
+
+        // the bits of a positive float sort like the float itself
+        position.set(renderable.meshPart.center).mul(renderable.worldTransform);
+        final long depth = Float.floatToRawIntBits(position.dst2(camera.position)) >>> (31 - DEPTH_BITS);
+
+        final long state = (shader << (MATERIAL_BITS + MESH_BITS)) | (material << MESH_BITS) | mesh;
+        if (isTransparent(renderable)) {
+            final long inverted = ((1L << DEPTH_BITS) - 1) - depth;
+            return TRANSPARENT | (inverted << (SHADER_BITS + MATERIAL_BITS + MESH_BITS)) | state;
+        }
+        return (state << DEPTH_BITS) | depth;
+    }
+
+    /**
+     * Sets the counters back to zero.
+     */
+    public void resetStats() {
+        this.sorts = 0;
+        this.sorted = 0;
+        this.sortTime = 0L;
+        this.collisions = 0;
+        this.shaderSwitches = 0;
+        this.materialSwitches = 0;
+        this.meshSwitches = 0;
+    }
+
+    /**
+     * @return the estimated number of GL state changes, shader, material and
+     * mesh switches together
+     */
+    public int getSwitches() {
+        return this.shaderSwitches + materialSwitches + meshSwitches;
+    }
+
+    /**
+     * Forgets the numbers given to the shaders, materials and meshes, the
+     * ones still drawn get new ones in the next sort.
+     */
+    public void clearIds() {
+        this.shaders.clear();
+        this.materials.clear();
+        this.meshes.clear();
+    }
+
+    /**
+     * @return the number of shaders, materials and meshes that have a number
+     */
+    public int getIdCount() {
+        return this.shaders.ids.size + materials.ids.size + meshes.ids.size;
+    }
+
+    private static boolean isTransparent(final Renderable renderable) {
+        return renderable.material.has(BlendingAttribute.Type)
+                && ((BlendingAttribute) renderable.material.get(BlendingAttribute.Type)).blended;
+    }
+
+    private void radixSort(final int n) {
+        for (int[] count : counts) {
+            Arrays.fill(count, 0);
+        }
+        for (int i = 0; i < n; i++) {
+            final long key = keys[i];
+            for (int b = 0; b < 8; b++) {
+                this.counts[b][(int) (key >>> (b << 3)) & 0xFF]++;
+            }
+        }
+
+        long[] keys = this.keys, keysOut = this.keysTemp;
+        int[] order = this.order, orderOut = this.orderTemp;
+        for (int b = 0; b < 8; b++) {
+            final int[] count = counts[b];
+            final int shift = b << 3;
+            if (n == 0 || count[(int) (keys[0] >>> shift) & 0xFF] == n) {
+                continue; // every key has the same byte here
+            }
+            int offset = 0;
+            for (int d = 0; d < 256; d++) {
+                final int c = count[d];
+                count[d] = offset;
+                offset += c;
+            }
+            for (int i = 0; i < n; i++) {
+                final long key = keys[i];
+                final int slot = count[(int) (key >>> shift) & 0xFF]++;
+                keysOut[slot] = key;
+                orderOut[slot] = order[i];
+            }
+            final long[] swapKeys = keys;
+            keys = keysOut;
+            keysOut = swapKeys;
+            final int[] swapOrder = order;
+            order = orderOut;
+            orderOut = swapOrder;
+        }
+        this.keys = keys;
+        this.keysTemp = keysOut;
+        this.order = order;
+        this.orderTemp = orderOut;
+    }
+
+    private void count(final Array<Renderable> renderables) {
+        for (int i = 1; i < renderables.size; i++) {
+            final Renderable previous = renderables.get(i - 1), current = renderables.get(i);
+            if (keys[i] == keys[i - 1]) {
+                this.collisions++;
+            }
+            if (current.shader != previous.shader) {
+                this.shaderSwitches++;
+            }
+            if (current.material != previous.material) {
+                this.materialSwitches++;
+            }
+            if (current.meshPart.mesh != previous.meshPart.mesh) {
+                this.meshSwitches++;
+            }
+        }
+    }
+
+    /**
+     * Numbers objects by identity, and counts how many of them a sort used.
+     */
+    private static final class Ids<T> {
+
+        final IdentityMap<T, Integer> ids = new IdentityMap<T, Integer>();
+        final int bits;
+        // the last sort every number was used in
+        int[] stamps = new int[64];
+        int stamp, used;
+
+        Ids(final int bits) {
+            this.bits = bits;
+        }
+
+        /**
+         * Starts a sort, the numbers are given out again if most of them
+         * weren't used by the last one.
+         */
+        void begin() {
+            if (ids.size > (used << 1) + 16) {
+                this.clear();
+            }
+            this.stamp++;
+            this.used = 0;
+        }
+
+        long id(final T obj) {
+            if (obj == null) {
+                return 0L;
+            }
+            final Integer boxed = ids.get(obj);
+            int id;
+            if (boxed != null) {
+                id = boxed;
+            } else {
+                if (ids.size == (1 << bits) - 1) {
+                    // out of numbers, start over, the order is only off for a frame
+                    this.clear();
+                }
+                id = ids.size + 1;
+                this.ids.put(obj, id);
+                if (id >= stamps.length) {
+                    this.stamps = Arrays.copyOf(stamps, Math.min(stamps.length << 1, 1 << bits));
+                }
+            }
+            if (stamps[id] != stamp) {
+                this.stamps[id] = stamp;
+                this.used++;
+            }
+            return id;
+        }
+
+        void clear() {
+            this.ids.clear();
+            Arrays.fill(stamps, 0);
+            this.used = 0;
+        }
+    }
+
+    private void ensureCapacity(final int n) {
+        if (keys.length < n) {
+            final int capacity = Math.max(n, keys.length << 1);
+            this.keys = new long[capacity];
+            this.keysTemp = new long[capacity];
+            this.order = new int[capacity];
+            this.orderTemp = new int[capacity];
+            this.items = new Object[capacity];
+        }
+    }
+}
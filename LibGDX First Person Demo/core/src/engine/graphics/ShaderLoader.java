@@ -0,0 +1,83 @@
+package engine.graphics;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Loads a <code>ShaderProgram</code> with an <code>AssetManager</code>. The
+ * sources are read and preprocessed on the loader thread, only compiling and
+ * linking is left for the GL thread.
+ * <p>
+ * The file name is the vertex shader, the fragment shader has the same name
+ * with <code>.frag</code> instead of <code>.vert</code> unless the parameters
+ * name another file. Both are run through a {@link ShaderPreprocessor} with
+ * the defines of the parameters. The program is compiled by a
+ * {@link ShaderManager}, so a program with the same sources is only compiled
+ * once and unloading the asset doesn't dispose a program that is still in
+ * use.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ShaderLoader extends AsynchronousAssetLoader<ShaderProgram, ShaderLoader.Parameters> {
+
+    public static class Parameters extends AssetLoaderParameters<ShaderProgram> {
+
+        /**
+         * The fragment shader, null to derive it from the vertex shader.
+         */
+        public String fragmentFile;
+        /**
+         * The defines to compile with, see {@link ShaderPreprocessor}.
+         */
+        public String[] defines;
+    }
+
+    private final ShaderPreprocessor preprocessor;
+    private final ShaderManager shaders;
+    private String vertex, fragment;
+
+    public ShaderLoader(final FileHandleResolver resolver, final ShaderManager shaders) {
+        super(resolver);
+        this.preprocessor = new ShaderPreprocessor(resolver);
+        this.shaders = shaders;
+    }
+
+    @Override
+    public void loadAsync(final AssetManager manager, final String fileName, final FileHandle file,
+            final Parameters parameter) {
+        final String[] defines = parameter == null ? null : parameter.defines;
+        this.vertex = preprocessor.process(fileName, defines);
+        this.fragment = preprocessor.process(fragmentFile(fileName, parameter), defines);
+    }
+
+    @Override
+    public ShaderProgram loadSync(final AssetManager manager, final String fileName, final FileHandle file,
+            final Parameters parameter) {
+        final String vertex = this.vertex, fragment = this.fragment;
+        this.vertex = null;
+        this.fragment = null;
+        return this.shaders.compile(fileName, vertex, fragment);
+    }
+
+    private static String fragmentFile(final String fileName, final Parameters parameter) {
+        if (parameter != null && parameter.fragmentFile != null) {
+            return parameter.fragmentFile;
+        }
+        final int dot = fileName.lastIndexOf('.');
+        return (dot > fileName.lastIndexOf('/') ? fileName.substring(0, dot) : fileName) + ".frag";
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Array<AssetDescriptor> getDependencies(final String fileName, final FileHandle file,
+            final Parameters parameter) {
+        return null;
+    }
+}
@@ -0,0 +1,288 @@
+package engine.graphics;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import engine.utils.ShaderException;
+
+/**
+ * Compiles shader programs once and hands out the same program after that.
+ * A program is a name, <code>shaders/lit</code> for
+ * <code>shaders/lit.vert</code> and <code>shaders/lit.frag</code>, and a
+ * permutation: the defines it is compiled with. The sources are run through a
+ * {@link ShaderPreprocessor} and the programs are cached by their final
+ * sources, so permutations that end up with the same source share a program.
+ * The sources are hashed with {@link ShaderPreprocessor#key(String, String)}
+ * and compared in full, two sources with the same hash get a program each.
+ * <p>
+ * Compiling a shader can take long enough to drop frames, so the
+ * permutations the game needs should be registered with
+ * {@link #register(String, String...)} and compiled at load time with
+ * {@link #warmUp()}. A program compiled after the warm-up is counted in
+ * <code>lateCompiles</code> and logged.
+ * </p>
+ * <p>
+ * Every program of the game goes through a manager, also the ones loaded by
+ * a {@link ShaderLoader} and compiled by {@link engine.Util}, see
+ * {@link #compile(String, String, String)}. The programs belong to the
+ * manager: disposing a program it handed out does nothing, they are disposed
+ * by {@link #clear()}.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ShaderManager implements Disposable {
+
+    /**
+     * Number of programs found in the cache and number compiled.
+     */
+    public int hits, misses;
+    /**
+     * Number of programs compiled after the warm-up.
+     */
+    public int lateCompiles;
+    /**
+     * Time spent compiling, in nanoseconds.
+     */
+    public long compileTime;
+
+    private final ShaderPreprocessor preprocessor;
+    private final ObjectMap<Sources, ShaderProgram> programs = new ObjectMap<Sources, ShaderProgram>();
+    private final Sources lookup = new Sources();
+    // name and permutation to program, saves preprocessing on every get
+    private final ObjectMap<String, ShaderProgram> permutations = new ObjectMap<String, ShaderProgram>();
+    private final Array<String> registeredNames = new Array<String>();
+    private final Array<String[]> registeredDefines = new Array<String[]>();
+    private boolean warmedUp;
+
+    /**
+     * Reads the shaders from the internal files.
+     */
+    public ShaderManager() {
+        this(new ShaderPreprocessor(new InternalFileHandleResolver()));
+    }
+
+    public ShaderManager(final ShaderPreprocessor preprocessor) {
+        this.preprocessor = preprocessor;
+    }
+
+    /**
+     * @param name the path of the shaders without the extension
+     * @param defines the permutation, <code>NAME</code> or
+     * <code>NAME=value</code>
+     * @return the program, compiled if it isn't cached
+     * @throws ShaderException if a file is missing or the program doesn't
+     * compile
+     */
+    public ShaderProgram get(final String name, final String... defines) throws ShaderException {
+        final String[] normalized = ShaderPreprocessor.normalize(defines);
+        final String permutation = permutation(name, normalized);
+        ShaderProgram program = permutations.get(permutation);
+        if (program != null) {
+            this.hits++;
+            return program;
+        }
+
+        final String vertex = preprocessor.process(name + ".vert", normalized);
+        final String fragment = preprocessor.process(name + ".frag", normalized);
+        program = compile(permutation, vertex, fragment);
+        this.permutations.put(permutation, program);
+        return program;
+    }
+
+    /**
+     * Compiles sources that are already complete, or hands out the program
+     * compiled from the same sources before.
+     *
+     * @param name the name to report errors and late compiles with
+     * @param vertex the source of the vertex shader
+     * @param fragment the source of the fragment shader
+     * @return the program
+     * @throws ShaderException if the program doesn't compile
+     */
+    public ShaderProgram compile(final String name, final String vertex, final String fragment)
+            throws ShaderException {
+        ShaderProgram program = programs.get(lookup.set(vertex, fragment));
+        if (program != null) {
+            this.lookup.set(null, null);
+            this.hits++;
+            return program;
+        }
+        final Sources key = new Sources(lookup);
+        this.lookup.set(null, null);
+        program = create(name, vertex, fragment);
+        this.programs.put(key, program);
+        return program;
+    }
+
+    private ShaderProgram create(final String name, final String vertex, final String fragment) {
+        final long start = TimeUtils.nanoTime();
+        final ManagedProgram program = new ManagedProgram(vertex, fragment);
+        final long time = TimeUtils.nanoTime() - start;
+        this.compileTime += time;
+        this.misses++;
+        if (!program.isCompiled()) {
+            final String log = program.getLog();
+            program.release();
+            throw new ShaderException(name + ": " + log);
+        }
+        if (warmedUp) {
+            this.lateCompiles++;
+            Gdx.app.log("ShaderManager", "Compiled " + name + " after the warm-up in " + time / 1000000L + "ms");
+        }
+        return program;
+    }
+
+    /**
+     * Adds a permutation to compile in {@link #warmUp()}.
+     *
+     * @return this manager
+     */
+    public ShaderManager register(final String name, final String... defines) {
+        this.registeredNames.add(name);
+        this.registeredDefines.add(defines);
+        return this;
+    }
+
+    /**
+     * Compiles the registered permutations that aren't compiled yet. Call at
+     * load time, after that every compile is counted as late.
+     */
+    public void warmUp() {
+        for (int i = 0; i < registeredNames.size; i++) {
+            this.get(registeredNames.get(i), registeredDefines.get(i));
+        }
+        this.warmedUp = true;
+    }
+
+    /**
+     * @return true once {@link #warmUp()} ran, false again after
+     * {@link #clear()}
+     */
+    public boolean isWarmedUp() {
+        return this.warmedUp;
+    }
+
+    /**
+     * @return the number of distinct programs
+     */
+    public int size() {
+        return this.programs.size;
+    }
+
+    /**
+     * @return the average time a compile took, in milliseconds
+     */
+    public float getAverageCompileTime() {
+        return misses == 0 ? 0f : compileTime / 1e6f / misses;
+    }
+
+    public void resetStats() {
+        this.hits = 0;
+        this.misses = 0;
+        this.lateCompiles = 0;
+        this.compileTime = 0L;
+    }
+
+    /**
+     * @return the key a program is cached under before preprocessing
+     */
+    static String permutation(final String name, final String[] normalized) {
+        if (normalized.length == 0) {
+            return name;
+        }
+        final StringBuilder builder = new StringBuilder(name).append('[');
+        for (int i = 0; i < normalized.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(normalized[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Disposes every program, also after a lost context. The sources read so
+     * far are kept.
+     */
+    public void clear() {
+        for (ShaderProgram program : programs.values()) {
+            ((ManagedProgram) program).release();
+        }
+        this.programs.clear();
+        this.permutations.clear();
+        this.warmedUp = false;
+    }
+
+    @Override
+    public void dispose() {
+        this.clear();
+        this.registeredNames.clear();
+        this.registeredDefines.clear();
+    }
+
+    /**
+     * The final sources of a program, the key of the cache.
+     */
+    private static final class Sources {
+
+        String vertex, fragment;
+        int hash;
+
+        Sources() {
+        }
+
+        Sources(final Sources sources) {
+            this.vertex = sources.vertex;
+            this.fragment = sources.fragment;
+            this.hash = sources.hash;
+        }
+
+        Sources set(final String vertex, final String fragment) {
+            this.vertex = vertex;
+            this.fragment = fragment;
+            if (vertex != null) {
+                final long key = ShaderPreprocessor.key(vertex, fragment);
+                this.hash = (int) (key ^ (key >>> 32));
+            }
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Sources)) {
+                return false;
+            }
+            final Sources other = (Sources) obj;
+            return hash == other.hash && vertex.equals(other.vertex) && fragment.equals(other.fragment);
+        }
+    }
+
+    /**
+     * A program of the manager, only the manager disposes it.
+     */
+    private static final class ManagedProgram extends ShaderProgram {
+
+        ManagedProgram(final String vertex, final String fragment) {
+            super(vertex, fragment);
+        }
+
+        @Override
+        public void dispose() {
+            // shared, see clear()
+        }
+
+        void release() {
+            super.dispose();
+        }
+    }
+}
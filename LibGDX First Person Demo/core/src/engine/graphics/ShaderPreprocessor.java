@@ -0,0 +1,221 @@
+package engine.graphics;
+
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectSet;
+import engine.utils.ShaderException;
+import java.util.Arrays;
+
+/**
+ * Turns GLSL sources with <code>#include</code> directives into the sources
+ * that are compiled, and prepends the defines of a permutation. Doesn't need
+ * a GL context.
+ * <p>
+ * <code>#include "file"</code> is replaced by the processed contents of the
+ * file, relative to the including file. Every file is included once per
+ * source, so shared headers can be included from several places and include
+ * cycles end. The defines, <code>NAME</code> for a feature flag or
+ * <code>NAME=value</code>, are sorted and put after the
+ * <code>#version</code> line if there is one, so the same set in any order
+ * gives the same source.
+ * </p>
+ * <p>
+ * The files are read once and kept until {@link #clear()}.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ * @see ShaderManager
+ */
+public class ShaderPreprocessor {
+
+    /**
+     * Reads the files the sources are made of.
+     */
+    public interface Source {
+
+        /**
+         * @return the contents of a file, null if it doesn't exist
+         */
+        public String read(String path);
+    }
+
+    private static final String INCLUDE = "#include";
+
+    private final Source source;
+    private final ObjectMap<String, String> files = new ObjectMap<String, String>();
+    private final ObjectSet<String> included = new ObjectSet<String>();
+    private final StringBuilder builder = new StringBuilder();
+
+    public ShaderPreprocessor(final Source source) {
+        this.source = source;
+    }
+
+    /**
+     * Reads the files with a resolver, internal files for example.
+     */
+    public ShaderPreprocessor(final FileHandleResolver resolver) {
+        this(new Source() {
+
+            @Override
+            public String read(final String path) {
+                final FileHandle file = resolver.resolve(path);
+                return file.exists() ? file.readString("UTF-8") : null;
+            }
+        });
+    }
+
+    /**
+     * Processes a file.
+     *
+     * @param path the file
+     * @param defines the defines of the permutation, may be null
+     * @return the source to compile
+     * @throws ShaderException if the file or a file it includes doesn't exist
+     */
+    public synchronized String process(final String path, final String[] defines) throws ShaderException {
+        this.builder.setLength(0);
+        this.included.clear();
+
+        final String text = read(path, null);
+        int start = 0;
+        // the #version line has to stay first
+        final int version = text.indexOf("#version");
+        if (version >= 0 && text.substring(0, version).trim().isEmpty()) {
+            start = lineEnd(text, version);
+            this.builder.append(text, 0, start);
+            if (start == text.length() || text.charAt(start - 1) != '\n') {
+                this.builder.append('\n');
+            }
+        }
+        for (String define : normalize(defines)) {
+            final int value = define.indexOf('=');
+            this.builder.append("#define ");
+            if (value < 0) {
+                this.builder.append(define);
+            } else {
+                this.builder.append(define, 0, value).append(' ').append(define, value + 1, define.length());
+            }
+            this.builder.append('\n');
+        }
+        this.included.add(path);
+        this.append(path, text, start);
+        return this.builder.toString();
+    }
+
+    private void append(final String path, final String text, int start) {
+        while (start < text.length()) {
+            final int end = lineEnd(text, start);
+            final int directive = firstNonSpace(text, start, end);
+            if (text.startsWith(INCLUDE, directive)) {
+                final String name = includeName(text, directive + INCLUDE.length(), end, path);
+                final String resolved = resolve(path, name);
+                if (included.add(resolved)) {
+                    final String contents = read(resolved, path);
+                    this.append(resolved, contents, 0);
+                    if (contents.length() > 0 && contents.charAt(contents.length() - 1) != '\n') {
+                        this.builder.append('\n');
+                    }
+                }
+            } else {
+                this.builder.append(text, start, end);
+            }
+            start = end;
+        }
+    }
+
+    private String read(final String path, final String from) {
+        String text = files.get(path);
+        if (text == null) {
+            text = source.read(path);
+            if (text == null) {
+                throw new ShaderException(from == null ? "shader not found: " + path
+                        : "shader not found: " + path + ", included from " + from);
+            }
+            this.files.put(path, text);
+        }
+        return text;
+    }
+
+    /**
+     * Forgets the files read so far, to pick up changes.
+     */
+    public synchronized void clear() {
+        this.files.clear();
+    }
+
+    /**
+     * @return the defines sorted, without duplicates and blanks
+     */
+    public static String[] normalize(final String[] defines) {
+        if (defines == null || defines.length == 0) {
+            return new String[0];
+        }
+        final Array<String> result = new Array<String>(defines.length);
+        for (String define : defines) {
+            final String trimmed = define == null ? "" : define.trim();
+            if (trimmed.length() > 0 && !result.contains(trimmed, false)) {
+                result.add(trimmed);
+            }
+        }
+        final String[] sorted = result.toArray(String.class);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * @return a key for a program: a 64-bit FNV-1a hash of its final vertex
+     * and fragment source, which include the defines of the permutation
+     */
+    public static long key(final String vertex, final String fragment) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, vertex);
+        hash = (hash ^ 0xFFFF) * 0x100000001b3L; // keeps "ab" + "c" apart from "a" + "bc"
+        return hash(hash, fragment);
+    }
+
+    private static long hash(long hash, final String text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            final char c = text.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * 0x100000001b3L;
+            hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String resolve(final String from, final String name) {
+        final int slash = from.lastIndexOf('/');
+        String path = slash < 0 ? name : from.substring(0, slash + 1) + name;
+        // fold "dir/../"
+        int up;
+        while ((up = path.indexOf("/../")) > 0) {
+            final int parent = path.lastIndexOf('/', up - 1);
+            path = path.substring(0, parent + 1) + path.substring(up + 4);
+        }
+        return path.replace("/./", "/");
+    }
+
+    private static String includeName(final String text, final int from, final int end, final String path) {
+        int open = firstNonSpace(text, from, end);
+        final char quote = open < end ? text.charAt(open) : ' ';
+        final char close = quote == '<' ? '>' : '"';
+        final int closing = text.indexOf(close, open + 1);
+        if ((quote != '"' && quote != '<') || closing < 0 || closing >= end) {
+            throw new ShaderException("malformed #include in " + path + ": " + text.substring(from, end).trim());
+        }
+        return text.substring(open + 1, closing);
+    }
+
+    private static int lineEnd(final String text, final int from) {
+        final int newline = text.indexOf('\n', from);
+        return newline < 0 ? text.length() : newline + 1;
+    }
+
+    private static int firstNonSpace(final String text, int from, final int end) {
+        while (from < end && (text.charAt(from) == ' ' || text.charAt(from) == '\t')) {
+            from++;
+        }
+        return from;
+    }
+}
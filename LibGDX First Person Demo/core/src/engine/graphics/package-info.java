@@ -0,0 +1,5 @@
+/**
+ * Rendering support for the Engine. Decides what gets submitted to the
+ * <code>ModelBatch</code> and how.
+ */
+package engine.graphics;
@@ -20,25 +20,43 @@ package engine.physics;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.GL20;
 import java.util.HashMap;
-import java.util.HashSet;
 
 import engine.Renderable;
+import engine.graphics.CascadedShadowLight;
+import engine.graphics.FrustumCuller;
+import engine.graphics.LodSelector;
+import engine.utils.Profiler;
 
+import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.g3d.Environment;
 import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.math.Frustum;
 import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.DebugDrawer;
+import com.badlogic.gdx.physics.bullet.collision.AllHitsRayResultCallback;
+import com.badlogic.gdx.physics.bullet.collision.ClosestConvexResultCallback;
+import com.badlogic.gdx.physics.bullet.collision.ClosestRayResultCallback;
 import com.badlogic.gdx.physics.bullet.collision.btBroadphaseInterface;
 import com.badlogic.gdx.physics.bullet.collision.btCollisionConfiguration;
 import com.badlogic.gdx.physics.bullet.collision.btCollisionDispatcher;
+import com.badlogic.gdx.physics.bullet.collision.btCollisionObject;
+import com.badlogic.gdx.physics.bullet.collision.btCollisionObjectConstArray;
+import com.badlogic.gdx.physics.bullet.collision.btConvexShape;
 import com.badlogic.gdx.physics.bullet.collision.btDbvtBroadphase;
 import com.badlogic.gdx.physics.bullet.collision.btDefaultCollisionConfiguration;
+import com.badlogic.gdx.physics.bullet.collision.btVector3Array;
 import com.badlogic.gdx.physics.bullet.dynamics.btConstraintSolver;
 import com.badlogic.gdx.physics.bullet.dynamics.btDiscreteDynamicsWorld;
 import com.badlogic.gdx.physics.bullet.dynamics.btDynamicsWorld;
 import com.badlogic.gdx.physics.bullet.dynamics.btSequentialImpulseConstraintSolver;
 import com.badlogic.gdx.physics.bullet.linearmath.btIDebugDraw;
+import com.badlogic.gdx.physics.bullet.linearmath.btScalarArray;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
 
 /**
  * Bullet physics world that holds all bullet entities and constructors.
@@ -47,17 +65,139 @@ import com.badlogic.gdx.utils.Disposable;
  */
 public class BulletWorld implements Disposable {
 
+    /**
+     * Collision filter groups, the same bits as bullet's. Bodies added without
+     * a group are in <code>GROUP_DEFAULT</code>, or <code>GROUP_STATIC</code>
+     * if they don't move.
+     */
+    public static final int GROUP_DEFAULT = 1;
+    public static final int GROUP_STATIC = 2;
+    public static final int GROUP_KINEMATIC = 4;
+    public static final int GROUP_DEBRIS = 8;
+    public static final int GROUP_SENSOR = 16;
+    public static final int GROUP_CHARACTER = 32;
+    public static final int GROUP_ALL = -1;
+
+    /**
+     * Number of added and removed entities kept for
+     * {@link #takeChanges(FloatArray)}.
+     */
+    private static final int MAX_CHANGES = 1024;
+
     public DebugDrawer debugDrawer = null;
     public boolean renderMeshes = true;
 
+    /**
+     * Profiler the debug drawing is measured with, may be null.
+     */
+    public Profiler profiler = null;
+
+    /**
+     * Picks the level of detail of the entities that pass culling in the
+     * passes with lights.
+     */
+    public final LodSelector lod = new LodSelector();
+
     public final btCollisionConfiguration collisionConfiguration;
     public final btCollisionDispatcher dispatcher;
     public final btBroadphaseInterface broadphase;
     public final btConstraintSolver solver;
     public final btDynamicsWorld dynamicsWorld;
 
-    protected final HashSet<Renderable> entities;
+    /**
+     * Every entity in the world, packed so it can be walked by index.
+     */
+    protected final EntityRegistry entities;
+    /**
+     * Renderables without bounds, these are never culled.
+     */
+    protected final Array<Renderable> unbounded;
+
+    /**
+     * Spatial index over the bounds of every entity in the world. Kept up to
+     * date from the motion states, so it reflects the last physics tick.
+     */
+    public final SpatialGrid<Entity> index;
     private final HashMap<String, EntityBlueprint> blueprints;
+    private final Array<StaticGeometry> baked;
+    private final Array<TickListener> tickListeners;
+    /**
+     * What the main camera sees, culled by {@link #selectLod} and drawn by
+     * the main pass of the same frame.
+     */
+    private final Array<Renderable> visible;
+    private Camera visibleCamera;
+    private final Array<Renderable> culled;
+    private final Vector3 center = new Vector3();
+
+    /**
+     * Length of a single simulation tick in seconds, zero to step the
+     * simulation with the frame delta time instead.
+     */
+    private float tickStep = 1f / 60f;
+    /**
+     * Maximum number of ticks to catch up on in one frame. Any time beyond
+     * that is dropped so a long frame can't stall the following ones.
+     */
+    private int maxTicksPerFrame = 5;
+    private float accumulator = 0f;
+    private float alpha = 1f;
+    private volatile int tick = 0;
+    private float droppedTime = 0f;
+
+    /**
+     * True to simulate the ticks on a worker thread while the frame is drawn.
+     */
+    private boolean pipelined = false;
+    private Worker worker;
+    /**
+     * Entities moved since the last sync.
+     */
+    private final Array<Entity> moves = new Array<Entity>(false, 64);
+    /**
+     * True if the moves were made by the worker and the index still has to be
+     * updated.
+     */
+    private boolean deferredIndex;
+    /**
+     * Entities whose render transform still changes, because they moved on
+     * the last tick or haven't settled yet.
+     */
+    private final Array<Entity> moving = new Array<Entity>(false, 64);
+    /**
+     * The last tick every entity moved on, goes back two seconds at 60 ticks
+     * per second by default.
+     */
+    public final MoveLog moveLog = new MoveLog(120);
+    /**
+     * The bounds of the entities with a model added or removed since the
+     * last {@link #takeChanges(FloatArray)}, x, y, z and radius each.
+     */
+    private final FloatArray changes = new FloatArray(false, 64);
+    private boolean changesOverflowed;
+    private int visit;
+    private int pendingTicks;
+    private float variableStep;
+    /**
+     * Length of the tick being simulated, the velocities in the component
+     * store are measured over it.
+     */
+    private float lastStep;
+
+    /**
+     * The callbacks of the queries, created on first use and reused after.
+     */
+    private ClosestRayResultCallback closestRay;
+    private AllHitsRayResultCallback allHits;
+    private btCollisionObjectConstArray allHitsObjects;
+    private btScalarArray allHitsFractions;
+    private btVector3Array allHitsPoints, allHitsNormals;
+    private ClosestConvexResultCallback closestSweep;
+    /**
+     * Null until the contact events are enabled.
+     */
+    private ContactEvents contacts;
+    private final Vector3 rayFrom = new Vector3(), rayTo = new Vector3();
 
     public BulletWorld() {
         this.collisionConfiguration = new btDefaultCollisionConfiguration();
@@ -68,28 +208,236 @@ public class BulletWorld implements Disposable {
                 dispatcher, broadphase, solver, collisionConfiguration
         );
 
-        this.entities = new HashSet<Renderable>();
+        this.entities = new EntityRegistry();
         this.blueprints = new HashMap<String, EntityBlueprint>();
+        this.tickListeners = new Array<TickListener>();
+        this.visible = new Array<Renderable>();
+        this.culled = new Array<Renderable>();
+        this.unbounded = new Array<Renderable>();
+        this.index = new SpatialGrid<Entity>(4f);
+        this.baked = new Array<StaticGeometry>();
     }
 
     public BulletWorld add(final Object obj) throws IllegalArgumentException {
+        checkIdle();
         if (obj instanceof Entity) {
             Entity e = (Entity) obj;
-
-            this.entities.add(e);
+            this.register(e);
             this.dynamicsWorld.addRigidBody(e.body);
-
-            e.body.setUserValue(entities.size() - 1); // Store the index of the entity in the collision object.
+            this.track(e);
         } else if (obj instanceof Renderable) {
-            this.entities.add((Renderable) obj);
+            this.unbounded.add((Renderable) obj);
         } else {
             throw new IllegalArgumentException();
         }
         return this;
     }
 
+    /**
+     * Adds an entity in a collision filter group.
+     *
+     * @param e the entity to add
+     * @param group the <code>GROUP_</code> bits of the entity
+     * @param mask the groups the entity collides with
+     * @return this world
+     */
+    public BulletWorld add(final Entity e, final int group, final int mask) {
+        checkIdle();
+        this.register(e);
+        this.dynamicsWorld.addRigidBody(e.body, (short) group, (short) mask);
+        this.track(e);
+        return this;
+    }
+
+    private void register(final Entity e) {
+        // Store the handle of the entity in the collision object.
+        e.body.setUserValue(entities.add(e));
+        e.motionState.world = this;
+    }
+
+    private void track(final Entity e) {
+        e.getCenter(center);
+        e.proxy = index.add(e, center.x, center.y, center.z, e.getWorldRadius());
+        this.changed(e);
+    }
+
+    /**
+     * Remembers the bounds of an entity that appeared or disappeared, the
+     * move log only knows about entities that are still in the world.
+     */
+    private void changed(final Entity e) {
+        if (e.getModelInstance() == null || changesOverflowed) {
+            return;
+        }
+        if (changes.size >= MAX_CHANGES * 4) {
+            // nobody is taking them, whoever does sees everything as changed
+            this.changes.clear();
+            this.changesOverflowed = true;
+            return;
+        }
+        e.getCenter(center);
+        this.changes.add(center.x);
+        this.changes.add(center.y);
+        this.changes.add(center.z);
+        this.changes.add(e.getWorldRadius());
+    }
+
+    /**
+     * Takes the bounds of the entities with a model that were added or
+     * removed since the last call, so cached views of the world like the
+     * shadow cascades can be invalidated where they appeared or disappeared.
+     *
+     * @param out gets x, y, z and radius of every change added
+     * @return false if there were too many changes to keep track of, the
+     * caller should then treat everything as changed
+     */
+    public boolean takeChanges(final FloatArray out) {
+        final boolean complete = !changesOverflowed;
+        out.addAll(changes);
+        this.changes.clear();
+        this.changesOverflowed = false;
+        return complete;
+    }
+
+    /**
+     * Removes an entity from the world, its rigid body is taken out of the
+     * dynamics world as well. The entity is not disposed.
+     *
+     * @param e the entity to remove
+     * @return false if the entity wasn't in this world
+     */
+    public boolean remove(final Entity e) {
+        checkIdle();
+        if (entities.get(e.getHandle()) != e) {
+            return false;
+        }
+        this.dynamicsWorld.removeRigidBody(e.body);
+        // while its transform is still the one it was drawn with
+        this.changed(e);
+        if (e.proxy >= 0) {
+            this.index.remove(e.proxy);
+            e.proxy = -1;
+        }
+        e.motionState.world = null;
+        if (contacts != null) {
+            this.contacts.removed(e.getHandle());
+        }
+        this.entities.remove(e.getHandle());
+        e.body.setUserValue(EntityRegistry.NULL);
+        return true;
+    }
+
+    /**
+     * @param handle the handle of the entity to remove
+     * @return the entity removed, null if the handle is stale
+     */
+    public Entity remove(final int handle) {
+        final Entity e = entities.get(handle);
+        if (e != null) {
+            remove(e);
+        }
+        return e;
+    }
+
+    /**
+     * @param obj a renderable that was added without being an entity
+     * @return false if it wasn't in this world
+     */
+    public boolean remove(final Renderable obj) {
+        if (obj instanceof Entity) {
+            return remove((Entity) obj);
+        }
+        return this.unbounded.removeValue(obj, true);
+    }
+
+    /**
+     * Finds an entity from the user value of its collision object.
+     *
+     * @param handle the handle of the entity
+     * @return the entity, null if it has been removed
+     */
+    public Entity getEntity(final int handle) {
+        return this.entities.get(handle);
+    }
+
+    /**
+     * @return the position, rotation, velocity, bounds and flags of every
+     * entity in flat arrays, by the index of {@link #getEntityAt(int)}
+     */
+    public ComponentStore getComponents() {
+        return this.entities.getComponents();
+    }
+
+    /**
+     * @return the number of entities in the world
+     */
+    public int getEntityCount() {
+        return this.entities.size();
+    }
+
+    /**
+     * @param index the dense index, in the range [0, getEntityCount())
+     * @return the entity at that index
+     */
+    public Entity getEntityAt(final int index) {
+        return this.entities.at(index);
+    }
+
+    /**
+     * Merges every static entity in the world into a single entity, see
+     * {@link StaticGeometry}. The pieces are removed from the world but can
+     * still be found through the returned geometry. Entities with levels of
+     * detail aren't merged, so they keep switching levels.
+     *
+     * @return the baked geometry, null if there was nothing to merge
+     */
+    public StaticGeometry bakeStatic() {
+        final Array<Entity> pieces = new Array<Entity>();
+        for (int i = 0, n = entities.size(); i < n; i++) {
+            final Entity e = entities.at(i);
+            if (e.body.isStaticObject() && e.getModelInstance() != null && e.getLodChain() == null
+                    && !isBaked(e)) {
+                pieces.add(e);
+            }
+        }
+        if (pieces.size < 2) {
+            return null;
+        }
+
+        for (Entity piece : pieces) {
+            this.remove(piece);
+        }
+        final StaticGeometry geometry = new StaticGeometry(pieces);
+        this.add(geometry.entity);
+        this.baked.add(geometry);
+
+        Gdx.app.log("BulletWorld", String.format("Baked %d static entities: draw calls %d -> %d, broadphase proxies %d -> %d",
+                pieces.size,
+                geometry.drawCallsBefore, geometry.drawCallsAfter,
+                geometry.proxiesBefore, geometry.proxiesAfter));
+        return geometry;
+    }
+
+    private boolean isBaked(final Entity e) {
+        for (int i = 0; i < baked.size; i++) {
+            if (baked.get(i).entity == e) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Callback function used to update the state of the world every frame.
+     * With a fixed tick rate the frame time is accumulated and the simulation
+     * is stepped a whole number of ticks, the render transforms are then
+     * interpolated between the last two ticks.
+     * <p>
+     * When pipelined the ticks aren't simulated here, this waits for the ticks
+     * of the last frame to finish and brings the render transforms and the
+     * index up to date. The ticks of this frame are simulated on the worker
+     * after {@link #startTicks()}.
+     * </p>
      *
      * @param dt Delta Time is the time it takes for the computer to go through
      * all the processing/rendering for a single frame. It is dynamically
@@ -97,41 +445,732 @@ public class BulletWorld implements Disposable {
      * last frame required.
      */
     public void update(float dt) {
-        this.dynamicsWorld.stepSimulation(dt);
+        // wait for the ticks started last frame, from here on the world is
+        // only touched by this thread until startTicks() is called
+        this.finishTicks();
+        // the entities moved, the camera probably too
+        this.visibleCamera = null;
+
+        if (tickStep <= 0f) {
+            this.alpha = 1f;
+            if (isPipelined()) {
+                this.pendingTicks = 1;
+                this.variableStep = dt;
+            } else {
+                this.step(dt, 1);
+            }
+        } else {
+            this.accumulator += dt;
+
+            final float budget = tickStep * maxTicksPerFrame;
+            if (accumulator > budget) {
+                this.droppedTime += accumulator - budget;
+                this.accumulator = budget;
+            }
+
+            this.pendingTicks = (int) (accumulator / tickStep);
+            this.accumulator -= pendingTicks * tickStep;
+            this.alpha = accumulator / tickStep;
+
+            if (!isPipelined()) {
+                for (; pendingTicks > 0; pendingTicks--) {
+                    this.step(tickStep, 0);
+                }
+            }
+        }
+        // When pipelined the ticks of this frame are simulated while it is
+        // drawn, so what is drawn lags one frame behind
+        this.sync();
+        this.interpolate(alpha);
     }
 
-    public void render(ModelBatch batch, Environment lights, HashSet<Renderable> entities) {
+    /**
+     * Starts simulating the ticks of this frame on the worker thread, when
+     * running pipelined. Until the next call to {@link #update(float)} the
+     * world, its bodies and its entities may not be changed, only the render
+     * transforms and the index may be read.
+     * <p>
+     * Does nothing when not pipelined, the ticks were already simulated by
+     * <code>update</code>.
+     * </p>
+     */
+    public void startTicks() {
+        if (pendingTicks == 0 || !isPipelined()) {
+            return;
+        }
+        if (worker == null) {
+            this.worker = new Worker();
+        }
+        this.deferredIndex = true;
+        this.worker.start(pendingTicks, tickStep <= 0f ? variableStep : tickStep, tickStep <= 0f ? 1 : 0);
+        this.pendingTicks = 0;
+    }
+
+    /**
+     * Waits until the worker has simulated the ticks started by
+     * {@link #startTicks()}, after that the world may be changed again.
+     * Called by <code>update</code>, so game code rarely needs it.
+     */
+    public void finishTicks() {
+        if (worker != null) {
+            this.worker.join();
+        }
+    }
+
+    /**
+     * Takes in the entities moved since the last sync: they start moving on
+     * screen, go in the move log and, if the worker moved them, get their
+     * place in the index updated.
+     */
+    private void sync() {
+        final int mark = moveLog.mark();
+        for (int i = 0; i < moves.size; i++) {
+            final Entity e = moves.get(i);
+            e.queued = false;
+            if (e.handle == EntityRegistry.NULL || e.motionState == null) {
+                continue; // removed since
+            }
+            if (deferredIndex && e.proxy >= 0) {
+                e.getCenter(center);
+                this.index.update(e.proxy, center.x, center.y, center.z);
+            }
+            if (!e.moving) {
+                e.moving = true;
+                this.moving.add(e);
+            }
+            this.moveLog.add(e.handle, e.motionState.stamp);
+        }
+        this.moves.clear();
+        this.deferredIndex = false;
+        this.moveLog.sort(mark);
+        this.moveLog.trim(tick);
+    }
+
+    /**
+     * Finds the entities that moved after the given tick, each one is added
+     * once. Entities that were removed since aren't included.
+     *
+     * @param tick the tick to look back to, usually the tick the caller last
+     * looked at
+     * @param out the array to add the entities to
+     * @return false if the move log doesn't go back that far, the caller
+     * should then treat every entity as moved
+     * @see #moveLog
+     */
+    public boolean movedSince(final int tick, final Array<Entity> out) {
+        if (!moveLog.covers(tick)) {
+            return false;
+        }
+        this.visit++;
+        for (int i = moveLog.first(tick), n = moveLog.end(); i < n; i++) {
+            final Entity e = entities.get(moveLog.handleAt(i));
+            if (e != null && e.visit != visit) {
+                e.visit = visit;
+                out.add(e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of entities whose render transform is still
+     * changing, the per-frame cost of the world scales with this and not with
+     * the number of entities
+     */
+    public int getMovingCount() {
+        return this.moving.size;
+    }
+
+    private void checkIdle() {
+        if (worker != null && worker.busy) {
+            throw new IllegalStateException("the world is being simulated");
+        }
+    }
+
+    /**
+     * @param pipelined true to simulate the ticks on a worker thread while
+     * the frame is drawn, see {@link #startTicks()}
+     */
+    public void setPipelined(final boolean pipelined) {
+        this.finishTicks();
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * @return true if the ticks of the current frame are simulated on the
+     * worker thread, which is never the case while debug drawing
+     */
+    public boolean isPipelined() {
+        return pipelined && getDebugMode() == 0;
+    }
+
+    /**
+     * Advances the simulation by a single tick.
+     *
+     * @param step length of the tick in seconds
+     * @param maxSubSteps zero for a single step of exactly <code>step</code>
+     */
+    private void step(final float step, final int maxSubSteps) {
+        for (int i = 0; i < tickListeners.size; i++) {
+            tickListeners.get(i).tick(step);
+        }
+        this.tick++;
+        this.lastStep = step;
+        this.dynamicsWorld.stepSimulation(step, maxSubSteps);
+        if (contacts != null) {
+            this.contacts.flush();
+        }
+    }
+
+    /**
+     * Called by the motion state of an entity whenever bullet moves it.
+     *
+     * @param e the entity that moved
+     */
+    void moved(final Entity e) {
+        if (e.index != EntityRegistry.NULL) {
+            this.entities.getComponents().moved(e.index, e.motionState.current, lastStep);
+        }
+        if (!e.queued) {
+            e.queued = true;
+            this.moves.add(e);
+        }
+        // the index belongs to the render thread while the worker runs, it is
+        // updated at the next sync instead
+        if ((worker == null || !worker.busy) && e.proxy >= 0) {
+            e.getCenter(center);
+            this.index.update(e.proxy, center.x, center.y, center.z);
+        }
+    }
+
+    /**
+     * Blends the render transform of the moving entities between the last
+     * two physics states, read from the component store. Bullet stops moving
+     * bodies that fall asleep, those get their final transform once and then
+     * drop out, so sleeping and static entities cost nothing here.
+     *
+     * @param alpha blend factor between the previous and current tick
+     */
+    protected void interpolate(final float alpha) {
+        final ComponentStore components = entities.getComponents();
+        for (int i = moving.size - 1; i >= 0; i--) {
+            final Entity e = moving.get(i);
+            if (e.handle != EntityRegistry.NULL && e.motionState != null) {
+                // didn't move during the last tick, both states are the same
+                final boolean moved = e.motionState.stamp == tick;
+                components.interpolate(e.index, moved ? alpha : 1f, e.transform);
+                if (moved) {
+                    continue; // still moving
+                }
+                components.settled(e.index);
+            }
+            e.moving = false;
+            this.moving.removeIndex(i);
+        }
+    }
+
+    /**
+     * @param rate the number of simulation ticks per second, zero to step the
+     * simulation once per frame with the frame delta time
+     */
+    public void setTickRate(final float rate) {
+        this.tickStep = rate <= 0f ? 0f : 1f / rate;
+        this.accumulator = 0f;
+    }
+
+    public float getTickRate() {
+        return tickStep <= 0f ? 0f : 1f / tickStep;
+    }
+
+    /**
+     * @return length of a single simulation tick in seconds, zero when running
+     * with a variable time step
+     */
+    public float getTickStep() {
+        return this.tickStep;
+    }
+
+    /**
+     * @param maxTicks the maximum number of ticks to simulate in one frame
+     */
+    public void setMaxTicksPerFrame(final int maxTicks) {
+        if (maxTicks < 1) {
+            throw new IllegalArgumentException("maxTicks < 1");
+        }
+        this.maxTicksPerFrame = maxTicks;
+    }
+
+    public int getMaxTicksPerFrame() {
+        return this.maxTicksPerFrame;
+    }
+
+    /**
+     * @return the number of ticks simulated so far
+     */
+    public int getTick() {
+        return this.tick;
+    }
+
+    /**
+     * @return how far the current frame is between the previous and the
+     * current tick, in the range [0, 1]
+     */
+    public float getAlpha() {
+        return this.alpha;
+    }
+
+    /**
+     * @param dt the delta time about to be passed to {@link #update(float)}
+     * @return the time in seconds from the last tick simulated to the end of
+     * that update, the ticks of the frame fall in this span
+     */
+    public float getTimeToSimulate(final float dt) {
+        if (tickStep <= 0f) {
+            return dt;
+        }
+        return Math.min(accumulator + dt, tickStep * maxTicksPerFrame);
+    }
+
+    /**
+     * @return total simulation time in seconds dropped because a frame went
+     * over the catch-up budget
+     */
+    public float getDroppedTime() {
+        return this.droppedTime;
+    }
+
+    public void addTickListener(final TickListener listener) {
+        this.tickListeners.add(listener);
+    }
+
+    public void removeTickListener(final TickListener listener) {
+        this.tickListeners.removeValue(listener, true);
+    }
+
+    public void render(ModelBatch batch, Environment lights, Array<Renderable> entities) {
         if (renderMeshes) {
-            for (Renderable obj : entities) {
-                obj.render(batch, lights);
+            for (int i = 0; i < entities.size; i++) {
+                entities.get(i).render(batch, lights);
             }
         }
+        this.debugDraw(batch);
+    }
+
+    /**
+     * Culls the entities against the main camera and picks the level of
+     * detail of the visible ones from their distance to it, so the cost
+     * follows what is on screen and not the size of the world. Called once
+     * per frame before the shadows are drawn, so they are drawn at the same
+     * levels as the entities. Entities out of view keep the level they had
+     * when they were last seen.
+     * <p>
+     * Until the next update the passes drawn with the same camera reuse the
+     * visible entities instead of culling again.
+     * </p>
+     *
+     * @param camera the main camera
+     * @param culler the culler to test the entities with
+     * @param changed gets the entities whose level changed, their shadows
+     * have to be drawn again
+     */
+    public void selectLod(final Camera camera, final FrustumCuller culler, final Array<Entity> changed) {
+        culler.cull(camera.frustum, index, unbounded, visible);
+        this.visibleCamera = camera;
+        this.lod.begin(camera);
+        for (int i = 0; i < visible.size; i++) {
+            final Renderable obj = visible.get(i);
+            if (obj instanceof Entity && lod.select((Entity) obj)) {
+                changed.add((Entity) obj);
+            }
+        }
+    }
+
+    /**
+     * Renders only the entities whose bounds intersect the frustum of the
+     * camera the batch was started with.
+     *
+     * @param batch the batch to render with
+     * @param lights the environment, null for a depth pass
+     * @param culler the culler to test the entities with
+     */
+    public void render(ModelBatch batch, Environment lights, FrustumCuller culler) {
+        final Array<Renderable> visible = cull(batch.getCamera(), culler);
+        if (lights != null) {
+            this.lod.count(visible);
+        }
+        render(batch, lights, visible);
+    }
+
+    /**
+     * Renders only the entities whose bounds intersect the frustum of the
+     * camera, every entity with the environment of the shadow cascade that
+     * covers it.
+     *
+     * @param batch the batch to render with
+     * @param culler the culler to test the entities with
+     * @param shadows the light that picks the environments
+     */
+    public void render(ModelBatch batch, FrustumCuller culler, CascadedShadowLight shadows) {
+        final Array<Renderable> visible = cull(batch.getCamera(), culler);
+        this.lod.count(visible);
+        if (renderMeshes) {
+            for (int i = 0; i < visible.size; i++) {
+                final Renderable obj = visible.get(i);
+                obj.render(batch, shadows.getEnvironment(obj));
+            }
+        }
+        this.debugDraw(batch);
+    }
+
+    /**
+     * @return the entities culled by <code>selectLod</code> if it was called
+     * with this camera since the last update, else the entities that
+     * intersect the frustum of the camera
+     */
+    private Array<Renderable> cull(final Camera camera, final FrustumCuller culler) {
+        if (camera == visibleCamera) {
+            return this.visible;
+        }
+        return culler.cull(camera.frustum, index, unbounded, culled);
+    }
+
+    /**
+     * Finds the renderables that intersect a frustum without rendering them.
+     *
+     * @param frustum the frustum to test against
+     * @param culler the culler to test the entities with
+     * @param out the array to store the visible renderables in, it is cleared
+     * first
+     * @return <code>out</code>
+     */
+    public Array<Renderable> cull(Frustum frustum, FrustumCuller culler, Array<Renderable> out) {
+        return culler.cull(frustum, index, unbounded, out);
+    }
+
+    private void debugDraw(ModelBatch batch) {
         if (debugDrawer != null && debugDrawer.getDebugMode() > 0) {
+            if (profiler != null) {
+                this.profiler.begin(Profiler.DEBUG_DRAW);
+            }
             batch.flush();
             this.debugDrawer.begin(batch.getCamera());
             this.dynamicsWorld.debugDrawWorld();
             this.debugDrawer.end();
+            if (profiler != null) {
+                this.profiler.end(Profiler.DEBUG_DRAW);
+            }
         }
     }
 
+    /**
+     * @return the number of contact manifolds, one for every pair of bodies
+     * whose bounds overlap
+     */
+    public int getManifoldCount() {
+        return this.dispatcher.getNumManifolds();
+    }
+
+    /**
+     * Starts collecting collision events, the listeners are called after
+     * every tick. Only the bodies that opted in with
+     * {@link Entity#setContactFlags(int, int)} are reported.
+     *
+     * @return the events of this world
+     */
+    public ContactEvents enableContactEvents() {
+        checkIdle();
+        if (contacts == null) {
+            this.contacts = new ContactEvents();
+        }
+        return this.contacts;
+    }
+
+    /**
+     * @return the collision events, null if they aren't enabled
+     */
+    public ContactEvents getContactEvents() {
+        return this.contacts;
+    }
+
+    /**
+     * Finds the closest thing a ray hits. Queries may be run while the world
+     * isn't being simulated, or from the <code>PHYSICS</code> phase; they
+     * share their callbacks, so never from two threads at once.
+     *
+     * @param from the start of the ray
+     * @param to the end of the ray
+     * @param mask the <code>GROUP_</code> bits of what the ray hits
+     * @param out the hit, reset on a miss
+     * @return true if the ray hit anything
+     */
+    public boolean rayTest(final Vector3 from, final Vector3 to, final int mask, final RayHit out) {
+        checkQuery();
+        final ClosestRayResultCallback callback = closestRay(mask);
+        callback.setRayFromWorld(from);
+        callback.setRayToWorld(to);
+        this.dynamicsWorld.rayTest(from, to, callback);
+        out.reset();
+        if (!callback.hasHit()) {
+            return false;
+        }
+        out.hit = true;
+        out.fraction = callback.getClosestHitFraction();
+        out.handle = handleOf(callback.getCollisionObject());
+        callback.getHitPointWorld(out.point);
+        callback.getHitNormalWorld(out.normal);
+        return true;
+    }
+
+    /**
+     * Casts every ray of a batch with the same callback.
+     * <p>
+     * The rays are cast one after the other on the calling thread: bullet's
+     * broadphase keeps a single stack for walking its tree, so rays can't be
+     * cast against the same world from several threads at once.
+     * </p>
+     *
+     * @param batch the rays, their hits are written back into it
+     * @return the number of rays that hit anything
+     */
+    public int rayTest(final RayBatch batch) {
+        checkQuery();
+        final ClosestRayResultCallback callback = closestRay(batch.mask);
+        final float[] rays = batch.rays, fractions = batch.fractions;
+        final float[] points = batch.points, normals = batch.normals;
+        final int[] handles = batch.handles;
+        final Vector3 from = rayFrom, to = rayTo;
+        int hits = 0;
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            final int r = i * 6, p = i * 3;
+            from.set(rays[r], rays[r + 1], rays[r + 2]);
+            to.set(rays[r + 3], rays[r + 4], rays[r + 5]);
+            callback.setCollisionObject(null);
+            callback.setClosestHitFraction(1f);
+            callback.setRayFromWorld(from);
+            callback.setRayToWorld(to);
+            this.dynamicsWorld.rayTest(from, to, callback);
+            if (!callback.hasHit()) {
+                handles[i] = EntityRegistry.NULL;
+                fractions[i] = 1f;
+                continue;
+            }
+            hits++;
+            handles[i] = handleOf(callback.getCollisionObject());
+            final float fraction = fractions[i] = callback.getClosestHitFraction();
+            // from the fraction, saves a native call
+            points[p] = from.x + (to.x - from.x) * fraction;
+            points[p + 1] = from.y + (to.y - from.y) * fraction;
+            points[p + 2] = from.z + (to.z - from.z) * fraction;
+            callback.getHitNormalWorld(from);
+            normals[p] = from.x;
+            normals[p + 1] = from.y;
+            normals[p + 2] = from.z;
+        }
+        batch.setHitCount(hits);
+        return hits;
+    }
+
+    /**
+     * Finds everything a ray hits, nearest first. The normals aren't
+     * included, bullet only hands those out one new object at a time.
+     *
+     * @param from the start of the ray
+     * @param to the end of the ray
+     * @param mask the <code>GROUP_</code> bits of what the ray hits
+     * @param handles cleared, then the handles of the entities hit, -1 for
+     * anything that isn't an entity
+     * @param fractions cleared, then how far along the ray every hit is, the
+     * point hit is <code>from + (to - from) * fraction</code>
+     * @return the number of hits
+     */
+    public int rayTestAll(final Vector3 from, final Vector3 to, final int mask,
+            final IntArray handles, final FloatArray fractions) {
+        checkQuery();
+        if (allHits == null) {
+            this.allHits = new AllHitsRayResultCallback(from, to);
+            // the arrays live in the callback, their wrappers are kept
+            this.allHitsObjects = allHits.getCollisionObjects();
+            this.allHitsFractions = allHits.getHitFractions();
+            this.allHitsPoints = allHits.getHitPointWorld();
+            this.allHitsNormals = allHits.getHitNormalWorld();
+        }
+        final AllHitsRayResultCallback callback = allHits;
+        callback.setCollisionObject(null);
+        callback.setClosestHitFraction(1f);
+        callback.setCollisionFilterGroup((short) GROUP_DEFAULT);
+        callback.setCollisionFilterMask((short) mask);
+        callback.setRayFromWorld(from);
+        callback.setRayToWorld(to);
+        this.allHitsObjects.clear();
+        this.allHitsFractions.clear();
+        this.allHitsPoints.clear();
+        this.allHitsNormals.clear();
+        this.dynamicsWorld.rayTest(from, to, callback);
+
+        handles.clear();
+        fractions.clear();
+        for (int i = 0, n = allHitsObjects.size(); i < n; i++) {
+            final int handle = handleOf(allHitsObjects.atConst(i));
+            final float fraction = allHitsFractions.atConst(i);
+            // bullet reports them in no particular order
+            int j = fractions.size;
+            fractions.add(fraction);
+            handles.add(handle);
+            while (j > 0 && fractions.get(j - 1) > fraction) {
+                fractions.set(j, fractions.get(j - 1));
+                handles.set(j, handles.get(j - 1));
+                j--;
+            }
+            fractions.set(j, fraction);
+            handles.set(j, handle);
+        }
+        return handles.size;
+    }
+
+    /**
+     * Finds the first thing a convex shape hits when it is swept from one
+     * transform to another, like a character stepping or a thick bullet.
+     *
+     * @param shape the shape to sweep, it doesn't have to be in the world
+     * @param from the transform to start at, without scaling
+     * @param to the transform to end at, without scaling
+     * @param mask the <code>GROUP_</code> bits of what the shape hits
+     * @param out the hit, reset on a miss
+     * @return true if the shape hit anything
+     */
+    public boolean sweepTest(final btConvexShape shape, final Matrix4 from, final Matrix4 to, final int mask,
+            final RayHit out) {
+        checkQuery();
+        if (closestSweep == null) {
+            this.closestSweep = new ClosestConvexResultCallback(Vector3.Zero, Vector3.Zero);
+        }
+        final ClosestConvexResultCallback callback = closestSweep;
+        callback.setHitCollisionObject(null);
+        callback.setClosestHitFraction(1f);
+        callback.setCollisionFilterGroup((short) GROUP_DEFAULT);
+        callback.setCollisionFilterMask((short) mask);
+        callback.setConvexFromWorld(from.getTranslation(rayFrom));
+        callback.setConvexToWorld(to.getTranslation(rayTo));
+        this.dynamicsWorld.convexSweepTest(shape, from, to, callback, 0f);
+        out.reset();
+        if (!callback.hasHit()) {
+            return false;
+        }
+        out.hit = true;
+        out.fraction = callback.getClosestHitFraction();
+        out.handle = handleOf(callback.getHitCollisionObject());
+        callback.getHitPointWorld(out.point);
+        callback.getHitNormalWorld(out.normal);
+        return true;
+    }
+
+    /**
+     * @return the closest ray callback, reset for a new query
+     */
+    private ClosestRayResultCallback closestRay(final int mask) {
+        if (closestRay == null) {
+            this.closestRay = new ClosestRayResultCallback(Vector3.Zero, Vector3.Z);
+        }
+        final ClosestRayResultCallback callback = closestRay;
+        callback.setCollisionObject(null);
+        callback.setClosestHitFraction(1f);
+        callback.setCollisionFilterGroup((short) GROUP_DEFAULT);
+        callback.setCollisionFilterMask((short) mask);
+        return callback;
+    }
+
+    /**
+     * @return the handle of the entity of a collision object, -1 if it
+     * doesn't belong to one that is still in this world
+     */
+    private int handleOf(final btCollisionObject obj) {
+        if (obj == null) {
+            return EntityRegistry.NULL;
+        }
+        final int handle = obj.getUserValue();
+        return entities.contains(handle) ? handle : EntityRegistry.NULL;
+    }
+
+    /**
+     * Queries may run on the physics worker from the <code>PHYSICS</code>
+     * phase, but not on any other thread while it simulates.
+     */
+    private void checkQuery() {
+        if (isSimulating()) {
+            throw new IllegalStateException("the world is being simulated");
+        }
+    }
+
+    /**
+     * @return true while the worker simulates the ticks of the frame and the
+     * calling thread isn't the worker, the physics state and the systems of
+     * the <code>PHYSICS</code> phase may not be touched then
+     */
+    public boolean isSimulating() {
+        return worker != null && worker.busy && Thread.currentThread() != worker.thread;
+    }
+
+    /**
+     * Walks all contact manifolds, so only call this when the number is
+     * actually needed.
+     *
+     * @return the number of contact points between all bodies
+     */
+    public int getContactCount() {
+        int contacts = 0;
+        for (int i = 0, n = dispatcher.getNumManifolds(); i < n; i++) {
+            contacts += dispatcher.getManifoldByIndexInternal(i).getNumContacts();
+        }
+        return contacts;
+    }
+
     @Override
     public void dispose() {
-        for (Object obj : entities) {
-            if (obj instanceof Entity) {
-                Entity e = (Entity) obj;
-                this.dynamicsWorld.removeRigidBody(e.getRigidBody());  // 1
-                e.dispose();
-            } else if (obj instanceof Disposable) {
+        if (worker != null) {
+            this.worker.dispose();
+            this.worker = null;
+        }
+        this.sync();
+        for (int i = entities.size() - 1; i >= 0; i--) {
+            final Entity e = entities.at(i);
+            this.dynamicsWorld.removeRigidBody(e.getRigidBody());  // 1
+            e.dispose();
+        }
+        this.entities.clear();
+        for (Renderable obj : unbounded) {
+            if (obj instanceof Disposable) {
                 ((Disposable) obj).dispose();
             }
         }
-        this.entities.clear();
+        this.unbounded.clear();
+
+        for (StaticGeometry geometry : baked) {
+            geometry.dispose();
+        }
+        this.baked.clear();
 
         for (EntityBlueprint constructor : blueprints.values()) {
             constructor.dispose();
         }
         this.blueprints.clear();
 
+        if (closestRay != null) {
+            this.closestRay.dispose();
+            this.closestRay = null;
+        }
+        if (allHits != null) {
+            this.allHits.dispose();
+            this.allHits = null;
+        }
+        if (closestSweep != null) {
+            this.closestSweep.dispose();
+            this.closestSweep = null;
+        }
+        if (contacts != null) {
+            this.contacts.dispose();
+            this.contacts = null;
+        }
+
         this.dynamicsWorld.dispose();
         this.solver.dispose();
         this.broadphase.dispose();
@@ -140,6 +1179,7 @@ public class BulletWorld implements Disposable {
     }
 
     public void setDebugMode(final int mode) {
+        this.finishTicks();
         if (mode == btIDebugDraw.DebugDrawModes.DBG_NoDebug && debugDrawer == null) {
             return;
         }
@@ -174,12 +1214,169 @@ public class BulletWorld implements Disposable {
         return entity;
     }
 
+    /**
+     * Adds an entity recycled from the pool of a blueprint, use
+     * {@link #free(Entity)} to remove it again.
+     */
+    public Entity obtain(final String type, float xPos, float yPos, float zPos) {
+        final Entity entity = blueprints.get(type).obtain(xPos, yPos, zPos);
+        this.add(entity);
+        return entity;
+    }
+
+    /**
+     * Adds an entity recycled from the pool of a blueprint, use
+     * {@link #free(Entity)} to remove it again.
+     */
+    public Entity obtain(final String type, final Matrix4 transform) {
+        final Entity entity = blueprints.get(type).obtain(transform);
+        this.add(entity);
+        return entity;
+    }
+
+    /**
+     * Removes an entity and returns it to the pool it was obtained from, an
+     * entity that didn't come from a pool is disposed instead.
+     *
+     * @param e the entity to free
+     */
+    public void free(final Entity e) {
+        if (e.pool != null) {
+            e.pool.free(e);
+        } else {
+            remove(e);
+            e.dispose();
+        }
+    }
+
     public void render(final ModelBatch batch, final Environment lights) {
-        render(batch, lights, entities);
+        if (renderMeshes) {
+            for (int i = 0, n = entities.size(); i < n; i++) {
+                this.entities.at(i).render(batch, lights);
+            }
+        }
+        render(batch, lights, unbounded);
     }
 
     public void render(final ModelBatch batch, final Environment lights,
             final Entity entity) {
         batch.render(entity.getModelInstance(), lights);
     }
+
+    /**
+     * Simulates ticks on its own thread. The world hands it a number of ticks
+     * and waits for them to be done before touching the world again.
+     */
+    private final class Worker implements Runnable {
+
+        private final Thread thread;
+        private final Object lock = new Object();
+        private int ticks;
+        private float step;
+        private int maxSubSteps;
+        private Throwable error;
+        private boolean stopped;
+        /**
+         * True from <code>start</code> until the ticks are done, only ever
+         * read without the lock by the world while it isn't simulating or by
+         * the worker itself.
+         */
+        volatile boolean busy;
+
+        Worker() {
+            this.thread = new Thread(this, "Physics");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void start(final int ticks, final float step, final int maxSubSteps) {
+            synchronized (lock) {
+                this.ticks = ticks;
+                this.step = step;
+                this.maxSubSteps = maxSubSteps;
+                this.busy = true;
+                this.lock.notifyAll();
+            }
+        }
+
+        void join() {
+            synchronized (lock) {
+                while (busy) {
+                    try {
+                        this.lock.wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new GdxRuntimeException(ex);
+                    }
+                }
+                if (error != null) {
+                    final Throwable t = error;
+                    this.error = null;
+                    throw new GdxRuntimeException("Error while simulating", t);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final int n;
+                synchronized (lock) {
+                    while (!busy && !stopped) {
+                        try {
+                            this.lock.wait();
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
+                    }
+                    if (stopped) {
+                        return;
+                    }
+                    n = ticks;
+                }
+                try {
+                    for (int i = 0; i < n; i++) {
+                        BulletWorld.this.step(step, maxSubSteps);
+                    }
+                } catch (Throwable t) {
+                    this.error = t;
+                }
+                synchronized (lock) {
+                    this.busy = false;
+                    this.lock.notifyAll();
+                }
+            }
+        }
+
+        void dispose() {
+            try {
+                this.join();
+            } finally {
+                synchronized (lock) {
+                    this.stopped = true;
+                    this.lock.notifyAll();
+                }
+            }
+            try {
+                this.thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Notified before every simulation tick. Forces applied to bodies from
+     * here act for exactly one tick. When the world is pipelined this is
+     * called on the worker thread, so only the bodies may be touched from
+     * here: entities are added and removed between <code>update</code> and
+     * <code>startTicks</code>.
+     */
+    public interface TickListener {
+
+        /**
+         * @param step length of the tick about to be simulated in seconds
+         */
+        public void tick(float step);
+    }
 }
@@ -0,0 +1,105 @@
+package engine.physics;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * The contents of a chunk as plain data, filled in by a {@link ChunkSource}
+ * on the loader thread and turned into entities on the main thread. Every
+ * chunk keeps its data object, so the arrays are reused when the chunk is.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ChunkData {
+
+    /**
+     * Work that has to be done on the main thread before the entities are
+     * added, creating meshes or textures for example.
+     */
+    public interface Upload {
+
+        /**
+         * @return a resource that is disposed when the chunk unloads, may be
+         * null
+         */
+        public Disposable upload();
+    }
+
+    // x, y, z, rotation x, y, z, w for every spawn
+    private static final int STRIDE = 7;
+
+    final Array<String> types = new Array<String>();
+    final FloatArray spawns = new FloatArray();
+    final IntArray colours = new IntArray();
+    final Array<Upload> uploads = new Array<Upload>();
+
+    /**
+     * Adds an entity without rotation and with the default colour.
+     *
+     * @param type the name of the blueprint
+     */
+    public void add(final String type, final float x, final float y, final float z) {
+        this.add(type, x, y, z, 0f, 0f, 0f, 1f, Color.WHITE);
+    }
+
+    /**
+     * Adds an entity without rotation.
+     *
+     * @param type the name of the blueprint
+     */
+    public void add(final String type, final float x, final float y, final float z, final Color colour) {
+        this.add(type, x, y, z, 0f, 0f, 0f, 1f, colour);
+    }
+
+    /**
+     * Adds an entity.
+     *
+     * @param type the name of the blueprint
+     */
+    public void add(final String type, final float x, final float y, final float z,
+            final Quaternion rotation, final Color colour) {
+        this.add(type, x, y, z, rotation.x, rotation.y, rotation.z, rotation.w, colour);
+    }
+
+    private void add(final String type, final float x, final float y, final float z,
+            final float qx, final float qy, final float qz, final float qw, final Color colour) {
+        this.types.add(type);
+        this.spawns.add(x);
+        this.spawns.add(y);
+        this.spawns.add(z);
+        this.spawns.add(qx);
+        this.spawns.add(qy);
+        this.spawns.add(qz);
+        this.spawns.add(qw);
+        this.colours.add(Color.rgba8888(colour));
+    }
+
+    /**
+     * Adds work for the main thread, done before the entities are added.
+     */
+    public void upload(final Upload upload) {
+        this.uploads.add(upload);
+    }
+
+    /**
+     * @return the number of entities
+     */
+    public int size() {
+        return this.types.size;
+    }
+
+    float get(final int spawn, final int field) {
+        return this.spawns.get(spawn * STRIDE + field);
+    }
+
+    void clear() {
+        this.types.clear();
+        this.spawns.clear();
+        this.colours.clear();
+        this.uploads.clear();
+    }
+}
@@ -0,0 +1,21 @@
+package engine.physics;
+
+/**
+ * Provides the contents of the chunks of a streamed world.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ * @see ChunkStreamer
+ */
+public interface ChunkSource {
+
+    /**
+     * Fills in the contents of a chunk. Called on the loader thread, so it may
+     * read and parse files but must not touch the world or GL.
+     *
+     * @param x the x index of the chunk
+     * @param z the z index of the chunk
+     * @param size the width and depth of a chunk
+     * @param out the data to fill in, it is empty
+     */
+    public void load(int x, int z, float size, ChunkData out);
+}
@@ -0,0 +1,519 @@
+package engine.physics;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IdentityMap;
+import com.badlogic.gdx.utils.LongMap;
+import engine.core.GameSystem;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the chunks around an entity, usually the player, loaded. The world is
+ * divided in square chunks of <code>size</code> by <code>size</code>, chunk
+ * (x, z) is centered at (x * size, 0, z * size). Every chunk within
+ * <code>radius</code> chunks of the one the focus is in is loaded, chunks
+ * further than <code>unloadRadius</code> away are unloaded, so a focus going
+ * back and forth over a chunk border doesn't load and unload the same
+ * chunks all the time.
+ * <p>
+ * The contents of a chunk are read by a {@link ChunkSource} on a loader
+ * thread. The main thread then runs the uploads of the chunk and adds its
+ * entities to the world, obtained from the pools of their blueprints. Both
+ * are spread over frames: at most <code>uploadBudget</code> uploads,
+ * <code>spawnBudget</code> entities added and <code>removeBudget</code>
+ * entities removed per frame. The nearest chunks are loaded first.
+ * </p>
+ * <p>
+ * Dynamic entities belong to the chunk they are in, not the one they were
+ * loaded by. An entity that moves into another loaded chunk is handed to it,
+ * one that moves out of the loaded area is freed, and when a chunk unloads
+ * its dynamic entities that are in another loaded chunk are handed over
+ * instead of freed. A chunk that loads again gets its contents from the
+ * source again, changes aren't kept.
+ * </p>
+ * <p>
+ * The number of chunks, entities and pooled objects only depends on the radii
+ * and the contents of a chunk, not on the size of the world. Entities of a
+ * chunk belong to the streamer and shouldn't be freed by game code.
+ * </p>
+ * The streamer is a system of the <code>POST_PHYSICS</code> phase, or any
+ * other phase in which the world may be changed.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ChunkStreamer implements GameSystem, Disposable {
+
+    /**
+     * The width and depth of a chunk.
+     */
+    public final float size;
+    /**
+     * Chunks within this many chunks of the focus are loaded.
+     */
+    public final int radius;
+    /**
+     * Chunks further than this many chunks from the focus are unloaded.
+     */
+    public int unloadRadius;
+
+    /**
+     * Maximum number of uploads, entities added and entities removed per
+     * frame.
+     */
+    public int uploadBudget = 1, spawnBudget = 32, removeBudget = 64;
+
+    /**
+     * The entity the chunks are loaded around, nothing is loaded while it is
+     * null.
+     */
+    public Entity focus;
+
+    /**
+     * True to read the chunks on the calling thread as soon as they come in
+     * range, so the frame their entities appear in only depends on where the
+     * focus went. Needed to replay a session, see
+     * {@link engine.core.Replay}.
+     */
+    public boolean synchronous = false;
+
+    /**
+     * Number of entities added and removed during the last frame.
+     */
+    public int spawned, removed;
+    /**
+     * Number of dynamic entities handed to another chunk, and freed because
+     * they left the loaded area.
+     */
+    public int handedOff, dropped;
+
+    private final BulletWorld world;
+    private final ChunkSource source;
+    private final ExecutorService loader;
+
+    /**
+     * The chunks in range: loading, being added and loaded.
+     */
+    private final LongMap<Chunk> chunks = new LongMap<Chunk>();
+    private final ConcurrentLinkedQueue<Chunk> loaded = new ConcurrentLinkedQueue<Chunk>();
+    private final Array<Chunk> ready = new Array<Chunk>();
+    private final Array<Chunk> unloading = new Array<Chunk>();
+    private final Array<Chunk> free = new Array<Chunk>();
+    private final IdentityMap<Entity, Chunk> owners = new IdentityMap<Entity, Chunk>();
+
+    // the chunk offsets within the radius, nearest first
+    private final int[] offsets;
+    private int centerX, centerZ;
+    private boolean centered;
+    private int tick;
+
+    private final Array<Chunk> outOfRange = new Array<Chunk>();
+    private final Array<Entity> moved = new Array<Entity>();
+    private final Matrix4 transform = new Matrix4();
+    private final Color colour = new Color();
+
+    /**
+     * @param world the world to add the entities to
+     * @param source provides the contents of the chunks
+     * @param size the width and depth of a chunk
+     * @param radius the number of chunks around the focus that are loaded
+     */
+    public ChunkStreamer(final BulletWorld world, final ChunkSource source, final float size,
+            final int radius) {
+        this.world = world;
+        this.source = source;
+        this.size = size;
+        this.radius = radius;
+        this.unloadRadius = radius + 1;
+        this.offsets = offsets(radius);
+        this.loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "Chunks");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void update(final float dt) {
+        this.update();
+    }
+
+    /**
+     * Loads and unloads chunks around the focus and spends the budgets. Must
+     * be called while the world isn't being simulated.
+     */
+    public void update() {
+        this.spawned = 0;
+        this.removed = 0;
+        if (focus != null) {
+            final float[] m = focus.transform.val;
+            final int x = index(m[Matrix4.M03]), z = index(m[Matrix4.M23]);
+            if (!centered || x != centerX || z != centerZ) {
+                this.centerX = x;
+                this.centerZ = z;
+                this.centered = true;
+                this.request();
+            }
+        }
+
+        Chunk chunk;
+        while ((chunk = loaded.poll()) != null) {
+            if (chunk.cancelled) {
+                this.recycle(chunk);
+            } else if (chunk.error != null) {
+                throw new GdxRuntimeException("Error loading chunk " + chunk.x + ", " + chunk.z, chunk.error);
+            } else {
+                chunk.state = Chunk.READY;
+                this.ready.add(chunk);
+            }
+        }
+
+        this.spawn();
+        this.unload();
+        this.handOff();
+    }
+
+    /**
+     * Starts loading the chunks that came in range and unloads the ones that
+     * went out of range.
+     */
+    private void request() {
+        for (int i = 0; i < offsets.length; i += 2) {
+            final int x = centerX + offsets[i], z = centerZ + offsets[i + 1];
+            final long key = key(x, z);
+            if (!chunks.containsKey(key)) {
+                final Chunk chunk = free.size > 0 ? free.pop() : new Chunk();
+                chunk.set(x, z);
+                this.chunks.put(key, chunk);
+                if (synchronous) {
+                    chunk.run();
+                } else {
+                    this.loader.execute(chunk);
+                }
+            }
+        }
+
+        this.outOfRange.clear();
+        for (Chunk chunk : chunks.values()) {
+            if (Math.max(Math.abs(chunk.x - centerX), Math.abs(chunk.z - centerZ)) > unloadRadius) {
+                this.outOfRange.add(chunk);
+            }
+        }
+        for (int i = 0; i < outOfRange.size; i++) {
+            final Chunk chunk = outOfRange.get(i);
+            this.chunks.remove(key(chunk.x, chunk.z));
+            if (chunk.state == Chunk.LOADING) {
+                // recycled when the loader is done with it
+                chunk.cancelled = true;
+            } else {
+                if (chunk.state == Chunk.READY) {
+                    this.ready.removeValue(chunk, true);
+                }
+                chunk.state = Chunk.UNLOADING;
+                this.unloading.add(chunk);
+            }
+        }
+        this.outOfRange.clear();
+    }
+
+    /**
+     * Runs the uploads and adds the entities of the loaded chunks, within the
+     * budgets.
+     */
+    private void spawn() {
+        int uploads = uploadBudget;
+        while (ready.size > 0) {
+            final Chunk chunk = ready.first();
+            final ChunkData data = chunk.data;
+            while (chunk.uploaded < data.uploads.size && uploads > 0) {
+                final Disposable resource = data.uploads.get(chunk.uploaded++).upload();
+                if (resource != null) {
+                    chunk.resources.add(resource);
+                }
+                uploads--;
+            }
+            while (chunk.uploaded == data.uploads.size && chunk.spawned < data.size() && spawned < spawnBudget) {
+                this.spawn(chunk, chunk.spawned++);
+            }
+            if (chunk.uploaded < data.uploads.size || chunk.spawned < data.size()) {
+                return; // out of budget
+            }
+            chunk.state = Chunk.ACTIVE;
+            this.ready.removeIndex(0);
+        }
+    }
+
+    private void spawn(final Chunk chunk, final int i) {
+        final ChunkData data = chunk.data;
+        this.transform.set(data.get(i, 0), data.get(i, 1), data.get(i, 2),
+                data.get(i, 3), data.get(i, 4), data.get(i, 5), data.get(i, 6));
+        final Entity e = world.obtain(data.types.get(i), transform);
+        Color.rgba8888ToColor(colour, data.colours.get(i));
+        e.setColour(colour);
+        chunk.entities.add(e);
+        this.owners.put(e, chunk);
+        this.spawned++;
+    }
+
+    /**
+     * Removes the entities of the chunks that went out of range, within the
+     * budget.
+     */
+    private void unload() {
+        while (unloading.size > 0 && removed < removeBudget) {
+            final Chunk chunk = unloading.peek();
+            while (chunk.entities.size > 0 && removed < removeBudget) {
+                this.release(chunk.entities.pop(), chunk);
+            }
+            if (chunk.entities.size > 0) {
+                return; // out of budget
+            }
+            this.unloading.pop();
+            this.recycle(chunk);
+        }
+    }
+
+    /**
+     * Hands an entity of an unloading chunk to the chunk it is in, or frees
+     * it.
+     */
+    private void release(final Entity e, final Chunk from) {
+        this.owners.remove(e);
+        if (e.getHandle() == EntityRegistry.NULL) {
+            return; // removed by someone else
+        }
+        final Chunk to = e.body.isStaticObject() ? null : chunkAt(e);
+        if (to != null && to != from && (to.state == Chunk.READY || to.state == Chunk.ACTIVE)) {
+            to.entities.add(e);
+            this.owners.put(e, to);
+            this.handedOff++;
+        } else {
+            this.world.free(e);
+            this.removed++;
+        }
+    }
+
+    /**
+     * Moves the dynamic entities that crossed a chunk border to the chunk
+     * they are in now.
+     */
+    private void handOff() {
+        this.moved.clear();
+        if (!world.movedSince(tick, moved)) {
+            // the log doesn't go back far enough, check everything
+            this.moved.clear();
+            for (Entity e : owners.keys()) {
+                this.moved.add(e);
+            }
+        }
+        this.tick = world.getTick();
+
+        for (int i = 0; i < moved.size; i++) {
+            final Entity e = moved.get(i);
+            final Chunk owner = owners.get(e);
+            if (owner == null || owner.state == Chunk.UNLOADING) {
+                continue;
+            }
+            final int x = index(e.transform.val[Matrix4.M03]), z = index(e.transform.val[Matrix4.M23]);
+            if (x == owner.x && z == owner.z) {
+                continue;
+            }
+            final Chunk to = chunks.get(key(x, z));
+            if (to != null && (to.state == Chunk.READY || to.state == Chunk.ACTIVE)) {
+                owner.entities.removeValue(e, true);
+                to.entities.add(e);
+                this.owners.put(e, to);
+                this.handedOff++;
+            } else if (to == null) {
+                // left the loaded area
+                owner.entities.removeValue(e, true);
+                this.owners.remove(e);
+                this.world.free(e);
+                this.dropped++;
+            }
+            // else the chunk is still loading, it stays with its owner
+        }
+        this.moved.clear();
+    }
+
+    private Chunk chunkAt(final Entity e) {
+        return this.chunks.get(key(index(e.transform.val[Matrix4.M03]), index(e.transform.val[Matrix4.M23])));
+    }
+
+    private void recycle(final Chunk chunk) {
+        for (int i = 0; i < chunk.resources.size; i++) {
+            chunk.resources.get(i).dispose();
+        }
+        chunk.resources.clear();
+        chunk.data.clear();
+        chunk.entities.clear();
+        this.free.add(chunk);
+    }
+
+    /**
+     * Keeps updating until every chunk in range is loaded, blocking. Used to
+     * load the chunks around the start of a level before it is simulated.
+     */
+    public void settle() {
+        this.update();
+        while (!isSettled()) {
+            Thread.yield();
+            this.update();
+        }
+    }
+
+    /**
+     * @return the index of the chunk a coordinate is in
+     */
+    public int index(final float coordinate) {
+        return MathUtils.floor(coordinate / size + 0.5f);
+    }
+
+    /**
+     * @return the number of chunks in range, loading or loaded
+     */
+    public int getChunkCount() {
+        return this.chunks.size;
+    }
+
+    /**
+     * @return true if every chunk in range is loaded and all of its entities
+     * are in the world
+     */
+    public boolean isSettled() {
+        if (ready.size > 0 || unloading.size > 0) {
+            return false;
+        }
+        for (Chunk chunk : chunks.values()) {
+            if (chunk.state != Chunk.ACTIVE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the loader and waits for the chunk it is reading. The entities of
+     * the chunks stay in the world and are disposed with it.
+     */
+    @Override
+    public void dispose() {
+        this.loader.shutdownNow();
+        boolean terminated;
+        try {
+            terminated = loader.awaitTermination(5L, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+        for (Chunk chunk : chunks.values()) {
+            chunk.cancelled = true;
+            // a chunk the loader may still be filling is left alone
+            if (terminated || chunk.state != Chunk.LOADING) {
+                this.recycle(chunk);
+            }
+        }
+        for (int i = 0; i < unloading.size; i++) {
+            this.recycle(unloading.get(i));
+        }
+        this.chunks.clear();
+        this.ready.clear();
+        this.unloading.clear();
+        this.owners.clear();
+        this.free.clear();
+    }
+
+    private static long key(final int x, final int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the (x, z) offsets of the chunks within a radius, sorted by
+     * distance
+     */
+    private static int[] offsets(final int radius) {
+        final int side = radius * 2 + 1;
+        final Integer[] order = new Integer[side * side];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        java.util.Arrays.sort(order, new java.util.Comparator<Integer>() {
+
+            @Override
+            public int compare(final Integer a, final Integer b) {
+                return distance2(a, side, radius) - distance2(b, side, radius);
+            }
+        });
+        final int[] offsets = new int[order.length * 2];
+        for (int i = 0; i < order.length; i++) {
+            offsets[i * 2] = order[i] % side - radius;
+            offsets[i * 2 + 1] = order[i] / side - radius;
+        }
+        return offsets;
+    }
+
+    private static int distance2(final int i, final int side, final int radius) {
+        final int x = i % side - radius, z = i / side - radius;
+        return x * x + z * z;
+    }
+
+    /**
+     * A chunk, loaded on the loader thread and added on the main thread.
+     */
+    private final class Chunk implements Runnable {
+
+        static final int LOADING = 0, READY = 1, ACTIVE = 2, UNLOADING = 3;
+
+        int x, z;
+        int state;
+        /**
+         * Set when the chunk goes out of range while it is loading.
+         */
+        volatile boolean cancelled;
+        Throwable error;
+
+        final ChunkData data = new ChunkData();
+        final Array<Entity> entities = new Array<Entity>(false, 16);
+        final Array<Disposable> resources = new Array<Disposable>(false, 4);
+        int uploaded, spawned;
+
+        void set(final int x, final int z) {
+            this.x = x;
+            this.z = z;
+            this.state = LOADING;
+            this.cancelled = false;
+            this.error = null;
+            this.uploaded = 0;
+            this.spawned = 0;
+        }
+
+        /**
+         * Reads the contents, on the loader thread.
+         */
+        @Override
+        public void run() {
+            if (!cancelled) {
+                try {
+                    source.load(x, z, size, data);
+                } catch (Throwable t) {
+                    Gdx.app.error("ChunkStreamer", "Error loading chunk " + x + ", " + z, t);
+                    this.error = t;
+                }
+            }
+            loaded.add(this);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package engine.physics;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+
+/**
+ * The hot data of the entities of a world in flat arrays, one entry per
+ * entity at its dense index in the {@link EntityRegistry}. Systems that look
+ * at every entity walk these arrays front to back instead of following the
+ * pointers from each entity to its matrices, bounds and body.
+ * <p>
+ * The arrays hold the state of the last physics tick: the position and
+ * rotation of the body, its velocity over the last tick and the radius of its
+ * bounds. The position and rotation before the body last moved are kept too,
+ * the render transforms are blended between the two, see
+ * {@link #interpolate(int, float, Matrix4)}. They are written by the motion states, so like the physics state
+ * itself they may only be read while the world isn't being simulated. An
+ * entry moves when the entity it belongs to moves in the registry, the
+ * arrays are replaced when they grow: don't keep references to them across
+ * adding entities.
+ * </p>
+ *
+ * <pre>
+ * final ComponentStore c = world.getComponents();
+ * final float[] position = c.position;
+ * for (int i = 0, n = c.size(); i &lt; n; i++) {
+ *     final float y = position[i * 3 + 1];
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ComponentStore {
+
+    /**
+     * The body doesn't move.
+     */
+    public static final int STATIC = 1;
+    /**
+     * The body is moved by the game, not by the simulation.
+     */
+    public static final int KINEMATIC = 2;
+    /**
+     * The body moved on the last tick it was simulated, or hasn't settled
+     * yet. Entities without this flag have no velocity.
+     */
+    public static final int MOVING = 4;
+
+    /**
+     * x, y and z of every entity.
+     */
+    public float[] position;
+    /**
+     * The rotation of every entity as a quaternion, x, y, z and w.
+     */
+    public float[] rotation;
+    /**
+     * The position and rotation before the body last moved, laid out like
+     * <code>position</code> and <code>rotation</code>.
+     */
+    public float[] previousPosition, previousRotation;
+    /**
+     * The linear velocity over the last tick, x, y and z.
+     */
+    public float[] velocity;
+    /**
+     * The radius of the bounds.
+     */
+    public float[] radius;
+    /**
+     * The flags of every entity, see the constants.
+     */
+    public int[] flags;
+
+    private int size;
+    private final Quaternion rotationTmp = new Quaternion();
+    private final Quaternion fromTmp = new Quaternion();
+
+    public ComponentStore(final int capacity) {
+        this.allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * @return the number of entities
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Adds an entity at the end, where the registry put it.
+     */
+    void add(final Entity e) {
+        if (size == radius.length) {
+            this.grow(size << 1);
+        }
+        final Matrix4 transform = e.motionState != null ? e.motionState.current : e.transform;
+        int flags = 0;
+        if (e.body != null && e.body.isStaticObject()) {
+            flags |= STATIC;
+        }
+        if (e.body != null && e.body.isKinematicObject()) {
+            flags |= KINEMATIC;
+        }
+        this.set(size, transform, e.getWorldRadius(), flags);
+        this.size++;
+    }
+
+    /**
+     * Sets an entry directly.
+     */
+    void set(final int index, final Matrix4 transform, final float radius, final int flags) {
+        this.setTransform(index, transform);
+        System.arraycopy(position, index * 3, previousPosition, index * 3, 3);
+        System.arraycopy(rotation, index * 4, previousRotation, index * 4, 4);
+        this.velocity[index * 3] = 0f;
+        this.velocity[index * 3 + 1] = 0f;
+        this.velocity[index * 3 + 2] = 0f;
+        this.radius[index] = radius;
+        this.flags[index] = flags;
+    }
+
+    /**
+     * Called by the motion state when the body moved, on the physics worker
+     * when pipelined.
+     *
+     * @param index the dense index of the entity
+     * @param current the new state of the body
+     * @param step the length of the tick, zero if unknown
+     */
+    void moved(final int index, final Matrix4 current, final float step) {
+        final float[] p = position, v = velocity;
+        final float[] m = current.val;
+        final int i = index * 3;
+        System.arraycopy(p, i, previousPosition, i, 3);
+        System.arraycopy(rotation, index * 4, previousRotation, index * 4, 4);
+        if (step > 0f) {
+            final float inverse = 1f / step;
+            v[i] = (m[Matrix4.M03] - p[i]) * inverse;
+            v[i + 1] = (m[Matrix4.M13] - p[i + 1]) * inverse;
+            v[i + 2] = (m[Matrix4.M23] - p[i + 2]) * inverse;
+        }
+        this.setTransform(index, current);
+        this.flags[index] |= MOVING;
+    }
+
+    /**
+     * Called when an entity stopped moving.
+     */
+    void settled(final int index) {
+        this.velocity[index * 3] = 0f;
+        this.velocity[index * 3 + 1] = 0f;
+        this.velocity[index * 3 + 2] = 0f;
+        this.flags[index] &= ~MOVING;
+    }
+
+    /**
+     * Moves the last entry into a hole, like the registry does with the
+     * entities.
+     */
+    void removeIndex(final int index) {
+        final int last = --size;
+        if (index != last) {
+            System.arraycopy(position, last * 3, position, index * 3, 3);
+            System.arraycopy(rotation, last * 4, rotation, index * 4, 4);
+            System.arraycopy(velocity, last * 3, velocity, index * 3, 3);
+            System.arraycopy(previousPosition, last * 3, previousPosition, index * 3, 3);
+            System.arraycopy(previousRotation, last * 4, previousRotation, index * 4, 4);
+            this.radius[index] = radius[last];
+            this.flags[index] = flags[last];
+        }
+    }
+
+    void clear() {
+        this.size = 0;
+    }
+
+    private void setTransform(final int index, final Matrix4 transform) {
+        final float[] m = transform.val;
+        final int i = index * 3, r = index * 4;
+        this.position[i] = m[Matrix4.M03];
+        this.position[i + 1] = m[Matrix4.M13];
+        this.position[i + 2] = m[Matrix4.M23];
+        final Quaternion q = transform.getRotation(rotationTmp, true);
+        this.rotation[r] = q.x;
+        this.rotation[r + 1] = q.y;
+        this.rotation[r + 2] = q.z;
+        this.rotation[r + 3] = q.w;
+    }
+
+    /**
+     * Sets a render transform to the state blended between the previous and
+     * the current position and rotation of an entity. The scale of the
+     * transform is kept, the bodies don't have one.
+     *
+     * @param index the dense index of the entity
+     * @param alpha blend factor between the previous and current state, 1 for
+     * the current state
+     * @param out the render transform
+     */
+    public void interpolate(final int index, final float alpha, final Matrix4 out) {
+        final float[] m = out.val;
+        final float sx = (float) Math.sqrt(m[Matrix4.M00] * m[Matrix4.M00] + m[Matrix4.M10] * m[Matrix4.M10]
+                + m[Matrix4.M20] * m[Matrix4.M20]);
+        final float sy = (float) Math.sqrt(m[Matrix4.M01] * m[Matrix4.M01] + m[Matrix4.M11] * m[Matrix4.M11]
+                + m[Matrix4.M21] * m[Matrix4.M21]);
+        final float sz = (float) Math.sqrt(m[Matrix4.M02] * m[Matrix4.M02] + m[Matrix4.M12] * m[Matrix4.M12]
+                + m[Matrix4.M22] * m[Matrix4.M22]);
+
+        final float[] p = position, r = rotation;
+        final int i = index * 3, j = index * 4;
+        final Quaternion q = rotationTmp.set(r[j], r[j + 1], r[j + 2], r[j + 3]);
+        if (alpha >= 1f) {
+            out.set(p[i], p[i + 1], p[i + 2], q.x, q.y, q.z, q.w, sx, sy, sz);
+            return;
+        }
+        final float[] pp = previousPosition, pr = previousRotation;
+        final Quaternion from = fromTmp.set(pr[j], pr[j + 1], pr[j + 2], pr[j + 3]).slerp(q, alpha);
+        out.set(pp[i] + (p[i] - pp[i]) * alpha,
+                pp[i + 1] + (p[i + 1] - pp[i + 1]) * alpha,
+                pp[i + 2] + (p[i + 2] - pp[i + 2]) * alpha,
+                from.x, from.y, from.z, from.w, sx, sy, sz);
+    }
+
+    /**
+     * @return the position of an entity
+     */
+    public Vector3 getPosition(final int index, final Vector3 out) {
+        return out.set(position[index * 3], position[index * 3 + 1], position[index * 3 + 2]);
+    }
+
+    /**
+     * @return the rotation of an entity
+     */
+    public Quaternion getRotation(final int index, final Quaternion out) {
+        final int r = index * 4;
+        return out.set(rotation[r], rotation[r + 1], rotation[r + 2], rotation[r + 3]);
+    }
+
+    /**
+     * @return the velocity of an entity over the last tick
+     */
+    public Vector3 getVelocity(final int index, final Vector3 out) {
+        return out.set(velocity[index * 3], velocity[index * 3 + 1], velocity[index * 3 + 2]);
+    }
+
+    public boolean hasFlags(final int index, final int mask) {
+        return (flags[index] & mask) == mask;
+    }
+
+    /**
+     * A 64 bit FNV-1a hash of the number of entities and the exact bits of
+     * their positions and rotations, in dense order. Two runs that simulated
+     * the same have the same checksum, a single bit of difference in any body
+     * changes it.
+     */
+    public long checksum() {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ size) * 0x100000001b3L;
+        final float[] position = this.position, rotation = this.rotation;
+        for (int i = 0, n = size * 3; i < n; i++) {
+            hash = (hash ^ Float.floatToRawIntBits(position[i])) * 0x100000001b3L;
+        }
+        for (int i = 0, n = size * 4; i < n; i++) {
+            hash = (hash ^ Float.floatToRawIntBits(rotation[i])) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void allocate(final int capacity) {
+        this.position = new float[capacity * 3];
+        this.rotation = new float[capacity * 4];
+        this.velocity = new float[capacity * 3];
+        this.previousPosition = new float[capacity * 3];
+        this.previousRotation = new float[capacity * 4];
+        this.radius = new float[capacity];
+        this.flags = new int[capacity];
+    }
+
+    private void grow(final int capacity) {
+        final float[] position = this.position, rotation = this.rotation, velocity = this.velocity;
+        final float[] previousPosition = this.previousPosition, previousRotation = this.previousRotation;
+        final float[] radius = this.radius;
+        final int[] flags = this.flags;
+        this.allocate(capacity);
+        System.arraycopy(position, 0, this.position, 0, size * 3);
+        System.arraycopy(rotation, 0, this.rotation, 0, size * 4);
+        System.arraycopy(velocity, 0, this.velocity, 0, size * 3);
+        System.arraycopy(previousPosition, 0, this.previousPosition, 0, size * 3);
+        System.arraycopy(previousRotation, 0, this.previousRotation, 0, size * 4);
+        System.arraycopy(radius, 0, this.radius, 0, size);
+        System.arraycopy(flags, 0, this.flags, 0, size);
+    }
+}
@@ -0,0 +1,209 @@
+package engine.physics;
+
+import com.badlogic.gdx.physics.bullet.collision.ContactListener;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * Collects the collisions between entities as begin, persist and end events
+ * and hands them to its listeners once per physics tick, on the thread that
+ * runs the ticks.
+ * <p>
+ * Only pairs where one of the bodies opted in cross over from bullet: the
+ * contact callback filter of one body has to share a bit with the contact
+ * callback flag of the other, see {@link Entity#setContactFlags(int, int)}.
+ * Bullet only calls back when two bodies start and stop touching, the
+ * persist events of the ticks in between come from the pairs kept here, so
+ * a resting pile costs nothing on the native side.
+ * </p>
+ * <p>
+ * The events are stored as triples of ints, the type and the handles of the
+ * two entities, in a buffer that is reused every tick. A handle may be stale
+ * by the time the listeners see it, for an end event of an entity that was
+ * removed for instance, {@link BulletWorld#getEntity(int)} returns null for
+ * those. Bullet has a single contact listener for all worlds, so only one
+ * world should collect events at a time.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ContactEvents extends ContactListener {
+
+    public static final int BEGIN = 0;
+    public static final int PERSIST = 1;
+    public static final int END = 2;
+
+    /**
+     * Called once per tick with the events of that tick, on the physics
+     * worker when the world is pipelined.
+     */
+    public interface Listener {
+
+        public void contacts(ContactEvents events);
+    }
+
+    /**
+     * True to send a persist event every tick for every pair that is still
+     * touching.
+     */
+    public boolean persist = true;
+
+    private int[] events = new int[3 * 256];
+    private int size;
+
+    /**
+     * The pairs touching, and the pairs that started touching this tick.
+     */
+    private final LongMap<Object> active = new LongMap<Object>();
+    private final LongMap<Object> begun = new LongMap<Object>();
+    private final Array<Listener> listeners = new Array<Listener>(false, 4);
+    private long callbacks;
+
+    public void addListener(final Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(final Listener listener) {
+        this.listeners.removeValue(listener, true);
+    }
+
+    @Override
+    public void onContactStarted(final int userValue0, final boolean match0,
+            final int userValue1, final boolean match1) {
+        this.callbacks++;
+        final long key = key(userValue0, userValue1);
+        if (active.put(key, this) == null) {
+            this.begun.put(key, this);
+            this.add(BEGIN, userValue0, userValue1);
+        }
+    }
+
+    @Override
+    public void onContactEnded(final int userValue0, final boolean match0,
+            final int userValue1, final boolean match1) {
+        this.callbacks++;
+        if (active.remove(key(userValue0, userValue1)) != null) {
+            this.add(END, userValue0, userValue1);
+        }
+    }
+
+    /**
+     * Adds the persist events and hands the events of the tick to the
+     * listeners, called by the world after every tick.
+     */
+    void flush() {
+        if (persist && active.size > 0) {
+            for (LongMap.Keys keys = active.keys(); keys.hasNext;) {
+                final long key = keys.next();
+                if (!begun.containsKey(key)) {
+                    this.add(PERSIST, (int) (key >>> 32), (int) key);
+                }
+            }
+        }
+        if (begun.size > 0) {
+            this.begun.clear();
+        }
+        for (int i = 0; i < listeners.size; i++) {
+            this.listeners.get(i).contacts(this);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * @return the number of events of the tick
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return BEGIN, PERSIST or END
+     */
+    public int getType(final int event) {
+        return this.events[event * 3];
+    }
+
+    /**
+     * @return the handle of the first entity, the lower of the two
+     */
+    public int getHandle0(final int event) {
+        return this.events[event * 3 + 1];
+    }
+
+    /**
+     * @return the handle of the second entity
+     */
+    public int getHandle1(final int event) {
+        return this.events[event * 3 + 2];
+    }
+
+    /**
+     * @return true if the event involves the entity with the given handle
+     */
+    public boolean involves(final int event, final int handle) {
+        return events[event * 3 + 1] == handle || events[event * 3 + 2] == handle;
+    }
+
+    /**
+     * @return the number of pairs touching
+     */
+    public int getActiveCount() {
+        return this.active.size;
+    }
+
+    /**
+     * @return the number of times bullet called back since the events were
+     * created, each one a crossing from native code
+     */
+    public long getCallbackCount() {
+        return this.callbacks;
+    }
+
+    /**
+     * Ends the pairs of an entity that is being removed, in case bullet
+     * didn't already.
+     */
+    void removed(final int handle) {
+        if (active.size == 0) {
+            return;
+        }
+        for (LongMap.Keys keys = active.keys(); keys.hasNext;) {
+            final long key = keys.next();
+            final int handle0 = (int) (key >>> 32), handle1 = (int) key;
+            if (handle0 == handle || handle1 == handle) {
+                keys.remove();
+                this.begun.remove(key);
+                this.add(END, handle0, handle1);
+            }
+        }
+    }
+
+    /**
+     * Forgets the pairs touching, like after the world was emptied.
+     */
+    public void clear() {
+        this.active.clear();
+        this.begun.clear();
+        this.size = 0;
+    }
+
+    private void add(final int type, final int handle0, final int handle1) {
+        if ((size + 1) * 3 > events.length) {
+            final int[] items = new int[events.length << 1];
+            System.arraycopy(events, 0, items, 0, size * 3);
+            this.events = items;
+        }
+        final int i = size++ * 3;
+        this.events[i] = type;
+        this.events[i + 1] = Math.min(handle0, handle1);
+        this.events[i + 2] = Math.max(handle0, handle1);
+    }
+
+    /**
+     * @return the same key for both orders of a pair
+     */
+    private static long key(final int handle0, final int handle1) {
+        final int low = Math.min(handle0, handle1), high = Math.max(handle0, handle1);
+        return ((long) low << 32) | (high & 0xFFFFFFFFL);
+    }
+}
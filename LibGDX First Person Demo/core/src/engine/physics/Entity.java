@@ -25,15 +25,18 @@ import com.badlogic.gdx.graphics.g3d.ModelBatch;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
 import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.physics.bullet.collision.Collision;
 import com.badlogic.gdx.physics.bullet.dynamics.btRigidBody;
 import com.badlogic.gdx.physics.bullet.dynamics.btRigidBody.btRigidBodyConstructionInfo;
 import com.badlogic.gdx.physics.bullet.linearmath.btMotionState;
 import com.badlogic.gdx.utils.Disposable;
 
-import static engine.Globals.TMP_M;
 import engine.Renderable;
+import engine.graphics.LodChain;
+import engine.utils.Scratch;
 
 /**
  * Renderable BaseEntity with a bullet physics body.
@@ -52,9 +55,47 @@ public class Entity implements Disposable, Renderable {
     public final BoundingBox boundingBox;
     public final float boundingBoxRadius;
 
+    /**
+     * Id of the entity in the spatial index of its world, -1 if it has none.
+     */
+    int proxy = -1;
+    /**
+     * Handle of the entity in the registry of its world and its position in
+     * the dense array, -1 if it isn't in a world.
+     */
+    int handle = EntityRegistry.NULL, index = EntityRegistry.NULL;
+    /**
+     * The pool the entity was obtained from, null if it was constructed
+     * directly.
+     */
+    EntityPool pool;
+    /**
+     * True while the entity waits in its pool to be obtained again.
+     */
+    boolean pooled;
+    /**
+     * True while the entity waits for the next sync of its world, and while
+     * its render transform is still changing.
+     */
+    boolean queued, moving;
+    /**
+     * Used to add each entity only once when walking the move log.
+     */
+    int visit;
+
+    /**
+     * The levels of detail, the instances share the transform of the entity.
+     * Null if the entity has a single model.
+     */
+    private LodChain lodChain;
+    private ModelInstance[] lodInstances;
+    private ModelInstance shadowInstance;
+    private int lod;
+    private int triangles = -1;
+
     public Entity(final Model model, final btRigidBodyConstructionInfo bodyInfo,
             final float xPos, final float yPos, final float zPos) {
-        this(model, new btRigidBody(bodyInfo), TMP_M.setToTranslation(xPos, yPos, zPos));
+        this(model, new btRigidBody(bodyInfo), new Matrix4().setToTranslation(xPos, yPos, zPos));
     }
 
     public Entity(final Model model, final btRigidBodyConstructionInfo bodyInfo,
@@ -64,25 +105,48 @@ public class Entity implements Disposable, Renderable {
 
     public Entity(final Model model, final btRigidBody body,
             final float xPos, final float yPos, final float zPos) {
-        this(model, body, TMP_M.setToTranslation(xPos, yPos, zPos));
+        this(model, body, new Matrix4().setToTranslation(xPos, yPos, zPos));
     }
 
+    /**
+     * @param model the model to render, null for an entity that is only
+     * simulated (for example when running headless)
+     * @param body the rigid body
+     * @param transform the initial transform
+     */
     public Entity(final Model model, final btRigidBody body, final Matrix4 transform) {
-        this(new ModelInstance(model, transform.cpy()), body);
+        this(model == null ? null : new ModelInstance(model, transform.cpy()), body, transform);
     }
 
-    @SuppressWarnings("LeakingThisInConstructor")
     public Entity(final ModelInstance modelInstance, final btRigidBody body) {
+        this(modelInstance, body, modelInstance.transform);
+    }
+
+    @SuppressWarnings("LeakingThisInConstructor")
+    private Entity(final ModelInstance modelInstance, final btRigidBody body, final Matrix4 transform) {
         this.modelInstance = modelInstance;
-        this.transform = this.modelInstance.transform;
+        this.transform = modelInstance == null ? new Matrix4(transform) : modelInstance.transform;
         this.body = body;
 
         this.boundingBox = new BoundingBox();
-        modelInstance.calculateBoundingBox(boundingBox);
+        if (modelInstance != null) {
+            modelInstance.calculateBoundingBox(boundingBox);
+        } else {
+            // Without a model the collision shape is the best guess
+            final Scratch scratch = Scratch.push();
+            try {
+                final Vector3 min = scratch.vec3(), max = scratch.vec3();
+                body.getCollisionShape().getAabb(scratch.mat4(), min, max);
+                this.boundingBox.set(min, max);
+            } finally {
+                scratch.pop();
+            }
+        }
         boundingBoxRadius = boundingBox.getDimensions(new Vector3(0, 0, 0)).len() * 0.5f;
 
         this.body.userData = this; // LeakingThisInConstructor
-        this.motionState = new MotionState(this.modelInstance.transform);
+        this.motionState = new MotionState(this.transform);
+        this.motionState.entity = this;
         this.body.setMotionState(motionState);
 
         this.colour = new Color(1f, 1f, 1f, 1f);
@@ -102,9 +166,111 @@ public class Entity implements Disposable, Renderable {
         body = null;
     }
 
+    /**
+     * Renders the entity at its current level of detail, or with the model
+     * for the depth pass if there are no lights and the chain has one.
+     */
     @Override
     public void render(ModelBatch batch, Environment lights) {
-        batch.render(getModelInstance(), lights);
+        final ModelInstance instance;
+        if (lodInstances == null) {
+            instance = modelInstance;
+        } else if (lights == null && shadowInstance != null) {
+            instance = shadowInstance;
+        } else {
+            instance = lodInstances[lod];
+        }
+        if (instance != null) {
+            batch.render(instance, lights);
+        }
+    }
+
+    /**
+     * Gives the entity levels of detail. The first level of the chain should
+     * be the model the entity was created with.
+     *
+     * @param chain the levels, null for a single model
+     */
+    public void setLodChain(final LodChain chain) {
+        this.lodChain = chain;
+        this.lod = 0;
+        this.lodInstances = null;
+        this.shadowInstance = null;
+        if (chain == null || modelInstance == null) {
+            return;
+        }
+        this.lodInstances = new ModelInstance[chain.size()];
+        this.lodInstances[0] = modelInstance;
+        for (int i = 1; i < lodInstances.length; i++) {
+            final Model model = chain.getModel(i);
+            this.lodInstances[i] = model == null ? null : new ModelInstance(model, transform);
+        }
+        if (chain.getShadowModel() != null) {
+            this.shadowInstance = new ModelInstance(chain.getShadowModel(), transform);
+        }
+        this.setColour(colour);
+    }
+
+    /**
+     * @return the levels of detail, null if the entity has a single model
+     */
+    public LodChain getLodChain() {
+        return this.lodChain;
+    }
+
+    /**
+     * @return the level of detail the entity is drawn at
+     */
+    public int getLod() {
+        return this.lod;
+    }
+
+    /**
+     * @param level the level of detail to draw the entity at, see
+     * {@link engine.graphics.LodSelector}
+     */
+    public void setLod(final int level) {
+        this.lod = level;
+    }
+
+    /**
+     * @return the number of triangles of the full detail model
+     */
+    public int getTriangles() {
+        if (triangles < 0) {
+            this.triangles = modelInstance == null ? 0 : LodChain.countTriangles(modelInstance.model);
+        }
+        return this.triangles;
+    }
+
+    /**
+     * Puts a recycled entity back in its initial state: at rest, awake and at
+     * the given transform. The colour is kept.
+     *
+     * @param transform the new transform
+     */
+    void reset(final Matrix4 transform) {
+        this.transform.set(transform);
+        this.motionState.previous.set(transform);
+        this.motionState.current.set(transform);
+        this.motionState.stamp = -1;
+
+        this.body.setWorldTransform(transform);
+        this.body.setInterpolationWorldTransform(transform);
+        this.body.setLinearVelocity(Vector3.Zero);
+        this.body.setAngularVelocity(Vector3.Zero);
+        this.body.setInterpolationLinearVelocity(Vector3.Zero);
+        this.body.setInterpolationAngularVelocity(Vector3.Zero);
+        this.body.clearForces();
+        this.body.setDeactivationTime(0f);
+        this.body.forceActivationState(Collision.ACTIVE_TAG);
+    }
+
+    /**
+     * @return the pool the entity was obtained from, null if it wasn't
+     */
+    public EntityPool getPool() {
+        return this.pool;
     }
 
     public ModelInstance getModelInstance() {
@@ -115,12 +281,54 @@ public class Entity implements Disposable, Renderable {
         return this.body;
     }
 
+    /**
+     * @return the handle of the entity in its world, also stored as the user
+     * value of its body, or -1 if it isn't in a world
+     */
+    public int getHandle() {
+        return this.handle;
+    }
+
+    /**
+     * Sets the render transform to the physics state interpolated between the
+     * last two ticks.
+     *
+     * @param tick the last tick simulated by the world
+     * @param alpha how far the render time is between the previous and the
+     * current tick, in the range [0, 1]
+     */
+    public void interpolate(final int tick, final float alpha) {
+        this.motionState.interpolate(tick, alpha, transform);
+    }
+
+    /**
+     * Keeps the last two physics states of the body. Bullet writes into the
+     * current state, the renderer only ever sees the interpolated result.
+     */
     public static class MotionState extends btMotionState {
 
-        private final Matrix4 transform;
+        /**
+         * State of the body at the tick before the one it last moved on.
+         */
+        public final Matrix4 previous;
+        /**
+         * State of the body at the tick it last moved on.
+         */
+        public final Matrix4 current;
+
+        /**
+         * World the body is simulated in, null until it is added.
+         */
+        BulletWorld world;
+        Entity entity;
+        /**
+         * The tick on which the body last moved.
+         */
+        int stamp = -1;
 
         public MotionState(final Matrix4 transform) {
-            this.transform = transform;
+            this.previous = new Matrix4(transform);
+            this.current = new Matrix4(transform);
         }
 
         /**
@@ -132,7 +340,7 @@ public class Entity implements Disposable, Renderable {
          */
         @Override
         public void getWorldTransform(final Matrix4 worldTrans) {
-            worldTrans.set(transform);
+            worldTrans.set(current);
         }
 
         /**
@@ -143,7 +351,43 @@ public class Entity implements Disposable, Renderable {
          */
         @Override
         public void setWorldTransform(final Matrix4 worldTrans) {
-            this.transform.set(worldTrans);
+            this.previous.set(current);
+            this.current.set(worldTrans);
+            if (world != null) {
+                this.stamp = world.getTick();
+                this.world.moved(entity);
+            }
+        }
+
+        /**
+         * Keeps the scale <code>out</code> already has, bullet only knows
+         * about translation and rotation.
+         *
+         * @param tick the last tick simulated by the world
+         * @param alpha blend factor between the previous and current state
+         * @param out the matrix to store the result in
+         */
+        public void interpolate(final int tick, final float alpha, final Matrix4 out) {
+            final Scratch scratch = Scratch.push();
+            try {
+                final float[] m = out.val;
+                final Vector3 scale = scratch.vec3().set(
+                        (float) Math.sqrt(square(m[Matrix4.M00], m[Matrix4.M10], m[Matrix4.M20])),
+                        (float) Math.sqrt(square(m[Matrix4.M01], m[Matrix4.M11], m[Matrix4.M21])),
+                        (float) Math.sqrt(square(m[Matrix4.M02], m[Matrix4.M12], m[Matrix4.M22])));
+                final Vector3 to = current.getTranslation(scratch.vec3());
+                final Quaternion toRotation = current.getRotation(scratch.quat(), true);
+                if (stamp != tick || alpha >= 1f) {
+                    // didn't move during the last tick, so both states are the same
+                    out.set(to, toRotation, scale);
+                    return;
+                }
+                final Vector3 from = previous.getTranslation(scratch.vec3());
+                final Quaternion fromRotation = previous.getRotation(scratch.quat(), true);
+                out.set(from.lerp(to, alpha), fromRotation.slerp(toRotation, alpha), scale);
+            } finally {
+                scratch.pop();
+            }
         }
     }
 
@@ -159,14 +403,107 @@ public class Entity implements Disposable, Renderable {
         return this.boundingBox;
     }
 
+    /**
+     * @return the radius of the bounds in model space, without the scale of
+     * the transform
+     * @see #getWorldRadius()
+     */
     public float getBoundingBoxRadius() {
         return this.boundingBoxRadius;
     }
 
+    /**
+     * @return the radius of the bounds in world space: the model radius times
+     * the largest axis scale of the render transform
+     */
+    public float getWorldRadius() {
+        final float[] m = transform.val;
+        final float x = square(m[Matrix4.M00], m[Matrix4.M10], m[Matrix4.M20]);
+        final float y = square(m[Matrix4.M01], m[Matrix4.M11], m[Matrix4.M21]);
+        final float z = square(m[Matrix4.M02], m[Matrix4.M12], m[Matrix4.M22]);
+        return boundingBoxRadius * (float) Math.sqrt(Math.max(x, Math.max(y, z)));
+    }
+
+    /**
+     * @return the squared length of a column of a transform, the square of
+     * its scale along that axis
+     */
+    private static float square(final float x, final float y, final float z) {
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * @param out the vector to store the world-space center of the bounds in,
+     * as of the last physics tick
+     * @return <code>out</code>
+     */
+    public Vector3 getCenter(final Vector3 out) {
+        return boundingBox.getCenter(out).mul(motionState.current);
+    }
+
+    /**
+     * @param out the vector to store the position of the body in, as of the
+     * last physics tick
+     * @return <code>out</code>
+     */
+    public Vector3 getPosition(final Vector3 out) {
+        final BulletWorld world = motionState == null ? null : motionState.world;
+        if (world == null || index == EntityRegistry.NULL) {
+            return transform.getTranslation(out);
+        }
+        return world.getComponents().getPosition(index, out);
+    }
+
+    /**
+     * @param out the vector to store the velocity of the body over the last
+     * physics tick in, zero while it rests or isn't in a world
+     * @return <code>out</code>
+     */
+    public Vector3 getVelocity(final Vector3 out) {
+        final BulletWorld world = motionState == null ? null : motionState.world;
+        if (world == null || index == EntityRegistry.NULL) {
+            return out.setZero();
+        }
+        return world.getComponents().getVelocity(index, out);
+    }
+
+    /**
+     * @return the world the entity is in, null if it isn't in one
+     */
+    public BulletWorld getWorld() {
+        return motionState == null ? null : motionState.world;
+    }
+
+    /**
+     * Opts the entity in to the collision events of its world. A pair of
+     * entities is reported when the filter of either has a bit of the flag
+     * of the other.
+     *
+     * @param flag the bits the entity is known by, bullet's default is 1
+     * @param filter the bits of the entities it wants to know about, zero to
+     * not ask for any
+     */
+    public void setContactFlags(final int flag, final int filter) {
+        this.body.setContactCallbackFlag(flag);
+        this.body.setContactCallbackFilter(filter);
+    }
+
+    /**
+     * @return the index of the entity in the component store of its world,
+     * which changes when other entities are removed, or -1 if it isn't in a
+     * world
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
     public void setBody(btRigidBody body) {
+        final BulletWorld world = motionState == null ? null : motionState.world;
         this.body = body;
         this.body.userData = this;
-        this.motionState = new MotionState(this.modelInstance.transform);
+        this.motionState = new MotionState(this.transform);
+        this.motionState.entity = this;
+        this.motionState.world = world;
         this.body.setMotionState(motionState);
     }
 
@@ -180,11 +517,21 @@ public class Entity implements Disposable, Renderable {
 
     public void setColour(float r, float g, float b, float a) {
         this.colour.set(r, g, b, a);
-        if (modelInstance != null) {
-            for (Material m : modelInstance.materials) {
+        if (lodInstances != null) {
+            for (ModelInstance instance : lodInstances) {
+                setColour(instance, colour);
+            }
+        } else {
+            setColour(modelInstance, colour);
+        }
+    }
+
+    private static void setColour(final ModelInstance instance, final Color colour) {
+        if (instance != null) {
+            for (Material m : instance.materials) {
                 ColorAttribute ca = (ColorAttribute) m.get(ColorAttribute.Diffuse);
                 if (ca != null) {
-                    ca.color.set(r, g, b, a);
+                    ca.color.set(colour);
                 }
             }
         }
@@ -26,7 +26,8 @@ import com.badlogic.gdx.physics.bullet.collision.btCollisionShape;
 import com.badlogic.gdx.physics.bullet.dynamics.btRigidBody.btRigidBodyConstructionInfo;
 import com.badlogic.gdx.utils.Disposable;
 
-import static engine.Globals.TMP_VEC;
+import engine.graphics.LodChain;
+import engine.utils.Scratch;
 
 /**
  * Holds the information necessary to create a bullet btRigidBody. This class
@@ -36,9 +37,23 @@ import static engine.Globals.TMP_VEC;
  */
 public class EntityBlueprint implements Disposable {
 
+    /**
+     * The maximum number of free entities the pool of a new blueprint keeps.
+     */
+    public static int defaultPoolSize = 64;
+
     public btRigidBodyConstructionInfo bodyInfo = null;
     public btCollisionShape shape = null;
     public Model model;
+    /**
+     * The levels of detail of the model, null to always draw the model.
+     */
+    public LodChain lod = null;
+
+    /**
+     * Recycles the entities obtained from this blueprint.
+     */
+    public final EntityPool pool = new EntityPool(this, defaultPoolSize);
 
     /**
      * Specify null for the shape to use only the renderable part of this entity
@@ -67,7 +82,7 @@ public class EntityBlueprint implements Disposable {
     /**
      * Creates a btBoxShape with the specified dimensions.
      *
-     * @param model
+     * @param model the model, may be null for entities that are never rendered
      * @param mass
      * @param width
      * @param height
@@ -104,6 +119,18 @@ public class EntityBlueprint implements Disposable {
         create(model, mass, boundingBox.getWidth(), boundingBox.getHeight(), boundingBox.getDepth());
     }
 
+    /**
+     * Creates a btBoxShape with the same dimensions as the first level of
+     * detail.
+     *
+     * @param lod the levels of detail
+     * @param mass
+     */
+    public EntityBlueprint(final LodChain lod, final float mass) {
+        this(lod.getModel(0), mass);
+        this.lod = lod;
+    }
+
     /**
      * Creates a btBoxShape with the same dimensions as the shape and NO
      * rigidbody.
@@ -116,9 +143,14 @@ public class EntityBlueprint implements Disposable {
 
     private void create(final Model model, final float mass, final float width,
             final float height, final float depth) {
-        create(model, mass, new btBoxShape(
-                TMP_VEC.set(width * 0.5f, height * 0.5f, depth * 0.5f)
-        )); // Create a simple boxshape
+        final Scratch scratch = Scratch.push();
+        try {
+            create(model, mass, new btBoxShape(
+                    scratch.vec3(width * 0.5f, height * 0.5f, depth * 0.5f)
+            )); // Create a simple boxshape
+        } finally {
+            scratch.pop();
+        }
     }
 
     private void create(final Model model, final float mass, final btCollisionShape shape) {
@@ -126,21 +158,31 @@ public class EntityBlueprint implements Disposable {
 
         if (shape != null && mass >= 0) {
             // Calculate the local inertia, bodies with no mass are static
-            Vector3 localInertia;
-            if (mass == 0) {
-                localInertia = Vector3.Zero;
-            } else {
-                shape.calculateLocalInertia(mass, TMP_VEC);
-                localInertia = TMP_VEC;
+            final Scratch scratch = Scratch.push();
+            try {
+                final Vector3 localInertia = scratch.vec3();
+                if (mass != 0) {
+                    shape.calculateLocalInertia(mass, localInertia);
+                }
+
+                // For now just pass null as the motionstate, we'll add that to the body in the entity itself
+                this.bodyInfo = new btRigidBodyConstructionInfo(mass, null, shape, localInertia);
+            } finally {
+                scratch.pop();
             }
-
-            // For now just pass null as the motionstate, we'll add that to the body in the entity itself
-            this.bodyInfo = new btRigidBodyConstructionInfo(mass, null, shape, localInertia);
         }
     }
 
     @Override
     public void dispose() {
+        // The pooled bodies refer to the shape
+        this.pool.dispose();
+
+        if (lod != null) {
+            this.lod.dispose();
+            this.lod = null;
+        }
+
         // Don't rely on the GC
         if (bodyInfo != null) {
             this.bodyInfo.dispose();
@@ -151,6 +193,9 @@ public class EntityBlueprint implements Disposable {
         // Remove references so the GC can do it's work
         this.bodyInfo = null;
         this.shape = null;
+        if (model == null) {
+            return;
+        }
         try {
             this.model.dispose();
         } catch (IllegalArgumentException iae) {
@@ -161,10 +206,48 @@ public class EntityBlueprint implements Disposable {
     }
 
     public Entity construct(float xPos, float yPos, float zPos) {
-        return new Entity(model, bodyInfo, xPos, yPos, zPos);
+        final Scratch scratch = Scratch.push();
+        try {
+            return construct(scratch.mat4().setToTranslation(xPos, yPos, zPos));
+        } finally {
+            scratch.pop();
+        }
     }
 
     public Entity construct(final Matrix4 transform) {
-        return new Entity(model, bodyInfo, transform);
+        final Entity e = new Entity(model, bodyInfo, transform);
+        if (lod != null) {
+            e.setLodChain(lod);
+        }
+        return e;
+    }
+
+    /**
+     * Like <code>construct</code>, but recycles an entity that was freed
+     * before if there is one.
+     *
+     * @see #free(Entity)
+     */
+    public Entity obtain(float xPos, float yPos, float zPos) {
+        return this.pool.obtain(xPos, yPos, zPos);
+    }
+
+    /**
+     * Like <code>construct</code>, but recycles an entity that was freed
+     * before if there is one.
+     *
+     * @see #free(Entity)
+     */
+    public Entity obtain(final Matrix4 transform) {
+        return this.pool.obtain(transform);
+    }
+
+    /**
+     * Removes an obtained entity from its world and returns it to the pool.
+     *
+     * @param e an entity obtained from this blueprint
+     */
+    public void free(final Entity e) {
+        this.pool.free(e);
     }
 }
@@ -0,0 +1,168 @@
+package engine.physics;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Recycles the entities of a single blueprint, so spawning and removing them
+ * at gameplay rates doesn't allocate a new rigid body, motion state and model
+ * instance every time. Freed entities leave their world and wait in the pool
+ * until they are obtained again, with their body state reset.
+ * <p>
+ * Entities that don't fit in the pool when freed are disposed.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ * @see EntityBlueprint#obtain(Matrix4)
+ */
+public class EntityPool implements Disposable {
+
+    private final EntityBlueprint blueprint;
+    private final Array<Entity> free;
+    private final Matrix4 transform = new Matrix4();
+
+    /**
+     * The maximum number of free entities kept.
+     */
+    public int max;
+
+    /**
+     * Number of entities obtained from the pool and created because the pool
+     * was empty.
+     */
+    public int hits, misses;
+    /**
+     * Number of entities obtained and not freed yet, and the most there ever
+     * were at the same time.
+     */
+    public int live, peakLive;
+    /**
+     * The most free entities there ever were at the same time.
+     */
+    public int peakFree;
+
+    /**
+     * @param blueprint the blueprint new entities are constructed from
+     * @param max the maximum number of free entities kept
+     */
+    public EntityPool(final EntityBlueprint blueprint, final int max) {
+        this.blueprint = blueprint;
+        this.max = max;
+        this.free = new Array<Entity>(false, Math.min(max, 16));
+    }
+
+    /**
+     * @return an entity at the given position, not added to a world yet
+     */
+    public Entity obtain(final float xPos, final float yPos, final float zPos) {
+        return obtain(transform.setToTranslation(xPos, yPos, zPos));
+    }
+
+    /**
+     * @return an entity with the given transform, not added to a world yet
+     */
+    public Entity obtain(final Matrix4 transform) {
+        final Entity e;
+        if (free.size > 0) {
+            e = free.pop();
+            e.pooled = false;
+            e.reset(transform);
+            this.hits++;
+        } else {
+            e = blueprint.construct(transform);
+            e.pool = this;
+            this.misses++;
+        }
+        if (++live > peakLive) {
+            this.peakLive = live;
+        }
+        return e;
+    }
+
+    /**
+     * Removes the entity from its world and puts it back in the pool, or
+     * disposes it if the pool is full. The contact flags of a pooled entity
+     * are reset. The entity should not be used after this.
+     *
+     * @param e an entity obtained from this pool
+     * @throws IllegalStateException if the entity is already free
+     */
+    public void free(final Entity e) {
+        if (e.pool != this) {
+            throw new IllegalArgumentException("entity not obtained from this pool");
+        }
+        if (e.pooled) {
+            throw new IllegalStateException("entity already freed");
+        }
+        if (e.motionState.world != null) {
+            e.motionState.world.remove(e);
+        }
+        this.live--;
+        if (free.size < max) {
+            // back to bullet's defaults, so the next user doesn't get the
+            // collision events this one asked for
+            e.setContactFlags(1, 0);
+            e.pooled = true;
+            this.free.add(e);
+            this.peakFree = Math.max(peakFree, free.size);
+        } else {
+            e.pool = null;
+            e.dispose();
+        }
+    }
+
+    /**
+     * Fills the pool up to the given number of free entities, so they don't
+     * have to be created during gameplay.
+     *
+     * @param count the number of free entities wanted, at most
+     * <code>max</code>
+     */
+    public void prewarm(final int count) {
+        final int target = Math.min(count, max);
+        while (free.size < target) {
+            final Entity e = blueprint.construct(transform.idt());
+            e.pool = this;
+            e.pooled = true;
+            this.free.add(e);
+        }
+        this.peakFree = Math.max(peakFree, free.size);
+    }
+
+    /**
+     * @return the number of free entities in the pool
+     */
+    public int getFree() {
+        return this.free.size;
+    }
+
+    /**
+     * Sets the hit, miss and high-water counters back to zero.
+     */
+    public void resetStats() {
+        this.hits = 0;
+        this.misses = 0;
+        this.peakLive = live;
+        this.peakFree = free.size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits %d, misses %d, live %d (peak %d), free %d (peak %d, max %d)",
+                hits, misses, live, peakLive, free.size, peakFree, max);
+    }
+
+    /**
+     * Disposes the free entities. Entities that are still in use are disposed
+     * by their world.
+     */
+    @Override
+    public void dispose() {
+        for (Entity e : free) {
+            e.pool = null;
+            e.dispose();
+        }
+        this.free.clear();
+    }
+}
@@ -0,0 +1,227 @@
+package engine.physics;
+
+/**
+ * Dense storage for the entities of a world. The entities are packed in an
+ * array so they can be walked by index without an <code>Iterator</code>, and
+ * removal swaps the last entity into the hole.
+ * <p>
+ * Because the dense index of an entity changes when another one is removed,
+ * entities are referred to by a handle: a slot number plus the generation of
+ * that slot. A handle to a removed entity goes stale once its slot is reused,
+ * so it can never resolve to the wrong entity. Freed slots are reused oldest
+ * first, and only once enough of them are free, so a slot goes through its
+ * generations slowly even when entities are added and removed every frame.
+ * Handles are stored as the user
+ * value of the bullet body, so collision callbacks can find the entity in
+ * O(1).
+ * </p>
+ * <p>
+ * The hot data of the entities is kept alongside them in a
+ * {@link ComponentStore}, at the same dense index.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class EntityRegistry {
+
+    /**
+     * Value of an invalid handle.
+     */
+    public static final int NULL = -1;
+
+    private static final int SLOT_BITS = 20;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+    /**
+     * The number of free slots kept before the oldest one is reused.
+     */
+    static final int MIN_FREE_SLOTS = 1024;
+
+    private Entity[] dense;
+    private int size;
+
+    private int[] denseOfSlot;
+    private int[] generation;
+    private int slots;
+    /**
+     * Ring of the free slots, oldest first.
+     */
+    private int[] freeSlots;
+    private int freeHead, freeCount;
+    private final ComponentStore components;
+
+    public EntityRegistry() {
+        this(64);
+    }
+
+    public EntityRegistry(final int capacity) {
+        this.dense = new Entity[capacity];
+        this.denseOfSlot = new int[capacity];
+        this.generation = new int[capacity];
+        this.freeSlots = new int[16];
+        this.components = new ComponentStore(capacity);
+    }
+
+    /**
+     * @param e the entity to add, it may not be registered yet
+     * @return the handle of the entity
+     */
+    public int add(final Entity e) {
+        if (e.handle != NULL) {
+            throw new IllegalArgumentException("entity already registered");
+        }
+
+        final int slot;
+        if (freeCount > MIN_FREE_SLOTS) {
+            slot = freeSlots[freeHead];
+            this.freeHead = (freeHead + 1) % freeSlots.length;
+            this.freeCount--;
+        } else {
+            if (slots > SLOT_MASK) {
+                throw new IllegalStateException("too many entities");
+            }
+            if (slots == denseOfSlot.length) {
+                this.denseOfSlot = copyOf(denseOfSlot, slots << 1);
+                this.generation = copyOf(generation, slots << 1);
+            }
+            slot = slots++;
+            this.generation[slot] = 1; // so a handle is never 0, bullet's default user value
+        }
+
+        if (size == dense.length) {
+            final Entity[] items = new Entity[size << 1];
+            System.arraycopy(dense, 0, items, 0, size);
+            this.dense = items;
+        }
+        this.dense[size] = e;
+        this.denseOfSlot[slot] = size;
+        e.index = size;
+        this.components.add(e);
+        this.size++;
+        e.handle = (generation[slot] << SLOT_BITS) | slot;
+        return e.handle;
+    }
+
+    /**
+     * Removes the entity with the given handle by moving the last entity into
+     * its place.
+     *
+     * @return the entity removed, null if the handle is stale
+     */
+    public Entity remove(final int handle) {
+        final Entity e = get(handle);
+        if (e == null) {
+            return null;
+        }
+
+        final int slot = handle & SLOT_MASK;
+        final int hole = e.index;
+        final Entity last = dense[--size];
+        this.dense[hole] = last;
+        this.dense[size] = null;
+        last.index = hole;
+        this.denseOfSlot[last.handle & SLOT_MASK] = hole;
+        this.components.removeIndex(hole);
+
+        this.generation[slot] = (generation[slot] + 1) & GENERATION_MASK;
+        if (generation[slot] == 0) {
+            this.generation[slot] = 1;
+        }
+        this.free(slot);
+
+        e.index = NULL;
+        e.handle = NULL;
+        return e;
+    }
+
+    /**
+     * @param handle the handle of an entity
+     * @return the entity, null if the handle is stale or invalid
+     */
+    public Entity get(final int handle) {
+        if (handle < 0) {
+            return null;
+        }
+        final int slot = handle & SLOT_MASK;
+        if (slot >= slots || generation[slot] != (handle >>> SLOT_BITS)) {
+            return null;
+        }
+        final Entity e = dense[denseOfSlot[slot]];
+        return (e != null && e.handle == handle) ? e : null;
+    }
+
+    /**
+     * @param handle the handle of an entity
+     * @return true if the handle still refers to a registered entity
+     */
+    public boolean contains(final int handle) {
+        return get(handle) != null;
+    }
+
+    /**
+     * @param index the dense index, in the range [0, size)
+     * @return the entity at that index
+     */
+    public Entity at(final int index) {
+        return this.dense[index];
+    }
+
+    /**
+     * @return the number of registered entities
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            final Entity e = dense[i];
+            final int slot = e.handle & SLOT_MASK;
+            this.generation[slot] = Math.max(1, (generation[slot] + 1) & GENERATION_MASK);
+            this.free(slot);
+            e.index = NULL;
+            e.handle = NULL;
+            this.dense[i] = null;
+        }
+        this.size = 0;
+        this.components.clear();
+    }
+
+    /**
+     * @return the hot data of the entities, by dense index
+     */
+    public ComponentStore getComponents() {
+        return this.components;
+    }
+
+    /**
+     * @param handle a handle
+     * @return the slot part of the handle, stable for the lifetime of the
+     * entity and smaller than the number of slots ever used
+     */
+    public static int slot(final int handle) {
+        return handle & SLOT_MASK;
+    }
+
+    /**
+     * Queues a slot for reuse behind the ones freed before it.
+     */
+    private void free(final int slot) {
+        if (freeCount == freeSlots.length) {
+            final int[] ring = new int[freeCount << 1];
+            final int tail = freeSlots.length - freeHead;
+            System.arraycopy(freeSlots, freeHead, ring, 0, tail);
+            System.arraycopy(freeSlots, 0, ring, tail, freeHead);
+            this.freeSlots = ring;
+            this.freeHead = 0;
+        }
+        this.freeSlots[(freeHead + freeCount) % freeSlots.length] = slot;
+        this.freeCount++;
+    }
+
+    private static int[] copyOf(final int[] array, final int length) {
+        final int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+}
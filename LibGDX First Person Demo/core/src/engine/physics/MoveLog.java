@@ -0,0 +1,172 @@
+package engine.physics;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Records which entities moved on which tick, so code that only cares about
+ * changes (the index, the shadow cascades, snapshots sent over the network)
+ * can ask what moved since the last time it looked instead of walking every
+ * entity. Every entry is the handle of an entity and the last tick it moved
+ * on, the entries are ordered by tick. Entries older than the length of the
+ * log are dropped.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ * @see BulletWorld#movedSince(int, com.badlogic.gdx.utils.Array)
+ */
+public class MoveLog {
+
+    private int[] handles;
+    private int[] stamps;
+    private int head, tail;
+    private int oldest;
+
+    /**
+     * The number of ticks the log goes back.
+     */
+    public int length;
+
+    /**
+     * @param length the number of ticks the log goes back
+     */
+    public MoveLog(final int length) {
+        this.length = length;
+        this.handles = new int[64];
+        this.stamps = new int[64];
+    }
+
+    /**
+     * @return the number of entries in the log
+     */
+    public int size() {
+        return this.tail - head;
+    }
+
+    /**
+     * @return the marker to pass to {@link #sort(int)} after adding a batch
+     */
+    int mark() {
+        // relative to the head, which moves when the log is compacted
+        return this.tail - head;
+    }
+
+    /**
+     * Adds an entry, batches must be sorted with {@link #sort(int)} before the
+     * log is read.
+     */
+    void add(final int handle, final int stamp) {
+        if (tail == handles.length) {
+            this.compact();
+        }
+        this.handles[tail] = handle;
+        this.stamps[tail] = stamp;
+        this.tail++;
+    }
+
+    /**
+     * Sorts the entries added since the mark. The entities of one batch moved
+     * on the ticks since the previous batch, so after this the whole log is
+     * ordered.
+     */
+    void sort(final int mark) {
+        final int from = head + mark;
+        // batches are small and mostly share the same tick
+        for (int i = from + 1; i < tail; i++) {
+            final int handle = handles[i], stamp = stamps[i];
+            int j = i - 1;
+            while (j >= from && stamps[j] > stamp) {
+                this.handles[j + 1] = handles[j];
+                this.stamps[j + 1] = stamps[j];
+                j--;
+            }
+            this.handles[j + 1] = handle;
+            this.stamps[j + 1] = stamp;
+        }
+    }
+
+    /**
+     * Drops the entries that are more than <code>length</code> ticks old.
+     *
+     * @param tick the current tick
+     */
+    void trim(final int tick) {
+        this.oldest = Math.max(oldest, tick - length);
+        while (head < tail && stamps[head] <= oldest) {
+            this.head++;
+        }
+    }
+
+    /**
+     * @param tick a tick
+     * @return true if the log goes back far enough to know what moved after
+     * the tick
+     */
+    public boolean covers(final int tick) {
+        return tick >= oldest;
+    }
+
+    /**
+     * Adds the handle of every entity that moved after the given tick. An
+     * entity that moved in several frames is added more than once, and the
+     * handles of removed entities are stale.
+     *
+     * @param tick the tick to look back to
+     * @param out the array to add the handles to
+     * @return false if the log doesn't go back that far, in which case
+     * nothing is added
+     */
+    public boolean since(final int tick, final IntArray out) {
+        if (!covers(tick)) {
+            return false;
+        }
+        for (int i = first(tick); i < tail; i++) {
+            out.add(handles[i]);
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the first entry after the tick
+     */
+    int first(final int tick) {
+        int low = head, high = tail;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (stamps[mid] <= tick) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    int handleAt(final int i) {
+        return this.handles[i];
+    }
+
+    int end() {
+        return this.tail;
+    }
+
+    public void clear() {
+        this.head = 0;
+        this.tail = 0;
+    }
+
+    private void compact() {
+        final int size = tail - head;
+        if (size > handles.length >> 1) {
+            final int[] handles = new int[this.handles.length << 1];
+            final int[] stamps = new int[this.stamps.length << 1];
+            System.arraycopy(this.handles, head, handles, 0, size);
+            System.arraycopy(this.stamps, head, stamps, 0, size);
+            this.handles = handles;
+            this.stamps = stamps;
+        } else {
+            System.arraycopy(handles, head, handles, 0, size);
+            System.arraycopy(stamps, head, stamps, 0, size);
+        }
+        this.head = 0;
+        this.tail = size;
+    }
+}
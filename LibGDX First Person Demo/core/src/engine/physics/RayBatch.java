@@ -0,0 +1,127 @@
+package engine.physics;
+
+import com.badlogic.gdx.math.Vector3;
+
+/**
+ * Many rays cast with a single call to {@link BulletWorld#rayTest(RayBatch)},
+ * like the pellets of a shotgun or the line of sight checks of every bot.
+ * The rays and their closest hits are kept in flat arrays, a batch is filled,
+ * cast, read and cleared again every frame without allocating.
+ *
+ * <pre>
+ * batch.clear();
+ * for (...) {
+ *     batch.add(from, to);
+ * }
+ * world.rayTest(batch);
+ * for (int i = 0; i &lt; batch.size(); i++) {
+ *     if (batch.isHit(i)) {
+ *         final Entity e = world.getEntity(batch.handles[i]);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class RayBatch {
+
+    /**
+     * The groups the rays hit, see the <code>GROUP_</code> constants of
+     * {@link BulletWorld}.
+     */
+    public int mask = BulletWorld.GROUP_ALL;
+
+    /**
+     * Start and end of every ray: x, y, z of the start then of the end.
+     */
+    public final float[] rays;
+    /**
+     * The handle of the entity hit by every ray, -1 for a miss.
+     */
+    public final int[] handles;
+    /**
+     * How far along every ray the hit is, 1 for a miss.
+     */
+    public final float[] fractions;
+    /**
+     * The point hit and the normal of the surface there, x, y and z.
+     */
+    public final float[] points, normals;
+
+    private int size;
+    private int hits;
+
+    public RayBatch(final int capacity) {
+        this.rays = new float[capacity * 6];
+        this.handles = new int[capacity];
+        this.fractions = new float[capacity];
+        this.points = new float[capacity * 3];
+        this.normals = new float[capacity * 3];
+    }
+
+    /**
+     * @return the index of the ray
+     * @throws IllegalStateException if the batch is full
+     */
+    public int add(final float fromX, final float fromY, final float fromZ,
+            final float toX, final float toY, final float toZ) {
+        if (size == handles.length) {
+            throw new IllegalStateException("the batch is full");
+        }
+        final int i = size * 6;
+        this.rays[i] = fromX;
+        this.rays[i + 1] = fromY;
+        this.rays[i + 2] = fromZ;
+        this.rays[i + 3] = toX;
+        this.rays[i + 4] = toY;
+        this.rays[i + 5] = toZ;
+        return this.size++;
+    }
+
+    public int add(final Vector3 from, final Vector3 to) {
+        return this.add(from.x, from.y, from.z, to.x, to.y, to.z);
+    }
+
+    public boolean isHit(final int index) {
+        return this.fractions[index] < 1f;
+    }
+
+    public Vector3 getPoint(final int index, final Vector3 out) {
+        return out.set(points[index * 3], points[index * 3 + 1], points[index * 3 + 2]);
+    }
+
+    public Vector3 getNormal(final int index, final Vector3 out) {
+        return out.set(normals[index * 3], normals[index * 3 + 1], normals[index * 3 + 2]);
+    }
+
+    /**
+     * @return the number of rays
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public int capacity() {
+        return this.handles.length;
+    }
+
+    /**
+     * @return the number of rays that hit something in the last cast
+     */
+    public int getHitCount() {
+        return this.hits;
+    }
+
+    void setHitCount(final int hits) {
+        this.hits = hits;
+    }
+
+    /**
+     * Removes every ray.
+     */
+    public void clear() {
+        this.size = 0;
+        this.hits = 0;
+    }
+}
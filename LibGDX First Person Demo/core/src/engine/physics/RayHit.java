@@ -0,0 +1,45 @@
+package engine.physics;
+
+import com.badlogic.gdx.math.Vector3;
+
+/**
+ * The closest hit of a ray or sweep query on a {@link BulletWorld}, meant to
+ * be kept and reused for every query.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class RayHit {
+
+    /**
+     * True if anything was hit.
+     */
+    public boolean hit;
+    /**
+     * Handle of the entity that was hit, see {@link BulletWorld#getEntity(int)}.
+     * -1 if nothing or something that isn't an entity was hit.
+     */
+    public int handle = EntityRegistry.NULL;
+    /**
+     * How far along the ray or sweep the hit is, from 0 at the start to 1 at
+     * the end.
+     */
+    public float fraction = 1f;
+    /**
+     * The point hit and the normal of the surface there, in world space.
+     */
+    public final Vector3 point = new Vector3(), normal = new Vector3();
+
+    public RayHit reset() {
+        this.hit = false;
+        this.handle = EntityRegistry.NULL;
+        this.fraction = 1f;
+        this.point.setZero();
+        this.normal.setZero();
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return hit ? "RayHit{" + handle + " at " + fraction + ", " + point + ", " + normal + '}' : "RayHit{none}";
+    }
+}
@@ -0,0 +1,205 @@
+package engine.physics;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.StreamUtils;
+import com.google.gson.Gson;
+import engine.utils.ResourceException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Converts a level from the JSON it is authored in to a {@link SceneFile}.
+ *
+ * <pre>
+ * {
+ *   "blueprints": [
+ *     { "name": "ground", "shape": "box", "mass": 0, "size": [20, 1, 20] },
+ *     { "name": "ball", "shape": "sphere", "mass": 1, "radius": 0.5 },
+ *     { "name": "pill", "shape": "capsule", "mass": 2, "radius": 0.5, "height": 1 }
+ *   ],
+ *   "entities": [
+ *     { "type": "ground", "position": [0, 0, 0], "colour": "808080ff" },
+ *     { "type": "ball", "position": [0, 5, 0], "rotation": [0, 0, 0, 1] }
+ *   ]
+ * }
+ * </pre>
+ *
+ * The rotation is a quaternion and the colour a hex string, both optional.
+ * The blueprint names must be unique. From the command line:
+ *
+ * <pre>
+ * java engine.physics.SceneConverter level.json level.scene
+ * </pre>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class SceneConverter {
+
+    /**
+     * The JSON document, also used to load a level straight from JSON.
+     */
+    public static class Scene {
+
+        public List<Blueprint> blueprints;
+        public List<Placement> entities;
+    }
+
+    public static class Blueprint {
+
+        public String name;
+        public String shape = "box";
+        public float mass;
+        public float[] size;
+        public float radius, height;
+    }
+
+    public static class Placement {
+
+        public String type;
+        public float[] position;
+        public float[] rotation;
+        public String colour;
+    }
+
+    /**
+     * Parses a level from its JSON.
+     */
+    public static Scene parse(final Reader json) {
+        return new Gson().fromJson(json, Scene.class);
+    }
+
+    /**
+     * Converts a level from JSON to the binary format.
+     *
+     * @param json the level in JSON
+     * @param out the stream the scene is written to, it isn't closed
+     * @throws ResourceException if the level is malformed, see
+     * {@link #convert(Scene, OutputStream)}
+     */
+    public static void convert(final Reader json, final OutputStream out) throws IOException {
+        convert(parse(json), out);
+    }
+
+    /**
+     * Converts a parsed level to the binary format.
+     *
+     * @param scene the level
+     * @param out the stream the scene is written to, it isn't closed
+     * @throws ResourceException if a blueprint has no name, a name used
+     * before or an unknown shape, an entity uses a blueprint the level doesn't
+     * define, or an array or colour has the wrong length
+     */
+    public static void convert(final Scene scene, final OutputStream out) throws IOException {
+        final int blueprintCount = scene.blueprints == null ? 0 : scene.blueprints.size();
+        final int entityCount = scene.entities == null ? 0 : scene.entities.size();
+
+        final String[] names = new String[blueprintCount];
+        final int[] shapes = new int[blueprintCount];
+        final float[] masses = new float[blueprintCount];
+        final float[] params = new float[blueprintCount * 3];
+        final ObjectIntMap<String> indices = new ObjectIntMap<String>();
+        for (int i = 0; i < blueprintCount; i++) {
+            final Blueprint blueprint = scene.blueprints.get(i);
+            if (blueprint.name == null) {
+                throw new ResourceException("blueprint " + i + " has no name");
+            }
+            if (indices.containsKey(blueprint.name)) {
+                throw new ResourceException("blueprint " + i + " reuses the name " + blueprint.name);
+            }
+            names[i] = blueprint.name;
+            shapes[i] = shape(blueprint.shape);
+            masses[i] = blueprint.mass;
+            if (shapes[i] == SceneFile.SHAPE_BOX) {
+                // the shape takes half extents
+                final float[] size = blueprint.size != null ? blueprint.size : new float[]{1f, 1f, 1f};
+                checkLength("size of blueprint " + blueprint.name, size, 3);
+                params[i * 3] = size[0] * 0.5f;
+                params[i * 3 + 1] = size[1] * 0.5f;
+                params[i * 3 + 2] = size[2] * 0.5f;
+            } else {
+                params[i * 3] = blueprint.radius;
+                params[i * 3 + 1] = blueprint.height;
+            }
+            indices.put(blueprint.name, i);
+        }
+
+        final int[] types = new int[entityCount];
+        final float[] transforms = new float[entityCount * 7];
+        final int[] colours = new int[entityCount];
+        final int white = Color.rgba8888(Color.WHITE);
+        for (int i = 0; i < entityCount; i++) {
+            final Placement entity = scene.entities.get(i);
+            types[i] = entity.type != null ? indices.get(entity.type, -1) : -1;
+            if (types[i] < 0) {
+                throw new ResourceException("entity " + i + " uses an undefined blueprint: " + entity.type);
+            }
+            if (entity.position != null) {
+                checkLength("position of entity " + i, entity.position, 3);
+                System.arraycopy(entity.position, 0, transforms, i * 7, 3);
+            }
+            if (entity.rotation != null) {
+                checkLength("rotation of entity " + i, entity.rotation, 4);
+                System.arraycopy(entity.rotation, 0, transforms, i * 7 + 3, 4);
+            } else {
+                transforms[i * 7 + 6] = 1f;
+            }
+            colours[i] = entity.colour != null ? colour(i, entity.colour) : white;
+        }
+
+        SceneFile.write(names, shapes, masses, params, types, transforms, colours, out);
+    }
+
+    private static int shape(final String name) {
+        if (name == null || "none".equals(name)) {
+            return SceneFile.SHAPE_NONE;
+        } else if ("box".equals(name)) {
+            return SceneFile.SHAPE_BOX;
+        } else if ("sphere".equals(name)) {
+            return SceneFile.SHAPE_SPHERE;
+        } else if ("capsule".equals(name)) {
+            return SceneFile.SHAPE_CAPSULE;
+        }
+        throw new ResourceException("unknown shape: " + name);
+    }
+
+    private static void checkLength(final String what, final float[] values, final int length) {
+        if (values.length != length) {
+            throw new ResourceException(what + " has " + values.length + " values, expected " + length);
+        }
+    }
+
+    private static int colour(final int entity, final String hex) {
+        final int digits = hex.startsWith("#") ? hex.length() - 1 : hex.length();
+        if (digits == 6 || digits == 8) {
+            try {
+                return Color.rgba8888(Color.valueOf(hex));
+            } catch (NumberFormatException ex) {
+                // not hex, reported below
+            }
+        }
+        throw new ResourceException("colour of entity " + entity + " isn't rgb or rgba hex: " + hex);
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: SceneConverter <level.json> <level.scene>");
+            System.exit(1);
+        }
+        Reader in = null;
+        OutputStream out = null;
+        try {
+            in = new InputStreamReader(new FileInputStream(args[0]), "UTF-8");
+            out = new FileOutputStream(args[1]);
+            convert(in, out);
+        } finally {
+            StreamUtils.closeQuietly(in);
+            StreamUtils.closeQuietly(out);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package engine.physics;
+
+import com.badlogic.gdx.Files.FileType;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.physics.bullet.collision.btBoxShape;
+import com.badlogic.gdx.physics.bullet.collision.btCapsuleShape;
+import com.badlogic.gdx.physics.bullet.collision.btCollisionShape;
+import com.badlogic.gdx.physics.bullet.collision.btSphereShape;
+import com.badlogic.gdx.utils.StreamUtils;
+import engine.utils.ResourceException;
+import engine.utils.Scratch;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A level in a compact binary format, read in place. On the desktop the file
+ * is memory mapped, so opening a level doesn't read or parse anything up
+ * front: the entities are read straight from the mapped pages when they are
+ * added to the world. Scenes are written by {@link SceneConverter} from the
+ * JSON the levels are authored in.
+ * <p>
+ * The layout, little endian and aligned to four bytes:
+ * </p>
+ *
+ * <pre>
+ * header       magic "GSCN" | version | blueprint count | entity count
+ *              | blueprint offset | entity offset | name offset    (28 bytes)
+ * blueprints   name offset | name length (16) | shape (8) | flags (8)
+ *              | mass | 3 shape params                             (24 bytes)
+ * entities     blueprint (16) | flags (16) | position (3 floats)
+ *              | rotation (4 floats) | colour (rgba8888)           (36 bytes)
+ * names        the UTF-8 names of the blueprints
+ * </pre>
+ *
+ * Only files with the same major version are read, the minor version may
+ * add fields in the flags without breaking older readers.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class SceneFile {
+
+    public static final int MAGIC = 0x4E435347; // "GSCN"
+    public static final int VERSION_MAJOR = 1, VERSION_MINOR = 0;
+    public static final int VERSION = (VERSION_MAJOR << 16) | VERSION_MINOR;
+
+    /**
+     * The collision shapes of a blueprint. The parameters are the half
+     * extents of a box, the radius of a sphere, or the radius and height of a
+     * capsule along the y axis.
+     */
+    public static final int SHAPE_NONE = 0, SHAPE_BOX = 1, SHAPE_SPHERE = 2, SHAPE_CAPSULE = 3;
+
+    static final int HEADER_SIZE = 28, BLUEPRINT_SIZE = 24, ENTITY_SIZE = 36;
+
+    private final ByteBuffer buffer;
+    private final int blueprintCount, entityCount;
+    private final int blueprintOffset, entityOffset;
+    private final String[] names;
+    // used by addTo, which only runs on the main thread
+    private final Color colour = new Color();
+
+    /**
+     * Reads a scene from a buffer holding the whole file, the buffer is used
+     * as is and must not change while the scene is used.
+     *
+     * @throws ResourceException if the buffer doesn't hold a scene of a
+     * supported version
+     */
+    public SceneFile(final ByteBuffer buffer) throws ResourceException {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (this.buffer.capacity() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC) {
+            throw new ResourceException("not a scene file");
+        }
+        final int version = this.buffer.getInt(4);
+        if ((version >>> 16) != VERSION_MAJOR) {
+            throw new ResourceException("unsupported scene version " + (version >>> 16) + "."
+                    + (version & 0xFFFF) + ", expected " + VERSION_MAJOR + ".x");
+        }
+        this.blueprintCount = this.buffer.getInt(8);
+        this.entityCount = this.buffer.getInt(12);
+        this.blueprintOffset = this.buffer.getInt(16);
+        this.entityOffset = this.buffer.getInt(20);
+        final int capacity = this.buffer.capacity();
+        if (blueprintCount < 0 || blueprintCount > 0xFFFF || entityCount < 0) {
+            throw new ResourceException("corrupt scene file: " + blueprintCount + " blueprints, "
+                    + entityCount + " entities");
+        }
+        if (blueprintOffset < HEADER_SIZE || entityOffset < HEADER_SIZE
+                || blueprintOffset + (long) blueprintCount * BLUEPRINT_SIZE > capacity
+                || entityOffset + (long) entityCount * ENTITY_SIZE > capacity) {
+            throw new ResourceException("truncated scene file");
+        }
+
+        // the blueprint table is small, the names are decoded once
+        this.names = new String[blueprintCount];
+        final byte[] bytes = new byte[256];
+        for (int i = 0; i < blueprintCount; i++) {
+            final int base = blueprintOffset + i * BLUEPRINT_SIZE;
+            final int offset = this.buffer.getInt(base);
+            final int length = this.buffer.getShort(base + 4) & 0xFFFF;
+            if (offset < HEADER_SIZE || offset + (long) length > capacity) {
+                throw new ResourceException("corrupt scene file: name of blueprint " + i + " out of bounds");
+            }
+            final byte[] name = length <= bytes.length ? bytes : new byte[length];
+            for (int b = 0; b < length; b++) {
+                name[b] = this.buffer.get(offset + b);
+            }
+            try {
+                this.names[i] = new String(name, 0, length, "UTF-8");
+            } catch (UnsupportedEncodingException ex) {
+                throw new ResourceException(ex);
+            }
+        }
+    }
+
+    /**
+     * Opens a scene, memory mapped if the file is on the file system and read
+     * into memory otherwise (from the classpath or an Android asset).
+     *
+     * @throws ResourceException if the file can't be read or isn't a scene
+     */
+    public static SceneFile open(final FileHandle file) throws ResourceException {
+        if (file.type() == FileType.Classpath || !file.file().exists()) {
+            return new SceneFile(ByteBuffer.wrap(file.readBytes()));
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file.file(), "r");
+            final FileChannel channel = raf.getChannel();
+            // the mapping stays valid after the channel is closed
+            return new SceneFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException ex) {
+            throw new ResourceException(ex);
+        } finally {
+            StreamUtils.closeQuietly(raf);
+        }
+    }
+
+    public int getBlueprintCount() {
+        return this.blueprintCount;
+    }
+
+    /**
+     * @return the name of a blueprint, the type the entities are created with
+     */
+    public String getBlueprintName(final int blueprint) {
+        return this.names[blueprint];
+    }
+
+    /**
+     * @return the shape of a blueprint, one of the <code>SHAPE_</code>
+     * constants
+     */
+    public int getShape(final int blueprint) {
+        return this.buffer.get(blueprintOffset + blueprint * BLUEPRINT_SIZE + 6);
+    }
+
+    /**
+     * @return the mass of a blueprint, zero for static bodies
+     */
+    public float getMass(final int blueprint) {
+        return this.buffer.getFloat(blueprintOffset + blueprint * BLUEPRINT_SIZE + 8);
+    }
+
+    /**
+     * @param param 0, 1 or 2
+     * @return a parameter of the shape of a blueprint
+     */
+    public float getShapeParam(final int blueprint, final int param) {
+        return this.buffer.getFloat(blueprintOffset + blueprint * BLUEPRINT_SIZE + 12 + param * 4);
+    }
+
+    /**
+     * Creates a blueprint from the shape and mass stored in the scene.
+     *
+     * @param model the model, may be null for entities that are never rendered
+     * @throws ResourceException if the blueprint has no shape or an unknown
+     * one; the entities of a world need a body, so a render-only blueprint
+     * has to be added to the world before the scene
+     */
+    public EntityBlueprint createBlueprint(final int blueprint, final Model model) {
+        final float a = getShapeParam(blueprint, 0), b = getShapeParam(blueprint, 1), c = getShapeParam(blueprint, 2);
+        final btCollisionShape shape;
+        final Scratch scratch = Scratch.push();
+        try {
+            switch (getShape(blueprint)) {
+                case SHAPE_BOX:
+                    shape = new btBoxShape(scratch.vec3(a, b, c));
+                    break;
+                case SHAPE_SPHERE:
+                    shape = new btSphereShape(a);
+                    break;
+                case SHAPE_CAPSULE:
+                    shape = new btCapsuleShape(a, b);
+                    break;
+                case SHAPE_NONE:
+                    throw new ResourceException("blueprint " + names[blueprint] + " has no shape");
+                default:
+                    throw new ResourceException("blueprint " + names[blueprint] + " has unknown shape "
+                            + getShape(blueprint));
+            }
+        } finally {
+            scratch.pop();
+        }
+        return new EntityBlueprint(model, getMass(blueprint), shape);
+    }
+
+    public int getEntityCount() {
+        return this.entityCount;
+    }
+
+    /**
+     * @return the index of the blueprint of an entity
+     * @throws ResourceException if the scene has no such blueprint, checked
+     * here so opening a scene doesn't read every entity
+     */
+    public int getBlueprint(final int entity) throws ResourceException {
+        final int blueprint = this.buffer.getShort(entityOffset + entity * ENTITY_SIZE) & 0xFFFF;
+        if (blueprint >= blueprintCount) {
+            throw new ResourceException("corrupt scene file: entity " + entity + " has blueprint " + blueprint
+                    + " of " + blueprintCount);
+        }
+        return blueprint;
+    }
+
+    /**
+     * @return the name of the blueprint of an entity
+     */
+    public String getType(final int entity) {
+        return this.names[getBlueprint(entity)];
+    }
+
+    /**
+     * @return the transform of an entity
+     */
+    public Matrix4 getTransform(final int entity, final Matrix4 out) {
+        final ByteBuffer b = this.buffer;
+        final int base = entityOffset + entity * ENTITY_SIZE + 4;
+        return out.set(b.getFloat(base), b.getFloat(base + 4), b.getFloat(base + 8),
+                b.getFloat(base + 12), b.getFloat(base + 16), b.getFloat(base + 20), b.getFloat(base + 24));
+    }
+
+    /**
+     * @return the colour of an entity as rgba8888
+     */
+    public int getColour(final int entity) {
+        return this.buffer.getInt(entityOffset + entity * ENTITY_SIZE + 32);
+    }
+
+    /**
+     * @return the colour of an entity
+     */
+    public Color getColour(final int entity, final Color out) {
+        Color.rgba8888ToColor(out, getColour(entity));
+        return out;
+    }
+
+    /**
+     * Adds the entities to a world. Blueprints the world doesn't have yet are
+     * created from the scene without a model, so they collide but aren't
+     * drawn.
+     *
+     * @return the world
+     * @throws ResourceException if a blueprint can't be created or has no
+     * body
+     */
+    public BulletWorld addTo(final BulletWorld world) throws ResourceException {
+        this.addBlueprintsTo(world);
+        this.addTo(world, 0, entityCount);
+        return world;
+    }
+
+    /**
+     * Adds the blueprints the world doesn't have yet, created from the scene
+     * without a model. Called before adding the entities a few at a time with
+     * {@link #addTo(BulletWorld, int, int)}.
+     *
+     * @throws ResourceException if a blueprint can't be created or has no
+     * body
+     */
+    public void addBlueprintsTo(final BulletWorld world) throws ResourceException {
+        for (int i = 0; i < blueprintCount; i++) {
+            EntityBlueprint constructor = world.getConstructor(names[i]);
+            if (constructor == null) {
+                constructor = createBlueprint(i, null);
+                world.addConstructor(names[i], constructor);
+            }
+            if (constructor.bodyInfo == null) {
+                throw new ResourceException("blueprint " + names[i] + " has no body");
+            }
+        }
+    }
+
+    /**
+     * Adds some of the entities to a world that has the blueprints.
+     *
+     * @param first the index of the first entity to add
+     * @param count the maximum number of entities to add
+     * @return the index of the entity after the last one added
+     */
+    public int addTo(final BulletWorld world, final int first, final int count) {
+        final int end = (int) Math.min(entityCount, (long) first + count);
+        final Scratch scratch = Scratch.push();
+        try {
+            final Matrix4 transform = scratch.mat4();
+            for (int i = first; i < end; i++) {
+                world.add(getType(i), getTransform(i, transform)).setColour(getColour(i, colour));
+            }
+        } finally {
+            scratch.pop();
+        }
+        return end;
+    }
+
+    /**
+     * Writes a scene. The arrays hold the values of every blueprint and
+     * entity in a row, see the accessors of this class.
+     *
+     * @param names the names of the blueprints
+     * @param shapes the shapes of the blueprints
+     * @param masses the masses of the blueprints
+     * @param shapeParams three shape parameters per blueprint
+     * @param blueprints the blueprint of every entity
+     * @param transforms position x, y, z and rotation x, y, z, w per entity
+     * @param colours the rgba8888 colour of every entity
+     * @param out the stream to write to, it isn't closed
+     * @throws IllegalArgumentException if the arrays don't have a value for
+     * every blueprint and entity, or an entity uses a blueprint out of range
+     */
+    public static void write(final String[] names, final int[] shapes, final float[] masses,
+            final float[] shapeParams, final int[] blueprints, final float[] transforms,
+            final int[] colours, final OutputStream out) throws IOException {
+        final int blueprintCount = names.length, entityCount = blueprints.length;
+        final byte[][] encoded = new byte[blueprintCount][];
+        for (int i = 0; i < blueprintCount; i++) {
+            encoded[i] = names[i].getBytes("UTF-8");
+            if (encoded[i].length > 0xFFFF) {
+                throw new IllegalArgumentException("blueprint name too long: " + names[i]);
+            }
+        }
+        if (blueprintCount > 0xFFFF) {
+            throw new IllegalArgumentException("too many blueprints: " + blueprintCount);
+        }
+        if (shapes.length != blueprintCount || masses.length != blueprintCount
+                || shapeParams.length != blueprintCount * 3 || transforms.length != entityCount * 7
+                || colours.length != entityCount) {
+            throw new IllegalArgumentException("the arrays don't match " + blueprintCount + " blueprints and "
+                    + entityCount + " entities");
+        }
+        for (int i = 0; i < entityCount; i++) {
+            if (blueprints[i] < 0 || blueprints[i] >= blueprintCount) {
+                throw new IllegalArgumentException("entity " + i + " has blueprint " + blueprints[i]
+                        + " of " + blueprintCount);
+            }
+        }
+
+        final int blueprintOffset = HEADER_SIZE;
+        final int entityOffset = blueprintOffset + blueprintCount * BLUEPRINT_SIZE;
+        final int nameOffset = entityOffset + entityCount * ENTITY_SIZE;
+
+        // DataOutputStream is big endian, the fields are swapped by hand
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(Integer.reverseBytes(MAGIC));
+        data.writeInt(Integer.reverseBytes(VERSION));
+        data.writeInt(Integer.reverseBytes(blueprintCount));
+        data.writeInt(Integer.reverseBytes(entityCount));
+        data.writeInt(Integer.reverseBytes(blueprintOffset));
+        data.writeInt(Integer.reverseBytes(entityOffset));
+        data.writeInt(Integer.reverseBytes(nameOffset));
+
+        int name = nameOffset;
+        for (int i = 0; i < blueprintCount; i++) {
+            data.writeInt(Integer.reverseBytes(name));
+            data.writeShort(Short.reverseBytes((short) encoded[i].length));
+            data.writeByte(shapes[i]);
+            data.writeByte(0);
+            writeFloat(data, masses[i]);
+            for (int p = 0; p < 3; p++) {
+                writeFloat(data, shapeParams[i * 3 + p]);
+            }
+            name += encoded[i].length;
+        }
+        for (int i = 0; i < entityCount; i++) {
+            data.writeShort(Short.reverseBytes((short) blueprints[i]));
+            data.writeShort(0);
+            for (int f = 0; f < 7; f++) {
+                writeFloat(data, transforms[i * 7 + f]);
+            }
+            data.writeInt(Integer.reverseBytes(colours[i]));
+        }
+        for (int i = 0; i < blueprintCount; i++) {
+            data.write(encoded[i]);
+        }
+        data.flush();
+    }
+
+    private static void writeFloat(final DataOutputStream data, final float value) throws IOException {
+        data.writeInt(Integer.reverseBytes(Float.floatToRawIntBits(value)));
+    }
+}
@@ -0,0 +1,49 @@
+package engine.physics;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Loads a {@link SceneFile} with an <code>AssetManager</code>. The file is
+ * opened and mapped on the loader thread, nothing is left for the main
+ * thread.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class SceneFileLoader extends AsynchronousAssetLoader<SceneFile, SceneFileLoader.Parameters> {
+
+    public static class Parameters extends AssetLoaderParameters<SceneFile> {
+    }
+
+    private SceneFile scene;
+
+    public SceneFileLoader(final FileHandleResolver resolver) {
+        super(resolver);
+    }
+
+    @Override
+    public void loadAsync(final AssetManager manager, final String fileName, final FileHandle file,
+            final Parameters parameter) {
+        this.scene = SceneFile.open(file);
+    }
+
+    @Override
+    public SceneFile loadSync(final AssetManager manager, final String fileName, final FileHandle file,
+            final Parameters parameter) {
+        final SceneFile result = this.scene;
+        this.scene = null;
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Array<AssetDescriptor> getDependencies(final String fileName, final FileHandle file,
+            final Parameters parameter) {
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+package engine.physics;
+
+import engine.core.GameSystem;
+
+/**
+ * Adds the entities of a loaded {@link SceneFile} to a world a few at a time,
+ * so a large level doesn't stall the frame it finished loading in. At most
+ * <code>spawnBudget</code> entities are added per frame, like the
+ * {@link ChunkStreamer} does with its chunks. Once every entity is added the
+ * static ones are baked, if <code>bake</code> is set.
+ * <p>
+ * A system of the <code>POST_PHYSICS</code> phase, or any other phase in
+ * which the world may be changed. It does nothing once it is done and can be
+ * removed then.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class SceneSpawner implements GameSystem {
+
+    /**
+     * Maximum number of entities added per frame.
+     */
+    public int spawnBudget = 256;
+
+    /**
+     * Bake the static entities once the scene is added, see
+     * {@link BulletWorld#bakeStatic()}.
+     */
+    public boolean bake = true;
+
+    private final BulletWorld world;
+    private final SceneFile scene;
+    private int next = -1;
+
+    public SceneSpawner(final BulletWorld world, final SceneFile scene) {
+        this.world = world;
+        this.scene = scene;
+    }
+
+    @Override
+    public void update(final float dt) {
+        if (isDone()) {
+            return;
+        }
+        if (next < 0) {
+            this.scene.addBlueprintsTo(world);
+            this.next = 0;
+        }
+        this.next = scene.addTo(world, next, spawnBudget);
+        if (isDone() && bake) {
+            this.world.bakeStatic();
+        }
+    }
+
+    /**
+     * Adds whatever is left in one go.
+     */
+    public void finish() {
+        final int budget = spawnBudget;
+        this.spawnBudget = Integer.MAX_VALUE;
+        this.update(0f);
+        this.spawnBudget = budget;
+    }
+
+    /**
+     * @return true once every entity of the scene is added
+     */
+    public boolean isDone() {
+        return next >= scene.getEntityCount();
+    }
+
+    /**
+     * @return the number of entities added so far
+     */
+    public int getSpawnedCount() {
+        return Math.max(next, 0);
+    }
+}
@@ -0,0 +1,454 @@
+package engine.physics;
+
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * Loose uniform grid over bounding spheres. Every item lives in the cell that
+ * holds its center, so moving an item only touches the grid when it crosses a
+ * cell border. Items bigger than a cell are kept in a separate list that is
+ * always tested. Cells are hashed, so the grid has no fixed extent.
+ * <p>
+ * Queries append to a caller-provided array and don't allocate.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ * @param <T> the type of the items
+ */
+public class SpatialGrid<T> {
+
+    private static final int NONE = -1;
+
+    private final float cellSize;
+    private final float invCellSize;
+
+    // proxy data, indexed by proxy id
+    private float[] x, y, z, r;
+    private Object[] items;
+    private Cell[] cellOf;
+    private int[] slotOf;
+    private int capacity;
+    private int size;
+    private final IntArray freeProxies;
+
+    private final LongMap<Cell> lookup;
+    private final Array<Cell> cells;
+    private final Array<Cell> cellPool;
+    private final Cell oversize;
+
+    /**
+     * Number of cells/items tested during the last query.
+     */
+    public int cellsVisited, itemsTested;
+
+    /**
+     * @param cellSize the width of a cell, items with a radius bigger than
+     * this are not stored in the grid itself
+     */
+    public SpatialGrid(final float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize <= 0");
+        }
+        this.cellSize = cellSize;
+        this.invCellSize = 1f / cellSize;
+
+        this.capacity = 16;
+        this.x = new float[capacity];
+        this.y = new float[capacity];
+        this.z = new float[capacity];
+        this.r = new float[capacity];
+        this.items = new Object[capacity];
+        this.cellOf = new Cell[capacity];
+        this.slotOf = new int[capacity];
+        this.freeProxies = new IntArray();
+
+        this.lookup = new LongMap<Cell>();
+        this.cells = new Array<Cell>(false, 16, Cell.class);
+        this.cellPool = new Array<Cell>(false, 16, Cell.class);
+        this.oversize = new Cell();
+    }
+
+    /**
+     * Adds an item to the grid.
+     *
+     * @return the proxy id used to update or remove the item
+     */
+    public int add(final T item, final float x, final float y, final float z, final float radius) {
+        final int proxy;
+        if (freeProxies.size > 0) {
+            proxy = freeProxies.pop();
+        } else {
+            if (size == capacity) {
+                grow();
+            }
+            proxy = size;
+        }
+        this.size++;
+
+        this.x[proxy] = x;
+        this.y[proxy] = y;
+        this.z[proxy] = z;
+        this.r[proxy] = radius;
+        this.items[proxy] = item;
+        insert(proxy, radius > cellSize ? oversize : obtainCell(x, y, z));
+        return proxy;
+    }
+
+    /**
+     * Moves an item, only touches the cells when it crosses a cell border.
+     */
+    public void update(final int proxy, final float x, final float y, final float z) {
+        this.x[proxy] = x;
+        this.y[proxy] = y;
+        this.z[proxy] = z;
+
+        final Cell cell = cellOf[proxy];
+        if (cell == oversize) {
+            return;
+        }
+        final int ix = cell(x), iy = cell(y), iz = cell(z);
+        if (ix != cell.ix || iy != cell.iy || iz != cell.iz) {
+            erase(proxy);
+            insert(proxy, obtainCell(x, y, z));
+        }
+    }
+
+    public void remove(final int proxy) {
+        erase(proxy);
+        this.items[proxy] = null;
+        this.freeProxies.add(proxy);
+        this.size--;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(final int proxy) {
+        return (T) items[proxy];
+    }
+
+    /**
+     * @return the number of items in the grid
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of non-empty cells
+     */
+    public int getCellCount() {
+        return this.cells.size;
+    }
+
+    public float getCellSize() {
+        return this.cellSize;
+    }
+
+    /**
+     * Adds every item in the grid to <code>out</code>.
+     *
+     * @return the number of items added to <code>out</code>
+     */
+    @SuppressWarnings("unchecked")
+    public int getAll(final Array<? super T> out) {
+        final int start = out.size;
+        for (int i = 0; i < oversize.size; i++) {
+            out.add((T) items[oversize.members[i]]);
+        }
+        for (int i = 0; i < cells.size; i++) {
+            final Cell cell = cells.items[i];
+            for (int j = 0; j < cell.size; j++) {
+                out.add((T) items[cell.members[j]]);
+            }
+        }
+        return out.size - start;
+    }
+
+    /**
+     * Finds all items whose bounding sphere intersects a sphere.
+     *
+     * @return the number of items added to <code>out</code>
+     */
+    public int query(final float cx, final float cy, final float cz, final float radius,
+            final Array<? super T> out) {
+        final int start = out.size;
+        beginQuery();
+        testCell(oversize, cx, cy, cz, radius, out);
+        final int ix0 = cell(cx - radius - cellSize), ix1 = cell(cx + radius + cellSize);
+        final int iy0 = cell(cy - radius - cellSize), iy1 = cell(cy + radius + cellSize);
+        final int iz0 = cell(cz - radius - cellSize), iz1 = cell(cz + radius + cellSize);
+
+        if (isSparse(ix0, iy0, iz0, ix1, iy1, iz1)) {
+            for (int i = 0; i < cells.size; i++) {
+                final Cell cell = cells.items[i];
+                if (cell.in(ix0, iy0, iz0, ix1, iy1, iz1)) {
+                    testCell(cell, cx, cy, cz, radius, out);
+                }
+            }
+        } else {
+            for (int ix = ix0; ix <= ix1; ix++) {
+                for (int iy = iy0; iy <= iy1; iy++) {
+                    for (int iz = iz0; iz <= iz1; iz++) {
+                        final Cell cell = lookup.get(key(ix, iy, iz));
+                        if (cell != null) {
+                            testCell(cell, cx, cy, cz, radius, out);
+                        }
+                    }
+                }
+            }
+        }
+        return out.size - start;
+    }
+
+    /**
+     * Finds all items whose bounding sphere intersects an axis aligned box.
+     *
+     * @return the number of items added to <code>out</code>
+     */
+    public int query(final Vector3 min, final Vector3 max, final Array<? super T> out) {
+        final int start = out.size;
+        beginQuery();
+        testCell(oversize, min, max, out);
+        final int ix0 = cell(min.x - cellSize), ix1 = cell(max.x + cellSize);
+        final int iy0 = cell(min.y - cellSize), iy1 = cell(max.y + cellSize);
+        final int iz0 = cell(min.z - cellSize), iz1 = cell(max.z + cellSize);
+
+        if (isSparse(ix0, iy0, iz0, ix1, iy1, iz1)) {
+            for (int i = 0; i < cells.size; i++) {
+                final Cell cell = cells.items[i];
+                if (cell.in(ix0, iy0, iz0, ix1, iy1, iz1)) {
+                    testCell(cell, min, max, out);
+                }
+            }
+        } else {
+            for (int ix = ix0; ix <= ix1; ix++) {
+                for (int iy = iy0; iy <= iy1; iy++) {
+                    for (int iz = iz0; iz <= iz1; iz++) {
+                        final Cell cell = lookup.get(key(ix, iy, iz));
+                        if (cell != null) {
+                            testCell(cell, min, max, out);
+                        }
+                    }
+                }
+            }
+        }
+        return out.size - start;
+    }
+
+    /**
+     * Finds all items whose bounding sphere intersects a frustum.
+     *
+     * @return the number of items added to <code>out</code>
+     */
+    public int query(final Frustum frustum, final Array<? super T> out) {
+        final int start = out.size;
+        beginQuery();
+        testCell(oversize, frustum, out);
+
+        // bounds of the frustum, the far plane limits how many cells we visit
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (Vector3 p : frustum.planePoints) {
+            minX = Math.min(minX, p.x);
+            minY = Math.min(minY, p.y);
+            minZ = Math.min(minZ, p.z);
+            maxX = Math.max(maxX, p.x);
+            maxY = Math.max(maxY, p.y);
+            maxZ = Math.max(maxZ, p.z);
+        }
+        final int ix0 = cell(minX - cellSize), ix1 = cell(maxX + cellSize);
+        final int iy0 = cell(minY - cellSize), iy1 = cell(maxY + cellSize);
+        final int iz0 = cell(minZ - cellSize), iz1 = cell(maxZ + cellSize);
+
+        // a cell holds centers, its items may stick out by up to a cell
+        final float half = cellSize * 1.5f;
+        if (isSparse(ix0, iy0, iz0, ix1, iy1, iz1)) {
+            for (int i = 0; i < cells.size; i++) {
+                final Cell cell = cells.items[i];
+                if (cell.in(ix0, iy0, iz0, ix1, iy1, iz1)
+                        && frustum.boundsInFrustum(center(cell.ix), center(cell.iy), center(cell.iz), half, half, half)) {
+                    testCell(cell, frustum, out);
+                }
+            }
+        } else {
+            for (int ix = ix0; ix <= ix1; ix++) {
+                for (int iy = iy0; iy <= iy1; iy++) {
+                    for (int iz = iz0; iz <= iz1; iz++) {
+                        final Cell cell = lookup.get(key(ix, iy, iz));
+                        if (cell != null
+                                && frustum.boundsInFrustum(center(ix), center(iy), center(iz), half, half, half)) {
+                            testCell(cell, frustum, out);
+                        }
+                    }
+                }
+            }
+        }
+        return out.size - start;
+    }
+
+    private void beginQuery() {
+        this.cellsVisited = 0;
+        this.itemsTested = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void testCell(final Cell cell, final float cx, final float cy, final float cz,
+            final float radius, final Array<? super T> out) {
+        this.cellsVisited++;
+        this.itemsTested += cell.size;
+        for (int i = 0; i < cell.size; i++) {
+            final int p = cell.members[i];
+            final float dx = x[p] - cx, dy = y[p] - cy, dz = z[p] - cz, rr = r[p] + radius;
+            if (dx * dx + dy * dy + dz * dz <= rr * rr) {
+                out.add((T) items[p]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void testCell(final Cell cell, final Vector3 min, final Vector3 max,
+            final Array<? super T> out) {
+        this.cellsVisited++;
+        this.itemsTested += cell.size;
+        for (int i = 0; i < cell.size; i++) {
+            final int p = cell.members[i];
+            // distance from the center of the sphere to the closest point on the box
+            final float dx = x[p] < min.x ? min.x - x[p] : (x[p] > max.x ? x[p] - max.x : 0);
+            final float dy = y[p] < min.y ? min.y - y[p] : (y[p] > max.y ? y[p] - max.y : 0);
+            final float dz = z[p] < min.z ? min.z - z[p] : (z[p] > max.z ? z[p] - max.z : 0);
+            if (dx * dx + dy * dy + dz * dz <= r[p] * r[p]) {
+                out.add((T) items[p]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void testCell(final Cell cell, final Frustum frustum, final Array<? super T> out) {
+        this.cellsVisited++;
+        this.itemsTested += cell.size;
+        for (int i = 0; i < cell.size; i++) {
+            final int p = cell.members[i];
+            if (frustum.sphereInFrustum(x[p], y[p], z[p], r[p])) {
+                out.add((T) items[p]);
+            }
+        }
+    }
+
+    /**
+     * @return true if there are fewer occupied cells than cells in the range,
+     * in which case walking the occupied cells is cheaper
+     */
+    private boolean isSparse(final int ix0, final int iy0, final int iz0,
+            final int ix1, final int iy1, final int iz1) {
+        final long count = (long) (ix1 - ix0 + 1) * (iy1 - iy0 + 1) * (iz1 - iz0 + 1);
+        return count > cells.size;
+    }
+
+    private void insert(final int proxy, final Cell cell) {
+        if (cell.size == cell.members.length) {
+            final int[] members = new int[cell.members.length << 1];
+            System.arraycopy(cell.members, 0, members, 0, cell.size);
+            cell.members = members;
+        }
+        this.cellOf[proxy] = cell;
+        this.slotOf[proxy] = cell.size;
+        cell.members[cell.size++] = proxy;
+    }
+
+    private void erase(final int proxy) {
+        final Cell cell = cellOf[proxy];
+        final int slot = slotOf[proxy];
+
+        // swap the last member into the free slot
+        final int last = cell.members[--cell.size];
+        cell.members[slot] = last;
+        this.slotOf[last] = slot;
+
+        this.cellOf[proxy] = null;
+        this.slotOf[proxy] = NONE;
+
+        if (cell.size == 0 && cell != oversize) {
+            freeCell(cell);
+        }
+    }
+
+    private Cell obtainCell(final float x, final float y, final float z) {
+        final int ix = cell(x), iy = cell(y), iz = cell(z);
+        final long key = key(ix, iy, iz);
+        Cell cell = lookup.get(key);
+        if (cell == null) {
+            cell = cellPool.size > 0 ? cellPool.pop() : new Cell();
+            cell.ix = ix;
+            cell.iy = iy;
+            cell.iz = iz;
+            cell.key = key;
+            cell.index = cells.size;
+            this.cells.add(cell);
+            this.lookup.put(key, cell);
+        }
+        return cell;
+    }
+
+    private void freeCell(final Cell cell) {
+        this.lookup.remove(cell.key);
+        final Cell last = cells.pop();
+        if (last != cell) {
+            this.cells.items[cell.index] = last;
+            last.index = cell.index;
+        }
+        this.cellPool.add(cell);
+    }
+
+    private void grow() {
+        this.capacity <<= 1;
+        this.x = copyOf(x, capacity);
+        this.y = copyOf(y, capacity);
+        this.z = copyOf(z, capacity);
+        this.r = copyOf(r, capacity);
+        final Object[] newItems = new Object[capacity];
+        System.arraycopy(items, 0, newItems, 0, size);
+        this.items = newItems;
+        final Cell[] newCellOf = new Cell[capacity];
+        System.arraycopy(cellOf, 0, newCellOf, 0, size);
+        this.cellOf = newCellOf;
+        final int[] newSlotOf = new int[capacity];
+        System.arraycopy(slotOf, 0, newSlotOf, 0, size);
+        this.slotOf = newSlotOf;
+    }
+
+    private static float[] copyOf(final float[] array, final int length) {
+        final float[] copy = new float[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    private int cell(final float v) {
+        return (int) Math.floor(v * invCellSize);
+    }
+
+    private float center(final int i) {
+        return (i + 0.5f) * cellSize;
+    }
+
+    private static long key(final int ix, final int iy, final int iz) {
+        return ((ix & 0x1FFFFFL) << 42) | ((iy & 0x1FFFFFL) << 21) | (iz & 0x1FFFFFL);
+    }
+
+    private static final class Cell {
+
+        long key;
+        int ix, iy, iz;
+        int index;
+        int[] members = new int[8];
+        int size;
+
+        boolean in(final int ix0, final int iy0, final int iz0,
+                final int ix1, final int iy1, final int iz1) {
+            return ix >= ix0 && ix <= ix1
+                    && iy >= iy0 && iy <= iy1
+                    && iz >= iz0 && iz <= iz1;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package engine.physics;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.g3d.model.Node;
+import com.badlogic.gdx.graphics.g3d.model.NodePart;
+import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
+import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.collision.btCompoundShape;
+import com.badlogic.gdx.physics.bullet.dynamics.btRigidBody;
+import com.badlogic.gdx.physics.bullet.dynamics.btRigidBody.btRigidBodyConstructionInfo;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * A set of static entities baked into a single entity. The meshes of all
+ * pieces that share a material are merged, so they cost one draw call, and
+ * their collision shapes become the children of one compound shape, so they
+ * cost one broadphase proxy. Materials that only differ in their diffuse
+ * colour count as the same: the colour of each piece is written into the
+ * vertices of the merged mesh instead, unless its mesh has colours already.
+ * <p>
+ * The original pieces are kept and can still be looked up, for example from
+ * the child index reported by a collision callback.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ * @see BulletWorld#bakeStatic()
+ */
+public class StaticGeometry implements Disposable {
+
+    /**
+     * Meshes use short indices.
+     */
+    private static final int MAX_VERTICES = (1 << 16) - 1;
+
+    /**
+     * The entity the pieces are rendered and simulated as.
+     */
+    public final Entity entity;
+
+    private final Array<Entity> pieces;
+    private final Model model;
+    private btCompoundShape shape;
+    private btRigidBodyConstructionInfo bodyInfo;
+
+    public final int drawCallsBefore, drawCallsAfter;
+    public final int proxiesBefore, proxiesAfter;
+
+    /**
+     * @param pieces the static entities to merge, they shouldn't be in a world
+     */
+    public StaticGeometry(final Array<Entity> pieces) {
+        this.pieces = new Array<Entity>(pieces);
+
+        // Sort all parts into groups that can be drawn with a single call
+        final Array<Group> groups = new Array<Group>();
+        int parts = 0;
+        for (Entity piece : this.pieces) {
+            final ModelInstance instance = piece.getModelInstance();
+            for (int i = 0; i < instance.nodes.size; i++) {
+                parts += collect(piece, instance.nodes.get(i), groups);
+            }
+        }
+
+        final ModelBuilder modelBuilder = new ModelBuilder();
+        final MeshBuilder meshBuilder = new MeshBuilder();
+        final Matrix4 transform = new Matrix4();
+        int meshes = 0;
+
+        modelBuilder.begin();
+        for (Group group : groups) {
+            meshBuilder.begin(group.merged, group.primitiveType);
+            for (int i = 0; i < group.parts.size; i++) {
+                final NodePart part = group.parts.get(i);
+                if (meshBuilder.getNumVertices() + part.meshPart.size > MAX_VERTICES) {
+                    end(modelBuilder, meshBuilder, group, meshes++);
+                    meshBuilder.begin(group.merged, group.primitiveType);
+                }
+                meshBuilder.setVertexTransform(transform.set(group.owners.get(i).transform)
+                        .mul(group.nodes.get(i).globalTransform));
+                if (group.coloured) {
+                    addColoured(meshBuilder, part);
+                } else {
+                    meshBuilder.addMesh(part.meshPart);
+                }
+            }
+            end(modelBuilder, meshBuilder, group, meshes++);
+        }
+        this.model = modelBuilder.end();
+
+        this.shape = new btCompoundShape();
+        for (Entity piece : this.pieces) {
+            this.shape.addChildShape(piece.getMotionState().current, piece.getBody().getCollisionShape());
+        }
+        this.bodyInfo = new btRigidBodyConstructionInfo(0f, null, shape, Vector3.Zero);
+        this.entity = new Entity(new ModelInstance(model), new btRigidBody(bodyInfo));
+
+        this.drawCallsBefore = parts;
+        this.drawCallsAfter = meshes;
+        this.proxiesBefore = this.pieces.size;
+        this.proxiesAfter = 1;
+    }
+
+    private static int collect(final Entity owner, final Node node, final Array<Group> groups) {
+        int count = 0;
+        for (NodePart part : node.parts) {
+            if (!part.enabled) {
+                continue;
+            }
+            final VertexAttributes attributes = part.meshPart.mesh.getVertexAttributes();
+            final boolean coloured = attributes.findByUsage(Usage.ColorPacked) == null
+                    && attributes.findByUsage(Usage.ColorUnpacked) == null;
+            final Material material;
+            if (coloured) {
+                material = new Material(part.material);
+                material.remove(ColorAttribute.Diffuse);
+            } else {
+                material = part.material;
+            }
+            Group group = null;
+            for (Group g : groups) {
+                if (g.accepts(material, attributes, part.meshPart.primitiveType, coloured)) {
+                    group = g;
+                    break;
+                }
+            }
+            if (group == null) {
+                groups.add(group = new Group(material, attributes, part.meshPart.primitiveType, coloured));
+            }
+            group.owners.add(owner);
+            group.nodes.add(node);
+            group.parts.add(part);
+            count++;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            count += collect(owner, node.getChild(i), groups);
+        }
+        return count;
+    }
+
+    /**
+     * Adds a part with its diffuse colour packed into every vertex, after the
+     * attributes of its mesh.
+     */
+    private static void addColoured(final MeshBuilder meshBuilder, final NodePart part) {
+        final Mesh mesh = part.meshPart.mesh;
+        final ColorAttribute diffuse = (ColorAttribute) part.material.get(ColorAttribute.Diffuse);
+        final float colour = (diffuse != null ? diffuse.color : Color.WHITE).toFloatBits();
+
+        final int stride = mesh.getVertexSize() / 4;
+        final float[] source = mesh.getVertices(new float[mesh.getNumVertices() * stride]);
+        final float[] vertices = new float[mesh.getNumVertices() * (stride + 1)];
+        for (int v = 0, from = 0, to = 0; v < mesh.getNumVertices(); v++, from += stride, to += stride + 1) {
+            System.arraycopy(source, from, vertices, to, stride);
+            vertices[to + stride] = colour;
+        }
+        final short[] indices = new short[mesh.getNumIndices()];
+        mesh.getIndices(indices);
+        meshBuilder.addMesh(vertices, indices, part.meshPart.offset, part.meshPart.size);
+    }
+
+    private static void end(final ModelBuilder modelBuilder, final MeshBuilder meshBuilder,
+            final Group group, final int index) {
+        final Mesh mesh = meshBuilder.end();
+        modelBuilder.manage(mesh);
+        modelBuilder.node().id = "static" + index;
+        final Material material = new Material(group.material);
+        if (group.coloured) {
+            material.set(ColorAttribute.createDiffuse(Color.WHITE));
+        }
+        modelBuilder.part("static" + index, mesh, group.primitiveType, material);
+    }
+
+    /**
+     * @param childIndex index of the child shape in the compound shape
+     * @return the piece the child shape belongs to
+     */
+    public Entity getPiece(final int childIndex) {
+        return this.pieces.get(childIndex);
+    }
+
+    public int getPieceCount() {
+        return this.pieces.size;
+    }
+
+    /**
+     * @return the child index of the piece, -1 if it isn't part of this
+     */
+    public int indexOf(final Entity piece) {
+        return this.pieces.indexOf(piece, true);
+    }
+
+    /**
+     * Disposes the pieces and the merged model and shape. The entity itself is
+     * disposed by the world that holds it.
+     */
+    @Override
+    public void dispose() {
+        for (Entity piece : pieces) {
+            piece.dispose();
+        }
+        this.pieces.clear();
+        if (bodyInfo != null) {
+            this.bodyInfo.dispose();
+        }
+        if (shape != null) {
+            this.shape.dispose();
+        }
+        this.bodyInfo = null;
+        this.shape = null;
+        this.model.dispose();
+    }
+
+    private static final class Group {
+
+        /**
+         * Without the diffuse colour if the colours go in the vertices.
+         */
+        final Material material;
+        /**
+         * The attributes of the pieces, the merged mesh may add a colour.
+         */
+        final VertexAttributes attributes;
+        final int primitiveType;
+        final boolean coloured;
+        final Array<Entity> owners = new Array<Entity>();
+        final Array<Node> nodes = new Array<Node>();
+        final Array<NodePart> parts = new Array<NodePart>();
+
+        final VertexAttributes merged;
+
+        Group(final Material material, final VertexAttributes attributes, final int primitiveType,
+                final boolean coloured) {
+            this.material = material;
+            this.attributes = attributes;
+            this.primitiveType = primitiveType;
+            this.coloured = coloured;
+            this.merged = coloured ? withColour(attributes) : attributes;
+        }
+
+        boolean accepts(final Material material, final VertexAttributes attributes, final int primitiveType,
+                final boolean coloured) {
+            return this.primitiveType == primitiveType
+                    && this.coloured == coloured
+                    && this.attributes.equals(attributes)
+                    && this.material.same(material, true);
+        }
+
+        private static VertexAttributes withColour(final VertexAttributes attributes) {
+            final VertexAttribute[] array = new VertexAttribute[attributes.size() + 1];
+            for (int i = 0; i < attributes.size(); i++) {
+                array[i] = attributes.get(i);
+            }
+            array[array.length - 1] = VertexAttribute.ColorPacked();
+            return new VertexAttributes(array);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package engine.utils;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetErrorListener;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
+import engine.graphics.ShaderLoader;
+import engine.graphics.ShaderManager;
+import engine.graphics.ShaderPreprocessor;
+import engine.physics.SceneFile;
+import engine.physics.SceneFileLoader;
+
+/**
+ * Loads the assets of the game in the background, on top of an
+ * <code>AssetManager</code>. Files are read and decoded on the loader thread
+ * of the manager, the GL work left for the main thread (uploading textures
+ * and meshes, compiling shaders) is spread over frames: {@link #update()}
+ * spends at most <code>budget</code> milliseconds per frame on it. The
+ * dependencies of an asset, the textures of a model for example, are loaded
+ * first.
+ * <p>
+ * Every {@link #load(String, Class)} adds a reference to the asset and every
+ * {@link #unload(String)} removes one, the asset is disposed when the last
+ * reference is gone. Loading an asset that is already loaded only adds the
+ * reference.
+ * </p>
+ * <p>
+ * Besides the types the manager knows, shaders ({@link ShaderLoader}) and
+ * scene files ({@link SceneFileLoader}) can be loaded. A failed asset doesn't
+ * stop the others, the state turns to <code>FAILED</code> until
+ * {@link #clearError()}.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class Assets implements Disposable, AssetErrorListener {
+
+    /**
+     * Nothing queued.
+     */
+    public static final int IDLE = 0;
+    /**
+     * Assets are being loaded.
+     */
+    public static final int LOADING = 1;
+    /**
+     * An asset failed to load, see {@link #getError()}.
+     */
+    public static final int FAILED = 2;
+
+    /**
+     * Number of steps in a row that finish no asset before {@link #update()}
+     * stops for the frame. Getting an asset to the loader thread takes a few
+     * steps, checking on it one.
+     */
+    private static final int STALLED_STEPS = 4;
+
+    /**
+     * Called on the main thread when an asset is loaded.
+     */
+    public interface Callback {
+
+        public void loaded(String path, Object asset);
+    }
+
+    /**
+     * Maximum number of milliseconds {@link #update()} spends per frame.
+     */
+    public int budget = 4;
+
+    private final AssetManager manager;
+    private final Array<String> waiting = new Array<String>();
+    private final Array<Callback> callbacks = new Array<Callback>();
+    private String failedPath;
+    private Throwable error;
+    /**
+     * The shader manager created by this, null if it was passed in.
+     */
+    private ShaderManager ownShaders;
+
+    public Assets() {
+        this(new InternalFileHandleResolver());
+    }
+
+    public Assets(final FileHandleResolver resolver) {
+        this(resolver, null);
+    }
+
+    /**
+     * @param resolver finds the files
+     * @param shaders compiles the shaders, null for a manager of its own
+     */
+    public Assets(final FileHandleResolver resolver, final ShaderManager shaders) {
+        if (shaders == null) {
+            this.ownShaders = new ShaderManager(new ShaderPreprocessor(resolver));
+        }
+        this.manager = new AssetManager(resolver);
+        this.manager.setLoader(ShaderProgram.class, new ShaderLoader(resolver, shaders != null ? shaders : ownShaders));
+        this.manager.setLoader(SceneFile.class, new SceneFileLoader(resolver));
+        this.manager.setErrorListener(this);
+    }
+
+    /**
+     * Queues an asset, or adds a reference if it is already loaded.
+     */
+    public <T> void load(final String path, final Class<T> type) {
+        this.manager.load(path, type);
+    }
+
+    /**
+     * Queues an asset and calls back once it is loaded, during a later
+     * {@link #update()}.
+     */
+    public <T> void load(final String path, final Class<T> type, final Callback callback) {
+        this.manager.load(path, type);
+        this.waiting.add(path);
+        this.callbacks.add(callback);
+    }
+
+    /**
+     * @return a loaded asset
+     * @throws com.badlogic.gdx.utils.GdxRuntimeException if the asset isn't
+     * loaded
+     */
+    public <T> T get(final String path, final Class<T> type) {
+        return this.manager.get(path, type);
+    }
+
+    public boolean isLoaded(final String path) {
+        return this.manager.isLoaded(path);
+    }
+
+    /**
+     * Removes a reference, the asset and the dependencies nothing else uses
+     * are disposed once the last one is gone.
+     */
+    public void unload(final String path) {
+        this.manager.unload(path);
+    }
+
+    /**
+     * @return the number of references to an asset
+     */
+    public int getReferenceCount(final String path) {
+        return this.manager.isLoaded(path) ? manager.getReferenceCount(path) : 0;
+    }
+
+    /**
+     * Loads for at most <code>budget</code> milliseconds and calls back for
+     * the assets that finished. Call once per frame on the main thread.
+     * <p>
+     * Unlike <code>AssetManager.update(int)</code> this doesn't yield until
+     * the budget is spent while the loader thread works: once a few steps in
+     * a row finish nothing, the frame goes on and the next one checks again.
+     * </p>
+     *
+     * @return true if everything queued is loaded
+     */
+    public boolean update() {
+        final long end = TimeUtils.millis() + budget;
+        int loaded = manager.getLoadedAssets();
+        int stalled = 0;
+        boolean done;
+        do {
+            done = manager.update();
+            final int now = manager.getLoadedAssets();
+            if (now != loaded) {
+                loaded = now;
+                stalled = 0;
+            } else if (++stalled >= STALLED_STEPS) {
+                // waiting for the loader thread
+                break;
+            }
+        } while (!done && TimeUtils.millis() < end);
+        this.notifyLoaded();
+        return done;
+    }
+
+    /**
+     * Blocks until everything queued is loaded.
+     */
+    public void finishLoading() {
+        this.manager.finishLoading();
+        this.notifyLoaded();
+    }
+
+    private void notifyLoaded() {
+        // an asset whose dependency failed is dropped without an error of its own
+        final boolean idle = manager.getQueuedAssets() == 0;
+        for (int i = waiting.size - 1; i >= 0; i--) {
+            final String path = waiting.get(i);
+            if (manager.isLoaded(path)) {
+                final Callback callback = callbacks.removeIndex(i);
+                this.waiting.removeIndex(i);
+                callback.loaded(path, manager.get(path));
+            } else if (idle) {
+                this.callbacks.removeIndex(i);
+                this.waiting.removeIndex(i);
+            }
+        }
+    }
+
+    /**
+     * Drops the callbacks of an asset that won't load.
+     */
+    private void dropCallbacks(final String path) {
+        for (int i = waiting.size - 1; i >= 0; i--) {
+            if (waiting.get(i).equals(path)) {
+                this.callbacks.removeIndex(i);
+                this.waiting.removeIndex(i);
+            }
+        }
+    }
+
+    /**
+     * @return <code>IDLE</code>, <code>LOADING</code> or <code>FAILED</code>
+     */
+    public int getState() {
+        if (error != null) {
+            return FAILED;
+        }
+        return manager.getQueuedAssets() > 0 ? LOADING : IDLE;
+    }
+
+    /**
+     * @return the fraction of the queued assets that are loaded, from 0 to 1
+     */
+    public float getProgress() {
+        return this.manager.getProgress();
+    }
+
+    /**
+     * @return the number of assets loaded and still queued
+     */
+    public int getLoadedCount() {
+        return this.manager.getLoadedAssets();
+    }
+
+    public int getQueuedCount() {
+        return this.manager.getQueuedAssets();
+    }
+
+    /**
+     * @return the error of the last asset that failed, null if none did
+     */
+    public Throwable getError() {
+        return this.error;
+    }
+
+    /**
+     * @return the path of the last asset that failed
+     */
+    public String getFailedPath() {
+        return this.failedPath;
+    }
+
+    public void clearError() {
+        this.error = null;
+        this.failedPath = null;
+    }
+
+    /**
+     * @return the loaded assets with their reference counts and dependencies
+     */
+    public String getDiagnostics() {
+        return this.manager.getDiagnostics();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void error(final AssetDescriptor asset, final Throwable throwable) {
+        Gdx.app.error("Assets", "Error loading " + asset.fileName, throwable);
+        this.failedPath = asset.fileName;
+        this.error = throwable;
+        this.dropCallbacks(asset.fileName);
+    }
+
+    @Override
+    public void dispose() {
+        this.waiting.clear();
+        this.callbacks.clear();
+        this.manager.dispose();
+        if (ownShaders != null) {
+            this.ownShaders.dispose();
+            this.ownShaders = null;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package engine.utils;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Measures where the time of a frame goes. The phases of a frame are wrapped
+ * in {@link #begin(int)} and {@link #end(int)}, the profiler keeps the time
+ * spent in each phase for the last frames along with the bytes allocated by
+ * the main thread and the number of contact manifolds and contact points in
+ * the physics world.
+ * <p>
+ * Phases may nest and the times are inclusive, the world phase for example
+ * contains the dispatch of the messages sent every tick. A phase that runs
+ * more than once in a frame is summed.
+ * </p>
+ * <p>
+ * While disabled <code>begin</code> and <code>end</code> return after a
+ * single branch. Enabling or disabling takes effect at the next frame. Only
+ * the thread that starts the frames is measured, phases on other threads are
+ * ignored.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class Profiler {
+
+    /**
+     * The whole frame.
+     */
+    public static final int FRAME = 0;
+    /**
+     * Dispatching the messages of the message manager.
+     */
+    public static final int DISPATCH = 1;
+    /**
+     * Updating the physics world, including the ticks.
+     */
+    public static final int WORLD = 2;
+    /**
+     * Rendering the shadow map.
+     */
+    public static final int SHADOW_PASS = 3;
+    /**
+     * Rendering the world from the camera.
+     */
+    public static final int MAIN_PASS = 4;
+    /**
+     * Drawing the physics debug lines.
+     */
+    public static final int DEBUG_DRAW = 5;
+    /**
+     * Sorting the renderables of the batches, part of the passes.
+     */
+    public static final int SORT = 6;
+    /**
+     * Loading assets, mostly the GL uploads left for the main thread.
+     */
+    public static final int ASSETS = 7;
+
+    /**
+     * Number of phases, the series after that are counters.
+     */
+    public static final int PHASES = 8;
+
+    /**
+     * Bytes allocated by the main thread during the frame, -1 if the JVM can't
+     * tell.
+     */
+    public static final int ALLOCATED = 8;
+    /**
+     * Number of contact manifolds, pairs of bodies whose bounds overlap.
+     */
+    public static final int MANIFOLDS = 9;
+    /**
+     * Number of contact points in all manifolds.
+     */
+    public static final int CONTACTS = 10;
+    /**
+     * Estimated number of shader, material and mesh switches while drawing.
+     */
+    public static final int STATE_SWITCHES = 11;
+    /**
+     * Number of renderables that sorted with the same key as the one before.
+     */
+    public static final int SORT_COLLISIONS = 12;
+    /**
+     * Number of triangles the visible entities are drawn with in the main
+     * pass.
+     */
+    public static final int TRIANGLES = 13;
+    /**
+     * Number of triangles the levels of detail saved in the main pass.
+     */
+    public static final int TRIANGLES_SAVED = 14;
+    /**
+     * Microseconds from the oldest input event the ticks shown this frame
+     * took to the end of the frame, zero if there was none.
+     */
+    public static final int INPUT_LATENCY = 15;
+
+    /**
+     * Number of series, phases and counters.
+     */
+    public static final int SERIES = 16;
+
+    /**
+     * Names of the series, used in the overlay and the dumps.
+     */
+    public static final String[] NAMES = {
+        "frame", "dispatch", "world", "shadow pass", "main pass", "debug draw", "sort", "assets",
+        "allocated", "manifolds", "contacts", "switches", "collisions", "triangles", "saved",
+        "latency us"
+    };
+
+    /**
+     * Set to true to start measuring from the next frame on.
+     */
+    public boolean enabled = false;
+
+    private boolean active = false;
+
+    private final int history;
+    private final int window;
+
+    // the value of every series per frame, a ring of history frames
+    private final float[][] samples;
+    private final long[] frameStarts;
+    private int frames;
+
+    // the current frame
+    private final long[] starts = new long[PHASES];
+    private final long[] totals = new long[PHASES];
+    private long frameStart;
+    private long allocatedStart;
+    private final float[] counters = new float[SERIES];
+
+    // every begin/end pair for the trace, a ring as well
+    private final byte[] eventPhase;
+    private final long[] eventStart;
+    private final int[] eventDuration;
+    private long events;
+
+    private final float[] scratch;
+    private final com.sun.management.ThreadMXBean threads;
+    private Thread owner;
+
+    /**
+     * Keeps a minute worth of frames at 60 frames per second and computes the
+     * statistics over the last five seconds.
+     */
+    public Profiler() {
+        this(3600, 300, 1 << 16);
+    }
+
+    /**
+     * @param history the number of frames kept for the dumps
+     * @param window the number of frames the statistics are computed over
+     * @param events the number of phase events kept for the trace
+     */
+    public Profiler(final int history, final int window, final int events) {
+        this.history = history;
+        this.window = Math.min(window, history);
+        this.samples = new float[SERIES][history];
+        this.frameStarts = new long[history];
+        this.eventPhase = new byte[events];
+        this.eventStart = new long[events];
+        this.eventDuration = new int[events];
+        this.scratch = new float[this.window];
+        this.threads = allocationCounter();
+    }
+
+    /**
+     * @return the bean that counts allocated bytes per thread, null if the JVM
+     * doesn't support it
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            final Object bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                if (threads.isThreadAllocatedMemorySupported()) {
+                    threads.setThreadAllocatedMemoryEnabled(true);
+                    return threads;
+                }
+            }
+        } catch (Throwable ignore) {
+            // Not a HotSpot JVM
+        }
+        return null;
+    }
+
+    private long allocatedBytes() {
+        return threads != null ? threads.getThreadAllocatedBytes(owner.getId()) : -1L;
+    }
+
+    /**
+     * Starts a frame, the thread calling this is the one measured.
+     */
+    public void beginFrame() {
+        this.active = enabled;
+        if (!active) {
+            return;
+        }
+        this.owner = Thread.currentThread();
+        Arrays.fill(totals, 0L);
+        Arrays.fill(counters, 0f);
+        this.allocatedStart = allocatedBytes();
+        this.frameStart = TimeUtils.nanoTime();
+        this.starts[FRAME] = frameStart;
+    }
+
+    /**
+     * Ends the frame and stores its samples.
+     *
+     * @param manifolds the number of contact manifolds in the world
+     * @param contacts the number of contact points in the world
+     */
+    public void endFrame(final int manifolds, final int contacts) {
+        if (!active) {
+            return;
+        }
+        end(FRAME);
+        final long allocated = allocatedBytes();
+        final int frame = frames % history;
+        for (int i = 0; i < PHASES; i++) {
+            this.samples[i][frame] = totals[i] / 1e6f;
+        }
+        this.samples[ALLOCATED][frame] = allocated < 0 ? -1f : allocated - allocatedStart;
+        this.samples[MANIFOLDS][frame] = manifolds;
+        this.samples[CONTACTS][frame] = contacts;
+        for (int i = CONTACTS + 1; i < SERIES; i++) {
+            this.samples[i][frame] = counters[i];
+        }
+        this.frameStarts[frame] = frameStart;
+        this.frames++;
+        this.active = false;
+    }
+
+    /**
+     * @return true between <code>beginFrame</code> and <code>endFrame</code>
+     * of a frame that is measured
+     */
+    public boolean isActive() {
+        return this.active;
+    }
+
+    /**
+     * Marks the start of a phase.
+     *
+     * @param phase one of the phase constants
+     */
+    public void begin(final int phase) {
+        if (active && Thread.currentThread() == owner) {
+            this.starts[phase] = TimeUtils.nanoTime();
+        }
+    }
+
+    /**
+     * Marks the end of a phase.
+     *
+     * @param phase one of the phase constants
+     */
+    public void end(final int phase) {
+        if (!active || Thread.currentThread() != owner) {
+            return;
+        }
+        final long start = starts[phase];
+        final long duration = TimeUtils.nanoTime() - start;
+        this.totals[phase] += duration;
+
+        final int event = (int) (events++ % eventPhase.length);
+        this.eventPhase[event] = (byte) phase;
+        this.eventStart[event] = start;
+        this.eventDuration[event] = (int) Math.min(duration, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds to a counter of the current frame.
+     *
+     * @param counter one of the counter constants after
+     * <code>CONTACTS</code>
+     * @param value the amount to add
+     */
+    public void count(final int counter, final float value) {
+        if (active) {
+            this.counters[counter] += value;
+        }
+    }
+
+    /**
+     * @return the number of frames measured so far
+     */
+    public int getFrameCount() {
+        return this.frames;
+    }
+
+    /**
+     * @param series a phase or counter constant
+     * @return the value of the last measured frame, milliseconds for phases
+     */
+    public float getLast(final int series) {
+        return frames == 0 ? 0f : samples[series][(frames - 1) % history];
+    }
+
+    /**
+     * Computes the statistics of a series over the last frames.
+     *
+     * @param series a phase or counter constant
+     * @param out the stats to store the result in
+     * @return <code>out</code>, all zero if nothing was measured yet
+     */
+    public Stats getStats(final int series, final Stats out) {
+        final int n = Math.min(frames, window);
+        if (n == 0) {
+            return out.set(0, 0f, 0f, 0f, 0f, 0f);
+        }
+        float sum = 0f;
+        for (int i = 0; i < n; i++) {
+            final float value = samples[series][(frames - 1 - i) % history];
+            this.scratch[i] = value;
+            sum += value;
+        }
+        Arrays.sort(scratch, 0, n);
+        return out.set(n, sum / n, percentile(n, 0.5f), percentile(n, 0.95f),
+                percentile(n, 0.99f), scratch[n - 1]);
+    }
+
+    private float percentile(final int n, final float p) {
+        return this.scratch[Math.min(n - 1, (int) Math.ceil(p * n) - 1)];
+    }
+
+    /**
+     * Forgets everything measured so far.
+     */
+    public void reset() {
+        this.frames = 0;
+        this.events = 0;
+        this.active = false;
+    }
+
+    /**
+     * Writes one row per kept frame with the value of every series.
+     *
+     * @param file the file to write to, it is overwritten
+     */
+    public void writeCsv(final FileHandle file) {
+        final Writer writer = file.writer(false, "UTF-8");
+        try {
+            writer.write("frame,start_ms");
+            for (String name : NAMES) {
+                writer.write(',');
+                writer.write(name.replace(' ', '_'));
+            }
+            writer.write('\n');
+
+            final long origin = frameStarts[first(frames, history) % history];
+            for (int f = first(frames, history); f < frames; f++) {
+                final int frame = f % history;
+                writer.write(Integer.toString(f));
+                writer.write(',');
+                writer.write(Float.toString((frameStarts[frame] - origin) / 1e6f));
+                for (int i = 0; i < SERIES; i++) {
+                    writer.write(',');
+                    writer.write(i < PHASES ? Float.toString(samples[i][frame])
+                            : Long.toString((long) samples[i][frame]));
+                }
+                writer.write('\n');
+            }
+        } catch (IOException ex) {
+            throw new GdxRuntimeException("Error writing " + file, ex);
+        } finally {
+            close(writer);
+        }
+    }
+
+    /**
+     * Writes the kept phases as a trace that can be loaded in
+     * <code>chrome://tracing</code>, with the counters as counter tracks.
+     *
+     * @param file the file to write to, it is overwritten
+     */
+    public void writeTrace(final FileHandle file) {
+        final Writer writer = file.writer(false, "UTF-8");
+        try {
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+            final long firstEvent = Math.max(0L, events - eventPhase.length);
+            final long origin = events > 0 ? eventStart[(int) (firstEvent % eventPhase.length)] : 0L;
+            boolean first = true;
+            for (long e = firstEvent; e < events; e++) {
+                final int event = (int) (e % eventPhase.length);
+                if (!first) {
+                    writer.write(",\n");
+                }
+                first = false;
+                writer.write(String.format(Locale.ROOT,
+                        "{\"name\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":%.3f,\"dur\":%.3f}",
+                        NAMES[eventPhase[event]], (eventStart[event] - origin) / 1e3f, eventDuration[event] / 1e3f));
+            }
+            for (int f = first(frames, history); f < frames; f++) {
+                final int frame = f % history;
+                if (frameStarts[frame] < origin) {
+                    continue;
+                }
+                if (!first) {
+                    writer.write(",\n");
+                }
+                first = false;
+                writer.write(String.format(Locale.ROOT,
+                        "{\"name\":\"bullet\",\"ph\":\"C\",\"pid\":1,\"ts\":%.3f,\"args\":{\"manifolds\":%d,\"contacts\":%d}},\n"
+                        + "{\"name\":\"allocated\",\"ph\":\"C\",\"pid\":1,\"ts\":%.3f,\"args\":{\"bytes\":%d}},\n"
+                        + "{\"name\":\"render\",\"ph\":\"C\",\"pid\":1,\"ts\":%.3f,\"args\":{\"switches\":%d,\"collisions\":%d,\"triangles\":%d}}",
+                        (frameStarts[frame] - origin) / 1e3f, (long) samples[MANIFOLDS][frame],
+                        (long) samples[CONTACTS][frame], (frameStarts[frame] - origin) / 1e3f,
+                        (long) samples[ALLOCATED][frame], (frameStarts[frame] - origin) / 1e3f,
+                        (long) samples[STATE_SWITCHES][frame], (long) samples[SORT_COLLISIONS][frame],
+                        (long) samples[TRIANGLES][frame]));
+            }
+            writer.write("\n]}\n");
+        } catch (IOException ex) {
+            throw new GdxRuntimeException("Error writing " + file, ex);
+        } finally {
+            close(writer);
+        }
+    }
+
+    private static int first(final int count, final int capacity) {
+        return Math.max(0, count - capacity);
+    }
+
+    private static void close(final Writer writer) {
+        try {
+            writer.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * Statistics of a series over the last frames.
+     */
+    public static class Stats {
+
+        /**
+         * Number of frames the statistics are computed over.
+         */
+        public int count;
+        public float mean, p50, p95, p99, max;
+
+        Stats set(final int count, final float mean, final float p50, final float p95,
+                final float p99, final float max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+            return this;
+        }
+    }
+}
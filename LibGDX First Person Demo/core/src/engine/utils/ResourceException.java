@@ -27,6 +27,17 @@ public class ResourceException extends RuntimeException {
         super(cause);
     }
 
+    /**
+     * Constructs an instance of <code>ResourceException</code> with the
+     * specified detail message and cause.
+     *
+     * @param msg the detail message.
+     * @param cause the cause of the exception
+     */
+    public ResourceException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
     @Override
     public final String toString() {
         return String.format("%s: %s", getClass().getSimpleName(), getMessage());
@@ -0,0 +1,204 @@
+package engine.utils;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+import java.util.Arrays;
+
+/**
+ * Temporary math objects for the current thread, handed out from a stack. A
+ * method opens a frame, takes what it needs and closes the frame again, which
+ * gives everything taken back:
+ *
+ * <pre>
+ * final Scratch scratch = Scratch.push();
+ * try {
+ *     final Vector3 v = scratch.vec3();
+ *     ...
+ * } finally {
+ *     scratch.pop();
+ * }
+ * </pre>
+ *
+ * Every thread has its own stack, so code running on different threads never
+ * shares a temporary. Objects are only allocated the first time the stack
+ * grows that deep, after that taking them is free.
+ * <p>
+ * A scratch object may not be kept after its frame is closed. With assertions
+ * enabled (<code>-ea</code>) the objects given back are filled with NaN, so
+ * reading one that escaped shows up straight away, and writing to one is
+ * detected the next time it is handed out. Unbalanced frames are detected as
+ * well.
+ * </p>
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public final class Scratch {
+
+    /**
+     * True if assertions are enabled.
+     */
+    private static final boolean CHECKS;
+
+    static {
+        boolean checks = false;
+        assert checks = true;
+        CHECKS = checks;
+    }
+
+    private static final ThreadLocal<Scratch> LOCAL = new ThreadLocal<Scratch>() {
+
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private Vector3[] vectors = new Vector3[16];
+    private Matrix4[] matrices = new Matrix4[4];
+    private Quaternion[] quaternions = new Quaternion[4];
+    private int vectorTop, matrixTop, quaternionTop;
+
+    // the tops of the stacks when each frame was opened
+    private int[] frames = new int[16 * 3];
+    private int depth;
+
+    private Scratch() {
+    }
+
+    /**
+     * Opens a frame on the stack of the current thread.
+     *
+     * @return the scratch of the current thread, call {@link #pop()} on it
+     * when done
+     */
+    public static Scratch push() {
+        final Scratch scratch = LOCAL.get();
+        if (scratch.depth * 3 == scratch.frames.length) {
+            final int[] frames = new int[scratch.frames.length << 1];
+            System.arraycopy(scratch.frames, 0, frames, 0, scratch.frames.length);
+            scratch.frames = frames;
+        }
+        final int frame = scratch.depth++ * 3;
+        scratch.frames[frame] = scratch.vectorTop;
+        scratch.frames[frame + 1] = scratch.matrixTop;
+        scratch.frames[frame + 2] = scratch.quaternionTop;
+        return scratch;
+    }
+
+    /**
+     * Closes the last frame, everything taken since it was opened is given
+     * back.
+     */
+    public void pop() {
+        if (CHECKS && LOCAL.get() != this) {
+            throw new IllegalStateException("scratch popped on another thread");
+        }
+        if (depth == 0) {
+            throw new IllegalStateException("pop without push");
+        }
+        final int frame = --depth * 3;
+        final int vectorTop = frames[frame];
+        final int matrixTop = frames[frame + 1];
+        final int quaternionTop = frames[frame + 2];
+        if (CHECKS) {
+            for (int i = vectorTop; i < this.vectorTop; i++) {
+                this.vectors[i].set(Float.NaN, Float.NaN, Float.NaN);
+            }
+            for (int i = matrixTop; i < this.matrixTop; i++) {
+                Arrays.fill(this.matrices[i].val, Float.NaN);
+            }
+            for (int i = quaternionTop; i < this.quaternionTop; i++) {
+                this.quaternions[i].set(Float.NaN, Float.NaN, Float.NaN, Float.NaN);
+            }
+        }
+        this.vectorTop = vectorTop;
+        this.matrixTop = matrixTop;
+        this.quaternionTop = quaternionTop;
+    }
+
+    /**
+     * @return the number of open frames
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * @return a vector set to zero, valid until the frame is closed
+     */
+    public Vector3 vec3() {
+        checkFrame();
+        if (vectorTop == vectors.length) {
+            final Vector3[] vectors = new Vector3[this.vectors.length << 1];
+            System.arraycopy(this.vectors, 0, vectors, 0, vectorTop);
+            this.vectors = vectors;
+        }
+        Vector3 v = vectors[vectorTop];
+        if (v == null) {
+            this.vectors[vectorTop] = v = new Vector3();
+        } else if (CHECKS && !(Float.isNaN(v.x) && Float.isNaN(v.y) && Float.isNaN(v.z))) {
+            throw new IllegalStateException("scratch vector written to after its frame was popped");
+        }
+        this.vectorTop++;
+        return v.setZero();
+    }
+
+    /**
+     * @return a vector with the given components, valid until the frame is
+     * closed
+     */
+    public Vector3 vec3(final float x, final float y, final float z) {
+        return vec3().set(x, y, z);
+    }
+
+    /**
+     * @return an identity matrix, valid until the frame is closed
+     */
+    public Matrix4 mat4() {
+        checkFrame();
+        if (matrixTop == matrices.length) {
+            final Matrix4[] matrices = new Matrix4[this.matrices.length << 1];
+            System.arraycopy(this.matrices, 0, matrices, 0, matrixTop);
+            this.matrices = matrices;
+        }
+        Matrix4 m = matrices[matrixTop];
+        if (m == null) {
+            this.matrices[matrixTop] = m = new Matrix4();
+        } else if (CHECKS) {
+            for (float value : m.val) {
+                if (!Float.isNaN(value)) {
+                    throw new IllegalStateException("scratch matrix written to after its frame was popped");
+                }
+            }
+        }
+        this.matrixTop++;
+        return m.idt();
+    }
+
+    /**
+     * @return an identity quaternion, valid until the frame is closed
+     */
+    public Quaternion quat() {
+        checkFrame();
+        if (quaternionTop == quaternions.length) {
+            final Quaternion[] quaternions = new Quaternion[this.quaternions.length << 1];
+            System.arraycopy(this.quaternions, 0, quaternions, 0, quaternionTop);
+            this.quaternions = quaternions;
+        }
+        Quaternion q = quaternions[quaternionTop];
+        if (q == null) {
+            this.quaternions[quaternionTop] = q = new Quaternion();
+        } else if (CHECKS && !(Float.isNaN(q.x) && Float.isNaN(q.y) && Float.isNaN(q.z) && Float.isNaN(q.w))) {
+            throw new IllegalStateException("scratch quaternion written to after its frame was popped");
+        }
+        this.quaternionTop++;
+        return q.idt();
+    }
+
+    private void checkFrame() {
+        if (CHECKS && depth == 0) {
+            throw new IllegalStateException("scratch taken outside of a frame");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class InputBufferTest {
+
+    private final InputBuffer.Event event = new InputBuffer.Event();
+
+    @Test
+    public void capacityIsRoundedUp() {
+        assertEquals(8, new InputBuffer(5).capacity());
+        assertEquals(8, new InputBuffer(8).capacity());
+    }
+
+    @Test
+    public void eventsComeOutInOrder() {
+        final InputBuffer buffer = new InputBuffer(4);
+        assertEquals(-1L, buffer.peekTime());
+        assertFalse(buffer.poll(event));
+
+        buffer.offer(InputBuffer.KEY_DOWN, 29, 0f, 0f, 10L);
+        buffer.offer(InputBuffer.MOUSE_MOVED, 0, 3f, -2f, 20L);
+        assertEquals(2, buffer.size());
+        assertEquals(10L, buffer.peekTime());
+
+        assertTrue(buffer.poll(event));
+        assertEquals(InputBuffer.KEY_DOWN, event.type);
+        assertEquals(29, event.code);
+        assertEquals(10L, event.time);
+        assertTrue(buffer.poll(event));
+        assertEquals(InputBuffer.MOUSE_MOVED, event.type);
+        assertEquals(3f, event.x, 0f);
+        assertEquals(-2f, event.y, 0f);
+        assertFalse(buffer.poll(event));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void wrapsAround() {
+        final InputBuffer buffer = new InputBuffer(4);
+        // many times around the ring, never more than three waiting
+        long time = 0L, expected = 0L;
+        for (int i = 0; i < 100; i++) {
+            while (buffer.size() < 3) {
+                assertTrue(buffer.offer(InputBuffer.KEY_DOWN, (int) time, 0f, 0f, time));
+                time++;
+            }
+            assertTrue(buffer.poll(event));
+            assertEquals(expected, event.time);
+            assertEquals((int) expected, event.code);
+            expected++;
+        }
+        assertEquals(0L, buffer.getDropped());
+    }
+
+    @Test
+    public void fullBufferDropsNewEvents() {
+        final InputBuffer buffer = new InputBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(InputBuffer.KEY_DOWN, i, 0f, 0f, i));
+        }
+        assertFalse(buffer.offer(InputBuffer.KEY_DOWN, 4, 0f, 0f, 4L));
+        assertFalse(buffer.offer(InputBuffer.KEY_DOWN, 5, 0f, 0f, 5L));
+        assertEquals(2L, buffer.getDropped());
+        assertEquals(4, buffer.size());
+
+        // the oldest events are kept, and there is room again once one is taken
+        assertTrue(buffer.poll(event));
+        assertEquals(0, event.code);
+        assertTrue(buffer.offer(InputBuffer.KEY_DOWN, 6, 0f, 0f, 6L));
+        for (int code : new int[]{1, 2, 3, 6}) {
+            assertTrue(buffer.poll(event));
+            assertEquals(code, event.code);
+        }
+    }
+
+    @Test
+    public void readerOnAnotherThreadSeesEveryEvent() throws InterruptedException {
+        final InputBuffer buffer = new InputBuffer(16);
+        final int count = 20000;
+        final long[] sum = new long[1];
+        final Thread reader = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                final InputBuffer.Event e = new InputBuffer.Event();
+                int read = 0;
+                long expected = 0L;
+                while (read < count) {
+                    if (buffer.poll(e)) {
+                        if (e.time != expected++) {
+                            return;
+                        }
+                        sum[0] += e.code;
+                        read++;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < count; i++) {
+            while (!buffer.offer(InputBuffer.KEY_DOWN, 1, 0f, 0f, i)) {
+                Thread.yield();
+            }
+        }
+        reader.join(10000L);
+        assertEquals(count, sum[0]);
+    }
+}
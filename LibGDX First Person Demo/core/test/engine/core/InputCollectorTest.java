@@ -0,0 +1,65 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class InputCollectorTest {
+
+    private final InputBuffer buffer = new InputBuffer(16);
+    private final InputCollector collector = new InputCollector(buffer);
+    private final InputBuffer.Event event = new InputBuffer.Event();
+
+    @Test
+    public void eventsGoInTheBufferInOrder() {
+        this.collector.keyDown(29);
+        this.collector.touchDown(4, 5, 0, 1);
+        this.collector.scrolled(-1);
+        this.collector.padDown(3);
+        this.collector.axisMoved(2, 0.25f);
+        this.collector.padUp(3);
+        this.collector.touchUp(4, 5, 0, 1);
+        this.collector.keyUp(29);
+
+        this.next(InputBuffer.KEY_DOWN, 29);
+        this.next(InputBuffer.BUTTON_DOWN, 1);
+        this.next(InputBuffer.SCROLLED, 0);
+        assertEquals(-1f, event.x, 0f);
+        this.next(InputBuffer.PAD_DOWN, 3);
+        this.next(InputBuffer.AXIS_MOVED, 2);
+        assertEquals(0.25f, event.x, 0f);
+        this.next(InputBuffer.PAD_UP, 3);
+        this.next(InputBuffer.BUTTON_UP, 1);
+        this.next(InputBuffer.KEY_UP, 29);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void eventsAreStampedInOrder() {
+        this.collector.keyDown(1);
+        this.collector.keyUp(1);
+        assertTrue(buffer.poll(event));
+        final long first = event.time;
+        assertTrue(buffer.poll(event));
+        assertTrue(event.time >= first);
+    }
+
+    @Test
+    public void collectedEventsReachTheTicks() {
+        final InputState input = new InputState(buffer);
+        this.collector.keyDown(29);
+        this.collector.keyUp(29);
+        input.drain(Long.MAX_VALUE);
+        assertTrue(input.isKeyPressed(29));
+        assertTrue(input.isKeyReleased(29));
+    }
+
+    private void next(final int type, final int code) {
+        assertTrue(buffer.poll(event));
+        assertEquals(type, event.type);
+        assertEquals(code, event.code);
+    }
+}
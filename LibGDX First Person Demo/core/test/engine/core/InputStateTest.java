@@ -0,0 +1,152 @@
+package engine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Feeds synthetic event streams through the buffer, the way the collector
+ * fills it, and looks at what every tick sees.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class InputStateTest {
+
+    private static final int W = 51;
+    private static final long MS = 1000000L;
+
+    private final InputBuffer buffer = new InputBuffer(64);
+    private final InputState input = new InputState(buffer);
+
+    @Test
+    public void pressedHeldAndReleased() {
+        this.buffer.offer(InputBuffer.KEY_DOWN, W, 0f, 0f, 1L);
+        this.input.drain(10L);
+        assertTrue(input.isKeyPressed(W));
+        assertTrue(input.isKeyDown(W));
+        assertFalse(input.isKeyReleased(W));
+
+        this.input.drain(20L);
+        assertFalse(input.isKeyPressed(W));
+        assertTrue(input.isKeyDown(W));
+
+        this.buffer.offer(InputBuffer.KEY_UP, W, 0f, 0f, 25L);
+        this.input.drain(30L);
+        assertFalse(input.isKeyDown(W));
+        assertTrue(input.isKeyReleased(W));
+        this.input.drain(40L);
+        assertFalse(input.isKeyReleased(W));
+    }
+
+    @Test
+    public void tapBetweenTicksStillCounts() {
+        this.buffer.offer(InputBuffer.KEY_DOWN, W, 0f, 0f, 1L);
+        this.buffer.offer(InputBuffer.KEY_UP, W, 0f, 0f, 2L);
+        this.buffer.offer(InputBuffer.BUTTON_DOWN, 0, 5f, 5f, 3L);
+        this.buffer.offer(InputBuffer.BUTTON_UP, 0, 5f, 5f, 4L);
+        this.input.drain(10L);
+        assertTrue(input.isKeyPressed(W));
+        assertTrue(input.isKeyReleased(W));
+        assertFalse(input.isKeyDown(W));
+        assertTrue(input.isButtonPressed(0));
+        assertFalse(input.isButtonDown(0));
+        assertEquals(4, input.getEventCount());
+    }
+
+    @Test
+    public void mouseMovementAddsUpPerTick() {
+        this.buffer.offer(InputBuffer.MOUSE_MOVED, 0, 3f, 1f, 1L);
+        this.buffer.offer(InputBuffer.MOUSE_MOVED, 0, -1f, 4f, 2L);
+        this.buffer.offer(InputBuffer.SCROLLED, 0, 1f, 0f, 3L);
+        this.buffer.offer(InputBuffer.MOUSE_MOVED, 0, 10f, 10f, 15L);
+
+        this.input.drain(10L);
+        assertEquals(2f, input.getMouseX(), 0f);
+        assertEquals(5f, input.getMouseY(), 0f);
+        assertEquals(1f, input.getScroll(), 0f);
+
+        this.input.drain(20L);
+        assertEquals(10f, input.getMouseX(), 0f);
+        assertEquals(10f, input.getMouseY(), 0f);
+        assertEquals(0f, input.getScroll(), 0f);
+
+        this.input.drain(30L);
+        assertEquals(0f, input.getMouseX(), 0f);
+        assertEquals(0, input.getEventCount());
+    }
+
+    @Test
+    public void laterEventsWaitForTheirTick() {
+        this.buffer.offer(InputBuffer.KEY_DOWN, W, 0f, 0f, 5L);
+        this.buffer.offer(InputBuffer.KEY_UP, W, 0f, 0f, 25L);
+        this.input.drain(20L);
+        assertTrue(input.isKeyDown(W));
+        assertEquals(1, buffer.size());
+        this.input.drain(30L);
+        assertFalse(input.isKeyDown(W));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void ticksOfAFrameSplitTheEventsByTime() {
+        // three ticks of 10ms after the last one at 100ms, events in between
+        this.buffer.offer(InputBuffer.MOUSE_MOVED, 0, 1f, 0f, 105 * MS);
+        this.buffer.offer(InputBuffer.MOUSE_MOVED, 0, 2f, 0f, 112 * MS);
+        this.buffer.offer(InputBuffer.MOUSE_MOVED, 0, 4f, 0f, 118 * MS);
+        this.buffer.offer(InputBuffer.KEY_DOWN, W, 0f, 0f, 125 * MS);
+        this.buffer.offer(InputBuffer.KEY_UP, W, 0f, 0f, 135 * MS);
+
+        this.input.setClock(100 * MS);
+        this.input.update(0.01f);
+        assertEquals(1f, input.getMouseX(), 0f);
+        this.input.update(0.01f);
+        assertEquals(6f, input.getMouseX(), 0f);
+        assertFalse(input.isKeyPressed(W));
+        this.input.update(0.01f);
+        assertEquals(0f, input.getMouseX(), 0f);
+        assertTrue(input.isKeyPressed(W));
+
+        // the release is after the last tick of the frame
+        assertTrue(input.isKeyDown(W));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void withoutAClockEveryEventIsTaken() {
+        this.buffer.offer(InputBuffer.KEY_DOWN, W, 0f, 0f, Long.MAX_VALUE - 1);
+        this.input.setClock(-1L);
+        this.input.update(0.01f);
+        assertTrue(input.isKeyPressed(W));
+    }
+
+    @Test
+    public void oldestEventIsTakenOnce() {
+        this.buffer.offer(InputBuffer.KEY_DOWN, W, 0f, 0f, 7L);
+        this.buffer.offer(InputBuffer.KEY_UP, W, 0f, 0f, 9L);
+        this.input.drain(100L);
+        assertEquals(7L, input.takeOldestEvent());
+        assertEquals(-1L, input.takeOldestEvent());
+    }
+
+    @Test
+    public void outOfRangeCodesAreIgnored() {
+        this.buffer.offer(InputBuffer.KEY_DOWN, InputState.KEYS, 0f, 0f, 1L);
+        this.buffer.offer(InputBuffer.BUTTON_DOWN, -1, 0f, 0f, 1L);
+        this.buffer.offer(InputBuffer.AXIS_MOVED, 2, 0.5f, 0f, 1L);
+        this.input.drain(10L);
+        assertFalse(input.isKeyDown(InputState.KEYS));
+        assertFalse(input.isButtonDown(-1));
+        assertEquals(0.5f, input.getAxis(2), 0f);
+    }
+
+    @Test
+    public void resetReleasesEverything() {
+        this.buffer.offer(InputBuffer.KEY_DOWN, W, 0f, 0f, 1L);
+        this.buffer.offer(InputBuffer.PAD_DOWN, 1, 0f, 0f, 1L);
+        this.input.drain(10L);
+        this.input.reset();
+        assertFalse(input.isKeyDown(W));
+        assertFalse(input.isPadDown(1));
+    }
+}
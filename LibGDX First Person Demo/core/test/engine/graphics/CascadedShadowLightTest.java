@@ -0,0 +1,135 @@
+package engine.graphics;
+
+import com.badlogic.gdx.math.Vector3;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class CascadedShadowLightTest {
+
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void uniformSplits() {
+        final float[] splits = new float[5];
+        CascadedShadowLight.computeSplits(1f, 81f, 0f, splits);
+        assertEquals(1f, splits[0], EPSILON);
+        assertEquals(21f, splits[1], EPSILON);
+        assertEquals(41f, splits[2], EPSILON);
+        assertEquals(61f, splits[3], EPSILON);
+        assertEquals(81f, splits[4], EPSILON);
+    }
+
+    @Test
+    public void logarithmicSplits() {
+        final float[] splits = new float[5];
+        CascadedShadowLight.computeSplits(1f, 81f, 1f, splits);
+        assertEquals(1f, splits[0], EPSILON);
+        assertEquals(3f, splits[1], EPSILON);
+        assertEquals(9f, splits[2], EPSILON);
+        assertEquals(27f, splits[3], EPSILON);
+        assertEquals(81f, splits[4], EPSILON);
+    }
+
+    @Test
+    public void blendedSplitsLieBetweenAndIncrease() {
+        final float[] splits = new float[4], uniform = new float[4], log = new float[4];
+        CascadedShadowLight.computeSplits(0.5f, 60f, 0.75f, splits);
+        CascadedShadowLight.computeSplits(0.5f, 60f, 0f, uniform);
+        CascadedShadowLight.computeSplits(0.5f, 60f, 1f, log);
+        assertEquals(60f, splits[3], 0f);
+        for (int i = 1; i < splits.length; i++) {
+            assertTrue(splits[i] > splits[i - 1]);
+            assertTrue(splits[i] >= log[i] - EPSILON && splits[i] <= uniform[i] + EPSILON);
+        }
+    }
+
+    @Test
+    public void lightBasisIsOrthonormal() {
+        final Vector3[] directions = {
+            new Vector3(0f, -1f, 0f), new Vector3(-1f, -1f, -0.5f).nor(), new Vector3(0f, 0f, 1f)
+        };
+        final Vector3 right = new Vector3(), up = new Vector3();
+        for (Vector3 direction : directions) {
+            CascadedShadowLight.lightBasis(direction, right, up);
+            assertEquals(1f, right.len(), EPSILON);
+            assertEquals(1f, up.len(), EPSILON);
+            assertEquals(0f, right.dot(direction), EPSILON);
+            assertEquals(0f, up.dot(direction), EPSILON);
+            assertEquals(0f, right.dot(up), EPSILON);
+        }
+    }
+
+    @Test
+    public void snapLandsOnTheLightGrid() {
+        final Vector3 direction = new Vector3(-1f, -1f, -0.5f).nor(), right = new Vector3(), up = new Vector3();
+        CascadedShadowLight.lightBasis(direction, right, up);
+        final float step = 0.25f;
+
+        final Vector3 point = new Vector3(3.14f, 1.59f, -2.65f);
+        final Vector3 snapped = new Vector3(point);
+        CascadedShadowLight.snap(snapped, direction, right, up, step);
+        assertOnGrid(snapped.dot(right), step);
+        assertOnGrid(snapped.dot(up), step);
+        assertOnGrid(snapped.dot(direction), step);
+        // never more than half a cell away on each axis
+        assertTrue(Math.abs(snapped.dot(right) - point.dot(right)) <= step * 0.5f + EPSILON);
+        assertTrue(Math.abs(snapped.dot(up) - point.dot(up)) <= step * 0.5f + EPSILON);
+
+        // snapping again changes nothing
+        final Vector3 again = new Vector3(snapped);
+        CascadedShadowLight.snap(again, direction, right, up, step);
+        assertEquals(0f, again.dst(snapped), EPSILON);
+    }
+
+    @Test
+    public void smallMovesSnapToTheSameTexel() {
+        final Vector3 direction = new Vector3(0f, -1f, 0f), right = new Vector3(), up = new Vector3();
+        CascadedShadowLight.lightBasis(direction, right, up);
+        final float step = 0.5f;
+
+        final Vector3 a = new Vector3(10.1f, 0f, 4.1f), b = new Vector3(10.2f, 0f, 4.2f);
+        CascadedShadowLight.snap(a, direction, right, up, step);
+        CascadedShadowLight.snap(b, direction, right, up, step);
+        assertEquals(0f, a.dst(b), EPSILON);
+    }
+
+    @Test
+    public void castsIntoLooksUpTheLight() {
+        final Vector3 direction = new Vector3(0f, -1f, 0f), right = new Vector3(), up = new Vector3();
+        CascadedShadowLight.lightBasis(direction, right, up);
+        final CascadedShadowLight.Cascade cascade = new CascadedShadowLight.Cascade();
+        cascade.center.set(0f, 0f, 0f);
+        cascade.radius = 10f;
+
+        // above the area, within the caster distance
+        assertTrue(cascade.castsInto(new Vector3(0f, 40f, 0f), 1f, direction, right, up, 50f));
+        // above, but further than the caster distance
+        assertFalse(cascade.castsInto(new Vector3(0f, 80f, 0f), 1f, direction, right, up, 50f));
+        // below the area, the light points away from it
+        assertFalse(cascade.castsInto(new Vector3(0f, -20f, 0f), 1f, direction, right, up, 50f));
+        // beside the area
+        assertFalse(cascade.castsInto(new Vector3(20f, 0f, 0f), 1f, direction, right, up, 50f));
+        assertTrue(cascade.castsInto(new Vector3(10.5f, 0f, 0f), 1f, direction, right, up, 50f));
+    }
+
+    @Test
+    public void coversOnlyWholeSpheres() {
+        final Vector3 direction = new Vector3(0f, -1f, 0f), right = new Vector3(), up = new Vector3();
+        CascadedShadowLight.lightBasis(direction, right, up);
+        final CascadedShadowLight.Cascade cascade = new CascadedShadowLight.Cascade();
+        cascade.radius = 10f;
+
+        assertTrue(cascade.covers(new Vector3(8f, 0f, 0f), 1f, direction, right, up));
+        assertFalse(cascade.covers(new Vector3(9.5f, 0f, 0f), 1f, direction, right, up));
+    }
+
+    private static void assertOnGrid(final float value, final float step) {
+        final float cells = value / step;
+        assertEquals(Math.round(cells), cells, EPSILON);
+    }
+}
@@ -0,0 +1,105 @@
+package engine.graphics;
+
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import engine.Renderable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class FrustumCullerTest {
+
+    private static final float EPSILON = 1e-5f;
+
+    private final FrustumCuller culler = new FrustumCuller();
+    private final Frustum frustum = new Frustum();
+    private final BoundingBox unit = new BoundingBox(new Vector3(-0.5f, -0.5f, -0.5f), new Vector3(0.5f, 0.5f, 0.5f));
+
+    /**
+     * A box from -10 to 10 on every axis, the planes face inwards. Set by
+     * hand since building it from a camera takes the native matrix code.
+     */
+    @Before
+    public void setUp() {
+        this.frustum.planes[0].set(1f, 0f, 0f, 10f);
+        this.frustum.planes[1].set(-1f, 0f, 0f, 10f);
+        this.frustum.planes[2].set(0f, 1f, 0f, 10f);
+        this.frustum.planes[3].set(0f, -1f, 0f, 10f);
+        this.frustum.planes[4].set(0f, 0f, 1f, 10f);
+        this.frustum.planes[5].set(0f, 0f, -1f, 10f);
+    }
+
+    @Test
+    public void transformBoundsTranslates() {
+        final Vector3 center = new Vector3(), halfExtents = new Vector3();
+        FrustumCuller.transformBounds(unit, new Matrix4().setToTranslation(3f, -2f, 7f), center, halfExtents);
+        assertVector(3f, -2f, 7f, center);
+        assertVector(0.5f, 0.5f, 0.5f, halfExtents);
+    }
+
+    @Test
+    public void transformBoundsEnclosesRotatedBox() {
+        final BoundingBox bounds = new BoundingBox(new Vector3(0f, 0f, 0f), new Vector3(2f, 1f, 1f));
+        final Matrix4 transform = new Matrix4().setToRotation(Vector3.Y, 45f);
+        final Vector3 center = new Vector3(), halfExtents = new Vector3();
+        FrustumCuller.transformBounds(bounds, transform, center, halfExtents);
+
+        final float half = (float) Math.sqrt(0.5);
+        // the local center (1, 0.5, 0.5) turned 45 degrees around y
+        assertVector(1f * half + 0.5f * half, 0.5f, -1f * half + 0.5f * half, center);
+        assertVector(half + 0.5f * half, 0.5f, half + 0.5f * half, halfExtents);
+    }
+
+    @Test
+    public void transformBoundsScales() {
+        final Vector3 center = new Vector3(), halfExtents = new Vector3();
+        FrustumCuller.transformBounds(unit, new Matrix4().setToScaling(2f, 3f, 4f), center, halfExtents);
+        assertVector(0f, 0f, 0f, center);
+        assertVector(1f, 1.5f, 2f, halfExtents);
+    }
+
+    @Test
+    public void inside() {
+        assertTrue(culler.isVisible(frustum, unit, 0.87f, new Matrix4().setToTranslation(0f, 0f, 0f)));
+        assertTrue(culler.isVisible(frustum, unit, 0.87f, new Matrix4().setToTranslation(9f, -9f, 9f)));
+    }
+
+    @Test
+    public void straddling() {
+        assertTrue(culler.isVisible(frustum, unit, 0.87f, new Matrix4().setToTranslation(10.25f, 0f, 0f)));
+        assertTrue(culler.isVisible(frustum, unit, 0.87f, new Matrix4().setToTranslation(0f, -10.4f, 0f)));
+    }
+
+    @Test
+    public void outside() {
+        assertFalse(culler.isVisible(frustum, unit, 0.87f, new Matrix4().setToTranslation(12f, 0f, 0f)));
+        assertFalse(culler.isVisible(frustum, unit, 0.87f, new Matrix4().setToTranslation(0f, 0f, -30f)));
+    }
+
+    @Test
+    public void outsideTheBoxButInsideTheSphere() {
+        // the corner of the sphere around the box pokes in, the box doesn't
+        final Matrix4 transform = new Matrix4().setToTranslation(10.6f, 0f, 0f);
+        assertTrue(frustum.sphereInFrustum(new Vector3(10.6f, 0f, 0f), 0.87f));
+        assertFalse(culler.isVisible(frustum, unit, 0.87f, transform));
+    }
+
+    @Test
+    public void disabledKeepsEverything() {
+        this.culler.enabled = false;
+        assertTrue(culler.isVisible(frustum, (Renderable) null));
+    }
+
+    private static void assertVector(final float x, final float y, final float z, final Vector3 actual) {
+        assertEquals(x, actual.x, EPSILON);
+        assertEquals(y, actual.y, EPSILON);
+        assertEquals(z, actual.z, EPSILON);
+    }
+}
@@ -0,0 +1,94 @@
+package engine.graphics;
+
+import com.badlogic.gdx.graphics.g3d.Model;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * The models are empty, counting their triangles is all the chain does with
+ * them.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class LodChainTest {
+
+    private final LodChain distance = new LodChain(new Model(), LodChain.DISTANCE)
+            .add(new Model(), 10f)
+            .add(new Model(), 20f)
+            .skip(40f);
+
+    @Test
+    public void selectsByDistance() {
+        assertEquals(4, distance.size());
+        assertEquals(0, distance.select(0, 5f));
+        assertEquals(1, distance.select(0, 15f));
+        assertEquals(2, distance.select(0, 30f));
+        assertEquals(3, distance.select(0, 100f));
+        assertNull(distance.getModel(3));
+    }
+
+    @Test
+    public void switchesCoarserOnlyPastTheHysteresis() {
+        // 10% past the threshold of 10
+        assertEquals(0, distance.select(0, 10.5f));
+        assertEquals(0, distance.select(0, 11f));
+        assertEquals(1, distance.select(0, 11.1f));
+    }
+
+    @Test
+    public void switchesBackOnlyPastTheHysteresis() {
+        assertEquals(1, distance.select(1, 9.5f));
+        assertEquals(1, distance.select(1, 9f));
+        assertEquals(0, distance.select(1, 8.9f));
+    }
+
+    @Test
+    public void staysPutInTheBand() {
+        // back and forth around the threshold without switching
+        int level = distance.select(0, 5f);
+        for (float d : new float[]{9.5f, 10.5f, 9.2f, 10.9f, 9.1f, 10.2f}) {
+            level = distance.select(level, d);
+            assertEquals(0, level);
+        }
+        level = distance.select(level, 12f);
+        assertEquals(1, level);
+        for (float d : new float[]{10.5f, 9.5f, 10.9f, 9.1f}) {
+            level = distance.select(level, d);
+            assertEquals(1, level);
+        }
+    }
+
+    @Test
+    public void jumpsSeveralLevelsAtOnce() {
+        assertEquals(3, distance.select(0, 1000f));
+        assertEquals(0, distance.select(3, 1f));
+    }
+
+    @Test
+    public void noHysteresis() {
+        this.distance.hysteresis = 0f;
+        assertEquals(0, distance.select(0, 10f));
+        assertEquals(1, distance.select(0, 10.01f));
+        assertEquals(0, distance.select(1, 9.99f));
+    }
+
+    @Test
+    public void screenSizeGrowsWithDistance() {
+        final LodChain chain = new LodChain(new Model()).add(new Model(), 0.1f).skip(0.01f);
+        // a radius of 1 at a distance of 5 covers 20% of the screen height
+        // with a tangent of one
+        assertEquals(5f, chain.farness(5f, 1f, 1f), 1e-6f);
+        assertEquals(0, chain.select(0, chain.farness(5f, 1f, 1f)));
+        assertEquals(1, chain.select(0, chain.farness(20f, 1f, 1f)));
+        assertEquals(2, chain.select(0, chain.farness(200f, 1f, 1f)));
+        // twice the size, twice as far for the same level
+        assertEquals(1, chain.select(0, chain.farness(40f, 2f, 1f)));
+        assertEquals(0, chain.select(0, chain.farness(16f, 2f, 1f)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void levelsMustBeOrdered() {
+        new LodChain(new Model(), LodChain.DISTANCE).add(new Model(), 20f).add(new Model(), 10f);
+    }
+}
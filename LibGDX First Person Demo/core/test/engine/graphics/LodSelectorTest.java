@@ -0,0 +1,116 @@
+package engine.graphics;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.physics.bullet.Bullet;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import engine.Renderable;
+import engine.physics.Entity;
+import engine.physics.EntityBlueprint;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class LodSelectorTest {
+
+    private final LodSelector selector = new LodSelector();
+    private final PerspectiveCamera camera = new PerspectiveCamera();
+    private final LodChain chain = new LodChain(new Model(), LodChain.DISTANCE)
+            .add(new Model(), 10f)
+            .skip(20f);
+    private EntityBlueprint blueprint;
+    private Entity entity;
+
+    @BeforeClass
+    public static void init() {
+        GdxNativesLoader.load();
+        Bullet.init();
+    }
+
+    @Before
+    public void setUp() {
+        this.blueprint = new EntityBlueprint(null, 1f, 1f, 1f, 1f);
+        this.entity = blueprint.construct(0f, 0f, 0f);
+        this.entity.setLodChain(chain);
+        this.camera.position.set(0f, 0f, 0f);
+    }
+
+    @After
+    public void tearDown() {
+        this.entity.dispose();
+        this.blueprint.dispose();
+    }
+
+    @Test
+    public void selectsFromTheDistanceToTheCamera() {
+        this.selector.begin(camera);
+        assertFalse(selector.select(entity));
+        assertEquals(0, entity.getLod());
+
+        this.moveTo(15f);
+        assertTrue(selector.select(entity));
+        assertEquals(1, entity.getLod());
+        this.moveTo(30f);
+        assertTrue(selector.select(entity));
+        assertEquals(2, entity.getLod());
+    }
+
+    @Test
+    public void keepsTheLevelInsideTheHysteresis() {
+        this.selector.begin(camera);
+        this.moveTo(10.5f);
+        assertFalse(selector.select(entity));
+        this.moveTo(11.5f);
+        assertTrue(selector.select(entity));
+        this.moveTo(9.5f);
+        assertFalse(selector.select(entity));
+        assertEquals(1, entity.getLod());
+    }
+
+    @Test
+    public void followsTheCamera() {
+        this.moveTo(15f);
+        this.camera.position.set(15f, 0f, 0f);
+        this.selector.begin(camera);
+        this.selector.select(entity);
+        assertEquals(0, entity.getLod());
+    }
+
+    @Test
+    public void biasAndDisabling() {
+        this.moveTo(8f);
+        this.selector.bias = 2f;
+        this.selector.begin(camera);
+        this.selector.select(entity);
+        assertEquals(1, entity.getLod());
+
+        this.selector.enabled = false;
+        assertTrue(selector.select(entity));
+        assertEquals(0, entity.getLod());
+    }
+
+    @Test
+    public void countsTheVisibleTriangles() {
+        this.moveTo(30f);
+        this.selector.begin(camera);
+        this.selector.select(entity);
+        final Array<Renderable> visible = new Array<Renderable>();
+        visible.add(entity);
+        this.selector.count(visible);
+        assertEquals(1, selector.skipped);
+        assertEquals(0, selector.getSavedTriangles());
+    }
+
+    private void moveTo(final float x) {
+        this.entity.transform.set(new Matrix4().setToTranslation(x, 0f, 0f));
+    }
+}
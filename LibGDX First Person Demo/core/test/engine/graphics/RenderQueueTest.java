@@ -0,0 +1,199 @@
+package engine.graphics;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.RenderContext;
+import com.badlogic.gdx.utils.Array;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Sorts renderables without meshes, which would need the native buffers, so
+ * the mesh part of the key is always zero here.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class RenderQueueTest {
+
+    private final RenderQueue queue = new RenderQueue();
+    private final Camera camera = new PerspectiveCamera();
+
+    @Test
+    public void opaqueBeforeTransparent() {
+        final Material opaque = new Material(), blended = new Material(new BlendingAttribute());
+        final Shader shader = new StubShader();
+        final Renderable a = renderable(shader, blended, 1f);
+        final Renderable b = renderable(shader, opaque, 5f);
+        final Array<Renderable> renderables = Array.with(a, b);
+
+        this.queue.sort(camera, renderables);
+        assertSame(b, renderables.get(0));
+        assertSame(a, renderables.get(1));
+    }
+
+    @Test
+    public void opaqueFrontToBackWithinAGroup() {
+        final Material material = new Material();
+        final Shader shader = new StubShader();
+        final Renderable far = renderable(shader, material, 30f);
+        final Renderable near = renderable(shader, material, 2f);
+        final Renderable middle = renderable(shader, material, 10f);
+        final Array<Renderable> renderables = Array.with(far, near, middle);
+
+        this.queue.sort(camera, renderables);
+        assertSame(near, renderables.get(0));
+        assertSame(middle, renderables.get(1));
+        assertSame(far, renderables.get(2));
+    }
+
+    @Test
+    public void transparentBackToFront() {
+        final Material material = new Material(new BlendingAttribute());
+        final Shader shader = new StubShader();
+        final Renderable near = renderable(shader, material, 2f);
+        final Renderable far = renderable(shader, material, 30f);
+        final Renderable middle = renderable(shader, material, 10f);
+        final Array<Renderable> renderables = Array.with(near, far, middle);
+
+        this.queue.sort(camera, renderables);
+        assertSame(far, renderables.get(0));
+        assertSame(middle, renderables.get(1));
+        assertSame(near, renderables.get(2));
+    }
+
+    @Test
+    public void opaqueGroupedByShaderThenMaterial() {
+        final Shader first = new StubShader(), second = new StubShader();
+        final Material red = new Material("red"), blue = new Material("blue");
+        final Array<Renderable> renderables = new Array<Renderable>();
+        // seen first, so numbered first
+        renderables.add(renderable(first, red, 50f));
+        renderables.add(renderable(second, blue, 1f));
+        renderables.add(renderable(first, blue, 2f));
+        renderables.add(renderable(second, red, 3f));
+        renderables.add(renderable(first, red, 4f));
+        renderables.add(renderable(second, blue, 5f));
+
+        this.queue.sort(camera, renderables);
+        assertEquals(1, queue.shaderSwitches);
+        assertEquals(3, queue.materialSwitches);
+        for (int i = 0; i < 3; i++) {
+            assertSame(first, renderables.get(i).shader);
+            assertSame(second, renderables.get(i + 3).shader);
+        }
+        // red was numbered before blue, near before far within red
+        assertSame(red, renderables.get(0).material);
+        assertEquals(4f, renderables.get(0).worldTransform.val[14], 0f);
+        assertSame(red, renderables.get(1).material);
+        assertSame(blue, renderables.get(2).material);
+    }
+
+    @Test
+    public void sortsLargeArraysLikeTheKeys() {
+        final Shader[] shaders = {new StubShader(), new StubShader(), new StubShader()};
+        final Material[] materials = new Material[40];
+        for (int i = 0; i < materials.length; i++) {
+            materials[i] = i % 5 == 0 ? new Material(new BlendingAttribute()) : new Material();
+        }
+        final Array<Renderable> renderables = new Array<Renderable>();
+        final Random random = new Random(1L);
+        for (int i = 0; i < 5000; i++) {
+            renderables.add(renderable(shaders[random.nextInt(shaders.length)],
+                    materials[random.nextInt(materials.length)], random.nextFloat() * 500f));
+        }
+
+        this.queue.sort(camera, renderables);
+        long previous = 0L;
+        for (int i = 0; i < renderables.size; i++) {
+            final long key = queue.key(camera, renderables.get(i));
+            assertTrue("key " + i + " out of order", i == 0 || compareUnsigned(previous, key) <= 0);
+            previous = key;
+        }
+        assertEquals(5000, queue.sorted);
+    }
+
+    @Test
+    public void forgetsStaleIds() {
+        final Shader shader = new StubShader();
+        final Array<Renderable> renderables = new Array<Renderable>();
+        for (int i = 0; i < 200; i++) {
+            renderables.add(renderable(shader, new Material(), i));
+        }
+        this.queue.sort(camera, renderables);
+        assertEquals(201, queue.getIdCount());
+
+        // the materials of the first sort are gone, like an unloaded chunk
+        final Material material = new Material();
+        renderables.clear();
+        renderables.add(renderable(shader, material, 1f));
+        this.queue.sort(camera, renderables);
+        this.queue.sort(camera, renderables);
+        assertEquals(2, queue.getIdCount());
+    }
+
+    @Test
+    public void keepsIdsInUse() {
+        final Shader shader = new StubShader();
+        final Array<Renderable> renderables = new Array<Renderable>();
+        for (int i = 0; i < 100; i++) {
+            renderables.add(renderable(shader, new Material(), i));
+        }
+        for (int i = 0; i < 5; i++) {
+            this.queue.sort(camera, renderables);
+            assertEquals(101, queue.getIdCount());
+        }
+    }
+
+    private static Renderable renderable(final Shader shader, final Material material, final float distance) {
+        final Renderable renderable = new Renderable();
+        renderable.shader = shader;
+        renderable.material = material;
+        renderable.worldTransform.setToTranslation(0f, 0f, distance);
+        return renderable;
+    }
+
+    private static int compareUnsigned(final long a, final long b) {
+        final long x = a ^ Long.MIN_VALUE, y = b ^ Long.MIN_VALUE;
+        return x < y ? -1 : x == y ? 0 : 1;
+    }
+
+    private static class StubShader implements Shader {
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public int compareTo(final Shader other) {
+            return 0;
+        }
+
+        @Override
+        public boolean canRender(final Renderable instance) {
+            return true;
+        }
+
+        @Override
+        public void begin(final Camera camera, final RenderContext context) {
+        }
+
+        @Override
+        public void render(final Renderable renderable) {
+        }
+
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+}
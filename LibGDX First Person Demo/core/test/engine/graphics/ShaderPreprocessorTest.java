@@ -0,0 +1,115 @@
+package engine.graphics;
+
+import com.badlogic.gdx.utils.ObjectMap;
+import engine.utils.ShaderException;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ShaderPreprocessorTest {
+
+    private final ObjectMap<String, String> files = new ObjectMap<String, String>();
+    private int reads;
+    private ShaderPreprocessor preprocessor;
+
+    @Before
+    public void setUp() {
+        this.preprocessor = new ShaderPreprocessor(new ShaderPreprocessor.Source() {
+
+            @Override
+            public String read(final String path) {
+                reads++;
+                return files.get(path);
+            }
+        });
+    }
+
+    @Test
+    public void definesGoAfterTheVersion() {
+        this.files.put("a.glsl", "#version 120\nvoid main() {}\n");
+        assertEquals("#version 120\n#define FOG\n#define LIGHTS 4\nvoid main() {}\n",
+                preprocessor.process("a.glsl", new String[]{"LIGHTS=4", "FOG"}));
+    }
+
+    @Test
+    public void definesGoFirstWithoutAVersion() {
+        this.files.put("a.glsl", "void main() {}");
+        assertEquals("#define FOG\nvoid main() {}", preprocessor.process("a.glsl", new String[]{"FOG"}));
+        assertEquals("void main() {}", preprocessor.process("a.glsl", null));
+    }
+
+    @Test
+    public void includesAreRelativeToTheIncludingFile() {
+        this.files.put("shaders/main.glsl", "#include \"lib/light.glsl\"\nvoid main() {}\n");
+        this.files.put("shaders/lib/light.glsl", "#include \"../common.glsl\"\nfloat light;");
+        this.files.put("shaders/common.glsl", "float common;\n");
+        assertEquals("float common;\nfloat light;\nvoid main() {}\n",
+                preprocessor.process("shaders/main.glsl", null));
+    }
+
+    @Test
+    public void everyFileIsIncludedOnce() {
+        this.files.put("main.glsl", "#include \"a.glsl\"\n  #include <b.glsl>\nmain\n");
+        this.files.put("a.glsl", "#include \"common.glsl\"\na\n");
+        this.files.put("b.glsl", "#include \"common.glsl\"\n#include \"main.glsl\"\nb\n");
+        this.files.put("common.glsl", "common\n");
+        assertEquals("common\na\nb\nmain\n", preprocessor.process("main.glsl", null));
+    }
+
+    @Test
+    public void filesAreReadOnceUntilCleared() {
+        this.files.put("main.glsl", "#include \"common.glsl\"\n");
+        this.files.put("common.glsl", "common\n");
+        this.preprocessor.process("main.glsl", null);
+        this.preprocessor.process("main.glsl", new String[]{"FOG"});
+        assertEquals(2, reads);
+
+        this.files.put("common.glsl", "changed\n");
+        assertEquals("common\n", preprocessor.process("main.glsl", null));
+        this.preprocessor.clear();
+        assertEquals("changed\n", preprocessor.process("main.glsl", null));
+    }
+
+    @Test(expected = ShaderException.class)
+    public void missingFile() {
+        this.preprocessor.process("missing.glsl", null);
+    }
+
+    @Test
+    public void missingIncludeNamesTheIncludingFile() {
+        this.files.put("main.glsl", "#include \"missing.glsl\"\n");
+        try {
+            this.preprocessor.process("main.glsl", null);
+        } catch (ShaderException ex) {
+            assertTrue(ex.getMessage().contains("main.glsl"));
+            return;
+        }
+        throw new AssertionError("expected a ShaderException");
+    }
+
+    @Test(expected = ShaderException.class)
+    public void malformedInclude() {
+        this.files.put("main.glsl", "#include common.glsl\n");
+        this.preprocessor.process("main.glsl", null);
+    }
+
+    @Test
+    public void normalizeSortsAndDropsDuplicates() {
+        assertArrayEquals(new String[]{"A", "B=2", "C"},
+                ShaderPreprocessor.normalize(new String[]{" C", "A", "", null, "B=2", "A "}));
+        assertEquals(0, ShaderPreprocessor.normalize(null).length);
+    }
+
+    @Test
+    public void keyTellsTheStagesApart() {
+        assertEquals(ShaderPreprocessor.key("vertex", "fragment"), ShaderPreprocessor.key("vertex", "fragment"));
+        assertFalse(ShaderPreprocessor.key("ab", "c") == ShaderPreprocessor.key("a", "bc"));
+        assertFalse(ShaderPreprocessor.key("vertex", "fragment") == ShaderPreprocessor.key("fragment", "vertex"));
+    }
+}
@@ -0,0 +1,135 @@
+package engine.physics;
+
+import com.badlogic.gdx.physics.bullet.Bullet;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Every chunk holds a single static tile, so the number of entities in the
+ * world is the number of chunks loaded.
+ *
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ChunkStreamerTest {
+
+    private static final float SIZE = 10f;
+
+    private final ObjectIntMap<String> loads = new ObjectIntMap<String>();
+    private BulletWorld world;
+    private ChunkStreamer streamer;
+    private EntityBlueprint player;
+    private Entity focus;
+
+    @BeforeClass
+    public static void init() {
+        GdxNativesLoader.load();
+        Bullet.init();
+    }
+
+    @Before
+    public void setUp() {
+        this.world = new BulletWorld();
+        this.world.addConstructor("tile", new EntityBlueprint(null, 0f, 0.5f, 0.5f, 0.5f));
+        this.streamer = new ChunkStreamer(world, new ChunkSource() {
+
+            @Override
+            public void load(final int x, final int z, final float size, final ChunkData out) {
+                loads.getAndIncrement(x + "," + z, 0, 1);
+                out.add("tile", x * size, 0f, z * size);
+            }
+        }, SIZE, 1);
+        this.streamer.synchronous = true;
+        this.player = new EntityBlueprint(null, 1f, 0.5f, 0.5f, 0.5f);
+        this.focus = player.construct(0f, 0f, 0f);
+        this.streamer.focus = focus;
+    }
+
+    @After
+    public void tearDown() {
+        this.streamer.dispose();
+        this.world.dispose();
+        this.focus.dispose();
+        this.player.dispose();
+    }
+
+    @Test
+    public void loadsTheChunksAroundTheFocus() {
+        this.streamer.settle();
+        assertEquals(9, streamer.getChunkCount());
+        assertEquals(9, world.getEntityCount());
+        assertEquals(9, loads.size);
+        for (int x = -1; x <= 1; x++) {
+            for (int z = -1; z <= 1; z++) {
+                assertEquals(1, loads.get(x + "," + z, 0));
+            }
+        }
+    }
+
+    @Test
+    public void crossingABorderBackAndForthLoadsOnce() {
+        this.streamer.settle();
+        for (int i = 0; i < 5; i++) {
+            // just over the border with chunk (1, 0) and back
+            this.moveTo(5.5f);
+            this.streamer.settle();
+            assertEquals(12, streamer.getChunkCount());
+            this.moveTo(4.5f);
+            this.streamer.settle();
+            assertEquals(12, streamer.getChunkCount());
+        }
+        assertEquals(12, world.getEntityCount());
+        assertEquals(12, loads.size);
+        assertEquals(1, loads.get("2,0", 0));
+        assertEquals(1, loads.get("-1,0", 0));
+    }
+
+    @Test
+    public void unloadsPastTheUnloadRadius() {
+        this.streamer.settle();
+        // two chunks over, the column at x = -1 is three chunks away
+        this.moveTo(20f);
+        this.streamer.settle();
+        assertEquals(12, streamer.getChunkCount());
+        assertEquals(12, world.getEntityCount());
+        assertEquals(15, loads.size);
+
+        // coming back reads the unloaded chunks again
+        this.moveTo(0f);
+        this.streamer.settle();
+        assertEquals(12, streamer.getChunkCount());
+        assertEquals(2, loads.get("-1,0", 0));
+        assertEquals(1, loads.get("3,0", 0));
+    }
+
+    @Test
+    public void removalIsSpreadOverFrames() {
+        this.streamer.settle();
+        this.streamer.removeBudget = 2;
+        this.moveTo(30f);
+        this.streamer.update();
+        assertEquals(2, streamer.removed);
+        assertFalse(streamer.isSettled());
+        int frames = 1;
+        while (!streamer.isSettled()) {
+            this.streamer.update();
+            frames++;
+        }
+        // the columns at x = -1 and 0 unload, two tiles per frame, the one at
+        // x = 1 is still within the unload radius
+        assertTrue(frames >= 3);
+        assertEquals(12, streamer.getChunkCount());
+        assertEquals(12, world.getEntityCount());
+        assertEquals(1, loads.get("1,0", 0));
+    }
+
+    private void moveTo(final float x) {
+        this.focus.transform.setToTranslation(x, 0f, 0f);
+    }
+}
@@ -0,0 +1,146 @@
+package engine.physics;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.Bullet;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class ComponentStoreTest {
+
+    private static final float EPSILON = 1e-4f;
+
+    private EntityBlueprint blueprint;
+    private final Entity[] entities = new Entity[4];
+    private final EntityRegistry registry = new EntityRegistry(2);
+    private ComponentStore components;
+
+    @BeforeClass
+    public static void init() {
+        GdxNativesLoader.load();
+        Bullet.init();
+    }
+
+    @Before
+    public void setUp() {
+        this.blueprint = new EntityBlueprint(null, 1f, 1f, 1f, 1f);
+        for (int i = 0; i < entities.length; i++) {
+            this.entities[i] = blueprint.construct(i * 10f, 0f, 0f);
+            this.registry.add(entities[i]);
+        }
+        this.components = registry.getComponents();
+    }
+
+    @After
+    public void tearDown() {
+        this.registry.clear();
+        for (Entity e : entities) {
+            e.dispose();
+        }
+        this.blueprint.dispose();
+    }
+
+    @Test
+    public void addingGrowsTheArrays() {
+        assertEquals(entities.length, components.size());
+        for (int i = 0; i < entities.length; i++) {
+            assertEquals(i, entities[i].index);
+            assertVector(i * 10f, 0f, 0f, components.getPosition(i, new Vector3()));
+        }
+    }
+
+    @Test
+    public void removingMovesTheLastEntityIntoTheGap() {
+        final Entity last = entities[3];
+        final int index = last.index;
+        this.components.moved(index, new Matrix4().setToTranslation(31f, 0f, 0f), 0.5f);
+        this.components.velocity[index * 3 + 1] = 7f; // marker
+
+        this.registry.remove(entities[1].handle);
+        assertEquals(3, components.size());
+        assertEquals(1, last.index);
+        assertSame(last, registry.at(1));
+        assertVector(31f, 0f, 0f, components.getPosition(1, new Vector3()));
+        assertVector(2f, 7f, 0f, components.getVelocity(1, new Vector3()));
+        assertVector(30f, 0f, 0f, previous(1));
+        assertTrue(components.hasFlags(1, ComponentStore.MOVING));
+        assertEquals(last.getWorldRadius(), components.radius[1], 0f);
+
+        // the others stay where they were
+        assertVector(0f, 0f, 0f, components.getPosition(0, new Vector3()));
+        assertVector(20f, 0f, 0f, components.getPosition(2, new Vector3()));
+        assertFalse(components.hasFlags(0, ComponentStore.MOVING));
+
+        // removing the last one copies nothing
+        this.registry.remove(last.handle);
+        assertEquals(2, components.size());
+        assertVector(20f, 0f, 0f, components.getPosition(entities[2].index, new Vector3()));
+    }
+
+    @Test
+    public void movedKeepsTheComponentsInStep() {
+        final int index = entities[2].index;
+        final Quaternion turn = new Quaternion(Vector3.Y, 90f);
+        final Matrix4 current = new Matrix4().set(new Vector3(21f, 2f, 0f), turn);
+
+        this.components.moved(index, current, 0.5f);
+        assertVector(21f, 2f, 0f, components.getPosition(index, new Vector3()));
+        assertVector(2f, 4f, 0f, components.getVelocity(index, new Vector3()));
+        final Quaternion rotation = components.getRotation(index, new Quaternion());
+        assertEquals(1f, Math.abs(rotation.dot(turn)), EPSILON);
+        assertTrue(components.hasFlags(index, ComponentStore.MOVING));
+        assertVector(20f, 0f, 0f, previous(index));
+
+        // the next tick starts where this one ended
+        this.components.moved(index, current.setToTranslation(21f, 2f, 1f), 0.5f);
+        assertVector(0f, 0f, 2f, components.getVelocity(index, new Vector3()));
+        assertVector(21f, 2f, 0f, previous(index));
+        assertEquals(1f, components.getRotation(index, new Quaternion()).w, EPSILON);
+
+        this.components.settled(index);
+        assertVector(0f, 0f, 0f, components.getVelocity(index, new Vector3()));
+        assertFalse(components.hasFlags(index, ComponentStore.MOVING));
+        assertVector(21f, 2f, 1f, components.getPosition(index, new Vector3()));
+    }
+
+    @Test
+    public void interpolatesBetweenTheTicksKeepingTheScale() {
+        final int index = entities[0].index;
+        this.components.moved(index, new Matrix4().set(new Vector3(10f, 0f, 0f), new Quaternion(Vector3.Y, 90f)), 1f);
+        final Matrix4 out = new Matrix4().setToScaling(2f, 3f, 4f);
+
+        this.components.interpolate(index, 0.5f, out);
+        assertVector(5f, 0f, 0f, out.getTranslation(new Vector3()));
+        final float half = (float) Math.sqrt(0.5);
+        assertVector(half, 0f, -half, new Vector3(out.val[Matrix4.M00], out.val[Matrix4.M10], out.val[Matrix4.M20]).nor());
+        assertEquals(2f, new Vector3(out.val[Matrix4.M00], out.val[Matrix4.M10], out.val[Matrix4.M20]).len(), EPSILON);
+        assertEquals(3f, new Vector3(out.val[Matrix4.M01], out.val[Matrix4.M11], out.val[Matrix4.M21]).len(), EPSILON);
+        assertEquals(4f, new Vector3(out.val[Matrix4.M02], out.val[Matrix4.M12], out.val[Matrix4.M22]).len(), EPSILON);
+
+        this.components.interpolate(index, 1f, out);
+        assertVector(10f, 0f, 0f, out.getTranslation(new Vector3()));
+        assertVector(0f, 0f, -2f, new Vector3(out.val[Matrix4.M00], out.val[Matrix4.M10], out.val[Matrix4.M20]));
+    }
+
+    private Vector3 previous(final int index) {
+        final float[] p = components.previousPosition;
+        return new Vector3(p[index * 3], p[index * 3 + 1], p[index * 3 + 2]);
+    }
+
+    private static void assertVector(final float x, final float y, final float z, final Vector3 actual) {
+        assertEquals(x, actual.x, EPSILON);
+        assertEquals(y, actual.y, EPSILON);
+        assertEquals(z, actual.z, EPSILON);
+    }
+}
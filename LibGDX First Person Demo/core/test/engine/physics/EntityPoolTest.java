@@ -0,0 +1,95 @@
+package engine.physics;
+
+import com.badlogic.gdx.physics.bullet.Bullet;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class EntityPoolTest {
+
+    private EntityBlueprint blueprint;
+    private EntityPool pool;
+
+    @BeforeClass
+    public static void init() {
+        GdxNativesLoader.load();
+        Bullet.init();
+    }
+
+    @Before
+    public void setUp() {
+        this.blueprint = new EntityBlueprint(null, 1f, 1f, 1f, 1f);
+        this.pool = new EntityPool(blueprint, 4);
+    }
+
+    @After
+    public void tearDown() {
+        // the pooled bodies refer to the shape of the blueprint
+        this.pool.dispose();
+        this.blueprint.dispose();
+    }
+
+    @Test
+    public void freedEntitiesAreObtainedAgain() {
+        final Entity e = pool.obtain(1f, 2f, 3f);
+        assertEquals(1, pool.misses);
+        this.pool.free(e);
+        assertEquals(1, pool.getFree());
+        assertSame(e, pool.obtain(0f, 0f, 0f));
+        assertEquals(1, pool.hits);
+        assertEquals(1, pool.live);
+    }
+
+    @Test
+    public void doubleFreeThrows() {
+        final Entity e = pool.obtain(0f, 0f, 0f);
+        this.pool.free(e);
+        try {
+            this.pool.free(e);
+            fail("expected an IllegalStateException");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals(0, pool.live);
+        assertEquals(1, pool.getFree());
+
+        // one entity never goes to two owners
+        assertNotSame(pool.obtain(0f, 0f, 0f), pool.obtain(0f, 0f, 0f));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void freeingAPrewarmedEntityThrows() {
+        this.pool.prewarm(1);
+        final Entity e = pool.obtain(0f, 0f, 0f);
+        this.pool.free(e);
+        this.pool.free(e);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void freeingAnotherPoolsEntityThrows() {
+        final Entity e = new EntityPool(blueprint, 4).obtain(0f, 0f, 0f);
+        try {
+            this.pool.free(e);
+        } finally {
+            e.dispose();
+        }
+    }
+
+    @Test
+    public void obtainedEntitiesCanBeFreedAgain() {
+        final Entity e = pool.obtain(0f, 0f, 0f);
+        this.pool.free(e);
+        this.pool.free(pool.obtain(0f, 0f, 0f));
+        assertEquals(1, pool.getFree());
+        assertEquals(0, pool.live);
+    }
+}
@@ -0,0 +1,108 @@
+package engine.physics;
+
+import com.badlogic.gdx.physics.bullet.Bullet;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class EntityRegistryTest {
+
+    private EntityBlueprint blueprint;
+    private final Entity[] entities = new Entity[3];
+    private final EntityRegistry registry = new EntityRegistry(4);
+
+    @BeforeClass
+    public static void init() {
+        GdxNativesLoader.load();
+        Bullet.init();
+    }
+
+    @Before
+    public void setUp() {
+        this.blueprint = new EntityBlueprint(null, 1f, 1f, 1f, 1f);
+        for (int i = 0; i < entities.length; i++) {
+            this.entities[i] = blueprint.construct(i, 0f, 0f);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (Entity e : entities) {
+            e.dispose();
+        }
+        this.blueprint.dispose();
+    }
+
+    @Test
+    public void removeSwapsTheLastEntityIn() {
+        final Entity a = entities[0], b = entities[1], c = entities[2];
+        final int ha = registry.add(a), hb = registry.add(b), hc = registry.add(c);
+
+        assertSame(a, registry.remove(ha));
+        assertEquals(2, registry.size());
+        assertSame(c, registry.at(0));
+        assertEquals(0, c.getIndex());
+        assertSame(b, registry.get(hb));
+        assertSame(c, registry.get(hc));
+        assertNull(registry.get(ha));
+        assertNull(registry.remove(ha));
+    }
+
+    @Test
+    public void staleHandlesStayStaleUnderChurn() {
+        final Entity a = entities[0], b = entities[1];
+        final int stale = registry.add(a);
+        registry.remove(stale);
+
+        // one entity added and removed over and over, like a pooled bullet,
+        // more often than the generation bits can count
+        for (int i = 0; i < 8192; i++) {
+            final int handle = registry.add(b);
+            assertTrue(handle != stale);
+            assertNull(registry.get(stale));
+            assertSame(b, registry.remove(handle));
+        }
+
+        // the slot of the stale handle is in use by now
+        final int live = registry.add(a);
+        assertNull(registry.get(stale));
+        assertSame(a, registry.get(live));
+    }
+
+    @Test
+    public void freedSlotsAreReusedOldestFirst() {
+        final Entity a = entities[0], b = entities[1];
+        final int first = registry.add(a), second = registry.add(b);
+        registry.remove(first);
+        registry.remove(second);
+        // new slots are handed out until enough are free
+        for (int i = 1; i < EntityRegistry.MIN_FREE_SLOTS; i++) {
+            final int handle = registry.add(a);
+            assertTrue(EntityRegistry.slot(handle) > EntityRegistry.slot(second));
+            registry.remove(handle);
+        }
+        final int reused = registry.add(a);
+        assertEquals(EntityRegistry.slot(first), EntityRegistry.slot(reused));
+        registry.remove(reused);
+        assertEquals(EntityRegistry.slot(second), EntityRegistry.slot(registry.add(b)));
+    }
+
+    @Test
+    public void clearMakesEveryHandleStale() {
+        final int ha = registry.add(entities[0]), hb = registry.add(entities[1]);
+        registry.clear();
+        assertEquals(0, registry.size());
+        assertNull(registry.get(ha));
+        assertNull(registry.get(hb));
+        assertEquals(EntityRegistry.NULL, entities[0].getHandle());
+    }
+}
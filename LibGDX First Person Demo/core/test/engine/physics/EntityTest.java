@@ -0,0 +1,145 @@
+package engine.physics;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Mesh.VertexDataType;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
+import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
+import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.Bullet;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import engine.graphics.FrustumCuller;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class EntityTest {
+
+    private static final float EPSILON = 1e-4f;
+
+    private Model model;
+    private EntityBlueprint blueprint;
+    private Entity entity;
+
+    @BeforeClass
+    public static void init() {
+        GdxNativesLoader.load();
+        Bullet.init();
+    }
+
+    @Before
+    public void setUp() {
+        this.model = createBox();
+        this.blueprint = new EntityBlueprint(model, 1f, 1f, 1f, 1f);
+        this.entity = blueprint.construct(0f, 0f, 0f);
+    }
+
+    @After
+    public void tearDown() {
+        this.entity.dispose();
+        this.blueprint.dispose();
+    }
+
+    @Test
+    public void worldRadiusFollowsTheLargestScale() {
+        final float radius = entity.getBoundingBoxRadius();
+        assertEquals((float) Math.sqrt(3) * 0.5f, radius, EPSILON);
+        assertEquals(radius, entity.getWorldRadius(), EPSILON);
+
+        this.entity.transform.setToScaling(2f, 3f, 0.5f);
+        assertEquals(radius * 3f, entity.getWorldRadius(), EPSILON);
+
+        // rotating doesn't change the scale
+        this.entity.transform.set(new Vector3(5f, 0f, 0f), new Quaternion(Vector3.Y, 30f), new Vector3(4f, 1f, 1f));
+        assertEquals(radius * 4f, entity.getWorldRadius(), EPSILON);
+        assertEquals(radius, entity.getBoundingBoxRadius(), 0f);
+    }
+
+    @Test
+    public void scaledEntitiesAreCulledWithTheirWorldBounds() {
+        final Frustum frustum = new Frustum();
+        frustum.planes[0].set(1f, 0f, 0f, 10f);
+        frustum.planes[1].set(-1f, 0f, 0f, 10f);
+        frustum.planes[2].set(0f, 1f, 0f, 10f);
+        frustum.planes[3].set(0f, -1f, 0f, 10f);
+        frustum.planes[4].set(0f, 0f, 1f, 10f);
+        frustum.planes[5].set(0f, 0f, -1f, 10f);
+        final FrustumCuller culler = new FrustumCuller();
+
+        // reaches from 9.5 to 13.5, into the frustum that ends at 10
+        this.entity.transform.setToTranslationAndScaling(11.5f, 0f, 0f, 4f, 4f, 4f);
+        assertTrue(culler.isVisible(frustum, entity));
+        this.entity.transform.setToTranslationAndScaling(11.5f, 0f, 0f, 1f, 1f, 1f);
+        assertFalse(culler.isVisible(frustum, entity));
+    }
+
+    @Test
+    public void interpolationKeepsTheScale() {
+        final Entity.MotionState state = entity.motionState;
+        state.previous.setToTranslation(0f, 0f, 0f);
+        state.current.set(new Vector3(10f, 0f, 0f), new Quaternion(Vector3.Y, 90f));
+        state.stamp = 7;
+        final Matrix4 out = new Matrix4().setToScaling(2f, 3f, 4f);
+
+        state.interpolate(7, 0.5f, out);
+        assertVector(5f, 0f, 0f, out.getTranslation(new Vector3()));
+        // halfway through the turn the x axis points between x and -z
+        final float half = (float) Math.sqrt(0.5);
+        assertVector(half, 0f, -half, new Vector3(out.val[Matrix4.M00], out.val[Matrix4.M10], out.val[Matrix4.M20]).nor());
+        // the axes of the result, rotated but as long as they were
+        assertEquals(2f, new Vector3(out.val[Matrix4.M00], out.val[Matrix4.M10], out.val[Matrix4.M20]).len(), EPSILON);
+        assertEquals(3f, new Vector3(out.val[Matrix4.M01], out.val[Matrix4.M11], out.val[Matrix4.M21]).len(), EPSILON);
+        assertEquals(4f, new Vector3(out.val[Matrix4.M02], out.val[Matrix4.M12], out.val[Matrix4.M22]).len(), EPSILON);
+
+        // every frame after the first, and once the body is at rest
+        state.interpolate(7, 0.75f, out);
+        assertVector(7.5f, 0f, 0f, out.getTranslation(new Vector3()));
+        assertEquals(3f, new Vector3(out.val[Matrix4.M01], out.val[Matrix4.M11], out.val[Matrix4.M21]).len(), EPSILON);
+        state.interpolate(8, 0.5f, out);
+        assertVector(10f, 0f, 0f, out.getTranslation(new Vector3()));
+        assertEquals(4f, new Vector3(out.val[Matrix4.M02], out.val[Matrix4.M12], out.val[Matrix4.M22]).len(), EPSILON);
+    }
+
+    private static void assertVector(final float x, final float y, final float z, final Vector3 actual) {
+        assertEquals(x, actual.x, EPSILON);
+        assertEquals(y, actual.y, EPSILON);
+        assertEquals(z, actual.z, EPSILON);
+    }
+
+    /**
+     * A unit box in a client side vertex array, so no GL context is needed.
+     */
+    private static Model createBox() {
+        final VertexAttributes attributes = MeshBuilder.createAttributes(Usage.Position | Usage.Normal);
+        final MeshBuilder meshBuilder = new MeshBuilder();
+        meshBuilder.begin(attributes, GL20.GL_TRIANGLES);
+        meshBuilder.box(1f, 1f, 1f);
+        final VertexAttribute[] array = new VertexAttribute[attributes.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = attributes.get(i);
+        }
+        final Mesh mesh = meshBuilder.end(new Mesh(VertexDataType.VertexArray, true,
+                meshBuilder.getNumVertices(), meshBuilder.getNumIndices(), array));
+
+        final ModelBuilder modelBuilder = new ModelBuilder();
+        modelBuilder.begin();
+        modelBuilder.manage(mesh);
+        modelBuilder.part("box", mesh, GL20.GL_TRIANGLES, new Material());
+        return modelBuilder.end();
+    }
+}
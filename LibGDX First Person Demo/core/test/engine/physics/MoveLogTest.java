@@ -0,0 +1,106 @@
+package engine.physics;
+
+import com.badlogic.gdx.utils.IntArray;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class MoveLogTest {
+
+    private final MoveLog log = new MoveLog(10);
+    private final IntArray out = new IntArray();
+
+    @Test
+    public void sinceReturnsWhatMovedAfterTheTick() {
+        this.batch(1, 1, 2, 1);
+        this.batch(3, 3);
+        this.batch(4, 5, 5, 5);
+
+        assertTrue(log.since(0, out));
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5}, out.toArray());
+        this.out.clear();
+        assertTrue(log.since(3, out));
+        assertArrayEquals(new int[]{4, 5}, out.toArray());
+        this.out.clear();
+        assertTrue(log.since(5, out));
+        assertEquals(0, out.size);
+    }
+
+    @Test
+    public void sortOrdersABatchByTick() {
+        final int mark = log.mark();
+        this.log.add(7, 3);
+        this.log.add(8, 1);
+        this.log.add(9, 2);
+        this.log.sort(mark);
+
+        assertTrue(log.since(1, out));
+        assertArrayEquals(new int[]{9, 7}, out.toArray());
+    }
+
+    @Test
+    public void trimDropsOldEntries() {
+        this.batch(1, 1);
+        this.batch(2, 5);
+        this.batch(3, 12);
+        this.log.trim(12);
+
+        assertEquals(2, log.size());
+        assertFalse(log.covers(1));
+        assertFalse(log.since(0, out));
+        assertEquals(0, out.size);
+        assertTrue(log.covers(2));
+        assertTrue(log.since(2, out));
+        assertArrayEquals(new int[]{2, 3}, out.toArray());
+    }
+
+    @Test
+    public void keepsEntriesAcrossCompaction() {
+        // more than the initial capacity, with old entries trimmed in between
+        for (int tick = 1; tick <= 200; tick++) {
+            this.batch(tick, tick);
+            this.log.trim(tick);
+        }
+        assertEquals(10, log.size());
+        assertTrue(log.since(195, out));
+        assertArrayEquals(new int[]{196, 197, 198, 199, 200}, out.toArray());
+    }
+
+    @Test
+    public void growsWhenFull() {
+        final int mark = log.mark();
+        for (int i = 0; i < 1000; i++) {
+            this.log.add(i, 1);
+        }
+        this.log.sort(mark);
+        assertEquals(1000, log.size());
+        assertTrue(log.since(0, out));
+        assertEquals(1000, out.size);
+        assertEquals(999, out.get(999));
+    }
+
+    @Test
+    public void clearEmptiesTheLog() {
+        this.batch(1, 1);
+        this.log.clear();
+        assertEquals(0, log.size());
+        assertTrue(log.since(0, out));
+        assertEquals(0, out.size);
+    }
+
+    /**
+     * Adds a batch of handle, tick pairs like a frame does.
+     */
+    private void batch(final int... entries) {
+        final int mark = log.mark();
+        for (int i = 0; i < entries.length; i += 2) {
+            this.log.add(entries[i], entries[i + 1]);
+        }
+        this.log.sort(mark);
+    }
+}
@@ -0,0 +1,160 @@
+package engine.physics;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Quaternion;
+import com.badlogic.gdx.math.Vector3;
+import engine.utils.ResourceException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * @author Matthew 'siD' Van der Bijl
+ */
+public class SceneFileTest {
+
+    private static final float EPSILON = 1e-6f;
+
+    @Test
+    public void writtenScenesReadBack() throws IOException {
+        final float half = (float) Math.sqrt(0.5);
+        final SceneFile scene = new SceneFile(ByteBuffer.wrap(write(
+                new String[]{"ground", "b\u00e4llchen"},
+                new int[]{SceneFile.SHAPE_BOX, SceneFile.SHAPE_SPHERE},
+                new float[]{0f, 2.5f},
+                new float[]{10f, 0.5f, 10f, 0.25f, 0f, 0f},
+                new int[]{0, 1, 1},
+                new float[]{
+                    0f, -1f, 0f, 0f, 0f, 0f, 1f,
+                    1f, 2f, 3f, 0f, half, 0f, half,
+                    -4f, 5f, -6f, 0f, 0f, 0f, 1f},
+                new int[]{0x808080FF, 0xFF0000FF, 0x00FF0080})));
+
+        assertEquals(2, scene.getBlueprintCount());
+        assertEquals("ground", scene.getBlueprintName(0));
+        assertEquals("b\u00e4llchen", scene.getBlueprintName(1));
+        assertEquals(SceneFile.SHAPE_BOX, scene.getShape(0));
+        assertEquals(SceneFile.SHAPE_SPHERE, scene.getShape(1));
+        assertEquals(0f, scene.getMass(0), 0f);
+        assertEquals(2.5f, scene.getMass(1), 0f);
+        assertEquals(10f, scene.getShapeParam(0, 2), 0f);
+        assertEquals(0.25f, scene.getShapeParam(1, 0), 0f);
+
+        assertEquals(3, scene.getEntityCount());
+        assertEquals(0, scene.getBlueprint(0));
+        assertEquals("b\u00e4llchen", scene.getType(2));
+        final Matrix4 transform = scene.getTransform(1, new Matrix4());
+        final Vector3 position = transform.getTranslation(new Vector3());
+        assertEquals(1f, position.x, EPSILON);
+        assertEquals(2f, position.y, EPSILON);
+        assertEquals(3f, position.z, EPSILON);
+        assertEquals(1f, transform.getRotation(new Quaternion()).dot(new Quaternion(Vector3.Y, 90f)), 1e-4f);
+        assertEquals(-6f, scene.getTransform(2, transform).val[Matrix4.M23], 0f);
+        assertEquals(0xFF0000FF, scene.getColour(1));
+        final Color colour = scene.getColour(2, new Color());
+        assertEquals(1f, colour.g, 0f);
+        assertEquals(128 / 255f, colour.a, EPSILON);
+    }
+
+    @Test
+    public void emptyScene() throws IOException {
+        final SceneFile scene = new SceneFile(ByteBuffer.wrap(write(new String[0], new int[0], new float[0],
+                new float[0], new int[0], new float[0], new int[0])));
+        assertEquals(0, scene.getBlueprintCount());
+        assertEquals(0, scene.getEntityCount());
+    }
+
+    @Test
+    public void convertedLevelsReadBack() throws IOException {
+        final SceneFile scene = convert("{ \"blueprints\": ["
+                + "{ \"name\": \"ground\", \"shape\": \"box\", \"mass\": 0, \"size\": [20, 1, 4] },"
+                + "{ \"name\": \"pill\", \"shape\": \"capsule\", \"mass\": 2, \"radius\": 0.5, \"height\": 1 } ],"
+                + "\"entities\": ["
+                + "{ \"type\": \"pill\", \"position\": [0, 5, 0], \"colour\": \"ff000080\" },"
+                + "{ \"type\": \"ground\" } ] }");
+        assertEquals(SceneFile.SHAPE_CAPSULE, scene.getShape(1));
+        // boxes are stored with half extents
+        assertEquals(10f, scene.getShapeParam(0, 0), 0f);
+        assertEquals(2f, scene.getShapeParam(0, 2), 0f);
+        assertEquals(1f, scene.getShapeParam(1, 1), 0f);
+        assertEquals("pill", scene.getType(0));
+        assertEquals(5f, scene.getTransform(0, new Matrix4()).val[Matrix4.M13], 0f);
+        assertEquals(0xFF000080, scene.getColour(0));
+        // the defaults
+        assertEquals(1f, scene.getTransform(1, new Matrix4()).getRotation(new Quaternion()).w, EPSILON);
+        assertEquals(Color.rgba8888(Color.WHITE), scene.getColour(1));
+    }
+
+    @Test(expected = ResourceException.class)
+    public void duplicateBlueprintNamesAreRejected() throws IOException {
+        convert("{ \"blueprints\": [ { \"name\": \"box\" }, { \"name\": \"box\", \"mass\": 1 } ] }");
+    }
+
+    @Test(expected = ResourceException.class)
+    public void truncatedPositionsAreRejected() throws IOException {
+        convert("{ \"blueprints\": [ { \"name\": \"box\" } ],"
+                + "\"entities\": [ { \"type\": \"box\", \"position\": [1, 2] } ] }");
+    }
+
+    @Test(expected = ResourceException.class)
+    public void truncatedRotationsAreRejected() throws IOException {
+        convert("{ \"blueprints\": [ { \"name\": \"box\" } ],"
+                + "\"entities\": [ { \"type\": \"box\", \"rotation\": [0, 0, 1] } ] }");
+    }
+
+    @Test(expected = ResourceException.class)
+    public void truncatedSizesAreRejected() throws IOException {
+        convert("{ \"blueprints\": [ { \"name\": \"box\", \"size\": [1, 2] } ] }");
+    }
+
+    @Test(expected = ResourceException.class)
+    public void undefinedBlueprintsAreRejected() throws IOException {
+        convert("{ \"blueprints\": [ { \"name\": \"box\" } ], \"entities\": [ { \"type\": \"ball\" } ] }");
+    }
+
+    @Test(expected = ResourceException.class)
+    public void badColoursAreRejected() throws IOException {
+        convert("{ \"blueprints\": [ { \"name\": \"box\" } ],"
+                + "\"entities\": [ { \"type\": \"box\", \"colour\": \"f00\" } ] }");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mismatchedArraysAreNotWritten() throws IOException {
+        write(new String[]{"box"}, new int[]{SceneFile.SHAPE_BOX}, new float[]{0f}, new float[3],
+                new int[]{0}, new float[3], new int[1]);
+    }
+
+    @Test(expected = ResourceException.class)
+    public void truncatedFilesAreRejected() throws IOException {
+        final byte[] bytes = write(new String[]{"box"}, new int[]{SceneFile.SHAPE_BOX}, new float[]{0f},
+                new float[3], new int[]{0, 0}, new float[14], new int[2]);
+        new SceneFile(ByteBuffer.wrap(bytes, 0, bytes.length - SceneFile.ENTITY_SIZE).slice());
+    }
+
+    @Test(expected = ResourceException.class)
+    public void otherMajorVersionsAreRejected() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(write(new String[0], new int[0], new float[0],
+                new float[0], new int[0], new float[0], new int[0])).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(4, (SceneFile.VERSION_MAJOR + 1) << 16);
+        new SceneFile(buffer);
+    }
+
+    private static byte[] write(final String[] names, final int[] shapes, final float[] masses,
+            final float[] shapeParams, final int[] blueprints, final float[] transforms,
+            final int[] colours) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SceneFile.write(names, shapes, masses, shapeParams, blueprints, transforms, colours, out);
+        return out.toByteArray();
+    }
+
+    private static SceneFile convert(final String json) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SceneConverter.convert(new StringReader(json), out);
+        return new SceneFile(ByteBuffer.wrap(out.toByteArray()));
+    }
+}
@@ -3,6 +3,8 @@ package gaim.engine.desktop;
 import com.badlogic.gdx.Files;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import engine.core.BaseEngine;
 
 import static engine.Core.Game;
 
@@ -24,12 +26,31 @@ public final class DesktopLauncher {
 
     /**
      * <code>main</code> is used to start the game. <b>Test</b> for Java
-     * supports the following command line arguments: N/A
+     * supports the following command line arguments:
+     * <ul>
+     * <li><code>--pipelined</code> simulate physics on a worker thread while
+     * the frame is drawn</li>
+     * <li><code>--seed n</code> the seed of the session</li>
+     * <li><code>--record file</code> record the session, to replay it with
+     * the headless launcher</li>
+     * </ul>
      *
      * @param args the command line arguments
      */
     @SuppressWarnings("ResultOfObjectAllocationIgnored")
     public static void main(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if ("--pipelined".equals(args[i])) {
+                BaseEngine.pipelined = true;
+            } else if ("--seed".equals(args[i]) && i + 1 < args.length) {
+                BaseEngine.seed = Long.parseLong(args[++i]);
+            } else if ("--record".equals(args[i]) && i + 1 < args.length) {
+                BaseEngine.recordFile = new FileHandle(args[++i]);
+            } else {
+                System.err.println("Unknown argument: " + args[i]);
+            }
+        }
+
         final LwjglApplicationConfiguration cfg = new LwjglApplicationConfiguration();
         cfg.title = "Test";
 
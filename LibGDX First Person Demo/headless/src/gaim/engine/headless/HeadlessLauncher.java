@@ -0,0 +1,153 @@
+package gaim.engine.headless;
+
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.TimeUtils;
+import engine.core.BaseEngine;
+
+import static engine.Core.Game;
+
+/**
+ * Main class of the headless runtime. Runs the same world, blueprints and game
+ * logic as the desktop launcher, but with no window and no GL context. <b>You
+ * can not instantiate this class.</b>
+ *
+ * @author Matthew 'siD' van der bijl
+ */
+public final class HeadlessLauncher {
+
+    /**
+     * You can not instantiate this class.
+     */
+    @Deprecated
+    private HeadlessLauncher() {
+    }
+
+    /**
+     * <code>main</code> is used to start the simulation. Supports the
+     * following command line arguments:
+     * <ul>
+     * <li><code>--frames n</code> exit after <code>n</code> frames, runs
+     * forever by default</li>
+     * <li><code>--realtime</code> run at 60 frames per second of wall clock
+     * time instead of as fast as possible</li>
+     * <li><code>--tickrate hz</code> the number of physics ticks per
+     * second</li>
+     * <li><code>--pipelined</code> simulate physics on a worker thread</li>
+     * <li><code>--profile</code> measure every frame and write the profile on
+     * exit</li>
+     * <li><code>--seed n</code> the seed of the session</li>
+     * <li><code>--record file</code> record the session to a file</li>
+     * <li><code>--replay file</code> replay a recorded session as fast as
+     * possible and write its profile, exits with status 1 if it didn't
+     * simulate the same as the recording</li>
+     * </ul>
+     *
+     * @param args the command line arguments
+     */
+    @SuppressWarnings("ResultOfObjectAllocationIgnored")
+    public static void main(String[] args) {
+        long frames = 0;
+        boolean realtime = false;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--frames".equals(args[i]) && i + 1 < args.length) {
+                frames = Long.parseLong(args[++i]);
+            } else if ("--realtime".equals(args[i])) {
+                realtime = true;
+            } else if ("--tickrate".equals(args[i]) && i + 1 < args.length) {
+                BaseEngine.tickRate = Float.parseFloat(args[++i]);
+            } else if ("--pipelined".equals(args[i])) {
+                BaseEngine.pipelined = true;
+            } else if ("--profile".equals(args[i])) {
+                Game.profiler.enabled = true;
+            } else if ("--seed".equals(args[i]) && i + 1 < args.length) {
+                BaseEngine.seed = Long.parseLong(args[++i]);
+            } else if ("--record".equals(args[i]) && i + 1 < args.length) {
+                BaseEngine.recordFile = new FileHandle(args[++i]);
+            } else if ("--replay".equals(args[i]) && i + 1 < args.length) {
+                BaseEngine.replayFile = new FileHandle(args[++i]);
+                Game.profiler.enabled = true;
+            } else {
+                System.err.println("Unknown argument: " + args[i]);
+            }
+        }
+
+        BaseEngine.headless = true;
+        BaseEngine.shadows = false;
+
+        final HeadlessApplicationConfiguration cfg = new HeadlessApplicationConfiguration();
+        if (BaseEngine.replayFile != null) {
+            // the frames take the recorded time, but run as fast as possible
+            cfg.renderInterval = 0f;
+        } else if (realtime) {
+            cfg.renderInterval = 1f / 60f;
+        } else {
+            // Step exactly one tick per frame, as fast as the CPU allows
+            cfg.renderInterval = 0f;
+            BaseEngine.fixedFrameDelta = BaseEngine.tickRate > 0f ? 1f / BaseEngine.tickRate : 1f / 60f;
+        }
+
+        new HeadlessApplication(new FrameLimiter(Game, frames), cfg);
+    }
+
+    /**
+     * Passes everything on to the game, exits after a number of frames and
+     * reports how fast the simulation ran.
+     */
+    private static final class FrameLimiter implements ApplicationListener {
+
+        private final ApplicationListener listener;
+        private final long limit;
+        private long frames;
+        private long start;
+
+        FrameLimiter(final ApplicationListener listener, final long limit) {
+            this.listener = listener;
+            this.limit = limit;
+        }
+
+        @Override
+        public void create() {
+            this.listener.create();
+            this.start = TimeUtils.nanoTime();
+        }
+
+        @Override
+        public void resize(int width, int height) {
+            this.listener.resize(width, height);
+        }
+
+        @Override
+        public void render() {
+            this.listener.render();
+            if (++frames == limit) {
+                Gdx.app.exit();
+            }
+        }
+
+        @Override
+        public void pause() {
+            this.listener.pause();
+        }
+
+        @Override
+        public void resume() {
+            this.listener.resume();
+        }
+
+        @Override
+        public void dispose() {
+            final float seconds = (TimeUtils.nanoTime() - start) / 1e9f;
+            Gdx.app.log("Headless", String.format("%d frames, %d ticks in %.2fs (%.1f frames/s)",
+                    frames, Game.getWorld().getTick(), seconds, frames / Math.max(seconds, 1e-6f)));
+            this.listener.dispose();
+            if (Game.getReplay() != null && Game.getReplay().hasDiverged()) {
+                System.exit(1);
+            }
+        }
+    }
+}
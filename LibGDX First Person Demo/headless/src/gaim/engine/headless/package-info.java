@@ -0,0 +1,5 @@
+/**
+ * Runs the engine without a window or GL context, for soak tests, server-side
+ * simulation and performance runs on machines without a GPU.
+ */
+package gaim.engine.headless;